@@ -0,0 +1,330 @@
+package com.example.cache;
+
+import com.example.entity.ConsultationMessages;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+/**
+ * 会话热点消息缓存
+ * 按(userId, counselorId)缓存每个会话最新的N条消息，用于在不查询数据库的情况下返回对话第一页。
+ * 1. 缓存项只在读未命中时从数据库整体加载，保证它始终是该会话真实的最新N条消息
+ * 2. 写入时仅追加到已存在的缓存项，不存在的会话不创建缓存项
+ * 3. 按会话数量（由内存预算换算）和访问TTL淘汰
+ * 4. 返回给调用方的是消息副本，调用方修改结果不会影响缓存
+ */
+@Component
+public class ConversationMessageCache {
+
+    private static final Logger log = LoggerFactory.getLogger(ConversationMessageCache.class);
+
+    // 写入戳分段数，用于判断加载期间是否有并发写入
+    private static final int STAMP_STRIPES = 64;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Value("${chat.message-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${chat.message-cache.messages-per-conversation:50}")
+    private int messagesPerConversation;
+
+    @Value("${chat.message-cache.ttl-minutes:30}")
+    private long ttlMinutes;
+
+    @Value("${chat.message-cache.memory-budget-mb:64}")
+    private long memoryBudgetMb;
+
+    @Value("${chat.message-cache.estimated-message-bytes:512}")
+    private long estimatedMessageBytes;
+
+    private final Map<ConversationKey, Ring> conversations = new ConcurrentHashMap<>();
+
+    private final AtomicLongArray writeStamps = new AtomicLongArray(STAMP_STRIPES);
+
+    // 每个会话实际缓存的条数：比每页多一条，游标分页多取一条判断是否还有更早的消息时也能命中
+    private int windowSize;
+
+    private int maxConversations;
+
+    private Counter hitCounter;
+    private Counter missCounter;
+    private Counter evictionCounter;
+
+    @PostConstruct
+    public void init() {
+        windowSize = messagesPerConversation + 1;
+        long budgetBytes = memoryBudgetMb * 1024 * 1024;
+        maxConversations = (int) Math.max(1, budgetBytes / ((long) windowSize * estimatedMessageBytes));
+
+        hitCounter = meterRegistry.counter("chat.message.cache.hits");
+        missCounter = meterRegistry.counter("chat.message.cache.misses");
+        evictionCounter = meterRegistry.counter("chat.message.cache.evictions");
+        Gauge.builder("chat.message.cache.conversations", conversations, Map::size)
+                .description("已缓存的会话数量")
+                .register(meterRegistry);
+        log.info("会话消息缓存: 启用={}, 每会话消息数={}, 最大会话数={}, TTL={}分钟",
+                enabled, messagesPerConversation, maxConversations, ttlMinutes);
+    }
+
+    /**
+     * 每个会话缓存的条数，loader需加载这么多条最新消息
+     */
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    /**
+     * 获取会话最新的limit条消息（按发送时间倒序）；未命中时调用loader从数据库加载最新N条并缓存
+     * @return 消息副本；limit超过缓存容量或缓存关闭时返回null，由调用方直接查询数据库
+     */
+    public List<ConsultationMessages> getLatest(Long userId, Long counselorId, int limit,
+                                                Supplier<List<ConsultationMessages>> loader) {
+        if (!enabled || limit > windowSize) {
+            return null;
+        }
+        ConversationKey key = new ConversationKey(userId, counselorId);
+        Ring ring = conversations.get(key);
+        if (ring != null && !ring.isExpired(ttlNanos())) {
+            hitCounter.increment();
+            return ring.snapshot(limit);
+        }
+        missCounter.increment();
+
+        int stripe = stripe(key);
+        long stampBefore = writeStamps.get(stripe);
+        List<ConsultationMessages> loaded = loader.get();
+        Ring loadedRing = new Ring(windowSize);
+        loadedRing.load(loaded);
+        // 加载期间同一分段有写入时不缓存，避免缓存项漏掉刚写入的消息
+        // 写入方先递增写入戳再在同一个键上 computeIfPresent，检查和放入在键锁内完成，不会在检查之后漏掉写入
+        Ring installed = conversations.compute(key, (k, existing) ->
+                writeStamps.get(stripe) == stampBefore ? loadedRing : existing);
+        if (installed == loadedRing) {
+            evictIfNeeded();
+        }
+        return loadedRing.snapshot(limit);
+    }
+
+    /**
+     * 消息写入数据库后调用，把消息追加到对应会话的缓存项
+     */
+    public void onMessagesSaved(Collection<ConsultationMessages> messages) {
+        if (!enabled) {
+            return;
+        }
+        for (ConsultationMessages message : messages) {
+            ConversationKey key = new ConversationKey(message.getUserId(), message.getCounselorId());
+            writeStamps.incrementAndGet(stripe(key));
+            ConsultationMessages copy = copyOf(message);
+            conversations.computeIfPresent(key, (k, ring) -> {
+                ring.add(copy);
+                return ring;
+            });
+        }
+    }
+
+    /**
+     * 消息从数据库删除后调用，移除所属会话的缓存项，下次读取时重新加载
+     */
+    public void onMessagesDeleted(Collection<ConsultationMessages> messages) {
+        if (!enabled) {
+            return;
+        }
+        for (ConsultationMessages message : messages) {
+            ConversationKey key = new ConversationKey(message.getUserId(), message.getCounselorId());
+            // 递增写入戳，让删除前开始的加载不再放入缓存
+            writeStamps.incrementAndGet(stripe(key));
+            conversations.remove(key);
+        }
+    }
+
+    /**
+     * 更新缓存中消息的阅读状态，只更新消息所属会话的缓存项（消息需带userId和counselorId）
+     */
+    public void onReadStatusUpdated(Collection<ConsultationMessages> messages, Boolean readStatus) {
+        if (!enabled) {
+            return;
+        }
+        Map<ConversationKey, Set<Long>> idsByConversation = new HashMap<>();
+        for (ConsultationMessages message : messages) {
+            idsByConversation.computeIfAbsent(new ConversationKey(message.getUserId(), message.getCounselorId()),
+                    k -> new HashSet<>()).add(message.getId());
+        }
+        idsByConversation.forEach((key, ids) -> {
+            // 递增写入戳，让更新前开始的加载不会放入旧的阅读状态
+            writeStamps.incrementAndGet(stripe(key));
+            conversations.computeIfPresent(key, (k, ring) -> {
+                ring.updateReadStatus(ids, readStatus);
+                return ring;
+            });
+        });
+    }
+
+    /**
+     * 会话按范围标记已读后调用：把readerType接收的、(sentTime, id)不晚于(upToTime, upToId)的消息标记为已读
+     * upToId为空时按 sentTime <= upToTime 判断
+     */
+    public void onConversationRead(Long userId, Long counselorId, String readerType, Instant upToTime, Long upToId) {
+        if (!enabled) {
+            return;
+        }
+        ConversationKey key = new ConversationKey(userId, counselorId);
+        writeStamps.incrementAndGet(stripe(key));
+        conversations.computeIfPresent(key, (k, ring) -> {
+            ring.markReadUpTo(readerType, upToTime, upToId);
+            return ring;
+        });
+    }
+
+    /**
+     * 定期清理过期的会话
+     */
+    @Scheduled(fixedDelayString = "${chat.message-cache.prune-interval-ms:60000}")
+    public void pruneExpired() {
+        long ttl = ttlNanos();
+        conversations.entrySet().removeIf(entry -> {
+            if (entry.getValue().isExpired(ttl)) {
+                evictionCounter.increment();
+                return true;
+            }
+            return false;
+        });
+    }
+
+    /**
+     * 超过最大会话数时淘汰最久未访问的会话，一次淘汰约10%以摊薄扫描开销
+     */
+    private void evictIfNeeded() {
+        int overflow = conversations.size() - maxConversations;
+        if (overflow <= 0) {
+            return;
+        }
+        int toEvict = Math.max(overflow, maxConversations / 10);
+        conversations.entrySet().stream()
+                .sorted(Comparator.comparingLong(entry -> entry.getValue().lastAccessNanos))
+                .limit(toEvict)
+                .map(Map.Entry::getKey)
+                .toList()
+                .forEach(key -> {
+                    if (conversations.remove(key) != null) {
+                        evictionCounter.increment();
+                    }
+                });
+    }
+
+    private long ttlNanos() {
+        return TimeUnit.MINUTES.toNanos(ttlMinutes);
+    }
+
+    private static int stripe(ConversationKey key) {
+        return (key.hashCode() & 0x7fffffff) % STAMP_STRIPES;
+    }
+
+    private static ConsultationMessages copyOf(ConsultationMessages message) {
+        ConsultationMessages copy = new ConsultationMessages();
+        BeanUtils.copyProperties(message, copy);
+        return copy;
+    }
+
+    /**
+     * 会话键
+     */
+    private record ConversationKey(Long userId, Long counselorId) {
+    }
+
+    /**
+     * 单个会话的最新消息，按(sentTime, id)倒序保存，最多capacity条
+     */
+    private static class Ring {
+        private static final Comparator<ConsultationMessages> NEWEST_FIRST = Comparator
+                .comparing(ConsultationMessages::getSentTime, Comparator.nullsLast(Comparator.reverseOrder()))
+                .thenComparing(ConsultationMessages::getId, Comparator.nullsLast(Comparator.reverseOrder()));
+
+        private final int capacity;
+        private final List<ConsultationMessages> messages;
+        private volatile long lastAccessNanos = System.nanoTime();
+
+        Ring(int capacity) {
+            this.capacity = capacity;
+            this.messages = new ArrayList<>(capacity + 1);
+        }
+
+        synchronized void load(List<ConsultationMessages> latest) {
+            for (ConsultationMessages message : latest) {
+                if (messages.size() >= capacity) {
+                    break;
+                }
+                messages.add(copyOf(message));
+            }
+        }
+
+        synchronized void add(ConsultationMessages message) {
+            int index = 0;
+            while (index < messages.size() && NEWEST_FIRST.compare(messages.get(index), message) < 0) {
+                index++;
+            }
+            messages.add(index, message);
+            if (messages.size() > capacity) {
+                messages.remove(messages.size() - 1);
+            }
+        }
+
+        synchronized List<ConsultationMessages> snapshot(int limit) {
+            lastAccessNanos = System.nanoTime();
+            int size = Math.min(limit, messages.size());
+            List<ConsultationMessages> result = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                result.add(copyOf(messages.get(i)));
+            }
+            return result;
+        }
+
+        synchronized void updateReadStatus(Set<Long> ids, Boolean readStatus) {
+            for (ConsultationMessages message : messages) {
+                if (ids.contains(message.getId())) {
+                    message.setReadStatus(readStatus);
+                }
+            }
+        }
+
+        synchronized void markReadUpTo(String readerType, Instant upToTime, Long upToId) {
+            for (ConsultationMessages message : messages) {
+                if (!readerType.equals(UnreadCounterStore.receiverType(message.getSenderType())) || message.getSentTime() == null) {
+                    continue;
+                }
+                int cmp = message.getSentTime().compareTo(upToTime);
+                if (cmp < 0 || (cmp == 0 && (upToId == null || (message.getId() != null && message.getId() <= upToId)))) {
+                    message.setReadStatus(true);
+                }
+            }
+        }
+
+        boolean isExpired(long ttlNanos) {
+            return System.nanoTime() - lastAccessNanos > ttlNanos;
+        }
+    }
+}
@@ -0,0 +1,368 @@
+package com.example.cache;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.example.dto.CounselorDTO;
+import com.example.entity.CounselorTag;
+import com.example.entity.Counselors;
+import com.example.mapper.CounselorTagMapper;
+import com.example.mapper.CounselorsMapper;
+import jakarta.annotation.Resource;
+import org.roaringbitmap.FastAggregation;
+import org.roaringbitmap.RoaringBitmap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.StringUtils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 咨询师筛选索引：每个筛选值一个咨询师ID的压缩位图（RoaringBitmap）
+ * 1. 擅长领域、治疗流派、服务类型来自 counselor_tag，性别、审核状态、咨询费档位来自 users 和 counselors
+ * 2. 同一维度的多个取值取并集，不同维度之间取交集，任意筛选组合只需位图运算
+ * 3. 本节点写入咨询师（审核状态、咨询费）、用户（性别）或标签时，在事务提交后更新该咨询师；定时全量重建，覆盖其他节点的修改
+ * 4. 首次加载完成前 match 返回null，调用方退回数据库筛选
+ */
+@Component
+public class CounselorFilterIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(CounselorFilterIndex.class);
+
+    // 标签以外的筛选维度，标签维度使用 CounselorTagService 中的标签类型
+    public static final String GENDER = "GENDER";
+    public static final String STATUS = "STATUS";
+    public static final String FEE = "FEE";
+
+    @Resource
+    private CounselorTagMapper counselorTagMapper;
+
+    @Resource
+    private CounselorsMapper counselorsMapper;
+
+    @Value("${counselor.filter-index.enabled:true}")
+    private boolean enabled;
+
+    // 咨询费档位的分界（元，升序），n个分界划分出n+1个档位
+    @Value("${counselor.filter-index.fee-buckets:100,200,300,500,800}")
+    private int[] feeBoundaries;
+
+    // "维度:取值" -> 咨询师ID位图
+    private final Map<String, RoaringBitmap> postings = new HashMap<>();
+
+    // 咨询师ID -> 所在位图的键，单个咨询师更新时只需清除这些位图
+    private final Map<Integer, List<String>> keysByCounselor = new HashMap<>();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private volatile boolean ready;
+
+    // 每次加载或更新后递增，依赖索引内容的缓存据此判断是否过期
+    private final AtomicLong version = new AtomicLong();
+
+    // 全量重建期间单独更新过的咨询师，重建结果替换后需重新加载
+    private final Set<Long> touchedDuringReload = ConcurrentHashMap.newKeySet();
+    private volatile boolean reloading;
+
+    @Scheduled(fixedDelayString = "${counselor.filter-index.reload-interval-ms:300000}")
+    public void reloadAll() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            touchedDuringReload.clear();
+            reloading = true;
+            Map<Integer, List<String>> loadedKeys = loadKeys(null);
+            Map<String, RoaringBitmap> loaded = new HashMap<>();
+            for (Map.Entry<Integer, List<String>> entry : loadedKeys.entrySet()) {
+                for (String key : entry.getValue()) {
+                    loaded.computeIfAbsent(key, k -> new RoaringBitmap()).add(entry.getKey());
+                }
+            }
+            for (RoaringBitmap bitmap : loaded.values()) {
+                bitmap.runOptimize();
+            }
+            lock.writeLock().lock();
+            try {
+                postings.clear();
+                postings.putAll(loaded);
+                keysByCounselor.clear();
+                keysByCounselor.putAll(loadedKeys);
+                ready = true;
+                version.incrementAndGet();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            log.debug("咨询师筛选索引已加载: 咨询师数={}, 位图数={}", loadedKeys.size(), loaded.size());
+        } catch (Exception e) {
+            log.warn("加载咨询师筛选索引失败: {}", e.getMessage());
+        } finally {
+            reloading = false;
+        }
+        for (Long counselorId : touchedDuringReload) {
+            reload(counselorId);
+        }
+    }
+
+    /**
+     * 从数据库重新加载一个咨询师的全部筛选值，咨询师已删除时从索引中移除
+     */
+    public void reload(Long counselorId) {
+        if (!enabled || counselorId == null) {
+            return;
+        }
+        if (reloading) {
+            touchedDuringReload.add(counselorId);
+        }
+        try {
+            int bit = Math.toIntExact(counselorId);
+            List<String> keys = loadKeys(counselorId).getOrDefault(bit, List.of());
+            lock.writeLock().lock();
+            try {
+                List<String> previous = keysByCounselor.remove(bit);
+                if (previous != null) {
+                    for (String key : previous) {
+                        RoaringBitmap bitmap = postings.get(key);
+                        if (bitmap != null) {
+                            bitmap.remove(bit);
+                            if (bitmap.isEmpty()) {
+                                postings.remove(key);
+                            }
+                        }
+                    }
+                }
+                for (String key : keys) {
+                    postings.computeIfAbsent(key, k -> new RoaringBitmap()).add(bit);
+                }
+                if (!keys.isEmpty()) {
+                    keysByCounselor.put(bit, keys);
+                }
+                version.incrementAndGet();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } catch (Exception e) {
+            log.warn("更新咨询师筛选索引失败: 咨询师ID={}, {}", counselorId, e.getMessage());
+        }
+    }
+
+    /**
+     * 在当前事务提交后重新加载咨询师，同一事务内多次调用只加载一次；没有事务时立即加载
+     */
+    @SuppressWarnings("unchecked")
+    public void reloadAfterCommit(Long counselorId) {
+        if (!enabled || counselorId == null) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            reload(counselorId);
+            return;
+        }
+        Set<Long> pending = (Set<Long>) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            Set<Long> counselorIds = new LinkedHashSet<>();
+            pending = counselorIds;
+            TransactionSynchronizationManager.bindResource(this, counselorIds);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(CounselorFilterIndex.this);
+                    if (status == STATUS_COMMITTED) {
+                        counselorIds.forEach(CounselorFilterIndex.this::reload);
+                    }
+                }
+            });
+        }
+        pending.add(counselorId);
+    }
+
+    /**
+     * 用户信息（性别）变化后，在事务提交后重新加载该用户对应的咨询师
+     */
+    public void reloadUserAfterCommit(Long userId) {
+        if (!enabled || userId == null) {
+            return;
+        }
+        QueryWrapper<Counselors> query = new QueryWrapper<>();
+        query.select("id").eq("user_id", userId);
+        for (Counselors counselor : counselorsMapper.selectList(query)) {
+            reloadAfterCommit(counselor.getId());
+        }
+    }
+
+    /**
+     * 按筛选条件查询咨询师ID：同一维度内命中任一取值，不同维度同时满足
+     * @param anyOfByDimension 维度 -> 取值列表，空列表的维度不参与筛选
+     * @return 匹配的咨询师ID位图，调用方可以修改；索引未就绪时返回null
+     */
+    public RoaringBitmap match(Map<String, List<String>> anyOfByDimension) {
+        if (!enabled || !ready) {
+            return null;
+        }
+        lock.readLock().lock();
+        try {
+            return matchLocked(anyOfByDimension);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 在已通过审核的咨询师中按筛选条件查询，同时给出未命中的已审核咨询师
+     * 命中的咨询师占大多数时，调用方可以改为排除未命中的咨询师，避免很长的ID列表
+     * @return 索引未就绪时返回null
+     */
+    public ApprovedMatch matchApproved(Map<String, List<String>> anyOfByDimension) {
+        if (!enabled || !ready) {
+            return null;
+        }
+        Map<String, List<String>> filters = new HashMap<>(anyOfByDimension);
+        filters.put(STATUS, List.of("APPROVED"));
+        lock.readLock().lock();
+        try {
+            RoaringBitmap matched = matchLocked(filters);
+            RoaringBitmap approved = postings.get(key(STATUS, "APPROVED"));
+            RoaringBitmap excluded = approved != null ? RoaringBitmap.andNot(approved, matched) : new RoaringBitmap();
+            return new ApprovedMatch(matched, excluded);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // 调用方持读锁
+    private RoaringBitmap matchLocked(Map<String, List<String>> anyOfByDimension) {
+        List<RoaringBitmap> unions = new ArrayList<>();
+        for (Map.Entry<String, List<String>> entry : anyOfByDimension.entrySet()) {
+            if (entry.getValue() == null || entry.getValue().isEmpty()) {
+                continue;
+            }
+            List<RoaringBitmap> bitmaps = new ArrayList<>(entry.getValue().size());
+            for (String value : entry.getValue()) {
+                RoaringBitmap bitmap = postings.get(key(entry.getKey(), value));
+                if (bitmap != null) {
+                    bitmaps.add(bitmap);
+                }
+            }
+            if (bitmaps.isEmpty()) {
+                return new RoaringBitmap();
+            }
+            unions.add(bitmaps.size() == 1 ? bitmaps.get(0) : FastAggregation.or(bitmaps.iterator()));
+        }
+        if (unions.isEmpty()) {
+            return new RoaringBitmap();
+        }
+        // 结果位图可能就是索引中的位图，返回副本
+        return unions.size() == 1 ? unions.get(0).clone() : FastAggregation.and(unions.iterator());
+    }
+
+    /**
+     * 与咨询费区间有交集的档位，作为 FEE 维度的取值；档位只是粗筛，精确的区间由数据库判断
+     * @param minFee 最低咨询费，为空时不限
+     * @param maxFee 最高咨询费，为空时不限
+     */
+    public List<String> feeBuckets(BigDecimal minFee, BigDecimal maxFee) {
+        int from = minFee != null ? feeBucket(minFee) : 0;
+        int to = maxFee != null ? feeBucket(maxFee) : feeBoundaries.length;
+        List<String> buckets = new ArrayList<>();
+        for (int bucket = from; bucket <= to; bucket++) {
+            buckets.add(String.valueOf(bucket));
+        }
+        return buckets;
+    }
+
+    /**
+     * 某一维度每个取值下已通过审核的咨询师人数，人数为0的取值不返回
+     * @return 取值 -> 人数；索引未就绪时返回null
+     */
+    public Map<String, Long> approvedCounts(String dimension) {
+        if (!enabled || !ready) {
+            return null;
+        }
+        String prefix = dimension + ":";
+        Map<String, Long> counts = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            RoaringBitmap approved = postings.get(key(STATUS, "APPROVED"));
+            if (approved == null) {
+                return counts;
+            }
+            for (Map.Entry<String, RoaringBitmap> entry : postings.entrySet()) {
+                if (entry.getKey().startsWith(prefix)) {
+                    long count = RoaringBitmap.andCardinality(entry.getValue(), approved);
+                    if (count > 0) {
+                        counts.put(entry.getKey().substring(prefix.length()), count);
+                    }
+                }
+            }
+            return counts;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public long version() {
+        return version.get();
+    }
+
+    /**
+     * 查询咨询师的标签和属性，换算成位图的键；counselorId为空时查询全部
+     */
+    private Map<Integer, List<String>> loadKeys(Long counselorId) {
+        Map<Integer, List<String>> keys = new HashMap<>();
+        for (CounselorDTO counselor : counselorsMapper.selectFilterAttributes(counselorId)) {
+            List<String> counselorKeys = keys.computeIfAbsent(Math.toIntExact(counselor.getCounselorId()), k -> new ArrayList<>());
+            if (StringUtils.hasText(counselor.getCounselorStatus())) {
+                counselorKeys.add(key(STATUS, counselor.getCounselorStatus()));
+            }
+            if (StringUtils.hasText(counselor.getGender())) {
+                counselorKeys.add(key(GENDER, counselor.getGender()));
+            }
+            if (counselor.getConsultationFee() != null) {
+                counselorKeys.add(key(FEE, String.valueOf(feeBucket(counselor.getConsultationFee()))));
+            }
+        }
+        for (CounselorTag assignment : counselorTagMapper.selectAssignments(counselorId)) {
+            List<String> counselorKeys = keys.get(Math.toIntExact(assignment.getCounselorId()));
+            // 咨询师已删除但标签关联还在时忽略
+            if (counselorKeys != null) {
+                counselorKeys.add(key(assignment.getTagType(), assignment.getTagName()));
+            }
+        }
+        return keys;
+    }
+
+    private int feeBucket(BigDecimal fee) {
+        int bucket = 0;
+        while (bucket < feeBoundaries.length && fee.compareTo(BigDecimal.valueOf(feeBoundaries[bucket])) >= 0) {
+            bucket++;
+        }
+        return bucket;
+    }
+
+    private static String key(String dimension, String value) {
+        return dimension + ":" + value;
+    }
+
+    /**
+     * 已审核咨询师的筛选结果：命中的和未命中的咨询师ID
+     */
+    public record ApprovedMatch(RoaringBitmap matched, RoaringBitmap excluded) {
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.cache;
+
+import com.example.dto.TagCount;
+import com.example.dto.TagVocabulary;
+import com.example.mapper.CounselorTagMapper;
+import jakarta.annotation.Resource;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 咨询师标签词表缓存：每种标签类型的全部标签及已审核咨询师人数
+ * 1. 人数由筛选索引的位图求出，不再查询和解析每个咨询师的JSON字段
+ * 2. 保存或删除咨询师后筛选索引版本递增，下次访问时重新计算；内容不变时ETag和最后修改时间保持不变
+ * 3. 筛选索引未就绪时由数据库按 counselor_tag 统计，不缓存
+ */
+@Component
+public class CounselorTagVocabulary {
+
+    @Resource
+    private CounselorFilterIndex counselorFilterIndex;
+
+    @Resource
+    private CounselorTagMapper counselorTagMapper;
+
+    // 标签类型 -> 词表
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * 获取某一类型的标签词表，按人数从多到少、同人数按名称排列
+     */
+    public TagVocabulary get(String tagType) {
+        // 先取版本再计算，计算期间索引有变化时下次访问会重新计算
+        long version = counselorFilterIndex.version();
+        Entry cached = entries.get(tagType);
+        if (cached != null && cached.version() == version) {
+            return cached.vocabulary();
+        }
+
+        Map<String, Long> counts = counselorFilterIndex.approvedCounts(tagType);
+        List<TagCount> tags;
+        if (counts != null) {
+            tags = new ArrayList<>(counts.size());
+            for (Map.Entry<String, Long> count : counts.entrySet()) {
+                tags.add(new TagCount(count.getKey(), count.getValue()));
+            }
+        } else {
+            tags = counselorTagMapper.countApprovedTags(tagType);
+        }
+        tags.sort(Comparator.comparing(TagCount::getCounselorCount, Comparator.reverseOrder())
+                .thenComparing(TagCount::getName));
+
+        String etag = etag(tags);
+        Instant lastModified = cached != null && etag.equals(cached.vocabulary().getEtag())
+                ? cached.vocabulary().getLastModified()
+                : Instant.now().truncatedTo(ChronoUnit.SECONDS);
+        TagVocabulary vocabulary = new TagVocabulary(List.copyOf(tags), etag, lastModified);
+        entries.put(tagType, new Entry(counts != null ? version : -1, vocabulary));
+        return vocabulary;
+    }
+
+    /**
+     * 按内容计算ETag，各节点内容相同时ETag相同
+     */
+    private static String etag(List<TagCount> tags) {
+        StringBuilder content = new StringBuilder();
+        for (TagCount tag : tags) {
+            content.append(tag.getName()).append('\t').append(tag.getCounselorCount()).append('\n');
+        }
+        return "\"" + DigestUtils.md5DigestAsHex(content.toString().getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+
+    // version为-1表示来自数据库统计，下次访问重新计算
+    private record Entry(long version, TagVocabulary vocabulary) {
+    }
+}
@@ -0,0 +1,377 @@
+package com.example.cache;
+
+import com.example.dto.PeerUnreadCount;
+import com.example.entity.ConsultationMessages;
+import com.example.mapper.ConsultationMessagesMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 未读消息计数
+ * 按接收者（USER/COUNSELOR + ID）维护未读总数和每个会话（对方ID）的未读数，查询为O(1)，不再每次COUNT(*)。
+ * 1. 计数只在读取未命中时从数据库按会话分组统计后整体加载；保存消息和更新阅读状态时在事务提交后增减已加载的计数
+ * 2. 加载期间登记该接收者的加载，期间提交的增减同时记入加载登记，统计完成后在加载结果上重放再放入缓存，不会漏计；
+ *    提交恰好落在加载开始与统计快照之间的增减可能被重复计入，由定时对账修正
+ * 3. 定时与数据库对账修正偏差，并淘汰长时间未访问的接收者；对账按接收者类型分批，每批一次分组查询
+ * 4. 消息的接收方由 {@link #receiverType(String)} 判断，与Mapper中统计和标记已读使用的条件一致
+ */
+@Component
+public class UnreadCounterStore {
+
+    private static final Logger log = LoggerFactory.getLogger(UnreadCounterStore.class);
+
+    public static final String USER = "USER";
+    public static final String COUNSELOR = "COUNSELOR";
+
+    // 对账时每次分组查询的接收者数
+    private static final int RECONCILE_BATCH_SIZE = 500;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Resource
+    private ConsultationMessagesMapper consultationMessagesMapper;
+
+    @Value("${chat.unread.enabled:true}")
+    private boolean enabled;
+
+    @Value("${chat.unread.ttl-minutes:30}")
+    private long ttlMinutes;
+
+    @Value("${chat.unread.max-receivers:100000}")
+    private int maxReceivers;
+
+    private final Map<ReceiverKey, Counters> receivers = new ConcurrentHashMap<>();
+
+    // 正在从数据库统计的接收者 -> 统计期间提交的增减
+    private final Map<ReceiverKey, Loading> loadings = new ConcurrentHashMap<>();
+
+    private Counter hitCounter;
+    private Counter missCounter;
+    private Counter correctionCounter;
+
+    @PostConstruct
+    public void init() {
+        hitCounter = meterRegistry.counter("chat.unread.hits");
+        missCounter = meterRegistry.counter("chat.unread.misses");
+        correctionCounter = meterRegistry.counter("chat.unread.reconcile.corrections");
+        Gauge.builder("chat.unread.receivers", receivers, Map::size)
+                .description("已加载未读计数的接收者数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 接收者全部会话的未读消息总数
+     */
+    public long getTotal(String receiverType, Long receiverId) {
+        return counters(new ReceiverKey(receiverType, receiverId)).total.get();
+    }
+
+    /**
+     * 接收者在与peerId的会话中的未读消息数
+     */
+    public long getConversation(String receiverType, Long receiverId, Long peerId) {
+        Long count = counters(new ReceiverKey(receiverType, receiverId)).byPeer.get(peerId);
+        return count != null ? count : 0;
+    }
+
+    /**
+     * 接收者各会话的未读数快照，只包含未读数大于0的会话
+     */
+    public Map<Long, Long> getByPeer(String receiverType, Long receiverId) {
+        return new HashMap<>(counters(new ReceiverKey(receiverType, receiverId)).byPeer);
+    }
+
+    /**
+     * 接收者类型是否为USER或COUNSELOR
+     */
+    public static boolean isReceiverType(String receiverType) {
+        return USER.equals(receiverType) || COUNSELOR.equals(receiverType);
+    }
+
+    /**
+     * 消息的接收方类型：用户发送的消息由咨询师接收，其他消息（咨询师、系统等）由用户接收
+     */
+    public static String receiverType(String senderType) {
+        return USER.equals(senderType) ? COUNSELOR : USER;
+    }
+
+    /**
+     * 开始一次计数更新，需在事务内、事务提交之前调用，并在事务结束后调用 {@link Update#complete(boolean)}
+     */
+    public Update begin() {
+        return new Update();
+    }
+
+    /**
+     * 定时对账：重新统计已加载的接收者，修正偏差；淘汰超过TTL未访问的接收者
+     */
+    @Scheduled(fixedDelayString = "${chat.unread.reconcile-interval-ms:300000}")
+    public void reconcile() {
+        long expireBefore = System.nanoTime() - TimeUnit.MINUTES.toNanos(ttlMinutes);
+        Map<String, Map<ReceiverKey, Counters>> byType = new HashMap<>();
+        for (Map.Entry<ReceiverKey, Counters> entry : receivers.entrySet()) {
+            Counters current = entry.getValue();
+            if (current.lastAccessNanos - expireBefore < 0) {
+                receivers.remove(entry.getKey(), current);
+                continue;
+            }
+            byType.computeIfAbsent(entry.getKey().type(), k -> new HashMap<>()).put(entry.getKey(), current);
+        }
+        int corrected = 0;
+        for (Map.Entry<String, Map<ReceiverKey, Counters>> typeEntry : byType.entrySet()) {
+            Map<ReceiverKey, Counters> batch = new HashMap<>();
+            for (Map.Entry<ReceiverKey, Counters> entry : typeEntry.getValue().entrySet()) {
+                batch.put(entry.getKey(), entry.getValue());
+                if (batch.size() == RECONCILE_BATCH_SIZE) {
+                    corrected += reconcileBatch(typeEntry.getKey(), batch);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                corrected += reconcileBatch(typeEntry.getKey(), batch);
+            }
+        }
+        if (corrected > 0) {
+            correctionCounter.increment(corrected);
+            log.warn("未读计数对账修正{}个接收者", corrected);
+        }
+    }
+
+    /**
+     * 一次分组查询重新统计同类型的一批接收者；与单个加载相同，统计期间提交的增减重放到统计结果上再替换
+     * @return 计数有偏差并已修正的接收者数
+     */
+    private int reconcileBatch(String receiverType, Map<ReceiverKey, Counters> batch) {
+        List<Long> receiverIds = new ArrayList<>(batch.size());
+        Map<Long, Counters> loadedById = new HashMap<>();
+        Map<ReceiverKey, Integer> starts = new HashMap<>();
+        for (Map.Entry<ReceiverKey, Counters> entry : batch.entrySet()) {
+            receiverIds.add(entry.getKey().id());
+            Counters loaded = new Counters();
+            loaded.lastAccessNanos = entry.getValue().lastAccessNanos;
+            loadedById.put(entry.getKey().id(), loaded);
+            starts.put(entry.getKey(), beginLoad(entry.getKey()));
+        }
+        int[] corrected = new int[1];
+        try {
+            for (PeerUnreadCount row : consultationMessagesMapper.countUnreadByReceivers(receiverType, receiverIds)) {
+                Counters loaded = loadedById.get(row.getReceiverId());
+                if (loaded != null) {
+                    loaded.add(row.getPeerId(), row.getUnreadCount());
+                }
+            }
+        } catch (RuntimeException e) {
+            starts.keySet().forEach(key -> endLoad(key, 0, null, null));
+            throw e;
+        }
+        for (Map.Entry<ReceiverKey, Counters> entry : batch.entrySet()) {
+            Counters current = entry.getValue();
+            Counters loaded = loadedById.get(entry.getKey().id());
+            endLoad(entry.getKey(), starts.get(entry.getKey()), loaded, () -> {
+                if (enabled && receivers.replace(entry.getKey(), current, loaded) && loaded.total.get() != current.total.get()) {
+                    corrected[0]++;
+                }
+            });
+        }
+        return corrected[0];
+    }
+
+    private Counters counters(ReceiverKey key) {
+        Counters counters = receivers.get(key);
+        if (counters != null) {
+            hitCounter.increment();
+            counters.lastAccessNanos = System.nanoTime();
+            return counters;
+        }
+        missCounter.increment();
+        return load(key);
+    }
+
+    /**
+     * 从数据库统计接收者的未读数，重放统计期间提交的增减后放入缓存
+     */
+    private Counters load(ReceiverKey key) {
+        int start = beginLoad(key);
+        Counters loaded = new Counters();
+        try {
+            for (PeerUnreadCount row : consultationMessagesMapper.countUnreadByPeer(key.type(), key.id())) {
+                loaded.add(row.getPeerId(), row.getUnreadCount());
+            }
+        } catch (RuntimeException e) {
+            endLoad(key, start, null, null);
+            throw e;
+        }
+        Counters[] result = {loaded};
+        endLoad(key, start, loaded, () -> {
+            // 与提交增减在同一个键锁内放入缓存，放入之后提交的增减直接作用在缓存的计数上
+            if (enabled && receivers.size() < maxReceivers) {
+                Counters existing = receivers.putIfAbsent(key, loaded);
+                if (existing != null) {
+                    result[0] = existing;
+                }
+            }
+        });
+        return result[0];
+    }
+
+    /**
+     * 登记接收者正在加载，之后提交的增减会记入登记
+     * @return 加载开始时登记中已有的增减数，结束时从这里开始重放
+     */
+    private int beginLoad(ReceiverKey key) {
+        int[] start = new int[1];
+        loadings.compute(key, (k, loading) -> {
+            if (loading == null) {
+                loading = new Loading();
+            }
+            loading.loaders++;
+            start[0] = loading.deltas.size();
+            return loading;
+        });
+        return start[0];
+    }
+
+    /**
+     * 结束加载：把加载期间提交的增减重放到loaded上，在同一个键锁内执行install，最后一个加载者移除登记
+     */
+    private void endLoad(ReceiverKey key, int start, Counters loaded, Runnable install) {
+        loadings.compute(key, (k, loading) -> {
+            if (loaded != null) {
+                for (Delta delta : loading.deltas.subList(start, loading.deltas.size())) {
+                    loaded.add(delta.peerId(), delta.delta());
+                }
+            }
+            if (install != null) {
+                install.run();
+            }
+            return --loading.loaders == 0 ? null : loading;
+        });
+    }
+
+    /**
+     * 一次事务内的计数增减，事务提交后应用到已加载的计数，并记入正在进行的加载
+     */
+    public class Update {
+        private final List<Delta> deltas = new ArrayList<>();
+        private boolean completed;
+
+        /**
+         * 新保存的消息：未读消息为接收者增加计数
+         */
+        public void messagesSaved(List<ConsultationMessages> messages) {
+            for (ConsultationMessages message : messages) {
+                if (!Boolean.TRUE.equals(message.getReadStatus())) {
+                    add(message, 1);
+                }
+            }
+        }
+
+        /**
+         * 阅读状态变化的消息（变化前的状态），标记已读减少计数，标记未读增加计数
+         */
+        public void readStatusChanged(List<ConsultationMessages> messages, boolean readStatus) {
+            for (ConsultationMessages message : messages) {
+                add(message, readStatus ? -1 : 1);
+            }
+        }
+
+        /**
+         * 会话按范围标记已读：读者在与peerId的会话中减少count条未读
+         */
+        public void conversationRead(String readerType, Long readerId, Long peerId, int count) {
+            if (count > 0) {
+                add(new ReceiverKey(readerType, readerId), peerId, -count);
+            }
+        }
+
+        private void add(ConsultationMessages message, long delta) {
+            if (COUNSELOR.equals(receiverType(message.getSenderType()))) {
+                add(new ReceiverKey(COUNSELOR, message.getCounselorId()), message.getUserId(), delta);
+            } else {
+                add(new ReceiverKey(USER, message.getUserId()), message.getCounselorId(), delta);
+            }
+        }
+
+        private void add(ReceiverKey key, Long peerId, long delta) {
+            if (key.id() == null || peerId == null) {
+                return;
+            }
+            deltas.add(new Delta(key, peerId, delta));
+        }
+
+        /**
+         * 事务结束后调用，committed为true时应用计数变化
+         */
+        public void complete(boolean committed) {
+            if (completed) {
+                return;
+            }
+            completed = true;
+            if (!committed) {
+                return;
+            }
+            for (Delta delta : deltas) {
+                // 在加载登记的键锁内应用，和加载结束时的重放、放入缓存互斥，增减只会计入其中一处
+                loadings.compute(delta.key(), (key, loading) -> {
+                    Counters counters = receivers.get(key);
+                    if (counters != null) {
+                        counters.add(delta.peerId(), delta.delta());
+                    }
+                    if (loading != null) {
+                        loading.deltas.add(delta);
+                    }
+                    return loading;
+                });
+            }
+        }
+    }
+
+    private record ReceiverKey(String type, Long id) {
+    }
+
+    private record Delta(ReceiverKey key, Long peerId, long delta) {
+    }
+
+    /**
+     * 单个接收者的加载登记，只在loadings的键锁内访问
+     */
+    private static final class Loading {
+        private final List<Delta> deltas = new ArrayList<>();
+        private int loaders;
+    }
+
+    /**
+     * 单个接收者的计数，总数与各会话计数在同一次compute中更新
+     */
+    private static final class Counters {
+        private final AtomicLong total = new AtomicLong();
+        private final Map<Long, Long> byPeer = new ConcurrentHashMap<>();
+        private volatile long lastAccessNanos = System.nanoTime();
+
+        void add(Long peerId, long delta) {
+            byPeer.compute(peerId, (key, value) -> {
+                long current = value != null ? value : 0;
+                long next = Math.max(0, current + delta);
+                total.addAndGet(next - current);
+                return next == 0 ? null : next;
+            });
+        }
+    }
+}
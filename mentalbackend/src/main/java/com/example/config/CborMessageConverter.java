@@ -0,0 +1,50 @@
+package com.example.config;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.util.MimeType;
+
+import java.io.IOException;
+import java.time.Instant;
+
+/**
+ * STOMP消息的CBOR编码转换器（content-type: application/cbor）
+ * 与JSON相比省去引号、数字按二进制编码，时间按毫秒时间戳编码而不是ISO字符串
+ */
+public class CborMessageConverter extends MappingJackson2MessageConverter {
+
+    public static final MimeType APPLICATION_CBOR = new MimeType("application", "cbor");
+
+    public CborMessageConverter() {
+        super(APPLICATION_CBOR);
+        CBORMapper mapper = new CBORMapper();
+        mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        SimpleModule timeModule = new SimpleModule("cbor-epoch-millis");
+        timeModule.addSerializer(Instant.class, new EpochMillisSerializer());
+        timeModule.addDeserializer(Instant.class, new EpochMillisDeserializer());
+        mapper.registerModule(timeModule);
+        setObjectMapper(mapper);
+    }
+
+    private static class EpochMillisSerializer extends JsonSerializer<Instant> {
+        @Override
+        public void serialize(Instant value, JsonGenerator gen, SerializerProvider serializers) throws IOException {
+            gen.writeNumber(value.toEpochMilli());
+        }
+    }
+
+    private static class EpochMillisDeserializer extends JsonDeserializer<Instant> {
+        @Override
+        public Instant deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            return Instant.ofEpochMilli(parser.getLongValue());
+        }
+    }
+}
@@ -5,11 +5,14 @@ import com.baomidou.mybatisplus.annotation.DbType;
 import com.baomidou.mybatisplus.extension.plugins.MybatisPlusInterceptor;
 import com.baomidou.mybatisplus.extension.plugins.inner.PaginationInnerInterceptor;
 import com.baomidou.mybatisplus.extension.spring.MybatisSqlSessionFactoryBean;
+import org.apache.ibatis.mapping.DatabaseIdProvider;
+import org.apache.ibatis.mapping.VendorDatabaseIdProvider;
 import org.apache.ibatis.session.SqlSessionFactory;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
 import javax.sql.DataSource;
+import java.util.Properties;
 
 /**
  * MyBatis-Plus配置类
@@ -29,6 +32,19 @@ public class MyBatisPlusConfig {
         return interceptor;
     }
     
+    /**
+     * 数据库厂商标识：MySQL为mysql，H2为h2
+     */
+    @Bean
+    public DatabaseIdProvider databaseIdProvider() {
+        Properties properties = new Properties();
+        properties.setProperty("MySQL", "mysql");
+        properties.setProperty("H2", "h2");
+        VendorDatabaseIdProvider databaseIdProvider = new VendorDatabaseIdProvider();
+        databaseIdProvider.setProperties(properties);
+        return databaseIdProvider;
+    }
+    
     /**
      * 配置SqlSessionFactory，使用MyBatisSqlSessionFactoryBean确保MyBatis-Plus功能正常
      */
@@ -45,6 +61,12 @@ public class MyBatisPlusConfig {
         // 添加MyBatis-Plus拦截器
         factoryBean.setPlugins(mybatisPlusInterceptor());
         
+        // Instant字段按UTC读写DATETIME列
+        factoryBean.setTypeHandlers(new UtcInstantTypeHandler());
+        
+        // 按数据库区分个别语句（如流式查询的fetchSize），未声明databaseId的语句对所有数据库生效
+        factoryBean.setDatabaseIdProvider(databaseIdProvider());
+        
         return factoryBean.getObject();
     }
 }
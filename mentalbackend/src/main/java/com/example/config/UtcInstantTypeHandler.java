@@ -0,0 +1,45 @@
+package com.example.config;
+
+import org.apache.ibatis.type.BaseTypeHandler;
+import org.apache.ibatis.type.JdbcType;
+import org.apache.ibatis.type.MappedTypes;
+
+import java.sql.CallableStatement;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Instant 与 DATETIME 列的转换：列中保存UTC时间
+ * 通过LocalDateTime读写，不经过java.sql.Timestamp，结果与JVM时区和JDBC驱动的时区设置无关
+ */
+@MappedTypes(Instant.class)
+public class UtcInstantTypeHandler extends BaseTypeHandler<Instant> {
+
+    @Override
+    public void setNonNullParameter(PreparedStatement ps, int i, Instant parameter, JdbcType jdbcType) throws SQLException {
+        ps.setObject(i, LocalDateTime.ofInstant(parameter, ZoneOffset.UTC));
+    }
+
+    @Override
+    public Instant getNullableResult(ResultSet rs, String columnName) throws SQLException {
+        return toInstant(rs.getObject(columnName, LocalDateTime.class));
+    }
+
+    @Override
+    public Instant getNullableResult(ResultSet rs, int columnIndex) throws SQLException {
+        return toInstant(rs.getObject(columnIndex, LocalDateTime.class));
+    }
+
+    @Override
+    public Instant getNullableResult(CallableStatement cs, int columnIndex) throws SQLException {
+        return toInstant(cs.getObject(columnIndex, LocalDateTime.class));
+    }
+
+    private static Instant toInstant(LocalDateTime value) {
+        return value != null ? value.toInstant(ZoneOffset.UTC) : null;
+    }
+}
@@ -1,25 +1,123 @@
 package com.example.config;
 
+import com.example.websocket.ChatWireFormatRegistry;
+import com.example.websocket.SlowConsumerMonitor;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.converter.MessageConverter;
 import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.messaging.simp.config.StompBrokerRelayRegistration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.util.StringUtils;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToDoubleFunction;
 
 /**
  * WebSocket配置类 - 简化版（只支持实时对话）
+ * 默认使用内存中的简单代理；多节点部署时设置 chat.broker.mode=relay 转发到外部STOMP代理
  */
 @Configuration
 @EnableWebSocketMessageBroker
-public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
+public class WebSocketConfig implements WebSocketMessageBrokerConfigurer, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(WebSocketConfig.class);
+
+    @Resource
+    private WebSocketExecutorProperties executorProperties;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Resource
+    private SlowConsumerMonitor slowConsumerMonitor;
+
+    @Resource
+    private ChatWireFormatRegistry chatWireFormatRegistry;
+
+    @Value("${chat.websocket.message-size-limit:65536}")
+    private int messageSizeLimit;
+
+    private final List<ExecutorService> channelExecutors = new ArrayList<>();
+
+    /**
+     * 消息代理模式：simple（默认，单节点内存代理）或 relay（转发到外部STOMP代理，支持多节点部署）
+     */
+    @Value("${chat.broker.mode:simple}")
+    private String brokerMode;
+
+    @Value("${chat.broker.relay.host:localhost}")
+    private String relayHost;
+
+    @Value("${chat.broker.relay.port:61613}")
+    private int relayPort;
+
+    @Value("${chat.broker.relay.client-login:guest}")
+    private String relayClientLogin;
+
+    @Value("${chat.broker.relay.client-passcode:guest}")
+    private String relayClientPasscode;
+
+    @Value("${chat.broker.relay.system-login:guest}")
+    private String relaySystemLogin;
+
+    @Value("${chat.broker.relay.system-passcode:guest}")
+    private String relaySystemPasscode;
+
+    @Value("${chat.broker.relay.virtual-host:}")
+    private String relayVirtualHost;
 
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
-        // 启用简单消息代理，用于广播和点对点消息
-        config.enableSimpleBroker("/topic", "/queue");
+        if ("relay".equalsIgnoreCase(brokerMode)) {
+            // 转发到外部STOMP代理（如ActiveMQ Artemis），发送者和接收者连接在不同节点时也能送达
+            StompBrokerRelayRegistration relay = config.enableStompBrokerRelay("/topic", "/queue")
+                    .setRelayHost(relayHost)
+                    .setRelayPort(relayPort)
+                    .setClientLogin(relayClientLogin)
+                    .setClientPasscode(relayClientPasscode)
+                    .setSystemLogin(relaySystemLogin)
+                    .setSystemPasscode(relaySystemPasscode);
+            if (StringUtils.hasText(relayVirtualHost)) {
+                relay.setVirtualHost(relayVirtualHost);
+            }
+        } else {
+            // 启用简单消息代理，用于广播和点对点消息
+            config.enableSimpleBroker("/topic", "/queue");
+        }
         // 设置应用程序目的地前缀
         config.setApplicationDestinationPrefixes("/app");
+        // 代理通道执行器（默认关闭，消息由发送线程直接投递给代理）
+        if (executorProperties.getBroker().isEnabled()) {
+            applyExecutor(config.configureBrokerChannel(), "broker", executorProperties.getBroker());
+        }
+    }
+
+    @Override
+    public boolean configureMessageConverters(List<MessageConverter> messageConverters) {
+        // 增加CBOR编码，只用于content-type为application/cbor的消息（严格匹配），
+        // 未指定content-type的消息仍由默认的JSON转换器处理；返回true保留默认的JSON等转换器
+        CborMessageConverter cbor = new CborMessageConverter();
+        cbor.setStrictContentTypeMatch(true);
+        messageConverters.add(cbor);
+        return true;
     }
 
     @Override
@@ -34,15 +132,117 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
                 .setAllowedOriginPatterns("*");
     }
     
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        // 每个连接的出站缓冲和慢消费者策略由SlowConsumerMonitor处理；
+        // Spring自带的会话限制使用相同的配置值：它包在最外层，我们的装饰器只入缓冲不阻塞，正常情况下不会先触发。
+        // 后注册的装饰器在外层：CBOR帧先在内层转为二进制帧，再进入慢消费者缓冲，合并文本帧时不会混入CBOR
+        registration.addDecoratorFactory(chatWireFormatRegistry)
+                .addDecoratorFactory(slowConsumerMonitor)
+                .setSendTimeLimit((int) Math.min(Integer.MAX_VALUE, slowConsumerMonitor.getSendTimeLimitMs()))
+                .setSendBufferSizeLimit(slowConsumerMonitor.getSendBufferSizeLimit())
+                .setMessageSizeLimit(messageSizeLimit);
+    }
+
     @Override
     public void configureClientInboundChannel(ChannelRegistration registration) {
-        // 配置STOMP解码器以更宽松地处理消息格式
-        // 增加消息缓冲区大小
-        registration.taskExecutor().corePoolSize(4).maxPoolSize(8);
+        // 入站通道执行器，线程数由 chat.websocket.executor.inbound 配置
+        if (executorProperties.getInbound().isEnabled()) {
+            applyExecutor(registration, "inbound", executorProperties.getInbound());
+        }
         
         // 自定义消息处理，处理可能的格式问题
         registration.interceptors(new StompMessageInterceptor());
     }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        // 出站通道执行器，线程数由 chat.websocket.executor.outbound 配置
+        if (executorProperties.getOutbound().isEnabled()) {
+            applyExecutor(registration, "outbound", executorProperties.getOutbound());
+        }
+    }
+
+    @Override
+    public void destroy() {
+        for (ExecutorService executor : channelExecutors) {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * 为通道创建执行器并注册活跃线程数、队列长度指标
+     * 虚拟线程模式在Java 21以下不可用，会退回普通线程池
+     */
+    private void applyExecutor(ChannelRegistration registration, String channel, WebSocketExecutorProperties.Channel settings) {
+        String threadNamePrefix = "ws-" + channel + "-";
+        if (settings.isVirtualThreads() && Runtime.version().feature() >= 21) {
+            ExecutorService executor = newVirtualThreadPerTaskExecutor(threadNamePrefix);
+            if (executor != null) {
+                AtomicInteger active = new AtomicInteger();
+                channelExecutors.add(executor);
+                registration.executor(task -> executor.execute(() -> {
+                    active.incrementAndGet();
+                    try {
+                        task.run();
+                    } finally {
+                        active.decrementAndGet();
+                    }
+                }));
+                registerExecutorMetrics(channel, active, AtomicInteger::get, a -> 0);
+                log.info("STOMP {}通道使用虚拟线程执行器", channel);
+                return;
+            }
+        } else if (settings.isVirtualThreads()) {
+            log.warn("当前Java版本{}不支持虚拟线程，STOMP {}通道退回线程池", Runtime.version().feature(), channel);
+        }
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix(threadNamePrefix);
+        executor.setCorePoolSize(settings.getCorePoolSize());
+        executor.setMaxPoolSize(settings.getMaxPoolSize());
+        executor.setQueueCapacity(settings.getQueueCapacity());
+        executor.setKeepAliveSeconds(settings.getKeepAliveSeconds());
+        executor.setAllowCoreThreadTimeOut(true);
+        executor.initialize();
+        channelExecutors.add(executor.getThreadPoolExecutor());
+        registration.executor(executor);
+        ThreadPoolExecutor pool = executor.getThreadPoolExecutor();
+        registerExecutorMetrics(channel, pool, ThreadPoolExecutor::getActiveCount, p -> p.getQueue().size());
+        log.info("STOMP {}通道线程池: core={}, max={}, queue={}", channel,
+                settings.getCorePoolSize(), settings.getMaxPoolSize(), settings.getQueueCapacity());
+    }
+
+    private <T> void registerExecutorMetrics(String channel, T executor, ToDoubleFunction<T> activeThreads, ToDoubleFunction<T> queueSize) {
+        Gauge.builder("chat.websocket.executor.active", executor, activeThreads)
+                .tag("channel", channel)
+                .description("STOMP通道正在执行任务的线程数")
+                .register(meterRegistry);
+        Gauge.builder("chat.websocket.executor.queue.size", executor, queueSize)
+                .tag("channel", channel)
+                .description("STOMP通道等待执行的任务数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 通过反射创建 Executors.newThreadPerTaskExecutor(Thread.ofVirtual()...)，使代码在Java 17下仍可编译
+     */
+    private ExecutorService newVirtualThreadPerTaskExecutor(String threadNamePrefix) {
+        try {
+            // 通过公开接口Thread.Builder查找方法，实现类本身不是public的
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            Class<?> virtualBuilderType = Class.forName("java.lang.Thread$Builder$OfVirtual");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = virtualBuilderType.getMethod("name", String.class, long.class)
+                    .invoke(builder, threadNamePrefix, 0L);
+            ThreadFactory threadFactory = (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                    .invoke(null, threadFactory);
+        } catch (ReflectiveOperationException e) {
+            log.warn("创建虚拟线程执行器失败，退回线程池: {}", e.getMessage());
+            return null;
+        }
+    }
     
     /**
      * 自定义STOMP消息拦截器，用于增强消息处理和错误恢复
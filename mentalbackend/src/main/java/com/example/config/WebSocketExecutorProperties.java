@@ -0,0 +1,117 @@
+package com.example.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * STOMP通道线程池配置，对应 application.yaml 中的 chat.websocket.executor
+ * inbound：处理客户端发来的消息（@MessageMapping）；outbound：向客户端写出消息；broker：应用发往代理的消息
+ */
+@Component
+@ConfigurationProperties(prefix = "chat.websocket.executor")
+public class WebSocketExecutorProperties {
+
+    private Channel inbound = new Channel(true, 4, 8);
+
+    private Channel outbound = new Channel(true, Runtime.getRuntime().availableProcessors() * 2, Integer.MAX_VALUE);
+
+    // 代理通道默认不使用线程池，由发送线程直接投递
+    private Channel broker = new Channel(false, 4, 8);
+
+    // Getters and Setters
+    public Channel getInbound() {
+        return inbound;
+    }
+
+    public void setInbound(Channel inbound) {
+        this.inbound = inbound;
+    }
+
+    public Channel getOutbound() {
+        return outbound;
+    }
+
+    public void setOutbound(Channel outbound) {
+        this.outbound = outbound;
+    }
+
+    public Channel getBroker() {
+        return broker;
+    }
+
+    public void setBroker(Channel broker) {
+        this.broker = broker;
+    }
+
+    /**
+     * 单个通道的执行器配置
+     */
+    public static class Channel {
+        // 是否为该通道配置执行器
+        private boolean enabled;
+        // 使用虚拟线程（每个任务一个虚拟线程），仅在Java 21及以上生效，否则退回线程池
+        private boolean virtualThreads = false;
+        private int corePoolSize;
+        private int maxPoolSize;
+        // 队列容量；队列未满时线程数不会超过corePoolSize
+        private int queueCapacity = Integer.MAX_VALUE;
+        private int keepAliveSeconds = 60;
+
+        public Channel() {
+        }
+
+        public Channel(boolean enabled, int corePoolSize, int maxPoolSize) {
+            this.enabled = enabled;
+            this.corePoolSize = corePoolSize;
+            this.maxPoolSize = maxPoolSize;
+        }
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public boolean isVirtualThreads() {
+            return virtualThreads;
+        }
+
+        public void setVirtualThreads(boolean virtualThreads) {
+            this.virtualThreads = virtualThreads;
+        }
+
+        public int getCorePoolSize() {
+            return corePoolSize;
+        }
+
+        public void setCorePoolSize(int corePoolSize) {
+            this.corePoolSize = corePoolSize;
+        }
+
+        public int getMaxPoolSize() {
+            return maxPoolSize;
+        }
+
+        public void setMaxPoolSize(int maxPoolSize) {
+            this.maxPoolSize = maxPoolSize;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        public int getKeepAliveSeconds() {
+            return keepAliveSeconds;
+        }
+
+        public void setKeepAliveSeconds(int keepAliveSeconds) {
+            this.keepAliveSeconds = keepAliveSeconds;
+        }
+    }
+}
@@ -1,18 +1,38 @@
 package com.example.controller;
 
+import com.example.cache.UnreadCounterStore;
+import com.example.dto.ConversationSummaryDTO;
+import com.example.dto.MessageCursorPage;
+import com.example.dto.MessageSearchPage;
+import com.example.dto.MessageSyncBatch;
+import com.example.dto.MessageSyncRequest;
+import com.example.dto.UnreadCountDTO;
 import com.example.entity.ConsultationMessages;
 import com.example.service.ConsultationMessagesService;
+import com.example.service.MessageWriteBehindService;
+import com.example.service.MessageSyncService;
+import com.example.service.TranscriptExportService;
 import jakarta.annotation.Resource;
+import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 咨询消息控制器
@@ -27,6 +47,15 @@ public class ConsultationMessageController {
     @Resource
     private ConsultationMessagesService consultationMessagesService;
 
+    @Resource
+    private TranscriptExportService transcriptExportService;
+
+    @Resource
+    private MessageSyncService messageSyncService;
+
+    @Resource
+    private MessageWriteBehindService messageWriteBehindService;
+
     /**
      * 根据用户ID和咨询师ID获取对话记录
      * @param userId 用户ID
@@ -59,6 +88,199 @@ public class ConsultationMessageController {
         }
     }
     
+    /**
+     * 根据用户ID和咨询师ID按游标获取对话记录（keyset分页）
+     * 首次请求不传游标，之后把响应中的nextCursor作为beforeId/beforeTime传回即可向前翻页
+     * beforeId和beforeTime需同时传入，只传其中一个时返回400
+     * @param userId 用户ID
+     * @param counselorId 咨询师ID
+     * @param beforeId 游标：上一页最后一条消息ID
+     * @param beforeTime 游标：上一页最后一条消息的发送时间（ISO-8601 UTC，如2025-10-19T01:57:56Z，或毫秒时间戳）
+     * @param limit 每页数量，默认50
+     * @return 对话消息及下一页游标
+     */
+    @GetMapping("/conversation/cursor")
+    public ResponseEntity<MessageCursorPage> getConversationByCursor(
+            @RequestParam Long userId,
+            @RequestParam Long counselorId,
+            @RequestParam(required = false) Long beforeId,
+            @RequestParam(required = false) Instant beforeTime,
+            @RequestParam(required = false, defaultValue = "50") Integer limit) {
+        
+        log.info("按游标获取对话记录: 用户ID={}, 咨询师ID={}, beforeId={}, beforeTime={}, 限制={}", 
+                userId, counselorId, beforeId, beforeTime, limit);
+        
+        try {
+            MessageCursorPage page = consultationMessagesService.getConversationByCursor(
+                    userId, counselorId, beforeTime, beforeId, limit);
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            log.warn("按游标获取对话记录参数错误: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            log.error("按游标获取对话记录失败: {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+    
+    /**
+     * 断线重连补发：客户端上报每个会话已收到的最新消息ID，只返回之后的消息
+     * 同一会话内按消息ID升序；truncated为true时按收到的消息更新lastSeen后再次请求
+     * @param request 同步请求
+     * @return 合并为一个批次的补发消息
+     */
+    @PostMapping("/sync")
+    public ResponseEntity<MessageSyncBatch> syncMessages(@RequestBody MessageSyncRequest request) {
+        log.info("补发消息: 请求方={}({}), 会话数={}, sinceMessageId={}", request.getOwnerId(), request.getOwnerType(),
+                request.getLastSeen() != null ? request.getLastSeen().size() : 0, request.getSinceMessageId());
+        
+        try {
+            List<ConsultationMessages> messages = new ArrayList<>();
+            boolean truncated = messageSyncService.sync(request, messages::addAll);
+            return ResponseEntity.ok(new MessageSyncBatch(request.getSyncId(), messages, true, truncated));
+        } catch (IllegalArgumentException e) {
+            log.warn("补发消息参数错误: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            log.error("补发消息失败: {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+    
+    /**
+     * 全文检索对话记录（含归档消息），按发送时间倒序
+     * @param userId 用户ID，与counselorId至少传一个
+     * @param counselorId 咨询师ID，与userId至少传一个
+     * @param q 检索词，多个词用空格分隔，需全部命中
+     * @param limit 每页数量，默认20，最大100
+     * @param offset 偏移量，默认0
+     * @return 命中总数及本页消息
+     */
+    @GetMapping("/search")
+    public ResponseEntity<MessageSearchPage> searchMessages(
+            @RequestParam(required = false) Long userId,
+            @RequestParam(required = false) Long counselorId,
+            @RequestParam String q,
+            @RequestParam(required = false, defaultValue = "20") Integer limit,
+            @RequestParam(required = false, defaultValue = "0") Integer offset) {
+        
+        log.info("检索对话记录: 用户ID={}, 咨询师ID={}, 检索词={}, 限制={}, 偏移={}", userId, counselorId, q, limit, offset);
+        
+        try {
+            MessageSearchPage page = consultationMessagesService.searchMessages(userId, counselorId, q, limit, offset);
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            log.warn("检索对话记录参数错误: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            log.error("检索对话记录失败: {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+    
+    /**
+     * 在后台全量重建全文索引
+     * @return 202表示已开始重建，409表示已有重建任务在执行
+     */
+    @PostMapping("/search/rebuild")
+    public ResponseEntity<Map<String, Boolean>> rebuildSearchIndex() {
+        log.info("重建全文索引");
+        if (consultationMessagesService.rebuildSearchIndex()) {
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(Map.of("started", true));
+        }
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("started", false));
+    }
+    
+    /**
+     * 按范围标记会话已读，一条UPDATE完成，不需要先下载消息ID
+     * 标记成功后向会话对方推送已读回执
+     * @param userId 用户ID
+     * @param counselorId 咨询师ID
+     * @param readerType 标记已读的一方：USER 或 COUNSELOR
+     * @param upToMessageId 已读到的消息ID（含），优先使用
+     * @param upToTime 已读到的时间（含），ISO-8601 UTC或毫秒时间戳，未传upToMessageId时使用
+     * @return 本次标记为已读的消息数
+     */
+    @PostMapping("/conversation/read")
+    public ResponseEntity<Map<String, Integer>> markConversationRead(
+            @RequestParam Long userId,
+            @RequestParam Long counselorId,
+            @RequestParam String readerType,
+            @RequestParam(required = false) Long upToMessageId,
+            @RequestParam(required = false) Instant upToTime) {
+        if (!UnreadCounterStore.isReceiverType(readerType) || (upToMessageId == null && upToTime == null)) {
+            return ResponseEntity.badRequest().build();
+        }
+        
+        log.info("标记会话已读: 用户ID={}, 咨询师ID={}, 读者={}, upToMessageId={}, upToTime={}",
+                userId, counselorId, readerType, upToMessageId, upToTime);
+        
+        try {
+            // 异步写入队列中该会话的消息先落库，否则范围UPDATE会漏掉它们
+            messageWriteBehindService.awaitConversationPersisted(userId, counselorId);
+            int marked = consultationMessagesService.markConversationRead(userId, counselorId, readerType, upToMessageId, upToTime);
+            return ResponseEntity.ok(Map.of("marked", marked));
+        } catch (IllegalArgumentException e) {
+            log.warn("标记会话已读参数错误: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            log.error("标记会话已读失败: {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+    
+    /**
+     * 分页获取会话列表（消息列表页），每个会话对方一行
+     * @param ownerType 查询者类型：USER 或 COUNSELOR
+     * @param ownerId 查询者ID
+     * @param limit 每页数量，默认20
+     * @param offset 偏移量，默认0
+     * @return 会话摘要列表，按最新消息时间倒序
+     */
+    @GetMapping("/conversations")
+    public ResponseEntity<List<ConversationSummaryDTO>> getConversationSummaries(
+            @RequestParam String ownerType,
+            @RequestParam Long ownerId,
+            @RequestParam(required = false, defaultValue = "20") Integer limit,
+            @RequestParam(required = false, defaultValue = "0") Integer offset) {
+        if (!UnreadCounterStore.isReceiverType(ownerType)) {
+            return ResponseEntity.badRequest().build();
+        }
+        
+        log.info("获取会话列表: 类型={}, ID={}, 限制={}, 偏移={}", ownerType, ownerId, limit, offset);
+        
+        try {
+            return ResponseEntity.ok(consultationMessagesService.getConversationSummaries(ownerType, ownerId, limit, offset));
+        } catch (Exception e) {
+            log.error("获取会话列表失败: {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+    
+    /**
+     * 获取未读消息数
+     * 计数在保存消息和更新阅读状态时增量维护，查询不访问消息表，适合客户端角标轮询
+     * @param receiverId 接收者ID
+     * @param receiverType 接收者类型：USER 或 COUNSELOR
+     * @param peerId 会话对方ID（可选），传入时同时返回该会话的未读数
+     * @return 未读消息数
+     */
+    @GetMapping("/unread/count")
+    public ResponseEntity<UnreadCountDTO> getUnreadCount(
+            @RequestParam Long receiverId,
+            @RequestParam String receiverType,
+            @RequestParam(required = false) Long peerId) {
+        if (!UnreadCounterStore.isReceiverType(receiverType)) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            return ResponseEntity.ok(consultationMessagesService.getUnreadCount(receiverId, receiverType, peerId));
+        } catch (Exception e) {
+            log.error("获取未读消息数失败: {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+    
     /**
      * 根据预约ID获取消息记录
      * @param appointmentId 预约ID
@@ -78,4 +300,77 @@ public class ConsultationMessageController {
             return ResponseEntity.internalServerError().build();
         }
     }
-}
\ No newline at end of file
+    
+    /**
+     * 流式导出预约的完整对话记录（含归档消息），内存占用与记录长度无关
+     * @param appointmentId 预约ID
+     * @param format 导出格式：ndjson（默认）、csv、xlsx
+     */
+    @GetMapping("/appointment/{appointmentId}/export")
+    public void exportAppointmentTranscript(
+            @PathVariable Long appointmentId,
+            @RequestParam(required = false, defaultValue = "ndjson") String format,
+            HttpServletResponse response) throws IOException {
+        
+        log.info("导出预约对话记录: 预约ID={}, 格式={}", appointmentId, format);
+        
+        TranscriptExportService.Format exportFormat = TranscriptExportService.Format.of(format);
+        if (exportFormat == null) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "不支持的导出格式: " + format);
+            return;
+        }
+        prepareExport(response, exportFormat, "appointment-" + appointmentId);
+        try {
+            transcriptExportService.exportByAppointment(appointmentId, exportFormat, response.getOutputStream());
+        } catch (Exception e) {
+            handleExportFailure(response, e);
+        }
+    }
+    
+    /**
+     * 流式导出用户与咨询师之间的完整对话记录（含归档消息），内存占用与记录长度无关
+     * @param userId 用户ID
+     * @param counselorId 咨询师ID
+     * @param format 导出格式：ndjson（默认）、csv、xlsx
+     */
+    @GetMapping("/conversation/export")
+    public void exportConversationTranscript(
+            @RequestParam Long userId,
+            @RequestParam Long counselorId,
+            @RequestParam(required = false, defaultValue = "ndjson") String format,
+            HttpServletResponse response) throws IOException {
+        
+        log.info("导出会话对话记录: 用户ID={}, 咨询师ID={}, 格式={}", userId, counselorId, format);
+        
+        TranscriptExportService.Format exportFormat = TranscriptExportService.Format.of(format);
+        if (exportFormat == null) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "不支持的导出格式: " + format);
+            return;
+        }
+        prepareExport(response, exportFormat, "conversation-" + userId + "-" + counselorId);
+        try {
+            transcriptExportService.exportByConversation(userId, counselorId, exportFormat, response.getOutputStream());
+        } catch (Exception e) {
+            handleExportFailure(response, e);
+        }
+    }
+    
+    private void prepareExport(HttpServletResponse response, TranscriptExportService.Format format, String fileName) {
+        response.setContentType(format.getContentType());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                .filename(fileName + "." + format.getExtension())
+                .build()
+                .toString());
+    }
+    
+    /**
+     * 响应尚未提交时返回500，已开始写出时只能记录日志，客户端会收到不完整的文件
+     */
+    private void handleExportFailure(HttpServletResponse response, Exception e) throws IOException {
+        log.error("导出对话记录失败: {}", e.getMessage(), e);
+        if (!response.isCommitted()) {
+            response.reset();
+            response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+        }
+    }
+}
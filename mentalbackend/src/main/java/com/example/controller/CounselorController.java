@@ -1,8 +1,12 @@
 package com.example.controller;
 
 import com.example.dto.CounselorDTO;
+import com.example.dto.TagCount;
+import com.example.dto.TagVocabulary;
+import com.example.service.CounselorTagService;
 import com.example.service.CounselorsService;
 import jakarta.annotation.Resource;
+import org.springframework.http.CacheControl;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -76,20 +80,56 @@ public class CounselorController {
     }
     
     /**
-     * 获取所有擅长领域（去重）
+     * 获取所有擅长领域（去重），按咨询师人数从多到少排列
+     * 支持 If-None-Match / If-Modified-Since，词表未变化时返回304
      */
     @GetMapping("/specializations")
     public ResponseEntity<List<String>> getAllSpecializations() {
-        List<String> specializations = counselorsService.getAllSpecializations();
-        return ResponseEntity.ok(specializations);
+        TagVocabulary vocabulary = counselorsService.getTagVocabulary(CounselorTagService.SPECIALIZATION);
+        return withValidators(vocabulary).body(tagNames(vocabulary));
     }
     
     /**
-     * 获取所有治疗流派（去重）
+     * 获取所有治疗流派（去重），按咨询师人数从多到少排列
+     * 支持 If-None-Match / If-Modified-Since，词表未变化时返回304
      */
     @GetMapping("/approaches")
     public ResponseEntity<List<String>> getAllTherapeuticApproaches() {
-        List<String> approaches = counselorsService.getAllTherapeuticApproaches();
-        return ResponseEntity.ok(approaches);
+        TagVocabulary vocabulary = counselorsService.getTagVocabulary(CounselorTagService.APPROACH);
+        return withValidators(vocabulary).body(tagNames(vocabulary));
+    }
+    
+    /**
+     * 获取所有擅长领域及每个领域的咨询师人数
+     */
+    @GetMapping("/specializations/counts")
+    public ResponseEntity<List<TagCount>> getSpecializationCounts() {
+        TagVocabulary vocabulary = counselorsService.getTagVocabulary(CounselorTagService.SPECIALIZATION);
+        return withValidators(vocabulary).body(vocabulary.getTags());
+    }
+    
+    /**
+     * 获取所有治疗流派及每个流派的咨询师人数
+     */
+    @GetMapping("/approaches/counts")
+    public ResponseEntity<List<TagCount>> getTherapeuticApproachCounts() {
+        TagVocabulary vocabulary = counselorsService.getTagVocabulary(CounselorTagService.APPROACH);
+        return withValidators(vocabulary).body(vocabulary.getTags());
+    }
+    
+    // 与ETag取自同一份词表，保证响应内容和ETag一致
+    private static List<String> tagNames(TagVocabulary vocabulary) {
+        return vocabulary.getTags().stream().map(TagCount::getName).toList();
+    }
+    
+    /**
+     * 带上ETag和Last-Modified；请求头与之匹配时由Spring返回304，不写响应体
+     * 客户端每次都需要重新验证，词表变化后立即可见
+     */
+    private static ResponseEntity.BodyBuilder withValidators(TagVocabulary vocabulary) {
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache())
+                .eTag(vocabulary.getEtag())
+                .lastModified(vocabulary.getLastModified());
     }
 }
\ No newline at end of file
@@ -0,0 +1,46 @@
+package com.example.controller;
+
+import com.example.websocket.PresenceRegistry;
+import jakarta.annotation.Resource;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 在线状态控制器
+ * 提供聊天参与者在线状态的批量查询接口
+ */
+@RestController
+@RequestMapping("/api/presence")
+public class PresenceController {
+
+    // 单次查询的最大ID数量
+    private static final int MAX_LOOKUP_SIZE = 500;
+
+    @Resource
+    private PresenceRegistry presenceRegistry;
+
+    /**
+     * 批量查询在线状态
+     * @param type 参与者类型：USER 或 COUNSELOR
+     * @param ids 参与者ID列表，逗号分隔，最多500个
+     * @return ID -> 是否在线
+     */
+    @GetMapping
+    public ResponseEntity<Map<Long, Boolean>> lookup(
+            @RequestParam String type,
+            @RequestParam List<Long> ids) {
+        if (!"USER".equalsIgnoreCase(type) && !"COUNSELOR".equalsIgnoreCase(type)) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (ids.size() > MAX_LOOKUP_SIZE) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(presenceRegistry.lookup(type, ids));
+    }
+}
@@ -1,16 +1,36 @@
 package com.example.controller;
 
+import com.example.dto.MessageSyncBatch;
+import com.example.dto.MessageSyncRequest;
 import com.example.entity.ConsultationMessages;
 import com.example.service.ConsultationMessagesService;
+import com.example.service.MessageSyncService;
+import com.example.service.MessageWriteBehindService;
+import com.example.websocket.ChatMessageSender;
+import com.example.websocket.ChatSignal;
+import com.example.websocket.ChatSignalRelay;
+import com.example.websocket.ClientMessageDeduplicator;
+import com.example.websocket.MessageAck;
+import com.example.websocket.OfflineMessageEvent;
+import com.example.websocket.PresenceRegistry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
 import jakarta.annotation.Resource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Controller;
+import org.springframework.util.StringUtils;
 
-import java.time.LocalDateTime;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.UUID;
 
 /**
  * WebSocket消息控制器 - 简化版
@@ -27,37 +47,115 @@ public class WebSocketController {
     @Resource
     private SimpMessagingTemplate messagingTemplate;
     
+    @Resource
+    private MessageWriteBehindService messageWriteBehindService;
+
     @Resource
     private ConsultationMessagesService consultationMessagesService;
 
+    @Resource
+    private ChatMessageSender chatMessageSender;
+
+    @Resource
+    private ClientMessageDeduplicator clientMessageDeduplicator;
+
+    @Resource
+    private PresenceRegistry presenceRegistry;
+
+    @Resource
+    private ChatSignalRelay chatSignalRelay;
+
+    @Resource
+    private MessageSyncService messageSyncService;
+
+    @Resource
+    private ApplicationEventPublisher eventPublisher;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private Counter offlineCounter;
+
+    @PostConstruct
+    public void init() {
+        offlineCounter = meterRegistry.counter("chat.presence.offline.messages");
+    }
+
     /**
      * 发送私聊消息（简化版，只保留实时对话功能）
      * 消息路由逻辑：
      * 1. 用户发送消息到 /app/chat.private
      * 2. 服务器根据接收者类型和ID路由消息
-     * 3. 同时发送确认消息给发送者
+     * 3. 携带clientMessageId时，落库后向发送者的 /queue/acks/{type}/{id} 发送ACK，并在时间窗口内丢弃重发的消息；
+     *    未携带时保持旧行为，把整条消息回显给发送者作为确认
+     * 4. 消息立即推送给接收者，再进入异步写入队列，由写线程批量保存到数据库，实时投递不等待落库；
+     *    落库后向在线的接收者的 /queue/acks/{type}/{id} 发送带数据库消息ID的确认，按clientMessageId对应到已收到的消息
+     * 5. 接收者不在线时不经过消息代理，落库后发布 {@link OfflineMessageEvent}
      */
     @MessageMapping("/chat.private")
     public void handlePrivateMessage(@Payload MessageDTO messageDTO) {
+        // 消息交给写入队列后，去重登记由落库回调负责完成或删除
+        boolean handedOff = false;
         try {
             log.info("收到私聊消息: 发送者={}({}), 接收者={}, 内容={}",
                     messageDTO.getSenderId(), messageDTO.getSenderType(),
                     messageDTO.getReceiverId(), messageDTO.getContent());
 
+            String clientMessageId = messageDTO.getClientMessageId();
+            boolean acknowledged = StringUtils.hasText(clientMessageId);
+            if (acknowledged) {
+                ClientMessageDeduplicator.Entry existing = clientMessageDeduplicator.register(
+                        messageDTO.getSenderType(), messageDTO.getSenderId(), clientMessageId);
+                if (existing != null) {
+                    // 重发的消息：已落库则补发ACK，仍在处理中则等待原消息的ACK
+                    log.info("丢弃重复消息: 发送者ID={}, clientMessageId={}", messageDTO.getSenderId(), clientMessageId);
+                    if (existing.getAck() != null) {
+                        chatMessageSender.send(ackDestination(messageDTO), existing.getAck());
+                    }
+                    return;
+                }
+            }
+
+            // 与数据库DATETIME列的秒级精度一致
+            Instant now = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+
             // 创建简单的消息对象用于传输
             ChatMessage chatMessage = new ChatMessage();
             chatMessage.setSenderId(messageDTO.getSenderId());
             chatMessage.setReceiverId(messageDTO.getReceiverId());
             chatMessage.setSenderType(messageDTO.getSenderType());
             chatMessage.setContent(messageDTO.getContent());
-            chatMessage.setTimestamp(LocalDateTime.now());
-            
-            // 保存消息到数据库
+            chatMessage.setTimestamp(now);
+            // 旧客户端未携带clientMessageId时由服务器生成，用于接收者把落库确认对应到这条消息
+            String deliveryId = acknowledged ? clientMessageId : UUID.randomUUID().toString();
+            chatMessage.setClientMessageId(deliveryId);
+
+            // 发送消息给接收者
+            // 根据发送者类型确定接收者类型（用户↔咨询师）
+            String receiverType = "USER".equals(messageDTO.getSenderType()) ? "COUNSELOR" : "USER";
+            String destination = "/queue/messages/" + receiverType.toLowerCase() + "/" + messageDTO.getReceiverId();
+
+            boolean receiverOnline = presenceRegistry.isOnline(receiverType, messageDTO.getReceiverId());
+            if (receiverOnline) {
+                chatMessageSender.send(destination, chatMessage);
+                log.info("消息路由到: {}", destination);
+            } else {
+                offlineCounter.increment();
+                log.info("接收者不在线，消息只落库: {}", destination);
+            }
+
+            if (!acknowledged) {
+                // 旧客户端：发送确认消息给发送者（整条消息回显）
+                String senderDestination = "/queue/messages/" + messageDTO.getSenderType().toLowerCase() + "/" + messageDTO.getSenderId();
+                chatMessageSender.send(senderDestination, chatMessage);
+            }
+
+            // 构建持久化消息
             ConsultationMessages consultationMessage = new ConsultationMessages();
             consultationMessage.setSenderType(messageDTO.getSenderType());
             consultationMessage.setMessageType("TEXT");
             consultationMessage.setContent(messageDTO.getContent());
-            consultationMessage.setSentTime(LocalDateTime.now());
+            consultationMessage.setSentTime(now);
             consultationMessage.setReadStatus(false);
             consultationMessage.setConversationType("PRE_CONSULTATION"); // 默认咨询前
             
@@ -70,36 +168,108 @@ public class WebSocketController {
                 consultationMessage.setCounselorId(messageDTO.getSenderId());
             }
             
-            // 保存消息
-            boolean saved = consultationMessagesService.saveMessage(consultationMessage);
-            if (!saved) {
+            // 消息已实时送达，交给异步写入队列批量落库，不阻塞入站线程；落库后再确认消息ID
+            boolean queued = messageWriteBehindService.enqueue(consultationMessage, (message, persisted) -> {
+                if (persisted) {
+                    if (receiverOnline) {
+                        // 接收者收到的实时消息不带数据库ID，落库后补发确认，供断线重连补发按ID去重
+                        chatMessageSender.send("/queue/acks/" + receiverType.toLowerCase() + "/" + messageDTO.getReceiverId(),
+                                new MessageAck(deliveryId, message.getId(), now.toEpochMilli()));
+                    } else {
+                        eventPublisher.publishEvent(new OfflineMessageEvent(receiverType, messageDTO.getReceiverId(), message));
+                    }
+                }
+                if (!acknowledged) {
+                    return;
+                }
+                if (persisted) {
+                    MessageAck ack = new MessageAck(clientMessageId, message.getId(), now.toEpochMilli());
+                    clientMessageDeduplicator.complete(messageDTO.getSenderType(), messageDTO.getSenderId(), clientMessageId, ack);
+                    chatMessageSender.send(ackDestination(messageDTO), ack);
+                } else {
+                    clientMessageDeduplicator.release(messageDTO.getSenderType(), messageDTO.getSenderId(), clientMessageId);
+                }
+            });
+            handedOff = true;
+            if (!queued) {
                 log.warn("消息保存失败: 发送者ID={}, 接收者ID={}", messageDTO.getSenderId(), messageDTO.getReceiverId());
-                // 即使保存失败，仍然继续发送消息，确保实时性
-            } else {
-                log.info("消息已保存到数据库，消息ID={}", consultationMessage.getId());
             }
 
-            // 发送消息给接收者
-            // 根据发送者类型确定接收者类型（用户↔咨询师）
-            String receiverType = "USER".equals(messageDTO.getSenderType()) ? "COUNSELOR" : "USER";
-            String destination = "/queue/messages/" + receiverType.toLowerCase() + "/" + messageDTO.getReceiverId();
-
-            messagingTemplate.convertAndSend(destination, chatMessage);
-            log.info("消息路由到: {}", destination);
-
-            // 发送确认消息给发送者（可选，用于前端确认）
-            String senderDestination = "/queue/messages/" + messageDTO.getSenderType().toLowerCase() + "/" + messageDTO.getSenderId();
-            messagingTemplate.convertAndSend(senderDestination, chatMessage);
-
-            log.info("消息已发送并确认: 发送者ID={}, 接收者ID={}", messageDTO.getSenderId(), messageDTO.getReceiverId());
+            log.info("消息已进入写入队列: 发送者ID={}, 接收者ID={}", messageDTO.getSenderId(), messageDTO.getReceiverId());
         } catch (Exception e) {
             log.error("处理私聊消息异常: {}", e.getMessage(), e);
+            if (handedOff) {
+                // 消息已进入写入队列，会正常落库并确认，不能删除去重登记，也不提示发送失败
+                return;
+            }
+            if (StringUtils.hasText(messageDTO.getClientMessageId())) {
+                clientMessageDeduplicator.release(messageDTO.getSenderType(), messageDTO.getSenderId(), messageDTO.getClientMessageId());
+            }
             // 发送错误消息给发送者
             ErrorDTO errorDTO = new ErrorDTO("系统错误，请稍后重试");
             messagingTemplate.convertAndSend("/queue/errors/" + messageDTO.getSenderType().toLowerCase() + "/" + messageDTO.getSenderId(), errorDTO);
         }
     }
 
+    /**
+     * 按范围标记会话已读
+     * 客户端发送到 /app/chat.read，标记成功后会话对方收到 /queue/receipts/{type}/{id} 已读回执
+     */
+    @MessageMapping("/chat.read")
+    public void handleRead(@Payload ReadDTO readDTO) {
+        try {
+            // 异步写入队列中该会话的消息先落库，否则范围UPDATE会漏掉它们
+            messageWriteBehindService.awaitConversationPersisted(readDTO.getUserId(), readDTO.getCounselorId());
+            int marked = consultationMessagesService.markConversationRead(readDTO.getUserId(), readDTO.getCounselorId(),
+                    readDTO.getReaderType(), readDTO.getUpToMessageId(), readDTO.getUpToTime());
+            log.info("标记会话已读: 用户ID={}, 咨询师ID={}, 读者={}, 标记{}条",
+                    readDTO.getUserId(), readDTO.getCounselorId(), readDTO.getReaderType(), marked);
+        } catch (Exception e) {
+            log.error("处理已读消息异常: {}", e.getMessage(), e);
+            String readerType = readDTO.getReaderType() != null ? readDTO.getReaderType() : "USER";
+            Long readerId = "COUNSELOR".equals(readerType) ? readDTO.getCounselorId() : readDTO.getUserId();
+            messagingTemplate.convertAndSend("/queue/errors/" + readerType.toLowerCase() + "/" + readerId,
+                    new ErrorDTO("标记已读失败，请稍后重试"));
+        }
+    }
+
+    /**
+     * 转发输入中/已读/已送达信号
+     * 信号不落库，按会话限流，同类信号在短时间窗口内合并后发送到接收者的 /queue/signals/{type}/{id}
+     */
+    @MessageMapping("/chat.signal")
+    public void handleSignal(@Payload ChatSignal signal, SimpMessageHeaderAccessor headerAccessor) {
+        if (!chatSignalRelay.submit(headerAccessor.getSessionId(), signal)) {
+            log.debug("丢弃聊天信号: 会话={}, 类型={}", headerAccessor.getSessionId(), signal.getType());
+        }
+    }
+
+    /**
+     * 断线重连补发
+     * 客户端重连并订阅后发送到 /app/chat.sync，服务器把错过的消息分批推送到 /queue/sync/{type}/{id}，
+     * 最后一帧complete为true；truncated为true时客户端按收到的消息更新lastSeen后再次同步
+     */
+    @MessageMapping("/chat.sync")
+    public void handleSync(@Payload MessageSyncRequest request) {
+        String ownerType = request.getOwnerType() != null ? request.getOwnerType() : "USER";
+        String destination = "/queue/sync/" + ownerType.toLowerCase() + "/" + request.getOwnerId();
+        try {
+            boolean truncated = messageSyncService.sync(request, batch ->
+                    chatMessageSender.send(destination, new MessageSyncBatch(request.getSyncId(), batch, false, false)));
+            chatMessageSender.send(destination, new MessageSyncBatch(request.getSyncId(), List.of(), true, truncated));
+            log.info("补发消息完成: 请求方={}({}), syncId={}, truncated={}",
+                    request.getOwnerId(), ownerType, request.getSyncId(), truncated);
+        } catch (Exception e) {
+            log.error("处理补发请求异常: {}", e.getMessage(), e);
+            messagingTemplate.convertAndSend("/queue/errors/" + ownerType.toLowerCase() + "/" + request.getOwnerId(),
+                    new ErrorDTO("消息同步失败，请稍后重试"));
+        }
+    }
+
+    private String ackDestination(MessageDTO messageDTO) {
+        return "/queue/acks/" + messageDTO.getSenderType().toLowerCase() + "/" + messageDTO.getSenderId();
+    }
+
     /**
      * 消息DTO类，用于接收客户端发送的消息
      */
@@ -108,6 +278,7 @@ public class WebSocketController {
         private Long receiverId;
         private String senderType; // USER, COUNSELOR
         private String content;
+        private String clientMessageId; // 客户端生成的消息ID（可选），用于ACK和去重
 
         // Getters and Setters
         public Long getSenderId() {
@@ -141,19 +312,88 @@ public class WebSocketController {
         public void setContent(String content) {
             this.content = content;
         }
+
+        public String getClientMessageId() {
+            return clientMessageId;
+        }
+
+        public void setClientMessageId(String clientMessageId) {
+            this.clientMessageId = clientMessageId;
+        }
+    }
+
+    /**
+     * 已读DTO类，用于接收客户端发送的按范围已读
+     */
+    public static class ReadDTO {
+        private Long userId;
+        private Long counselorId;
+        private String readerType; // USER, COUNSELOR
+        private Long upToMessageId; // 已读到的消息ID（含），优先使用
+        private Instant upToTime; // 已读到的时间（含），未传upToMessageId时使用
+
+        // Getters and Setters
+        public Long getUserId() {
+            return userId;
+        }
+
+        public void setUserId(Long userId) {
+            this.userId = userId;
+        }
+
+        public Long getCounselorId() {
+            return counselorId;
+        }
+
+        public void setCounselorId(Long counselorId) {
+            this.counselorId = counselorId;
+        }
+
+        public String getReaderType() {
+            return readerType;
+        }
+
+        public void setReaderType(String readerType) {
+            this.readerType = readerType;
+        }
+
+        public Long getUpToMessageId() {
+            return upToMessageId;
+        }
+
+        public void setUpToMessageId(Long upToMessageId) {
+            this.upToMessageId = upToMessageId;
+        }
+
+        public Instant getUpToTime() {
+            return upToTime;
+        }
+
+        public void setUpToTime(Instant upToTime) {
+            this.upToTime = upToTime;
+        }
     }
 
     /**
      * 聊天消息类，用于传输消息
      */
     public static class ChatMessage {
+        private String clientMessageId; // 发送方的clientMessageId，旧客户端时由服务器生成；落库确认按它对应
         private Long senderId;
         private Long receiverId;
         private String senderType;
         private String content;
-        private LocalDateTime timestamp;
+        private Instant timestamp; // UTC
 
         // Getters and Setters
+        public String getClientMessageId() {
+            return clientMessageId;
+        }
+
+        public void setClientMessageId(String clientMessageId) {
+            this.clientMessageId = clientMessageId;
+        }
+
         public Long getSenderId() {
             return senderId;
         }
@@ -186,11 +426,11 @@ public class WebSocketController {
             this.content = content;
         }
 
-        public LocalDateTime getTimestamp() {
+        public Instant getTimestamp() {
             return timestamp;
         }
 
-        public void setTimestamp(LocalDateTime timestamp) {
+        public void setTimestamp(Instant timestamp) {
             this.timestamp = timestamp;
         }
     }
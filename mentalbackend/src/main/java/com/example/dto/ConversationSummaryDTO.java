@@ -0,0 +1,86 @@
+package com.example.dto;
+
+import java.time.Instant;
+
+/**
+ * 消息列表页的会话摘要：每个会话对方一行，包含最新消息和未读数
+ */
+public class ConversationSummaryDTO {
+    // 会话对方ID：查询用户的会话时为咨询师ID，查询咨询师的会话时为用户ID
+    private Long peerId;
+
+    // 最新消息ID
+    private Long lastMessageId;
+
+    // 最新消息发送者类型：USER 或 COUNSELOR
+    private String lastSenderType;
+
+    // 最新消息类型
+    private String lastMessageType;
+
+    // 最新消息内容预览
+    private String lastContent;
+
+    // 最新消息发送时间
+    private Instant lastSentTime;
+
+    // 查询者在该会话中的未读消息数
+    private long unreadCount;
+
+    // Getters and Setters
+    public Long getPeerId() {
+        return peerId;
+    }
+
+    public void setPeerId(Long peerId) {
+        this.peerId = peerId;
+    }
+
+    public Long getLastMessageId() {
+        return lastMessageId;
+    }
+
+    public void setLastMessageId(Long lastMessageId) {
+        this.lastMessageId = lastMessageId;
+    }
+
+    public String getLastSenderType() {
+        return lastSenderType;
+    }
+
+    public void setLastSenderType(String lastSenderType) {
+        this.lastSenderType = lastSenderType;
+    }
+
+    public String getLastMessageType() {
+        return lastMessageType;
+    }
+
+    public void setLastMessageType(String lastMessageType) {
+        this.lastMessageType = lastMessageType;
+    }
+
+    public String getLastContent() {
+        return lastContent;
+    }
+
+    public void setLastContent(String lastContent) {
+        this.lastContent = lastContent;
+    }
+
+    public Instant getLastSentTime() {
+        return lastSentTime;
+    }
+
+    public void setLastSentTime(Instant lastSentTime) {
+        this.lastSentTime = lastSentTime;
+    }
+
+    public long getUnreadCount() {
+        return unreadCount;
+    }
+
+    public void setUnreadCount(long unreadCount) {
+        this.unreadCount = unreadCount;
+    }
+}
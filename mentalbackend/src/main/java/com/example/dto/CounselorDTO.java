@@ -52,6 +52,8 @@ public class CounselorDTO {
     private List<String> therapeuticApproachTags;
     private List<String> serviceTypeTags;
     private String genderFilter;
+    private BigDecimal minFeeFilter;
+    private BigDecimal maxFeeFilter;
 
     // Getters and Setters
     public Long getUserId() {
@@ -349,4 +351,20 @@ public class CounselorDTO {
     public void setGenderFilter(String genderFilter) {
         this.genderFilter = genderFilter;
     }
+
+    public BigDecimal getMinFeeFilter() {
+        return minFeeFilter;
+    }
+
+    public void setMinFeeFilter(BigDecimal minFeeFilter) {
+        this.minFeeFilter = minFeeFilter;
+    }
+
+    public BigDecimal getMaxFeeFilter() {
+        return maxFeeFilter;
+    }
+
+    public void setMaxFeeFilter(BigDecimal maxFeeFilter) {
+        this.maxFeeFilter = maxFeeFilter;
+    }
 }
\ No newline at end of file
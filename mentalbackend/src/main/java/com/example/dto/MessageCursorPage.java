@@ -0,0 +1,74 @@
+package com.example.dto;
+
+import com.example.entity.ConsultationMessages;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * 基于游标（keyset）分页的对话消息结果
+ */
+public class MessageCursorPage {
+    // 本页消息，按发送时间倒序
+    private List<ConsultationMessages> messages;
+
+    // 下一页游标，没有更早的消息时为null
+    private Cursor nextCursor;
+
+    public MessageCursorPage() {
+    }
+
+    public MessageCursorPage(List<ConsultationMessages> messages, Cursor nextCursor) {
+        this.messages = messages;
+        this.nextCursor = nextCursor;
+    }
+
+    // Getters and Setters
+    public List<ConsultationMessages> getMessages() {
+        return messages;
+    }
+
+    public void setMessages(List<ConsultationMessages> messages) {
+        this.messages = messages;
+    }
+
+    public Cursor getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(Cursor nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * 游标：本页最后一条消息的发送时间和ID，请求下一页时原样作为beforeTime/beforeId传回
+     */
+    public static class Cursor {
+        private Long beforeId;
+        private Instant beforeTime;
+
+        public Cursor() {
+        }
+
+        public Cursor(Long beforeId, Instant beforeTime) {
+            this.beforeId = beforeId;
+            this.beforeTime = beforeTime;
+        }
+
+        public Long getBeforeId() {
+            return beforeId;
+        }
+
+        public void setBeforeId(Long beforeId) {
+            this.beforeId = beforeId;
+        }
+
+        public Instant getBeforeTime() {
+            return beforeTime;
+        }
+
+        public void setBeforeTime(Instant beforeTime) {
+            this.beforeTime = beforeTime;
+        }
+    }
+}
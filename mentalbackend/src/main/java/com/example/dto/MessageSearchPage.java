@@ -0,0 +1,41 @@
+package com.example.dto;
+
+import com.example.entity.ConsultationMessages;
+
+import java.util.List;
+
+/**
+ * 聊天记录全文检索结果
+ */
+public class MessageSearchPage {
+    // 匹配的消息总数
+    private long total;
+
+    // 本页消息，按发送时间倒序
+    private List<ConsultationMessages> messages;
+
+    public MessageSearchPage() {
+    }
+
+    public MessageSearchPage(long total, List<ConsultationMessages> messages) {
+        this.total = total;
+        this.messages = messages;
+    }
+
+    // Getters and Setters
+    public long getTotal() {
+        return total;
+    }
+
+    public void setTotal(long total) {
+        this.total = total;
+    }
+
+    public List<ConsultationMessages> getMessages() {
+        return messages;
+    }
+
+    public void setMessages(List<ConsultationMessages> messages) {
+        this.messages = messages;
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.dto;
+
+import com.example.entity.ConsultationMessages;
+
+import java.util.List;
+
+/**
+ * 断线重连补发的一个批次
+ * STOMP同步按批次推送，最后一帧 complete 为 true；REST同步一次返回全部批次合并后的结果
+ */
+public class MessageSyncBatch {
+    // 请求中的同步ID
+    private String syncId;
+
+    // 本批消息，同一会话内按消息ID升序
+    private List<ConsultationMessages> messages;
+
+    // 是否为本次同步的最后一帧
+    private boolean complete;
+
+    // 达到单次同步上限，还可能有未补发的消息，客户端应按收到的消息更新lastSeen后再次同步
+    private boolean truncated;
+
+    public MessageSyncBatch() {
+    }
+
+    public MessageSyncBatch(String syncId, List<ConsultationMessages> messages, boolean complete, boolean truncated) {
+        this.syncId = syncId;
+        this.messages = messages;
+        this.complete = complete;
+        this.truncated = truncated;
+    }
+
+    // Getters and Setters
+    public String getSyncId() {
+        return syncId;
+    }
+
+    public void setSyncId(String syncId) {
+        this.syncId = syncId;
+    }
+
+    public List<ConsultationMessages> getMessages() {
+        return messages;
+    }
+
+    public void setMessages(List<ConsultationMessages> messages) {
+        this.messages = messages;
+    }
+
+    public boolean isComplete() {
+        return complete;
+    }
+
+    public void setComplete(boolean complete) {
+        this.complete = complete;
+    }
+
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    public void setTruncated(boolean truncated) {
+        this.truncated = truncated;
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.dto;
+
+import java.util.Map;
+
+/**
+ * 断线重连补发请求：客户端上报每个会话已收到的最新消息ID
+ */
+public class MessageSyncRequest {
+    // 客户端生成的同步ID，原样带回每个批次，用于区分多次同步
+    private String syncId;
+
+    // 请求方类型：USER 或 COUNSELOR
+    private String ownerType;
+
+    // 请求方ID
+    private Long ownerId;
+
+    // 会话对方ID -> 该会话已收到的最新消息ID
+    private Map<Long, Long> lastSeen;
+
+    // 客户端已收到的最大消息ID，未列出的会话只补发该ID之后的消息；为空时取lastSeen中的最大值
+    private Long sinceMessageId;
+
+    // Getters and Setters
+    public String getSyncId() {
+        return syncId;
+    }
+
+    public void setSyncId(String syncId) {
+        this.syncId = syncId;
+    }
+
+    public String getOwnerType() {
+        return ownerType;
+    }
+
+    public void setOwnerType(String ownerType) {
+        this.ownerType = ownerType;
+    }
+
+    public Long getOwnerId() {
+        return ownerId;
+    }
+
+    public void setOwnerId(Long ownerId) {
+        this.ownerId = ownerId;
+    }
+
+    public Map<Long, Long> getLastSeen() {
+        return lastSeen;
+    }
+
+    public void setLastSeen(Map<Long, Long> lastSeen) {
+        this.lastSeen = lastSeen;
+    }
+
+    public Long getSinceMessageId() {
+        return sinceMessageId;
+    }
+
+    public void setSinceMessageId(Long sinceMessageId) {
+        this.sinceMessageId = sinceMessageId;
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.dto;
+
+/**
+ * 接收者在某个会话（对方ID）中的未读消息数
+ */
+public class PeerUnreadCount {
+    // 接收者ID，只在批量统计多个接收者时返回
+    private Long receiverId;
+
+    // 会话对方ID：接收者为用户时是咨询师ID，接收者为咨询师时是用户ID
+    private Long peerId;
+
+    // 未读消息数
+    private Long unreadCount;
+
+    public PeerUnreadCount() {
+    }
+
+    public PeerUnreadCount(Long peerId, Long unreadCount) {
+        this.peerId = peerId;
+        this.unreadCount = unreadCount;
+    }
+
+    // Getters and Setters
+    public Long getReceiverId() {
+        return receiverId;
+    }
+
+    public void setReceiverId(Long receiverId) {
+        this.receiverId = receiverId;
+    }
+
+    public Long getPeerId() {
+        return peerId;
+    }
+
+    public void setPeerId(Long peerId) {
+        this.peerId = peerId;
+    }
+
+    public Long getUnreadCount() {
+        return unreadCount;
+    }
+
+    public void setUnreadCount(Long unreadCount) {
+        this.unreadCount = unreadCount;
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.dto;
+
+/**
+ * 标签及使用该标签的已审核咨询师人数
+ */
+public class TagCount {
+    // 标签名
+    private String name;
+
+    // 已通过审核且有该标签的咨询师人数
+    private Long counselorCount;
+
+    public TagCount() {
+    }
+
+    public TagCount(String name, Long counselorCount) {
+        this.name = name;
+        this.counselorCount = counselorCount;
+    }
+
+    // Getters and Setters
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public Long getCounselorCount() {
+        return counselorCount;
+    }
+
+    public void setCounselorCount(Long counselorCount) {
+        this.counselorCount = counselorCount;
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.dto;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * 某一类型的标签词表：按咨询师人数从多到少排列，附带用于条件请求的ETag和最后修改时间
+ */
+public class TagVocabulary {
+    // 标签及人数
+    private List<TagCount> tags;
+
+    // 内容摘要，内容不变时保持不变
+    private String etag;
+
+    // 内容最后一次变化的时间
+    private Instant lastModified;
+
+    public TagVocabulary() {
+    }
+
+    public TagVocabulary(List<TagCount> tags, String etag, Instant lastModified) {
+        this.tags = tags;
+        this.etag = etag;
+        this.lastModified = lastModified;
+    }
+
+    // Getters and Setters
+    public List<TagCount> getTags() {
+        return tags;
+    }
+
+    public void setTags(List<TagCount> tags) {
+        this.tags = tags;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public void setEtag(String etag) {
+        this.etag = etag;
+    }
+
+    public Instant getLastModified() {
+        return lastModified;
+    }
+
+    public void setLastModified(Instant lastModified) {
+        this.lastModified = lastModified;
+    }
+}
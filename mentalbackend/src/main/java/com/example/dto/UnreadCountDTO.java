@@ -0,0 +1,71 @@
+package com.example.dto;
+
+/**
+ * 未读消息数
+ */
+public class UnreadCountDTO {
+    // 接收者ID
+    private Long receiverId;
+
+    // 接收者类型：USER 或 COUNSELOR
+    private String receiverType;
+
+    // 接收者全部会话的未读消息总数
+    private long total;
+
+    // 指定会话对方ID时返回该会话的未读数，否则为null
+    private Long peerId;
+    private Long conversationUnread;
+
+    public UnreadCountDTO() {
+    }
+
+    public UnreadCountDTO(Long receiverId, String receiverType, long total, Long peerId, Long conversationUnread) {
+        this.receiverId = receiverId;
+        this.receiverType = receiverType;
+        this.total = total;
+        this.peerId = peerId;
+        this.conversationUnread = conversationUnread;
+    }
+
+    // Getters and Setters
+    public Long getReceiverId() {
+        return receiverId;
+    }
+
+    public void setReceiverId(Long receiverId) {
+        this.receiverId = receiverId;
+    }
+
+    public String getReceiverType() {
+        return receiverType;
+    }
+
+    public void setReceiverType(String receiverType) {
+        this.receiverType = receiverType;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public void setTotal(long total) {
+        this.total = total;
+    }
+
+    public Long getPeerId() {
+        return peerId;
+    }
+
+    public void setPeerId(Long peerId) {
+        this.peerId = peerId;
+    }
+
+    public Long getConversationUnread() {
+        return conversationUnread;
+    }
+
+    public void setConversationUnread(Long conversationUnread) {
+        this.conversationUnread = conversationUnread;
+    }
+}
@@ -7,7 +7,7 @@ import com.baomidou.mybatisplus.annotation.TableName;
 
 import java.io.Serial;
 import java.io.Serializable;
-import java.time.LocalDateTime;
+import java.time.Instant;
 
 /**
  * 咨询对话记录表
@@ -39,7 +39,7 @@ public class ConsultationMessages implements Serializable {
     private Integer durationSeconds;
 
     @TableField("sent_time")
-    private LocalDateTime sentTime;
+    private Instant sentTime; // UTC，数据库中按UTC保存
 
     @TableField("read_status")
     private Boolean readStatus;
@@ -110,11 +110,11 @@ public class ConsultationMessages implements Serializable {
         this.durationSeconds = durationSeconds;
     }
 
-    public LocalDateTime getSentTime() {
+    public Instant getSentTime() {
         return sentTime;
     }
 
-    public void setSentTime(LocalDateTime sentTime) {
+    public void setSentTime(Instant sentTime) {
         this.sentTime = sentTime;
     }
 
@@ -0,0 +1,95 @@
+package com.example.entity;
+
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableName;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.time.Instant;
+
+/**
+ * 会话摘要表，每个 (用户, 咨询师) 会话一行，记录最新一条消息
+ */
+@TableName("conversation_summary")
+public class ConversationSummary implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    @TableField("user_id")
+    private Long userId;
+
+    @TableField("counselor_id")
+    private Long counselorId;
+
+    @TableField("last_message_id")
+    private Long lastMessageId;
+
+    @TableField("last_sender_type")
+    private String lastSenderType; // USER, COUNSELOR
+
+    @TableField("last_message_type")
+    private String lastMessageType; // TEXT, IMAGE, VOICE, SYSTEM
+
+    @TableField("last_content")
+    private String lastContent; // 最新消息内容预览，最多200字
+
+    @TableField("last_sent_time")
+    private Instant lastSentTime; // UTC
+
+    // Getters and Setters
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public Long getCounselorId() {
+        return counselorId;
+    }
+
+    public void setCounselorId(Long counselorId) {
+        this.counselorId = counselorId;
+    }
+
+    public Long getLastMessageId() {
+        return lastMessageId;
+    }
+
+    public void setLastMessageId(Long lastMessageId) {
+        this.lastMessageId = lastMessageId;
+    }
+
+    public String getLastSenderType() {
+        return lastSenderType;
+    }
+
+    public void setLastSenderType(String lastSenderType) {
+        this.lastSenderType = lastSenderType;
+    }
+
+    public String getLastMessageType() {
+        return lastMessageType;
+    }
+
+    public void setLastMessageType(String lastMessageType) {
+        this.lastMessageType = lastMessageType;
+    }
+
+    public String getLastContent() {
+        return lastContent;
+    }
+
+    public void setLastContent(String lastContent) {
+        this.lastContent = lastContent;
+    }
+
+    public Instant getLastSentTime() {
+        return lastSentTime;
+    }
+
+    public void setLastSentTime(Instant lastSentTime) {
+        this.lastSentTime = lastSentTime;
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.entity;
+
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableName;
+
+import java.io.Serial;
+import java.io.Serializable;
+
+/**
+ * 咨询师标签关联表，由 counselors / counselor_service_settings 中的JSON标签列同步生成
+ */
+@TableName("counselor_tag")
+public class CounselorTag implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    @TableField("counselor_id")
+    private Long counselorId;
+
+    @TableField("tag_type")
+    private String tagType; // SPECIALIZATION, APPROACH, SERVICE_TYPE
+
+    @TableField("tag_id")
+    private Long tagId;
+
+    @TableField(exist = false)
+    private String tagName; // 关联查询 tag 表得到的标签名
+
+    // Getters and Setters
+    public Long getCounselorId() {
+        return counselorId;
+    }
+
+    public void setCounselorId(Long counselorId) {
+        this.counselorId = counselorId;
+    }
+
+    public String getTagType() {
+        return tagType;
+    }
+
+    public void setTagType(String tagType) {
+        this.tagType = tagType;
+    }
+
+    public Long getTagId() {
+        return tagId;
+    }
+
+    public void setTagId(Long tagId) {
+        this.tagId = tagId;
+    }
+
+    public String getTagName() {
+        return tagName;
+    }
+
+    public void setTagName(String tagName) {
+        this.tagName = tagName;
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.mapper;
+
+import com.example.entity.ConsultationMessages;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * 咨询对话归档Mapper接口，归档表与 consultation_messages 结构相同并保留原消息ID
+ */
+@Mapper
+public interface ConsultationMessagesArchiveMapper {
+    
+    // 把热表中指定ID的消息复制到归档表
+    int copyFromHot(@Param("ids") List<Long> ids);
+    
+    // 按游标获取归档的对话记录（早于beforeTime/beforeId的消息），游标为空时从最新的归档消息开始
+    List<ConsultationMessages> getConversationBeforeCursor(
+            @Param("userId") Long userId,
+            @Param("counselorId") Long counselorId,
+            @Param("beforeTime") Instant beforeTime,
+            @Param("beforeId") Long beforeId,
+            @Param("limit") Integer limit
+    );
+    
+    // 按偏移量获取归档的对话记录，按发送时间倒序
+    List<ConsultationMessages> getConversationByUserAndCounselor(
+            @Param("userId") Long userId,
+            @Param("counselorId") Long counselorId,
+            @Param("limit") Integer limit,
+            @Param("offset") Integer offset
+    );
+    
+    // 根据预约ID获取归档的对话记录
+    List<ConsultationMessages> getMessagesByAppointmentId(@Param("appointmentId") Long appointmentId);
+    
+    // 按ID批量查询归档消息
+    List<ConsultationMessages> selectByIds(@Param("ids") List<Long> ids);
+    
+    // 锁定归档消息行并读取阅读状态和所属会话
+    List<ConsultationMessages> selectReadStateForUpdate(@Param("ids") List<Long> ids);
+    
+    // 按ID批量删除归档消息
+    int deleteByIds(@Param("ids") List<Long> ids);
+    
+    // 读取某一方afterId之后的归档消息，按ID升序；peerId、upToId（含）为空时不限
+    List<ConsultationMessages> selectAfterId(
+            @Param("ownerType") String ownerType,
+            @Param("ownerId") Long ownerId,
+            @Param("peerId") Long peerId,
+            @Param("afterId") Long afterId,
+            @Param("upToId") Long upToId,
+            @Param("limit") Integer limit
+    );
+    
+    // 归档表中最大的消息ID，没有归档消息时为null
+    Long selectMaxId();
+}
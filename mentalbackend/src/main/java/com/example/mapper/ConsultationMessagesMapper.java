@@ -1,9 +1,12 @@
 package com.example.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.example.dto.PeerUnreadCount;
 import com.example.entity.ConsultationMessages;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.cursor.Cursor;
+import java.time.Instant;
 import java.util.List;
 
 /**
@@ -20,6 +23,15 @@ public interface ConsultationMessagesMapper extends BaseMapper<ConsultationMessa
             @Param("offset") Integer offset
     );
     
+    // 根据用户ID和咨询师ID按游标获取对话记录（早于beforeTime/beforeId的消息），游标为空时从最新消息开始
+    List<ConsultationMessages> getConversationBeforeCursor(
+            @Param("userId") Long userId,
+            @Param("counselorId") Long counselorId,
+            @Param("beforeTime") Instant beforeTime,
+            @Param("beforeId") Long beforeId,
+            @Param("limit") Integer limit
+    );
+    
     // 根据预约ID获取对话记录
     List<ConsultationMessages> getMessagesByAppointmentId(@Param("appointmentId") Long appointmentId);
     
@@ -28,4 +40,58 @@ public interface ConsultationMessagesMapper extends BaseMapper<ConsultationMessa
     
     // 批量更新消息的阅读状态
     int batchUpdateReadStatus(@Param("ids") List<Long> ids, @Param("readStatus") Boolean readStatus);
+    
+    // 多行批量插入消息（INSERT ... VALUES (...),(...)），自增ID回填到实体
+    int insertBatch(@Param("messages") List<ConsultationMessages> messages);
+    
+    // 按ID查询消息的阅读状态和会话信息，并加行锁，用于计算未读数变化
+    List<ConsultationMessages> selectReadStateForUpdate(@Param("ids") List<Long> ids);
+    
+    // 按会话对方分组统计接收者的未读消息数，receiverType为USER或COUNSELOR
+    List<PeerUnreadCount> countUnreadByPeer(@Param("receiverType") String receiverType, @Param("receiverId") Long receiverId);
+    
+    // 按 (接收者, 会话对方) 分组统计一批同类型接收者的未读消息数，结果带receiverId
+    List<PeerUnreadCount> countUnreadByReceivers(@Param("receiverType") String receiverType, @Param("receiverIds") List<Long> receiverIds);
+    
+    // 按范围标记会话已读：readerType接收的、(sent_time, id)不晚于(upToTime, upToId)的未读消息，upToId为空时按sent_time <= upToTime
+    int markConversationRead(
+            @Param("userId") Long userId,
+            @Param("counselorId") Long counselorId,
+            @Param("readerType") String readerType,
+            @Param("upToTime") Instant upToTime,
+            @Param("upToId") Long upToId
+    );
+    
+    // 查询发送时间早于cutoff的已读消息ID，按ID升序，用于归档
+    List<Long> selectArchivableIds(@Param("cutoff") Instant cutoff, @Param("limit") Integer limit);
+    
+    // 删除已复制到归档表的消息
+    int deleteArchived(@Param("ids") List<Long> ids);
+    
+    // 流式读取完整对话记录（含归档消息），按 (sent_time, id) 升序；appointmentId不为空时按预约读取，否则按会话读取
+    // 需在事务内遍历，遍历期间占用一个数据库连接
+    Cursor<ConsultationMessages> streamTranscript(
+            @Param("appointmentId") Long appointmentId,
+            @Param("userId") Long userId,
+            @Param("counselorId") Long counselorId
+    );
+    
+    // 按ID顺序读取afterId之后的消息，用于全文索引增量追赶（只包含建索引需要的列）
+    List<ConsultationMessages> selectForSearchIndexAfter(@Param("afterId") Long afterId, @Param("limit") Integer limit);
+    
+    // 流式读取热表和归档表的全部消息，用于重建全文索引（只包含建索引需要的列），需在事务内遍历
+    Cursor<ConsultationMessages> streamForSearchIndex();
+    
+    // 当前最大消息ID，没有消息时为null
+    Long selectMaxId();
+    
+    // 按 (接收者, 消息ID) 索引读取某一方afterId之后的消息，按ID升序；peerId、upToId（含）为空时不限
+    List<ConsultationMessages> selectAfterId(
+            @Param("ownerType") String ownerType,
+            @Param("ownerId") Long ownerId,
+            @Param("peerId") Long peerId,
+            @Param("afterId") Long afterId,
+            @Param("upToId") Long upToId,
+            @Param("limit") Integer limit
+    );
 }
\ No newline at end of file
@@ -0,0 +1,46 @@
+package com.example.mapper;
+
+import com.example.entity.ConversationSummary;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import java.util.List;
+
+/**
+ * 会话摘要Mapper接口
+ */
+@Mapper
+public interface ConversationSummaryMapper {
+    
+    // 批量写入会话最新消息，已存在的会话只在新消息更晚时覆盖
+    int upsertLatest(@Param("summaries") List<ConversationSummary> summaries);
+    
+    // 锁定并获取会话摘要
+    ConversationSummary selectForUpdate(@Param("userId") Long userId, @Param("counselorId") Long counselorId);
+    
+    // 用指定消息覆盖会话摘要，不比较新旧
+    int replaceLatest(@Param("s") ConversationSummary summary);
+    
+    // 删除会话摘要
+    int deleteByConversation(@Param("userId") Long userId, @Param("counselorId") Long counselorId);
+    
+    // 分页获取用户的会话摘要，按最新消息时间倒序
+    List<ConversationSummary> getByUser(
+            @Param("userId") Long userId,
+            @Param("limit") Integer limit,
+            @Param("offset") Integer offset
+    );
+    
+    // 分页获取咨询师的会话摘要，按最新消息时间倒序
+    List<ConversationSummary> getByCounselor(
+            @Param("counselorId") Long counselorId,
+            @Param("limit") Integer limit,
+            @Param("offset") Integer offset
+    );
+    
+    // 获取某一方最新消息ID大于afterId的会话
+    List<ConversationSummary> getChangedAfter(
+            @Param("ownerType") String ownerType,
+            @Param("ownerId") Long ownerId,
+            @Param("afterId") Long afterId
+    );
+}
@@ -0,0 +1,38 @@
+package com.example.mapper;
+
+import com.example.dto.TagCount;
+import com.example.entity.CounselorTag;
+import com.example.entity.Tag;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 咨询师标签Mapper接口：标签字典 tag 和关联表 counselor_tag
+ */
+@Mapper
+public interface CounselorTagMapper {
+    
+    // 写入标签字典，已存在的标签忽略
+    int insertTags(@Param("tagType") String tagType, @Param("names") Collection<String> names);
+    
+    // 按类型和名称查询标签
+    List<Tag> selectTags(@Param("tagType") String tagType, @Param("names") Collection<String> names);
+    
+    // 删除咨询师某一类型的标签关联，tagType为空时删除全部类型
+    int deleteCounselorTags(@Param("counselorId") Long counselorId, @Param("tagType") String tagType);
+    
+    // 批量写入咨询师的标签关联
+    int insertCounselorTags(
+            @Param("counselorId") Long counselorId,
+            @Param("tagType") String tagType,
+            @Param("tagIds") Collection<Long> tagIds
+    );
+    
+    // 查询标签关联及标签名，counselorId为空时查询全部
+    List<CounselorTag> selectAssignments(@Param("counselorId") Long counselorId);
+    
+    // 统计某一类型每个标签下已通过审核的咨询师人数
+    List<TagCount> countApprovedTags(@Param("tagType") String tagType);
+}
@@ -1,9 +1,11 @@
 package com.example.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.example.dto.CounselorDTO;
 import com.example.entity.Counselors;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
+import java.math.BigDecimal;
 import java.util.List;
 
 /**
@@ -14,11 +16,22 @@ public interface CounselorsMapper extends BaseMapper<Counselors> {
     // 根据关键词搜索咨询师
     List<Counselors> searchByKeyword(@Param("keyword") String keyword);
     
-    // 根据标签筛选咨询师
-    List<Counselors> filterByTags(
+    // 按关键词、标签、性别和咨询费筛选已通过审核的咨询师，关联用户信息和服务设置，一条查询返回DTO；counselorIds、excludedIds为空时不限
+    List<CounselorDTO> selectCounselorDTOs(
+            @Param("keyword") String keyword,
+            @Param("counselorIds") List<Long> counselorIds,
+            @Param("excludedIds") List<Long> excludedIds,
             @Param("specializationTags") List<String> specializationTags,
             @Param("approachTags") List<String> approachTags,
             @Param("serviceTypeTags") List<String> serviceTypeTags,
-            @Param("gender") String gender
+            @Param("gender") String gender,
+            @Param("minFee") BigDecimal minFee,
+            @Param("maxFee") BigDecimal maxFee
     );
+    
+    // 查询咨询师的审核状态、性别和咨询费，用于筛选索引；counselorId为空时查询全部
+    List<CounselorDTO> selectFilterAttributes(@Param("counselorId") Long counselorId);
+    
+    // 查询咨询师详情，关联用户信息和服务设置
+    CounselorDTO selectCounselorDTOById(@Param("counselorId") Long counselorId);
 }
\ No newline at end of file
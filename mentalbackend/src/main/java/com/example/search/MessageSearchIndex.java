@@ -0,0 +1,624 @@
+package com.example.search;
+
+import com.example.entity.ConsultationMessages;
+import com.example.mapper.ConsultationMessagesMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.LowerCaseFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.cjk.CJKBigramFilter;
+import org.apache.lucene.analysis.cjk.CJKWidthFilter;
+import org.apache.lucene.analysis.standard.StandardTokenizer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopFieldDocs;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.QueryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 聊天记录全文索引（Lucene，本地磁盘）
+ * 1. 中日韩文本先按字切分再组成二元组，建索引时同时保留单字，单字查询也能命中
+ * 2. 保存消息的事务提交后立即写入索引；定时按消息ID追赶数据库，补上其他节点保存的消息和进程崩溃前未提交的索引
+ * 3. 索引只保存ID、会话和时间，消息内容不落到索引文件中，检索结果按ID回数据库读取
+ * 4. 索引目录不存在时自动从热表和归档表全量重建，也可通过接口手动重建；
+ *    重建写入单独的索引（磁盘上为同级的 .rebuild 目录），完成后整体替换，重建期间检索仍使用原索引
+ * 5. 删除消息的事务提交后按ID删除索引文档
+ */
+@Component
+public class MessageSearchIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(MessageSearchIndex.class);
+
+    private static final String ID = "id";
+    private static final String ID_SORT = "id_sort";
+    private static final String USER_ID = "user_id";
+    private static final String COUNSELOR_ID = "counselor_id";
+    private static final String SENT_TIME = "sent_time";
+    private static final String CONTENT = "content";
+
+    // 索引提交数据中记录的追赶检查点
+    private static final String CHECKPOINT = "checkpoint";
+
+    // 按发送时间、消息ID倒序
+    private static final Sort NEWEST_FIRST = new Sort(
+            new SortField(SENT_TIME, SortField.Type.LONG, true),
+            new SortField(ID_SORT, SortField.Type.LONG, true));
+
+    private static final int CJK_SCRIPTS = CJKBigramFilter.HAN | CJKBigramFilter.HIRAGANA
+            | CJKBigramFilter.KATAKANA | CJKBigramFilter.HANGUL;
+
+    @Resource
+    private ConsultationMessagesMapper consultationMessagesMapper;
+
+    @Resource
+    private PlatformTransactionManager transactionManager;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Value("${chat.search.enabled:true}")
+    private boolean enabled;
+
+    // 为空时使用内存索引（测试环境）
+    @Value("${chat.search.index-dir:data/message-index}")
+    private String indexDir;
+
+    @Value("${chat.search.catch-up-batch-size:1000}")
+    private int catchUpBatchSize;
+
+    @Value("${chat.search.max-catch-up-batches:100}")
+    private int maxCatchUpBatches;
+
+    private final Analyzer queryAnalyzer = cjkAnalyzer(false);
+
+    // 当前使用的索引；写入、检索和提交持读锁，重建完成后持写锁替换
+    private volatile Index live;
+    private final ReadWriteLock swapLock = new ReentrantReadWriteLock();
+
+    // 重建中的索引写入器，重建期间新保存的消息同时写入这里
+    private volatile IndexWriter rebuildWriter;
+
+    // 重建期间删除的消息ID，替换前从新索引中删除，避免被重建时读到的旧数据带回
+    private final Set<Long> deletedDuringRebuild = ConcurrentHashMap.newKeySet();
+
+    private ExecutorService rebuildExecutor;
+
+    // 已确认写入索引的最大消息ID，重启后从这里继续追赶
+    private volatile long checkpoint;
+
+    // 最近一次提交到索引中的检查点，索引和检查点都没有变化时不提交
+    private volatile long committedCheckpoint;
+
+    // 上一轮追赶读到的最大消息ID
+    private volatile long lastSeenId;
+
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+
+    private Timer searchTimer;
+    private Counter indexedCounter;
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        Directory directory;
+        if (StringUtils.hasText(indexDir)) {
+            Path path = Paths.get(indexDir);
+            // 清理上次未完成的重建；替换目录时中断的，恢复原索引
+            FileSystemUtils.deleteRecursively(siblingPath(".rebuild"));
+            Path old = siblingPath(".old");
+            if (!Files.exists(path) && Files.exists(old)) {
+                Files.move(old, path);
+            } else {
+                FileSystemUtils.deleteRecursively(old);
+            }
+            Files.createDirectories(path);
+            directory = FSDirectory.open(path);
+        } else {
+            directory = new ByteBuffersDirectory();
+        }
+        boolean exists = DirectoryReader.indexExists(directory);
+        if (exists) {
+            String value = SegmentInfos.readLatestCommit(directory).getUserData().get(CHECKPOINT);
+            checkpoint = value != null ? Long.parseLong(value) : 0;
+            lastSeenId = checkpoint;
+            committedCheckpoint = checkpoint;
+        }
+        live = openIndex(directory, IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
+        rebuildExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "message-index-rebuild");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        searchTimer = meterRegistry.timer("chat.search.latency");
+        indexedCounter = meterRegistry.counter("chat.search.indexed");
+
+        if (!exists) {
+            log.info("全文索引不存在，开始全量重建: {}", StringUtils.hasText(indexDir) ? indexDir : "内存");
+            rebuildAsync();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        rebuildExecutor.shutdownNow();
+        commit();
+        swapLock.writeLock().lock();
+        try {
+            live.close();
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 保存消息的事务提交后调用，写入失败时由定时追赶补上
+     */
+    public void onMessagesSaved(List<ConsultationMessages> messages) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            write(messages);
+        } catch (IOException | RuntimeException e) {
+            log.warn("写入全文索引失败，等待定时追赶: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 删除消息的事务提交后调用，按ID删除索引文档
+     * 其他节点删除的消息不会被定时追赶发现，需全量重建才能从本节点索引中移除
+     */
+    public void onMessagesDeleted(Collection<Long> ids) {
+        if (!enabled || ids.isEmpty()) {
+            return;
+        }
+        swapLock.readLock().lock();
+        try {
+            if (rebuilding.get()) {
+                deletedDuringRebuild.addAll(ids);
+            }
+            live.writer().deleteDocuments(idTerms(ids));
+        } catch (IOException | RuntimeException e) {
+            log.warn("删除全文索引文档失败: {}", e.getMessage());
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 检索消息ID，按发送时间倒序
+     * @param userId 用户ID，为空时不限
+     * @param counselorId 咨询师ID，为空时不限
+     * @param text 检索词，多个词用空格分隔，每个词按短语匹配且都需命中
+     */
+    public SearchResult search(Long userId, Long counselorId, String text, int limit, int offset) {
+        if (!enabled) {
+            throw new IllegalStateException("全文检索未启用");
+        }
+        BooleanQuery.Builder builder = new BooleanQuery.Builder();
+        if (userId != null) {
+            builder.add(new TermQuery(new Term(USER_ID, userId.toString())), BooleanClause.Occur.FILTER);
+        }
+        if (counselorId != null) {
+            builder.add(new TermQuery(new Term(COUNSELOR_ID, counselorId.toString())), BooleanClause.Occur.FILTER);
+        }
+        QueryBuilder queryBuilder = new QueryBuilder(queryAnalyzer);
+        boolean hasTerms = false;
+        for (String part : text.trim().split("\\s+")) {
+            Query phrase = queryBuilder.createPhraseQuery(CONTENT, part);
+            if (phrase != null) {
+                builder.add(phrase, BooleanClause.Occur.MUST);
+                hasTerms = true;
+            }
+        }
+        if (!hasTerms) {
+            return new SearchResult(0, List.of());
+        }
+        Query query = builder.build();
+        long start = System.nanoTime();
+        // 持读锁检索，避免检索期间索引被替换关闭
+        swapLock.readLock().lock();
+        try {
+            SearcherManager searcherManager = live.searcherManager();
+            IndexSearcher searcher = searcherManager.acquire();
+            try {
+                TopFieldDocs top = searcher.search(query, offset + limit, NEWEST_FIRST);
+                List<Long> ids = new ArrayList<>(limit);
+                ScoreDoc[] hits = top.scoreDocs;
+                for (int i = offset; i < hits.length; i++) {
+                    ids.add((Long) ((FieldDoc) hits[i]).fields[1]);
+                }
+                return new SearchResult(searcher.count(query), ids);
+            } finally {
+                searcherManager.release(searcher);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            swapLock.readLock().unlock();
+            searchTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * 在后台全量重建索引
+     * @return 已有重建任务在执行时返回false
+     */
+    public boolean rebuildAsync() {
+        if (!enabled || !rebuilding.compareAndSet(false, true)) {
+            return false;
+        }
+        rebuildExecutor.execute(this::rebuild);
+        return true;
+    }
+
+    public boolean isRebuilding() {
+        return rebuilding.get();
+    }
+
+    /**
+     * 立即让新写入的索引对检索可见
+     */
+    public void refresh() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        swapLock.readLock().lock();
+        try {
+            live.searcherManager().maybeRefreshBlocking();
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${chat.search.refresh-interval-ms:1000}")
+    public void scheduledRefresh() {
+        if (!enabled) {
+            return;
+        }
+        swapLock.readLock().lock();
+        try {
+            live.searcherManager().maybeRefresh();
+        } catch (IOException e) {
+            log.warn("刷新全文索引失败: {}", e.getMessage());
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 按消息ID追赶数据库并提交索引
+     * 每轮从上一轮读到的位置之前开始读，覆盖ID较小但提交较晚的事务；重复写入同一消息只会覆盖原文档
+     * 没有新写入且检查点不变时不提交，空闲时不产生新的提交点
+     */
+    @Scheduled(fixedDelayString = "${chat.search.catch-up-interval-ms:5000}")
+    public void catchUp() {
+        if (!enabled || rebuilding.get()) {
+            return;
+        }
+        try {
+            long from = checkpoint;
+            long maxSeen = lastSeenId;
+            for (int batch = 0; batch < maxCatchUpBatches; batch++) {
+                List<ConsultationMessages> messages = consultationMessagesMapper.selectForSearchIndexAfter(from, catchUpBatchSize);
+                write(messages);
+                if (!messages.isEmpty()) {
+                    from = messages.get(messages.size() - 1).getId();
+                    maxSeen = Math.max(maxSeen, from);
+                }
+                if (messages.size() < catchUpBatchSize) {
+                    break;
+                }
+            }
+            checkpoint = Math.max(checkpoint, lastSeenId);
+            lastSeenId = maxSeen;
+            commit();
+        } catch (Exception e) {
+            log.error("全文索引追赶失败: {}", e.getMessage(), e);
+        }
+    }
+
+    private void rebuild() {
+        long start = System.nanoTime();
+        Index building = null;
+        try {
+            building = openIndex(buildDirectory(), IndexWriterConfig.OpenMode.CREATE);
+            deletedDuringRebuild.clear();
+            // 先让新保存的消息同时写入新索引，再读取最大ID，之后提交的消息由追赶补上
+            rebuildWriter = building.writer();
+            Long maxId = consultationMessagesMapper.selectMaxId();
+            IndexWriter target = building.writer();
+            long[] indexed = {0};
+            TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+            readOnly.setReadOnly(true);
+            readOnly.executeWithoutResult(status -> {
+                try (Cursor<ConsultationMessages> cursor = consultationMessagesMapper.streamForSearchIndex()) {
+                    for (ConsultationMessages message : cursor) {
+                        Document document = toDocument(message);
+                        if (document != null) {
+                            addOrUpdate(target, message.getId(), document);
+                            indexed[0]++;
+                        }
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+
+            swapLock.writeLock().lock();
+            try {
+                rebuildWriter = null;
+                if (!deletedDuringRebuild.isEmpty()) {
+                    target.deleteDocuments(idTerms(deletedDuringRebuild));
+                    deletedDuringRebuild.clear();
+                }
+                long rebuiltCheckpoint = maxId != null ? maxId : 0;
+                target.setLiveCommitData(Map.of(CHECKPOINT, String.valueOf(rebuiltCheckpoint)).entrySet());
+                target.commit();
+                Index built = building;
+                building = null;
+                install(built);
+                // 替换成功后才推进检查点，替换失败时原索引按原检查点继续追赶
+                checkpoint = rebuiltCheckpoint;
+                lastSeenId = rebuiltCheckpoint;
+                committedCheckpoint = rebuiltCheckpoint;
+                live.searcherManager().maybeRefreshBlocking();
+            } finally {
+                swapLock.writeLock().unlock();
+            }
+            log.info("全文索引重建完成: 消息数={}, 耗时={}ms", indexed[0], (System.nanoTime() - start) / 1_000_000);
+        } catch (Exception e) {
+            log.error("全文索引重建失败: {}", e.getMessage(), e);
+            rebuildWriter = null;
+            deletedDuringRebuild.clear();
+            discard(building);
+        } finally {
+            rebuilding.set(false);
+        }
+    }
+
+    /**
+     * 用重建好的索引替换当前索引，调用方持写锁
+     * 磁盘索引先关闭两边，把原目录改名为 .old、把 .rebuild 改名为索引目录后重新打开，再删除原目录；
+     * 改名失败时恢复并重新打开原索引
+     */
+    private void install(Index built) throws IOException {
+        // 原索引中未提交的写入已同时写入新索引，直接丢弃
+        live.discard();
+        if (!StringUtils.hasText(indexDir)) {
+            live = built;
+            return;
+        }
+        built.close();
+        Path path = Paths.get(indexDir);
+        Path old = siblingPath(".old");
+        try {
+            Files.move(path, old, StandardCopyOption.ATOMIC_MOVE);
+            Files.move(siblingPath(".rebuild"), path, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            if (!Files.exists(path) && Files.exists(old)) {
+                Files.move(old, path, StandardCopyOption.ATOMIC_MOVE);
+            }
+            live = openIndex(FSDirectory.open(path), IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
+            throw e;
+        }
+        live = openIndex(FSDirectory.open(path), IndexWriterConfig.OpenMode.APPEND);
+        FileSystemUtils.deleteRecursively(old);
+    }
+
+    private Directory buildDirectory() throws IOException {
+        if (!StringUtils.hasText(indexDir)) {
+            return new ByteBuffersDirectory();
+        }
+        Path path = siblingPath(".rebuild");
+        FileSystemUtils.deleteRecursively(path);
+        Files.createDirectories(path);
+        return FSDirectory.open(path);
+    }
+
+    private void discard(Index building) {
+        if (building == null) {
+            return;
+        }
+        try {
+            building.discard();
+            if (StringUtils.hasText(indexDir)) {
+                FileSystemUtils.deleteRecursively(siblingPath(".rebuild"));
+            }
+        } catch (IOException e) {
+            log.warn("清理未完成的重建索引失败: {}", e.getMessage());
+        }
+    }
+
+    private Path siblingPath(String suffix) {
+        Path path = Paths.get(indexDir).toAbsolutePath().normalize();
+        return path.resolveSibling(path.getFileName() + suffix);
+    }
+
+    private Index openIndex(Directory directory, IndexWriterConfig.OpenMode openMode) throws IOException {
+        IndexWriterConfig config = new IndexWriterConfig(cjkAnalyzer(true));
+        config.setOpenMode(openMode);
+        IndexWriter writer = new IndexWriter(directory, config);
+        return new Index(directory, writer, new SearcherManager(writer, null));
+    }
+
+    /**
+     * 写入当前索引，重建期间同时写入新索引
+     */
+    private void write(List<ConsultationMessages> messages) throws IOException {
+        swapLock.readLock().lock();
+        try {
+            IndexWriter building = rebuildWriter;
+            for (ConsultationMessages message : messages) {
+                Document document = toDocument(message);
+                if (document != null) {
+                    addOrUpdate(live.writer(), message.getId(), document);
+                    if (building != null) {
+                        addOrUpdate(building, message.getId(), document);
+                    }
+                }
+            }
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 把文本消息转换为索引文档
+     * @return 不是文本消息时返回null
+     */
+    private Document toDocument(ConsultationMessages message) {
+        if (message.getId() == null || !StringUtils.hasText(message.getContent()) || !"TEXT".equals(message.getMessageType())) {
+            return null;
+        }
+        Document document = new Document();
+        document.add(new StringField(ID, message.getId().toString(), Field.Store.NO));
+        document.add(new NumericDocValuesField(ID_SORT, message.getId()));
+        document.add(new StringField(USER_ID, String.valueOf(message.getUserId()), Field.Store.NO));
+        document.add(new StringField(COUNSELOR_ID, String.valueOf(message.getCounselorId()), Field.Store.NO));
+        document.add(new NumericDocValuesField(SENT_TIME, message.getSentTime() != null ? message.getSentTime().toEpochMilli() : 0));
+        document.add(new TextField(CONTENT, message.getContent(), Field.Store.NO));
+        return document;
+    }
+
+    /**
+     * 写入一条消息的索引文档，已存在时覆盖
+     */
+    private void addOrUpdate(IndexWriter target, Long id, Document document) throws IOException {
+        target.updateDocument(new Term(ID, id.toString()), document);
+        indexedCounter.increment();
+    }
+
+    private static Term[] idTerms(Collection<Long> ids) {
+        Term[] terms = new Term[ids.size()];
+        int i = 0;
+        for (Long id : ids) {
+            terms[i++] = new Term(ID, id.toString());
+        }
+        return terms;
+    }
+
+    private void commit() throws IOException {
+        swapLock.readLock().lock();
+        try {
+            IndexWriter writer = live.writer();
+            long current = checkpoint;
+            if (!writer.hasUncommittedChanges() && current == committedCheckpoint) {
+                return;
+            }
+            writer.setLiveCommitData(Map.of(CHECKPOINT, String.valueOf(current)).entrySet());
+            writer.commit();
+            committedCheckpoint = current;
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * StandardTokenizer把中日韩文本切成单字，CJKBigramFilter把相邻的字组成二元组
+     * 建索引时保留单字（outputUnigrams），查询时只用二元组按短语匹配，单字查询直接匹配单字
+     */
+    private static Analyzer cjkAnalyzer(boolean outputUnigrams) {
+        return new Analyzer() {
+            @Override
+            protected TokenStreamComponents createComponents(String fieldName) {
+                Tokenizer source = new StandardTokenizer();
+                TokenStream result = new CJKWidthFilter(source);
+                result = new LowerCaseFilter(result);
+                result = new CJKBigramFilter(result, CJK_SCRIPTS, outputUnigrams);
+                return new TokenStreamComponents(source, result);
+            }
+
+            @Override
+            protected TokenStream normalize(String fieldName, TokenStream in) {
+                return new LowerCaseFilter(new CJKWidthFilter(in));
+            }
+        };
+    }
+
+    /**
+     * 一份索引：目录、写入器和检索器管理
+     */
+    private record Index(Directory directory, IndexWriter writer, SearcherManager searcherManager) {
+
+        void close() throws IOException {
+            searcherManager.close();
+            writer.close();
+            directory.close();
+        }
+
+        // 关闭且不提交未提交的写入
+        void discard() throws IOException {
+            searcherManager.close();
+            writer.rollback();
+            directory.close();
+        }
+    }
+
+    /**
+     * 检索结果：命中总数和本页消息ID
+     */
+    public record SearchResult(long total, List<Long> ids) {
+    }
+}
@@ -1,7 +1,12 @@
 package com.example.service;
 
 import com.baomidou.mybatisplus.extension.service.IService;
+import com.example.dto.ConversationSummaryDTO;
+import com.example.dto.MessageCursorPage;
+import com.example.dto.MessageSearchPage;
+import com.example.dto.UnreadCountDTO;
 import com.example.entity.ConsultationMessages;
+import java.time.Instant;
 import java.util.List;
 
 /**
@@ -12,9 +17,21 @@ public interface ConsultationMessagesService extends IService<ConsultationMessag
     // 保存消息
     boolean saveMessage(ConsultationMessages message);
     
+    // 批量保存消息，按配置的块大小多行插入，返回生成的消息ID
+    List<Long> saveMessages(List<ConsultationMessages> messages);
+    
     // 根据用户ID和咨询师ID获取对话记录
     List<ConsultationMessages> getConversationByUserAndCounselor(Long userId, Long counselorId, Integer limit, Integer offset);
     
+    // 根据用户ID和咨询师ID按游标获取对话记录
+    MessageCursorPage getConversationByCursor(Long userId, Long counselorId, Instant beforeTime, Long beforeId, Integer limit);
+    
+    // 全文检索对话记录，按发送时间倒序；userId和counselorId至少需要一个
+    MessageSearchPage searchMessages(Long userId, Long counselorId, String query, Integer limit, Integer offset);
+    
+    // 后台全量重建全文索引，已有重建任务在执行时返回false
+    boolean rebuildSearchIndex();
+    
     // 根据预约ID获取对话记录
     List<ConsultationMessages> getMessagesByAppointmentId(Long appointmentId);
     
@@ -24,12 +41,21 @@ public interface ConsultationMessagesService extends IService<ConsultationMessag
     // 批量更新消息的阅读状态
     boolean batchUpdateReadStatus(List<Long> ids, Boolean readStatus);
     
+    // 按范围标记会话已读：readerType一方接收的、不晚于upToMessageId（或upToTime）的消息，返回标记的消息数
+    int markConversationRead(Long userId, Long counselorId, String readerType, Long upToMessageId, Instant upToTime);
+    
     // 获取未读消息数量
     int getUnreadMessageCount(Long receiverId, String receiverType);
     
-    // 获取用户与咨询师之间的会话列表
+    // 获取未读消息数（增量维护的计数），peerId不为空时同时返回与该对方会话的未读数
+    UnreadCountDTO getUnreadCount(Long receiverId, String receiverType, Long peerId);
+    
+    // 获取用户与咨询师之间的会话列表（每个咨询师的最新一条消息）
     List<ConsultationMessages> getUserConversations(Long userId);
     
-    // 获取咨询师与用户之间的会话列表
+    // 获取咨询师与用户之间的会话列表（每个用户的最新一条消息）
     List<ConsultationMessages> getCounselorConversations(Long counselorId);
+    
+    // 分页获取会话摘要（每个会话对方的最新消息和未读数），ownerType为USER或COUNSELOR
+    List<ConversationSummaryDTO> getConversationSummaries(String ownerType, Long ownerId, Integer limit, Integer offset);
 }
\ No newline at end of file
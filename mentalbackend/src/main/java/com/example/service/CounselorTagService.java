@@ -0,0 +1,19 @@
+package com.example.service;
+
+/**
+ * 咨询师标签服务接口
+ * 把 counselors.specialization、counselors.therapeutic_approach、counselor_service_settings.service_types
+ * 中的JSON数组同步到 tag / counselor_tag 表，事务提交后更新内存中的标签倒排索引
+ */
+public interface CounselorTagService {
+
+    String SPECIALIZATION = "SPECIALIZATION";
+    String APPROACH = "APPROACH";
+    String SERVICE_TYPE = "SERVICE_TYPE";
+
+    // 同步咨询师的三类标签，参数为JSON数组字符串；为null的类型保持不变
+    void syncTags(Long counselorId, String specialization, String therapeuticApproach, String serviceTypes);
+
+    // 删除咨询师的全部标签关联
+    void removeTags(Long counselorId);
+}
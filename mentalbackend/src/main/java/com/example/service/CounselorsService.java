@@ -2,6 +2,7 @@
 
 import com.baomidou.mybatisplus.extension.service.IService;
 import com.example.dto.CounselorDTO;
+import com.example.dto.TagVocabulary;
 import com.example.entity.Counselors;
 import java.util.List;
 
@@ -21,9 +22,6 @@ public interface CounselorsService extends IService<Counselors> {
     // 删除咨询师信息
     boolean deleteCounselor(Long counselorId);
     
-    // 获取所有擅长领域（去重）
-    List<String> getAllSpecializations();
-    
-    // 获取所有治疗流派（去重）
-    List<String> getAllTherapeuticApproaches();
+    // 获取某一类型的标签词表及每个标签的咨询师人数，按人数从多到少排列
+    TagVocabulary getTagVocabulary(String tagType);
 }
\ No newline at end of file
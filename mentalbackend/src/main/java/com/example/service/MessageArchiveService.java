@@ -0,0 +1,17 @@
+package com.example.service;
+
+import java.time.Instant;
+
+/**
+ * 消息归档服务接口
+ * 定时把超过保留天数的已读消息从 consultation_messages 移到 consultation_messages_archive，
+ * 热表只保留近期消息和未读消息
+ */
+public interface MessageArchiveService {
+
+    // 把发送时间早于cutoff的已读消息移到归档表，返回移动的消息数
+    int archiveBefore(Instant cutoff);
+
+    // 归档边界：归档表中的消息都早于该时间，热表查询结果晚于该时间时无需查询归档表
+    Instant getArchiveHorizon();
+}
@@ -0,0 +1,20 @@
+package com.example.service;
+
+import com.example.dto.MessageSyncRequest;
+import com.example.entity.ConsultationMessages;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 断线重连补发服务接口
+ * 客户端上报每个会话已收到的最新消息ID，服务器按 (接收者, 消息ID) 索引只读取增量并分批返回
+ */
+public interface MessageSyncService {
+
+    /**
+     * 分批补发客户端错过的消息，每批交给sink，同一会话内按消息ID升序
+     * @return 达到单次同步上限、可能还有未补发的消息时返回true
+     */
+    boolean sync(MessageSyncRequest request, Consumer<List<ConsultationMessages>> sink);
+}
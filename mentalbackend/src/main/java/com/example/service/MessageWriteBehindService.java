@@ -0,0 +1,33 @@
+package com.example.service;
+
+import com.example.entity.ConsultationMessages;
+
+/**
+ * 聊天消息异步写入服务接口
+ * 消息先进入有界内存队列，由独立写线程批量落库，避免阻塞WebSocket入站线程
+ */
+public interface MessageWriteBehindService {
+
+    // 提交消息到写入队列，队列已满且等待超时时退化为同步保存
+    boolean enqueue(ConsultationMessages message);
+    
+    // 提交消息到写入队列，写入成功或最终失败后回调
+    boolean enqueue(ConsultationMessages message, PersistCallback callback);
+
+    // 当前队列中待写入的消息数量
+    int getQueueDepth();
+
+    // 立即将队列中的消息全部写入数据库
+    void flush();
+
+    // 等待该会话已提交到队列的消息全部写入数据库（最多等待配置的超时时间），用于按范围标记已读前
+    void awaitConversationPersisted(Long userId, Long counselorId);
+    
+    /**
+     * 消息写入结果回调，persisted为true时消息ID已回填
+     */
+    @FunctionalInterface
+    interface PersistCallback {
+        void onComplete(ConsultationMessages message, boolean persisted);
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * 对话记录导出服务接口
+ * 从数据库流式读取消息并直接写入输出流，内存占用与对话记录长度无关
+ */
+public interface TranscriptExportService {
+
+    // 导出预约的完整对话记录（含归档消息），返回导出的消息数
+    long exportByAppointment(Long appointmentId, Format format, OutputStream out) throws IOException;
+
+    // 导出用户与咨询师之间的完整对话记录（含归档消息），返回导出的消息数
+    long exportByConversation(Long userId, Long counselorId, Format format, OutputStream out) throws IOException;
+
+    /**
+     * 导出格式
+     */
+    enum Format {
+        NDJSON("application/x-ndjson", "ndjson"),
+        CSV("text/csv;charset=UTF-8", "csv"),
+        XLSX("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet", "xlsx");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        /**
+         * 按名称（不区分大小写）解析导出格式，无法识别时返回null
+         */
+        public static Format of(String name) {
+            for (Format format : values()) {
+                if (format.name().equalsIgnoreCase(name)) {
+                    return format;
+                }
+            }
+            return null;
+        }
+    }
+}
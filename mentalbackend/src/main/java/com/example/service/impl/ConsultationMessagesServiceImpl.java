@@ -2,18 +2,45 @@ package com.example.service.impl;
 
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.example.cache.ConversationMessageCache;
+import com.example.cache.UnreadCounterStore;
+import com.example.dto.ConversationSummaryDTO;
+import com.example.dto.MessageCursorPage;
+import com.example.dto.MessageSearchPage;
+import com.example.dto.UnreadCountDTO;
 import com.example.entity.ConsultationMessages;
+import com.example.entity.ConversationSummary;
+import com.example.mapper.ConsultationMessagesArchiveMapper;
 import com.example.mapper.ConsultationMessagesMapper;
+import com.example.mapper.ConversationSummaryMapper;
+import com.example.search.MessageSearchIndex;
 import com.example.service.ConsultationMessagesService;
+import com.example.service.MessageArchiveService;
+import com.example.websocket.ConversationReadEvent;
 import jakarta.annotation.Resource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.io.Serializable;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Consumer;
 
 /**
  * 咨询对话记录服务实现类
@@ -23,31 +50,109 @@ public class ConsultationMessagesServiceImpl extends ServiceImpl<ConsultationMes
 
     private static final Logger log = LoggerFactory.getLogger(ConsultationMessagesServiceImpl.class);
 
+    // 对话记录按 (sentTime, id) 倒序
+    private static final Comparator<ConsultationMessages> NEWEST_FIRST = Comparator
+            .comparing(ConsultationMessages::getSentTime, Comparator.reverseOrder())
+            .thenComparing(ConsultationMessages::getId, Comparator.reverseOrder());
+
     @Resource
     private ConsultationMessagesMapper consultationMessagesMapper;
 
+    @Resource
+    private ConversationMessageCache conversationMessageCache;
+
+    @Resource
+    private UnreadCounterStore unreadCounterStore;
+
+    @Resource
+    private ConversationSummaryMapper conversationSummaryMapper;
+
+    @Resource
+    private ConsultationMessagesArchiveMapper consultationMessagesArchiveMapper;
+
+    @Resource
+    private MessageArchiveService messageArchiveService;
+
+    @Resource
+    private ApplicationEventPublisher eventPublisher;
+
+    @Resource
+    private MessageSearchIndex messageSearchIndex;
+
+    @Value("${chat.persistence.insert-chunk-size:500}")
+    private int insertChunkSize;
+
+    // 检索翻页的最大深度（offset + limit）
+    @Value("${chat.search.max-window:1000}")
+    private int searchMaxWindow;
+
     @Override
     @Transactional
     public boolean saveMessage(ConsultationMessages message) {
         try {
-            // 设置默认值
-            if (message.getSentTime() == null) {
-                message.setSentTime(LocalDateTime.now());
-            }
-            if (message.getMessageType() == null) {
-                message.setMessageType("TEXT");
+            applyDefaults(message);
+            boolean saved = save(message);
+            if (saved) {
+                updateConversationSummaries(List.of(message));
+                updateUnreadCounters(update -> update.messagesSaved(List.of(message)));
+                afterCommit(() -> {
+                    conversationMessageCache.onMessagesSaved(List.of(message));
+                    messageSearchIndex.onMessagesSaved(List.of(message));
+                });
             }
-            if (message.getReadStatus() == null) {
-                message.setReadStatus(false);
-            }
-            if (message.getConversationType() == null) {
-                message.setConversationType("PRE_CONSULTATION");
-            }
-            return save(message);
+            return saved;
         } catch (Exception e) {
             log.error("保存消息失败: {}", e.getMessage(), e);
+            // 异常已被捕获，事务不会自动回滚；标记回滚，避免只提交了消息而会话摘要、未读数没有更新
+            if (TransactionSynchronizationManager.isActualTransactionActive()) {
+                TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+            }
+            return false;
+        }
+    }
+
+    @Override
+    @Transactional
+    public List<Long> saveMessages(List<ConsultationMessages> messages) {
+        if (messages == null || messages.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<Long> ids = new ArrayList<>(messages.size());
+        // 按块大小切分，避免单条SQL过长超过max_allowed_packet
+        for (int from = 0; from < messages.size(); from += insertChunkSize) {
+            List<ConsultationMessages> chunk = messages.subList(from, Math.min(from + insertChunkSize, messages.size()));
+            chunk.forEach(this::applyDefaults);
+            consultationMessagesMapper.insertBatch(chunk);
+            for (ConsultationMessages message : chunk) {
+                ids.add(message.getId());
+            }
+        }
+        updateConversationSummaries(messages);
+        updateUnreadCounters(update -> update.messagesSaved(messages));
+        afterCommit(() -> {
+            conversationMessageCache.onMessagesSaved(messages);
+            messageSearchIndex.onMessagesSaved(messages);
+        });
+        return ids;
+    }
+
+    @Override
+    @Transactional
+    public boolean removeById(Serializable id) {
+        return id != null && deleteMessages(List.of(Long.valueOf(id.toString()))) > 0;
+    }
+
+    @Override
+    @Transactional
+    public boolean removeByIds(Collection<?> list) {
+        if (list == null || list.isEmpty()) {
             return false;
         }
+        List<Long> ids = new ArrayList<>(list.size());
+        for (Object id : list) {
+            ids.add(Long.valueOf(id.toString()));
+        }
+        return deleteMessages(ids) > 0;
     }
 
     @Override
@@ -58,21 +163,96 @@ public class ConsultationMessagesServiceImpl extends ServiceImpl<ConsultationMes
         if (offset == null) {
             offset = 0;
         }
+        // 第一页优先从会话缓存读取，缓存项加载时已合并归档消息，命中时不再查询归档表
+        if (offset == 0) {
+            List<ConsultationMessages> cached = conversationMessageCache.getLatest(userId, counselorId, limit,
+                    () -> loadLatestMessages(userId, counselorId));
+            if (cached != null) {
+                return cached;
+            }
+        }
         List<ConsultationMessages> messages = consultationMessagesMapper.getConversationByUserAndCounselor(userId, counselorId, limit, offset);
-        return processMessagesTime(messages);
+        if (!reachesArchive(messages, limit)) {
+            return messages;
+        }
+        // 热表已翻完或已翻到归档边界之前：未读消息不归档，热表和归档表的消息可能交错，
+        // 按 (sentTime, id) 合并两表最新的offset+limit条后再取当前页
+        int window = offset + limit;
+        List<ConsultationMessages> hot = offset == 0 ? messages
+                : consultationMessagesMapper.getConversationByUserAndCounselor(userId, counselorId, window, 0);
+        List<ConsultationMessages> archived = consultationMessagesArchiveMapper.getConversationByUserAndCounselor(
+                userId, counselorId, window, 0);
+        List<ConsultationMessages> merged = merge(hot, archived, NEWEST_FIRST, window);
+        return merged.size() > offset ? new ArrayList<>(merged.subList(offset, merged.size())) : new ArrayList<>();
+    }
+
+    @Override
+    public MessageCursorPage getConversationByCursor(Long userId, Long counselorId, Instant beforeTime, Long beforeId, Integer limit) {
+        if ((beforeTime == null) != (beforeId == null)) {
+            // 只传一半游标时不能退回第一页，否则客户端会重复加载同一页
+            throw new IllegalArgumentException("beforeId和beforeTime需同时传入或同时省略");
+        }
+        if (limit == null) {
+            limit = 50;
+        }
+        // 多取一条用于判断是否还有更早的消息；第一页优先从会话缓存读取，缓存项加载时已合并归档消息
+        List<ConsultationMessages> messages = null;
+        if (beforeTime == null || beforeId == null) {
+            messages = conversationMessageCache.getLatest(userId, counselorId, limit + 1,
+                    () -> loadLatestMessages(userId, counselorId));
+        }
+        if (messages == null) {
+            messages = consultationMessagesMapper.getConversationBeforeCursor(
+                    userId, counselorId, beforeTime, beforeId, limit + 1);
+            messages = withArchived(userId, counselorId, messages, beforeTime, beforeId, limit + 1);
+        }
+        MessageCursorPage.Cursor nextCursor = null;
+        if (messages.size() > limit) {
+            messages = new ArrayList<>(messages.subList(0, limit));
+            ConsultationMessages last = messages.get(messages.size() - 1);
+            nextCursor = new MessageCursorPage.Cursor(last.getId(), last.getSentTime());
+        }
+        return new MessageCursorPage(messages, nextCursor);
+    }
+
+    @Override
+    public MessageSearchPage searchMessages(Long userId, Long counselorId, String query, Integer limit, Integer offset) {
+        if (userId == null && counselorId == null) {
+            throw new IllegalArgumentException("userId和counselorId至少需要一个");
+        }
+        if (query == null || query.isBlank()) {
+            throw new IllegalArgumentException("检索词不能为空");
+        }
+        int size = limit != null ? limit : 20;
+        int from = offset != null ? offset : 0;
+        if (size <= 0 || size > 100 || from < 0) {
+            throw new IllegalArgumentException("limit需在1到100之间，offset不能为负数");
+        }
+        if (from + size > searchMaxWindow) {
+            throw new IllegalArgumentException("检索结果最多翻到第" + searchMaxWindow + "条，请缩小检索范围");
+        }
+        MessageSearchIndex.SearchResult result = messageSearchIndex.search(userId, counselorId, query, size, from);
+        // 索引中只有ID，消息内容按命中顺序回表读取
+        return new MessageSearchPage(result.total(), loadByIds(result.ids()));
+    }
+
+    @Override
+    public boolean rebuildSearchIndex() {
+        return messageSearchIndex.rebuildAsync();
     }
 
     @Override
     public List<ConsultationMessages> getMessagesByAppointmentId(Long appointmentId) {
         List<ConsultationMessages> messages = consultationMessagesMapper.getMessagesByAppointmentId(appointmentId);
-        return processMessagesTime(messages);
+        List<ConsultationMessages> archived = consultationMessagesArchiveMapper.getMessagesByAppointmentId(appointmentId);
+        return merge(messages, archived, NEWEST_FIRST.reversed(), Integer.MAX_VALUE);
     }
 
     @Override
     @Transactional
     public boolean updateReadStatus(Long id, Boolean readStatus) {
         try {
-            return consultationMessagesMapper.updateReadStatus(id, readStatus) > 0;
+            return changeReadStatus(List.of(id), readStatus);
         } catch (Exception e) {
             log.error("更新消息阅读状态失败: {}", e.getMessage(), e);
             return false;
@@ -86,66 +266,386 @@ public class ConsultationMessagesServiceImpl extends ServiceImpl<ConsultationMes
             return true;
         }
         try {
-            return consultationMessagesMapper.batchUpdateReadStatus(ids, readStatus) > 0;
+            return changeReadStatus(ids, readStatus);
         } catch (Exception e) {
             log.error("批量更新消息阅读状态失败: {}", e.getMessage(), e);
             return false;
         }
     }
 
+    @Override
+    @Transactional
+    public int markConversationRead(Long userId, Long counselorId, String readerType, Long upToMessageId, Instant upToTime) {
+        if (userId == null || counselorId == null || !UnreadCounterStore.isReceiverType(readerType)) {
+            throw new IllegalArgumentException("会话或读者类型无效");
+        }
+        if (upToMessageId != null) {
+            // 按消息ID标记时以该消息的 (sent_time, id) 为上界
+            ConsultationMessages upTo = getById(upToMessageId);
+            if (upTo == null || !userId.equals(upTo.getUserId()) || !counselorId.equals(upTo.getCounselorId())) {
+                throw new IllegalArgumentException("消息不属于该会话: " + upToMessageId);
+            }
+            upToTime = upTo.getSentTime();
+        } else if (upToTime == null) {
+            throw new IllegalArgumentException("upToMessageId和upToTime不能同时为空");
+        }
+        int marked = consultationMessagesMapper.markConversationRead(userId, counselorId, readerType, upToTime, upToMessageId);
+        if (marked > 0) {
+            Long readerId = UnreadCounterStore.USER.equals(readerType) ? userId : counselorId;
+            Long peerId = UnreadCounterStore.USER.equals(readerType) ? counselorId : userId;
+            Instant readUpTo = upToTime;
+            updateUnreadCounters(update -> update.conversationRead(readerType, readerId, peerId, marked));
+            afterCommit(() -> {
+                conversationMessageCache.onConversationRead(userId, counselorId, readerType, readUpTo, upToMessageId);
+                eventPublisher.publishEvent(new ConversationReadEvent(userId, counselorId, readerType, upToMessageId, readUpTo, marked));
+            });
+        }
+        return marked;
+    }
+
     @Override
     public int getUnreadMessageCount(Long receiverId, String receiverType) {
-        QueryWrapper<ConsultationMessages> queryWrapper = new QueryWrapper<>();
-        if ("USER".equals(receiverType)) {
-            queryWrapper.eq("user_id", receiverId);
-            queryWrapper.ne("sender_type", "USER");
-        } else if ("COUNSELOR".equals(receiverType)) {
-            queryWrapper.eq("counselor_id", receiverId);
-            queryWrapper.ne("sender_type", "COUNSELOR");
+        if (UnreadCounterStore.isReceiverType(receiverType)) {
+            // 由增量维护的未读计数直接返回
+            return Math.toIntExact(unreadCounterStore.getTotal(receiverType, receiverId));
         }
+        QueryWrapper<ConsultationMessages> queryWrapper = new QueryWrapper<>();
         queryWrapper.eq("read_status", false);
         // 将long转换为int
         return Math.toIntExact(count(queryWrapper));
     }
 
+    @Override
+    public UnreadCountDTO getUnreadCount(Long receiverId, String receiverType, Long peerId) {
+        long total = unreadCounterStore.getTotal(receiverType, receiverId);
+        Long conversationUnread = peerId != null ? unreadCounterStore.getConversation(receiverType, receiverId, peerId) : null;
+        return new UnreadCountDTO(receiverId, receiverType, total, peerId, conversationUnread);
+    }
+
     @Override
     public List<ConsultationMessages> getUserConversations(Long userId) {
-        QueryWrapper<ConsultationMessages> queryWrapper = new QueryWrapper<>();
-        queryWrapper.eq("user_id", userId);
-        queryWrapper.orderByDesc("sent_time");
-        // 这里可以添加分组逻辑，获取每个咨询师的最新消息
-        List<ConsultationMessages> messages = list(queryWrapper);
-        return processMessagesTime(messages);
+        return latestMessages(conversationSummaryMapper.getByUser(userId, Integer.MAX_VALUE, 0));
     }
 
     @Override
     public List<ConsultationMessages> getCounselorConversations(Long counselorId) {
-        QueryWrapper<ConsultationMessages> queryWrapper = new QueryWrapper<>();
-        queryWrapper.eq("counselor_id", counselorId);
-        queryWrapper.orderByDesc("sent_time");
-        // 这里可以添加分组逻辑，获取每个用户的最新消息
-        List<ConsultationMessages> messages = list(queryWrapper);
-        return processMessagesTime(messages);
+        return latestMessages(conversationSummaryMapper.getByCounselor(counselorId, Integer.MAX_VALUE, 0));
+    }
+
+    @Override
+    public List<ConversationSummaryDTO> getConversationSummaries(String ownerType, Long ownerId, Integer limit, Integer offset) {
+        if (limit == null) {
+            limit = 20;
+        }
+        if (offset == null) {
+            offset = 0;
+        }
+        boolean ownerIsUser = UnreadCounterStore.USER.equals(ownerType);
+        List<ConversationSummary> summaries = ownerIsUser
+                ? conversationSummaryMapper.getByUser(ownerId, limit, offset)
+                : conversationSummaryMapper.getByCounselor(ownerId, limit, offset);
+        Map<Long, Long> unreadByPeer = unreadCounterStore.getByPeer(ownerType, ownerId);
+        List<ConversationSummaryDTO> result = new ArrayList<>(summaries.size());
+        for (ConversationSummary summary : summaries) {
+            ConversationSummaryDTO dto = new ConversationSummaryDTO();
+            Long peerId = ownerIsUser ? summary.getCounselorId() : summary.getUserId();
+            dto.setPeerId(peerId);
+            dto.setLastMessageId(summary.getLastMessageId());
+            dto.setLastSenderType(summary.getLastSenderType());
+            dto.setLastMessageType(summary.getLastMessageType());
+            dto.setLastContent(summary.getLastContent());
+            dto.setLastSentTime(summary.getLastSentTime());
+            dto.setUnreadCount(unreadByPeer.getOrDefault(peerId, 0L));
+            result.add(dto);
+        }
+        return result;
     }
     
     /**
-     * 处理消息时间：将北京时间减8小时并格式化为带T的格式
+     * 按会话摘要的顺序取出每个会话的最新消息
      */
-    private List<ConsultationMessages> processMessagesTime(List<ConsultationMessages> messages) {
-        if (messages == null || messages.isEmpty()) {
-            return messages;
+    private List<ConsultationMessages> latestMessages(List<ConversationSummary> summaries) {
+        if (summaries.isEmpty()) {
+            return new ArrayList<>();
         }
-        
-        // 由于LocalDateTime是不可变的，我们需要创建新的消息对象来设置格式化后的时间
-        // 注意：这里不修改原始的LocalDateTime对象，而是通过自定义序列化或在控制器层处理
-        // 但考虑到需求，我们直接修改返回的消息列表中的时间
-        for (ConsultationMessages message : messages) {
-            if (message.getSentTime() != null) {
-                // 将时间减8小时
-                LocalDateTime adjustedTime = message.getSentTime().minusHours(8);
-                message.setSentTime(adjustedTime);
+        List<Long> ids = new ArrayList<>(summaries.size());
+        summaries.forEach(summary -> ids.add(summary.getLastMessageId()));
+        return loadByIds(ids);
+    }
+    
+    /**
+     * 按给定ID的顺序从热表取出消息，热表中没有的再查归档表
+     */
+    private List<ConsultationMessages> loadByIds(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Long, ConsultationMessages> byId = new HashMap<>();
+        for (ConsultationMessages message : listByIds(ids)) {
+            byId.put(message.getId(), message);
+        }
+        if (byId.size() < ids.size()) {
+            // 较早的消息可能已归档
+            List<Long> missing = new ArrayList<>();
+            for (Long id : ids) {
+                if (!byId.containsKey(id)) {
+                    missing.add(id);
+                }
+            }
+            for (ConsultationMessages message : consultationMessagesArchiveMapper.selectByIds(missing)) {
+                byId.put(message.getId(), message);
+            }
+        }
+        List<ConsultationMessages> messages = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            ConsultationMessages message = byId.get(id);
+            if (message != null) {
+                messages.add(message);
             }
         }
         return messages;
     }
+    
+    /**
+     * 热表结果不足一页，或已翻到归档边界之前时，从归档表取同一游标之前的消息合并
+     * 未读消息不归档，所以热表中可能有早于归档边界的消息，需要按 (sentTime, id) 合并而不是直接拼接
+     */
+    private List<ConsultationMessages> withArchived(Long userId, Long counselorId, List<ConsultationMessages> hot,
+                                                    Instant beforeTime, Long beforeId, int limit) {
+        if (!reachesArchive(hot, limit)) {
+            return hot;
+        }
+        List<ConsultationMessages> archived = consultationMessagesArchiveMapper.getConversationBeforeCursor(
+                userId, counselorId, beforeTime, beforeId, limit);
+        return merge(hot, archived, NEWEST_FIRST, limit);
+    }
+    
+    /**
+     * 热表结果是否可能与归档消息交错：不足一页（热表已翻完），或最早一条已早于归档边界
+     * 归档表中的消息都早于归档边界，满页且最早一条不早于边界时，归档消息只会排在这一页之后
+     */
+    private boolean reachesArchive(List<ConsultationMessages> hot, int limit) {
+        return hot.size() < limit || hot.get(hot.size() - 1).getSentTime().isBefore(messageArchiveService.getArchiveHorizon());
+    }
+    
+    /**
+     * 合并热表和归档表的结果，按order排列并按ID去重：两次查询之间可能有消息被归档
+     */
+    private List<ConsultationMessages> merge(List<ConsultationMessages> hot, List<ConsultationMessages> archived,
+                                             Comparator<ConsultationMessages> order, int limit) {
+        if (archived.isEmpty()) {
+            return hot;
+        }
+        Set<Long> seen = new HashSet<>();
+        List<ConsultationMessages> merged = new ArrayList<>(hot.size() + archived.size());
+        for (ConsultationMessages message : hot) {
+            seen.add(message.getId());
+            merged.add(message);
+        }
+        for (ConsultationMessages message : archived) {
+            if (seen.add(message.getId())) {
+                merged.add(message);
+            }
+        }
+        merged.sort(order);
+        return merged.size() > limit ? new ArrayList<>(merged.subList(0, limit)) : merged;
+    }
+    
+    /**
+     * 在同一事务内更新会话摘要：同一批次中每个会话只写入最新的一条，按主键顺序写入避免并发事务互相死锁
+     */
+    private void updateConversationSummaries(List<ConsultationMessages> messages) {
+        Comparator<ConsultationMessages> byTime = Comparator.comparing(ConsultationMessages::getSentTime)
+                .thenComparing(ConsultationMessages::getId);
+        Map<ConversationId, ConsultationMessages> latest = new TreeMap<>(
+                Comparator.comparing(ConversationId::userId).thenComparing(ConversationId::counselorId));
+        for (ConsultationMessages message : messages) {
+            if (message.getUserId() == null || message.getCounselorId() == null || message.getId() == null) {
+                continue;
+            }
+            latest.merge(new ConversationId(message.getUserId(), message.getCounselorId()), message,
+                    (current, candidate) -> byTime.compare(candidate, current) > 0 ? candidate : current);
+        }
+        if (latest.isEmpty()) {
+            return;
+        }
+        List<ConversationSummary> summaries = new ArrayList<>(latest.size());
+        for (ConsultationMessages message : latest.values()) {
+            summaries.add(toSummary(message));
+        }
+        for (int from = 0; from < summaries.size(); from += insertChunkSize) {
+            conversationSummaryMapper.upsertLatest(summaries.subList(from, Math.min(from + insertChunkSize, summaries.size())));
+        }
+    }
+    
+    /**
+     * 在删除消息的同一事务内重算会话摘要：按主键顺序锁定摘要行，最新消息被删除时改为剩余的最新消息，会话已无消息时删除摘要
+     */
+    private void recomputeConversationSummaries(List<ConsultationMessages> deleted) {
+        Map<ConversationId, Set<Long>> deletedIds = new TreeMap<>(
+                Comparator.comparing(ConversationId::userId).thenComparing(ConversationId::counselorId));
+        for (ConsultationMessages message : deleted) {
+            if (message.getUserId() == null || message.getCounselorId() == null) {
+                continue;
+            }
+            deletedIds.computeIfAbsent(new ConversationId(message.getUserId(), message.getCounselorId()), k -> new HashSet<>())
+                    .add(message.getId());
+        }
+        for (Map.Entry<ConversationId, Set<Long>> entry : deletedIds.entrySet()) {
+            Long userId = entry.getKey().userId();
+            Long counselorId = entry.getKey().counselorId();
+            ConversationSummary summary = conversationSummaryMapper.selectForUpdate(userId, counselorId);
+            if (summary == null || !entry.getValue().contains(summary.getLastMessageId())) {
+                continue;
+            }
+            // 本事务已删除的消息不可见，查到的就是剩余的最新消息
+            List<ConsultationMessages> hot = consultationMessagesMapper.getConversationBeforeCursor(userId, counselorId, null, null, 1);
+            List<ConsultationMessages> latest = withArchived(userId, counselorId, hot, null, null, 1);
+            if (latest.isEmpty()) {
+                conversationSummaryMapper.deleteByConversation(userId, counselorId);
+            } else {
+                conversationSummaryMapper.replaceLatest(toSummary(latest.get(0)));
+            }
+        }
+    }
+    
+    private static ConversationSummary toSummary(ConsultationMessages message) {
+        ConversationSummary summary = new ConversationSummary();
+        summary.setUserId(message.getUserId());
+        summary.setCounselorId(message.getCounselorId());
+        summary.setLastMessageId(message.getId());
+        summary.setLastSenderType(message.getSenderType());
+        summary.setLastMessageType(message.getMessageType());
+        String content = message.getContent();
+        summary.setLastContent(content != null && content.length() > 200 ? content.substring(0, 200) : content);
+        summary.setLastSentTime(message.getSentTime());
+        return summary;
+    }
+    
+    /**
+     * 锁定消息行后只更新阅读状态实际变化的消息，并按变化调整未读计数
+     * @return 消息存在时返回true
+     */
+    private boolean changeReadStatus(List<Long> ids, Boolean readStatus) {
+        boolean target = Boolean.TRUE.equals(readStatus);
+        List<ConsultationMessages> current = consultationMessagesMapper.selectReadStateForUpdate(ids);
+        List<ConsultationMessages> changed = new ArrayList<>();
+        for (ConsultationMessages message : current) {
+            if (Boolean.TRUE.equals(message.getReadStatus()) != target) {
+                changed.add(message);
+            }
+        }
+        if (!changed.isEmpty()) {
+            List<Long> changedIds = new ArrayList<>(changed.size());
+            changed.forEach(message -> changedIds.add(message.getId()));
+            consultationMessagesMapper.batchUpdateReadStatus(changedIds, target);
+            updateUnreadCounters(update -> update.readStatusChanged(changed, target));
+            afterCommit(() -> conversationMessageCache.onReadStatusUpdated(changed, target));
+        }
+        return !current.isEmpty();
+    }
+    
+    /**
+     * 锁定并删除消息（热表和归档表），扣除其中未读消息的计数并重算会话摘要；事务提交后移除会话缓存和全文索引文档
+     * @return 删除的条数
+     */
+    private int deleteMessages(List<Long> ids) {
+        List<ConsultationMessages> hot = consultationMessagesMapper.selectReadStateForUpdate(ids);
+        List<ConsultationMessages> archived = consultationMessagesArchiveMapper.selectReadStateForUpdate(ids);
+        // 归档过程中消息可能同时在两张表中，按ID去重
+        List<ConsultationMessages> current = merge(hot, archived, Comparator.comparing(ConsultationMessages::getId), Integer.MAX_VALUE);
+        if (current.isEmpty()) {
+            return 0;
+        }
+        List<Long> deletedIds = new ArrayList<>(current.size());
+        List<ConsultationMessages> unread = new ArrayList<>();
+        for (ConsultationMessages message : current) {
+            deletedIds.add(message.getId());
+            if (!Boolean.TRUE.equals(message.getReadStatus())) {
+                unread.add(message);
+            }
+        }
+        if (!hot.isEmpty()) {
+            consultationMessagesMapper.deleteByIds(hot.stream().map(ConsultationMessages::getId).toList());
+        }
+        if (!archived.isEmpty()) {
+            consultationMessagesArchiveMapper.deleteByIds(archived.stream().map(ConsultationMessages::getId).toList());
+        }
+        int deleted = deletedIds.size();
+        recomputeConversationSummaries(current);
+        if (!unread.isEmpty()) {
+            updateUnreadCounters(update -> update.readStatusChanged(unread, true));
+        }
+        afterCommit(() -> {
+            conversationMessageCache.onMessagesDeleted(current);
+            messageSearchIndex.onMessagesDeleted(deletedIds);
+        });
+        return deleted;
+    }
+
+    /**
+     * 在事务内登记未读计数变化，事务提交后生效、回滚后丢弃；没有事务时立即生效
+     */
+    private void updateUnreadCounters(Consumer<UnreadCounterStore.Update> changes) {
+        UnreadCounterStore.Update update = unreadCounterStore.begin();
+        changes.accept(update);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            update.complete(true);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                update.complete(status == STATUS_COMMITTED);
+            }
+        });
+    }
+    
+    /**
+     * 从数据库加载会话最新的N+1条消息（含归档消息），用于填充会话缓存
+     * 缓存项因此总是热表和归档表合起来的最新N+1条：不足N+1条时就是会话的全部消息，命中缓存时无需再查归档表
+     */
+    private List<ConsultationMessages> loadLatestMessages(Long userId, Long counselorId) {
+        int window = conversationMessageCache.getWindowSize();
+        List<ConsultationMessages> hot = consultationMessagesMapper.getConversationBeforeCursor(userId, counselorId, null, null, window);
+        return withArchived(userId, counselorId, hot, null, null, window);
+    }
+    
+    /**
+     * 在当前事务提交后执行，保证缓存只反映已提交的数据；没有事务时立即执行
+     */
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+    
+    /**
+     * 设置消息默认值
+     */
+    private void applyDefaults(ConsultationMessages message) {
+        if (message.getSentTime() == null) {
+            // DATETIME列精度为秒，与落库后读出的时间保持一致，游标比较才不会出现偏差
+            message.setSentTime(Instant.now().truncatedTo(ChronoUnit.SECONDS));
+        }
+        if (message.getMessageType() == null) {
+            message.setMessageType("TEXT");
+        }
+        if (message.getReadStatus() == null) {
+            message.setReadStatus(false);
+        }
+        if (message.getConversationType() == null) {
+            message.setConversationType("PRE_CONSULTATION");
+        }
+    }
+    
+    private record ConversationId(Long userId, Long counselorId) {
+    }
 }
\ No newline at end of file
@@ -0,0 +1,91 @@
+package com.example.service.impl;
+
+import com.example.cache.CounselorFilterIndex;
+import com.example.entity.Tag;
+import com.example.mapper.CounselorTagMapper;
+import com.example.service.CounselorTagService;
+import jakarta.annotation.Resource;
+import org.json.JSONArray;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 咨询师标签服务实现类
+ */
+@Service
+public class CounselorTagServiceImpl implements CounselorTagService {
+
+    private static final Logger log = LoggerFactory.getLogger(CounselorTagServiceImpl.class);
+
+    @Resource
+    private CounselorTagMapper counselorTagMapper;
+
+    @Resource
+    private CounselorFilterIndex counselorFilterIndex;
+
+    @Transactional
+    @Override
+    public void syncTags(Long counselorId, String specialization, String therapeuticApproach, String serviceTypes) {
+        if (counselorId == null) {
+            return;
+        }
+        syncType(counselorId, SPECIALIZATION, specialization);
+        syncType(counselorId, APPROACH, therapeuticApproach);
+        syncType(counselorId, SERVICE_TYPE, serviceTypes);
+        counselorFilterIndex.reloadAfterCommit(counselorId);
+    }
+
+    @Transactional
+    @Override
+    public void removeTags(Long counselorId) {
+        counselorTagMapper.deleteCounselorTags(counselorId, null);
+        counselorFilterIndex.reloadAfterCommit(counselorId);
+    }
+
+    private void syncType(Long counselorId, String tagType, String json) {
+        if (json == null) {
+            return;
+        }
+        counselorTagMapper.deleteCounselorTags(counselorId, tagType);
+        Set<String> names = parseTags(json);
+        if (names.isEmpty()) {
+            return;
+        }
+        counselorTagMapper.insertTags(tagType, names);
+        List<Long> tagIds = new ArrayList<>(names.size());
+        for (Tag tag : counselorTagMapper.selectTags(tagType, names)) {
+            tagIds.add(tag.getId());
+        }
+        counselorTagMapper.insertCounselorTags(counselorId, tagType, tagIds);
+    }
+
+    /**
+     * 解析JSON数组中的标签，去掉空值和重复值；解析失败时按没有标签处理
+     */
+    private Set<String> parseTags(String json) {
+        Set<String> names = new LinkedHashSet<>();
+        if (!StringUtils.hasText(json)) {
+            return names;
+        }
+        try {
+            JSONArray jsonArray = new JSONArray(json);
+            for (int i = 0; i < jsonArray.length(); i++) {
+                String tag = jsonArray.optString(i, null);
+                if (StringUtils.hasText(tag)) {
+                    names.add(tag);
+                }
+            }
+        } catch (Exception e) {
+            log.error("解析咨询师标签失败: {}", e.getMessage());
+        }
+        return names;
+    }
+}
@@ -2,28 +2,35 @@ package com.example.service.impl;
 
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.example.cache.CounselorFilterIndex;
+import com.example.cache.CounselorTagVocabulary;
 import com.example.dto.CounselorDTO;
+import com.example.dto.TagVocabulary;
 import com.example.entity.Counselors;
 import com.example.entity.CounselorServiceSettings;
 import com.example.entity.Users;
 import com.example.mapper.CounselorsMapper;
 import com.example.service.CounselorsService;
 import com.example.service.CounselorServiceSettingsService;
+import com.example.service.CounselorTagService;
 import com.example.service.UsersService;
 import jakarta.annotation.Resource;
-import org.json.JSONArray;
+import org.roaringbitmap.RoaringBitmap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.CollectionUtils;
 import org.springframework.util.StringUtils;
 
+import java.io.Serializable;
+import java.math.BigDecimal;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -42,87 +49,125 @@ public class CounselorsServiceImpl extends ServiceImpl<CounselorsMapper, Counsel
     @Resource
     private CounselorServiceSettingsService counselorServiceSettingsService;
 
+    @Resource
+    private CounselorTagService counselorTagService;
+
+    @Resource
+    private CounselorFilterIndex counselorFilterIndex;
+
+    @Resource
+    private CounselorTagVocabulary counselorTagVocabulary;
+
+    // 一条查询中ID列表的最大长度，超过时改为排除未命中的咨询师或分页查询
+    @Value("${counselor.filter-index.max-in-list:1000}")
+    private int maxInList;
+
     @Override
     public List<CounselorDTO> searchAndFilterCounselors(CounselorDTO counselorDTO) {
-        QueryWrapper<Counselors> queryWrapper = new QueryWrapper<>();
+        List<String> specializationTags = counselorDTO.getSpecializationTags();
+        List<String> approachTags = counselorDTO.getTherapeuticApproachTags();
+        List<String> serviceTypeTags = counselorDTO.getServiceTypeTags();
+        String gender = counselorDTO.getGenderFilter();
+        BigDecimal minFee = counselorDTO.getMinFeeFilter();
+        BigDecimal maxFee = counselorDTO.getMaxFeeFilter();
+        
+        // 筛选条件先在内存中的筛选索引上做位图运算，再按ID查询；索引未就绪时全部由数据库筛选
+        if (!CollectionUtils.isEmpty(specializationTags) || !CollectionUtils.isEmpty(approachTags)
+                || !CollectionUtils.isEmpty(serviceTypeTags) || StringUtils.hasText(gender)
+                || minFee != null || maxFee != null) {
+            Map<String, List<String>> filters = new LinkedHashMap<>();
+            filters.put(CounselorTagService.SPECIALIZATION, specializationTags);
+            filters.put(CounselorTagService.APPROACH, approachTags);
+            filters.put(CounselorTagService.SERVICE_TYPE, serviceTypeTags);
+            filters.put(CounselorFilterIndex.GENDER, StringUtils.hasText(gender) ? List.of(gender) : null);
+            if (minFee != null || maxFee != null) {
+                filters.put(CounselorFilterIndex.FEE, counselorFilterIndex.feeBuckets(minFee, maxFee));
+            }
+            CounselorFilterIndex.ApprovedMatch match = counselorFilterIndex.matchApproved(filters);
+            if (match != null) {
+                return selectMatched(counselorDTO.getKeyword(), match, gender, minFee, maxFee);
+            }
+        }
         
-        // 关键词搜索
-        if (StringUtils.hasText(counselorDTO.getKeyword())) {
-            String keyword = "%" + counselorDTO.getKeyword() + "%";
-            queryWrapper.and(wrapper -> wrapper
-                    .like("real_name", keyword)
-                    .or().like("specialization", keyword)
-                    .or().like("therapeutic_approach", keyword)
-                    .or().like("introduction", keyword)
-            );
+        // 关键词和咨询费的精确区间在数据库中判断，只返回匹配的咨询师
+        return baseMapper.selectCounselorDTOs(
+                counselorDTO.getKeyword(),
+                null,
+                null,
+                specializationTags,
+                approachTags,
+                serviceTypeTags,
+                gender,
+                minFee,
+                maxFee);
+    }
+
+    /**
+     * 按筛选索引的结果查询，ID列表不超过 maxInList 个：
+     * 1. 命中全部已审核咨询师时不加ID条件
+     * 2. 未命中的较少时排除未命中的咨询师（NOT IN）
+     * 3. 否则把命中的ID按升序分页查询后依次拼接，结果仍按咨询师ID排序
+     * 性别同时在数据库中判断，索引更新前用户刚修改性别时也不会返回不符合条件的咨询师
+     */
+    private List<CounselorDTO> selectMatched(String keyword, CounselorFilterIndex.ApprovedMatch match, String gender,
+                                             BigDecimal minFee, BigDecimal maxFee) {
+        RoaringBitmap matched = match.matched();
+        RoaringBitmap excluded = match.excluded();
+        if (matched.isEmpty()) {
+            return new ArrayList<>();
         }
+        if (excluded.getCardinality() <= maxInList && excluded.getCardinality() < matched.getCardinality()) {
+            return baseMapper.selectCounselorDTOs(keyword, null, excluded.isEmpty() ? null : toIds(excluded),
+                    null, null, null, gender, minFee, maxFee);
+        }
+        List<Long> ids = toIds(matched);
+        List<CounselorDTO> result = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += maxInList) {
+            List<Long> page = ids.subList(from, Math.min(from + maxInList, ids.size()));
+            result.addAll(baseMapper.selectCounselorDTOs(keyword, page, null, null, null, null, gender, minFee, maxFee));
+        }
+        return result;
+    }
 
-        // 按状态筛选（默认查询已通过的咨询师）
-        queryWrapper.eq("status", "APPROVED");
+    private static List<Long> toIds(RoaringBitmap bitmap) {
+        List<Long> ids = new ArrayList<>(bitmap.getCardinality());
+        bitmap.forEach((int id) -> ids.add((long) id));
+        return ids;
+    }
 
-        // 执行查询
-        List<Counselors> counselorsList = baseMapper.selectList(queryWrapper);
-        
-        // 转换为DTO并关联相关信息
-        List<CounselorDTO> result = new ArrayList<>();
-        for (Counselors counselor : counselorsList) {
-            CounselorDTO dto = convertToDTO(counselor);
-            result.add(dto);
+    /**
+     * 审核状态和咨询费是筛选条件，写入咨询师后在事务提交后刷新筛选索引（saveOrUpdate 也经过这里）
+     */
+    @Override
+    public boolean save(Counselors entity) {
+        boolean saved = super.save(entity);
+        if (saved) {
+            counselorFilterIndex.reloadAfterCommit(entity.getId());
         }
+        return saved;
+    }
 
-        // 进行额外的标签筛选（在内存中进行，因为涉及JSON字段的解析）
-        if (!CollectionUtils.isEmpty(counselorDTO.getSpecializationTags()) || 
-            !CollectionUtils.isEmpty(counselorDTO.getTherapeuticApproachTags()) || 
-            !CollectionUtils.isEmpty(counselorDTO.getServiceTypeTags()) || 
-            StringUtils.hasText(counselorDTO.getGenderFilter())) {
-            
-            List<CounselorDTO> filteredResult = new ArrayList<>();
-            for (CounselorDTO dto : result) {
-                boolean match = true;
-                
-                // 擅长领域筛选
-                if (!CollectionUtils.isEmpty(counselorDTO.getSpecializationTags()) && StringUtils.hasText(dto.getSpecialization())) {
-                    match = counselorDTO.getSpecializationTags().stream().anyMatch(tag -> 
-                        dto.getSpecialization().contains(tag)
-                    );
-                }
-                
-                // 治疗流派筛选
-                if (match && !CollectionUtils.isEmpty(counselorDTO.getTherapeuticApproachTags()) && StringUtils.hasText(dto.getTherapeuticApproach())) {
-                    match = counselorDTO.getTherapeuticApproachTags().stream().anyMatch(tag -> 
-                        dto.getTherapeuticApproach().contains(tag)
-                    );
-                }
-                
-                // 服务类型筛选
-                if (match && !CollectionUtils.isEmpty(counselorDTO.getServiceTypeTags()) && StringUtils.hasText(dto.getServiceTypes())) {
-                    match = counselorDTO.getServiceTypeTags().stream().anyMatch(tag -> 
-                        dto.getServiceTypes().contains(tag)
-                    );
-                }
-                
-                // 性别筛选
-                if (match && StringUtils.hasText(counselorDTO.getGenderFilter()) && StringUtils.hasText(dto.getGender())) {
-                    match = counselorDTO.getGenderFilter().equals(dto.getGender());
-                }
-                
-                if (match) {
-                    filteredResult.add(dto);
-                }
-            }
-            result = filteredResult;
+    @Override
+    public boolean updateById(Counselors entity) {
+        boolean updated = super.updateById(entity);
+        if (updated) {
+            counselorFilterIndex.reloadAfterCommit(entity.getId());
         }
-        
-        return result;
+        return updated;
     }
 
     @Override
-    public CounselorDTO getCounselorDetail(Long counselorId) {
-        Counselors counselor = baseMapper.selectById(counselorId);
-        if (counselor == null) {
-            return null;
+    public boolean removeById(Serializable id) {
+        boolean removed = super.removeById(id);
+        if (removed) {
+            counselorFilterIndex.reloadAfterCommit(Long.valueOf(id.toString()));
         }
-        return convertToDTO(counselor);
+        return removed;
+    }
+
+    @Override
+    public CounselorDTO getCounselorDetail(Long counselorId) {
+        return baseMapper.selectCounselorDTOById(counselorId);
     }
 
     @Transactional
@@ -145,6 +190,10 @@ public class CounselorsServiceImpl extends ServiceImpl<CounselorsMapper, Counsel
         settings.setCounselorId(counselor.getId());
         boolean settingsResult = counselorServiceSettingsService.saveOrUpdate(settings);
         
+        // 同步标签关联表，未传的标签类型保持不变
+        counselorTagService.syncTags(counselor.getId(), counselor.getSpecialization(),
+                counselor.getTherapeuticApproach(), settings.getServiceTypes());
+        
         return counselorResult && settingsResult;
     }
 
@@ -164,109 +213,17 @@ public class CounselorsServiceImpl extends ServiceImpl<CounselorsMapper, Counsel
         settingsQuery.eq("counselor_id", counselorId);
         boolean settingsResult = counselorServiceSettingsService.remove(settingsQuery);
         
+        // 删除标签关联
+        counselorTagService.removeTags(counselorId);
+        
         // 这里可以选择是否删除关联的用户信息，根据业务需求决定
         // usersService.removeById(counselor.getUserId());
         
         return counselorResult && settingsResult;
     }
 
-    /**
-     * 将咨询师实体转换为DTO，并关联用户信息和服务设置
-     */
-    private CounselorDTO convertToDTO(Counselors counselor) {
-        CounselorDTO dto = new CounselorDTO();
-        BeanUtils.copyProperties(counselor, dto);
-        dto.setCounselorId(counselor.getId());
-        
-        // 关联用户信息
-        Users user = usersService.getById(counselor.getUserId());
-        if (user != null) {
-            BeanUtils.copyProperties(user, dto);
-            dto.setUserId(user.getId());
-            dto.setUserStatus(user.getStatus());
-        }
-        
-        // 关联服务设置
-        QueryWrapper<CounselorServiceSettings> settingsQuery = new QueryWrapper<>();
-        settingsQuery.eq("counselor_id", counselor.getId());
-        CounselorServiceSettings settings = counselorServiceSettingsService.getOne(settingsQuery);
-        if (settings != null) {
-            BeanUtils.copyProperties(settings, dto);
-            dto.setServiceSettingsId(settings.getId());
-        }
-        
-        return dto;
-    }
-    
     @Override
-    public List<String> getAllSpecializations() {
-        // 创建查询包装器，只查询已通过审核的咨询师
-        QueryWrapper<Counselors> queryWrapper = new QueryWrapper<>();
-        queryWrapper.eq("status", "APPROVED");
-        
-        // 查询所有已通过审核的咨询师
-        List<Counselors> counselorsList = baseMapper.selectList(queryWrapper);
-        
-        // 使用Set来去重
-        Set<String> specializationsSet = new HashSet<>();
-        
-        // 解析每个咨询师的擅长领域
-        for (Counselors counselor : counselorsList) {
-            String specializationStr = counselor.getSpecialization();
-            if (StringUtils.hasText(specializationStr)) {
-                try {
-                    // 解析JSON数组字符串
-                    JSONArray jsonArray = new JSONArray(specializationStr);
-                    for (int i = 0; i < jsonArray.length(); i++) {
-                        String tag = jsonArray.getString(i);
-                        if (StringUtils.hasText(tag)) {
-                            specializationsSet.add(tag);
-                        }
-                    }
-                } catch (Exception e) {
-                    // 如果解析失败，记录错误但继续处理
-                    log.error("解析擅长领域失败: {}", e.getMessage());
-                }
-            }
-        }
-        
-        // 转换为List并返回
-        return new ArrayList<>(specializationsSet);
-    }
-    
-    @Override
-    public List<String> getAllTherapeuticApproaches() {
-        // 创建查询包装器，只查询已通过审核的咨询师
-        QueryWrapper<Counselors> queryWrapper = new QueryWrapper<>();
-        queryWrapper.eq("status", "APPROVED");
-        
-        // 查询所有已通过审核的咨询师
-        List<Counselors> counselorsList = baseMapper.selectList(queryWrapper);
-        
-        // 使用Set来去重
-        Set<String> approachesSet = new HashSet<>();
-        
-        // 解析每个咨询师的治疗流派
-        for (Counselors counselor : counselorsList) {
-            String approachStr = counselor.getTherapeuticApproach();
-            if (StringUtils.hasText(approachStr)) {
-                try {
-                    // 解析JSON数组字符串
-                    JSONArray jsonArray = new JSONArray(approachStr);
-                    for (int i = 0; i < jsonArray.length(); i++) {
-                        String tag = jsonArray.getString(i);
-                        if (StringUtils.hasText(tag)) {
-                            approachesSet.add(tag);
-                        }
-                    }
-                } catch (Exception e) {
-                    // 如果解析失败，记录错误但继续处理
-                    log.error("解析治疗流派失败: {}", e.getMessage());
-                }
-            }
-        }
-        
-        // 转换为List并返回
-        return new ArrayList<>(approachesSet);
+    public TagVocabulary getTagVocabulary(String tagType) {
+        return counselorTagVocabulary.get(tagType);
     }
 }
\ No newline at end of file
@@ -0,0 +1,124 @@
+package com.example.service.impl;
+
+import com.example.entity.ConsultationMessages;
+import com.example.mapper.ConsultationMessagesArchiveMapper;
+import com.example.mapper.ConsultationMessagesMapper;
+import com.example.service.MessageArchiveService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 消息归档服务实现类
+ * 1. 每批在独立事务中完成：查询候选ID、加行锁并确认仍为已读、复制到归档表、从热表删除
+ * 2. 只归档已读消息，未读计数和范围标记已读不受影响
+ * 3. 多个节点同时执行时，后加锁的一方读到已删除的行会跳过，不会重复归档
+ */
+@Service
+public class MessageArchiveServiceImpl implements MessageArchiveService {
+
+    private static final Logger log = LoggerFactory.getLogger(MessageArchiveServiceImpl.class);
+
+    @Resource
+    private ConsultationMessagesMapper consultationMessagesMapper;
+
+    @Resource
+    private ConsultationMessagesArchiveMapper consultationMessagesArchiveMapper;
+
+    @Resource
+    private TransactionTemplate transactionTemplate;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Value("${chat.archive.enabled:true}")
+    private boolean enabled;
+
+    @Value("${chat.archive.retention-days:180}")
+    private long retentionDays;
+
+    @Value("${chat.archive.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${chat.archive.max-batches-per-run:100}")
+    private int maxBatchesPerRun;
+
+    private Counter archivedCounter;
+
+    @PostConstruct
+    public void init() {
+        archivedCounter = meterRegistry.counter("chat.archive.messages");
+    }
+
+    /**
+     * 定时归档，每次最多处理maxBatchesPerRun批，剩余的留到下一次
+     */
+    @Scheduled(fixedDelayString = "${chat.archive.interval-ms:3600000}", initialDelayString = "${chat.archive.interval-ms:3600000}")
+    public void archive() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            int archived = archiveBefore(getArchiveHorizon());
+            if (archived > 0) {
+                log.info("归档{}条早于{}天的已读消息", archived, retentionDays);
+            }
+        } catch (Exception e) {
+            log.error("归档消息失败: {}", e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public int archiveBefore(Instant cutoff) {
+        int total = 0;
+        for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+            Integer moved = transactionTemplate.execute(status -> archiveBatch(cutoff));
+            if (moved == null || moved == 0) {
+                break;
+            }
+            total += moved;
+            archivedCounter.increment(moved);
+            if (moved < batchSize) {
+                break;
+            }
+        }
+        return total;
+    }
+
+    @Override
+    public Instant getArchiveHorizon() {
+        return Instant.now().minus(Duration.ofDays(retentionDays));
+    }
+
+    private int archiveBatch(Instant cutoff) {
+        List<Long> candidates = consultationMessagesMapper.selectArchivableIds(cutoff, batchSize);
+        if (candidates.isEmpty()) {
+            return 0;
+        }
+        // 加行锁后再次确认仍为已读，避免与标记未读并发
+        List<Long> ids = new ArrayList<>(candidates.size());
+        for (ConsultationMessages message : consultationMessagesMapper.selectReadStateForUpdate(candidates)) {
+            if (Boolean.TRUE.equals(message.getReadStatus())) {
+                ids.add(message.getId());
+            }
+        }
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        consultationMessagesArchiveMapper.copyFromHot(ids);
+        consultationMessagesMapper.deleteArchived(ids);
+        return ids.size();
+    }
+}
@@ -0,0 +1,207 @@
+package com.example.service.impl;
+
+import com.example.cache.UnreadCounterStore;
+import com.example.dto.MessageSyncRequest;
+import com.example.entity.ConsultationMessages;
+import com.example.entity.ConversationSummary;
+import com.example.mapper.ConsultationMessagesArchiveMapper;
+import com.example.mapper.ConsultationMessagesMapper;
+import com.example.mapper.ConversationSummaryMapper;
+import com.example.service.MessageSyncService;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/**
+ * 断线重连补发服务实现类
+ * 1. 落后的会话（lastSeen小于since）：先用会话摘要排除没有新消息的会话，再补发 (lastSeen, since] 区间
+ * 2. 所有会话中ID大于since的消息：按 (接收者, 消息ID) 索引一次范围扫描，覆盖断线期间新建的会话
+ * 3. 起点早于归档表中最大消息ID时同时查询归档表，按ID合并去重
+ * 4. 自增ID按分配顺序而不是提交顺序递增：并发事务中ID较小的消息可能晚于客户端已收到的较大ID提交。
+ *    每个起点都向前多扫描 chat.sync.overlap-ids 个ID，补上这类消息；重叠区间内客户端已有的消息会再次下发，
+ *    客户端按消息ID去重，同一次同步内服务器不重复下发同一条消息
+ */
+@Service
+public class MessageSyncServiceImpl implements MessageSyncService {
+
+    @Resource
+    private ConsultationMessagesMapper consultationMessagesMapper;
+
+    @Resource
+    private ConsultationMessagesArchiveMapper consultationMessagesArchiveMapper;
+
+    @Resource
+    private ConversationSummaryMapper conversationSummaryMapper;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Value("${chat.sync.batch-size:200}")
+    private int batchSize;
+
+    // 单次同步最多补发的消息数，超出时客户端需再次同步
+    @Value("${chat.sync.max-messages:2000}")
+    private int maxMessages;
+
+    // 每个起点向前重叠扫描的ID数，覆盖并发事务中ID较小但提交较晚的消息
+    @Value("${chat.sync.overlap-ids:500}")
+    private long overlapIds;
+
+    private DistributionSummary syncedMessages;
+
+    @PostConstruct
+    public void init() {
+        // 重叠区间不能用完单次同步的额度，否则客户端按收到的消息再次同步时无法前进
+        overlapIds = Math.max(0, Math.min(overlapIds, maxMessages / 2));
+        syncedMessages = meterRegistry.summary("chat.sync.messages");
+    }
+
+    @Override
+    public boolean sync(MessageSyncRequest request, Consumer<List<ConsultationMessages>> sink) {
+        if (!UnreadCounterStore.isReceiverType(request.getOwnerType()) || request.getOwnerId() == null) {
+            throw new IllegalArgumentException("ownerType需为USER或COUNSELOR，ownerId不能为空");
+        }
+        Map<Long, Long> lastSeen = request.getLastSeen() != null ? request.getLastSeen() : Map.of();
+        long since = request.getSinceMessageId() != null ? request.getSinceMessageId() : lastSeen.values().stream()
+                .filter(id -> id != null)
+                .mapToLong(Long::longValue)
+                .max()
+                .orElse(0L);
+        Long archivedMaxId = consultationMessagesArchiveMapper.selectMaxId();
+        SyncCursor cursor = new SyncCursor(request.getOwnerType(), request.getOwnerId(),
+                archivedMaxId != null ? archivedMaxId : 0L, sink);
+        try {
+            for (Map.Entry<Long, Long> lagging : laggingConversations(request, lastSeen, since).entrySet()) {
+                if (!cursor.drain(lagging.getKey(), overlapStart(lagging.getValue()), since, null)) {
+                    return true;
+                }
+            }
+            return !cursor.drain(null, overlapStart(since), null, lastSeen);
+        } finally {
+            syncedMessages.record(cursor.sent);
+        }
+    }
+
+    private long overlapStart(long afterId) {
+        return Math.max(0, afterId - overlapIds);
+    }
+
+    /**
+     * lastSeen小于since、且会话摘要中的最新消息晚于lastSeen的会话，按会话对方ID排序
+     */
+    private Map<Long, Long> laggingConversations(MessageSyncRequest request, Map<Long, Long> lastSeen, long since) {
+        Map<Long, Long> lagging = new TreeMap<>();
+        long oldest = Long.MAX_VALUE;
+        for (Map.Entry<Long, Long> entry : lastSeen.entrySet()) {
+            long seen = entry.getValue() != null ? entry.getValue() : 0L;
+            if (entry.getKey() != null && seen < since) {
+                oldest = Math.min(oldest, seen);
+            }
+        }
+        if (oldest == Long.MAX_VALUE) {
+            return lagging;
+        }
+        boolean counselor = "COUNSELOR".equals(request.getOwnerType());
+        for (ConversationSummary summary : conversationSummaryMapper.getChangedAfter(request.getOwnerType(), request.getOwnerId(), overlapStart(oldest))) {
+            Long peerId = counselor ? summary.getUserId() : summary.getCounselorId();
+            if (!lastSeen.containsKey(peerId)) {
+                continue;
+            }
+            long seen = lastSeen.get(peerId) != null ? lastSeen.get(peerId) : 0L;
+            if (seen < since && summary.getLastMessageId() > overlapStart(seen)) {
+                lagging.put(peerId, seen);
+            }
+        }
+        return lagging;
+    }
+
+    /**
+     * 一次同步的读取状态：剩余额度、已发送数和已发送的消息ID
+     */
+    private class SyncCursor {
+        private final String ownerType;
+        private final Long ownerId;
+        private final long archivedMaxId;
+        private final Consumer<List<ConsultationMessages>> sink;
+        private int sent;
+        private int budget = maxMessages;
+        // 落后会话和全局扫描的重叠区间可能读到同一条消息，只下发一次
+        private final Set<Long> sentIds = new HashSet<>();
+
+        SyncCursor(String ownerType, Long ownerId, long archivedMaxId, Consumer<List<ConsultationMessages>> sink) {
+            this.ownerType = ownerType;
+            this.ownerId = ownerId;
+            this.archivedMaxId = archivedMaxId;
+            this.sink = sink;
+        }
+
+        /**
+         * 分批读取 (afterId, upToId] 区间的消息交给sink
+         * @param skipSeen 不为空时跳过该会话已收到的消息（保留重叠区间）
+         * @return 区间已读完返回true，额度用完返回false
+         */
+        boolean drain(Long peerId, long afterId, Long upToId, Map<Long, Long> skipSeen) {
+            long from = afterId;
+            while (budget > 0) {
+                int limit = Math.min(batchSize, budget);
+                List<ConsultationMessages> page = read(peerId, from, upToId, limit);
+                budget -= page.size();
+                List<ConsultationMessages> batch = new ArrayList<>(page.size());
+                for (ConsultationMessages message : page) {
+                    if (skipSeen != null && !skipSeen.isEmpty()) {
+                        Long seen = skipSeen.get("COUNSELOR".equals(ownerType) ? message.getUserId() : message.getCounselorId());
+                        if (seen != null && message.getId() <= overlapStart(seen)) {
+                            continue;
+                        }
+                    }
+                    if (sentIds.add(message.getId())) {
+                        batch.add(message);
+                    }
+                }
+                if (!batch.isEmpty()) {
+                    sink.accept(batch);
+                    sent += batch.size();
+                }
+                if (page.size() < limit) {
+                    return true;
+                }
+                from = page.get(page.size() - 1).getId();
+            }
+            return false;
+        }
+
+        private List<ConsultationMessages> read(Long peerId, long afterId, Long upToId, int limit) {
+            List<ConsultationMessages> hot = consultationMessagesMapper.selectAfterId(ownerType, ownerId, peerId, afterId, upToId, limit);
+            if (afterId >= archivedMaxId) {
+                return hot;
+            }
+            // 起点早于归档表中最大的消息ID，区间内可能有已归档的消息
+            List<ConsultationMessages> archived = consultationMessagesArchiveMapper.selectAfterId(ownerType, ownerId, peerId, afterId, upToId, limit);
+            if (archived.isEmpty()) {
+                return hot;
+            }
+            TreeMap<Long, ConsultationMessages> merged = new TreeMap<>();
+            archived.forEach(message -> merged.put(message.getId(), message));
+            hot.forEach(message -> merged.put(message.getId(), message));
+            List<ConsultationMessages> page = new ArrayList<>(limit);
+            for (ConsultationMessages message : merged.values()) {
+                if (page.size() == limit) {
+                    break;
+                }
+                page.add(message);
+            }
+            return page;
+        }
+    }
+}
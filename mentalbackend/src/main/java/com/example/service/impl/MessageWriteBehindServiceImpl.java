@@ -0,0 +1,293 @@
+package com.example.service.impl;
+
+import com.example.entity.ConsultationMessages;
+import com.example.service.ConsultationMessagesService;
+import com.example.service.MessageWriteBehindService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 聊天消息异步写入服务实现类
+ * 1. 有界队列提供背压：队列满时发送方最多等待offerTimeoutMs，仍然失败则同步保存，保证消息不丢失
+ * 2. 单独的写线程按批次从队列取出消息并批量插入
+ * 3. 写入失败按固定间隔重试，超过重试次数后记录日志并计入丢弃数
+ * 4. 应用关闭时停止写线程并把队列剩余消息全部写入
+ * 5. 按会话统计尚未写完的消息数，按范围标记已读前可以等待该会话的消息落库，避免队列中的消息漏标
+ */
+@Service
+public class MessageWriteBehindServiceImpl implements MessageWriteBehindService {
+
+    private static final Logger log = LoggerFactory.getLogger(MessageWriteBehindServiceImpl.class);
+
+    @Resource
+    private ConsultationMessagesService consultationMessagesService;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Value("${chat.persistence.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${chat.persistence.offer-timeout-ms:50}")
+    private long offerTimeoutMs;
+
+    @Value("${chat.persistence.batch-size:200}")
+    private int batchSize;
+
+    @Value("${chat.persistence.flush-interval-ms:100}")
+    private long flushIntervalMs;
+
+    @Value("${chat.persistence.max-retries:3}")
+    private int maxRetries;
+
+    @Value("${chat.persistence.retry-backoff-ms:200}")
+    private long retryBackoffMs;
+
+    @Value("${chat.persistence.read-await-timeout-ms:1000}")
+    private long readAwaitTimeoutMs;
+
+    private BlockingQueue<PendingMessage> queue;
+
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    // 会话（userId:counselorId） -> 已进入队列但尚未写完（成功或最终失败）的消息数
+    private final Map<String, Integer> unpersisted = new ConcurrentHashMap<>();
+
+    private volatile boolean running;
+
+    private Thread writerThread;
+
+    private Timer flushTimer;
+    private Counter flushedCounter;
+    private Counter retryCounter;
+    private Counter droppedCounter;
+    private Counter callerRunsCounter;
+
+    @PostConstruct
+    public void start() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+
+        Gauge.builder("chat.persistence.queue.depth", queue, BlockingQueue::size)
+                .description("待写入数据库的聊天消息数量")
+                .register(meterRegistry);
+        flushTimer = Timer.builder("chat.persistence.flush.latency")
+                .description("单批消息写入数据库耗时")
+                .register(meterRegistry);
+        flushedCounter = meterRegistry.counter("chat.persistence.flushed");
+        retryCounter = meterRegistry.counter("chat.persistence.retries");
+        droppedCounter = meterRegistry.counter("chat.persistence.dropped");
+        callerRunsCounter = meterRegistry.counter("chat.persistence.caller.runs");
+
+        running = true;
+        writerThread = new Thread(this::runWriter, "chat-write-behind");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        log.info("消息异步写入已启动: 队列容量={}, 批大小={}, 刷新间隔={}ms", queueCapacity, batchSize, flushIntervalMs);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        try {
+            // 写线程最多等待一个刷新间隔就会退出循环，这里给出充足的等待时间
+            writerThread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        log.info("消息异步写入已关闭，队列剩余消息已写入数据库");
+    }
+
+    @Override
+    public boolean enqueue(ConsultationMessages message) {
+        return enqueue(message, null);
+    }
+
+    @Override
+    public boolean enqueue(ConsultationMessages message, PersistCallback callback) {
+        // 先计数再入队，写线程取出并写完后才会减少
+        String conversation = conversationKey(message.getUserId(), message.getCounselorId());
+        unpersisted.merge(conversation, 1, Integer::sum);
+        try {
+            if (running && queue.offer(new PendingMessage(message, callback), offerTimeoutMs, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // 队列已满（或服务正在关闭），由调用线程同步保存，以牺牲延迟换取不丢消息
+        callerRunsCounter.increment();
+        log.warn("消息写入队列已满，改为同步保存: 队列深度={}", queue.size());
+        PendingMessage pending = new PendingMessage(message, callback);
+        boolean saved = false;
+        try {
+            saved = consultationMessagesService.saveMessage(message);
+        } finally {
+            // 保存返回（或抛出异常）后才减少计数，等待该会话落库的线程不会提前放行
+            markPersisted(List.of(pending));
+        }
+        notifyCallback(pending, saved);
+        return saved;
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    @Override
+    public void awaitConversationPersisted(Long userId, Long counselorId) {
+        String conversation = conversationKey(userId, counselorId);
+        if (!unpersisted.containsKey(conversation)) {
+            return;
+        }
+        // 只等待写线程写完该会话的消息，不在调用线程上写入队列，避免占用入站线程并与写线程争抢批次
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(readAwaitTimeoutMs);
+        synchronized (unpersisted) {
+            long remaining;
+            while (unpersisted.containsKey(conversation) && (remaining = deadline - System.nanoTime()) > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(unpersisted, remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+        if (unpersisted.containsKey(conversation)) {
+            log.warn("等待会话消息落库超时: 会话={}, 未写入={}条", conversation, unpersisted.get(conversation));
+        }
+    }
+
+    @Override
+    public void flush() {
+        List<PendingMessage> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            writeBatch(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * 写线程主循环：等待第一条消息到达后尽量凑满一批再写入
+     */
+    private void runWriter() {
+        List<PendingMessage> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                PendingMessage first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                writeBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.error("消息异步写入线程异常: {}", e.getMessage(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * 写入一批消息，失败时重试；写线程与关闭时的flush共用同一把锁，避免并发写入
+     */
+    private void writeBatch(List<PendingMessage> batch) {
+        List<ConsultationMessages> messages = new ArrayList<>(batch.size());
+        for (PendingMessage pending : batch) {
+            messages.add(pending.message());
+        }
+        flushLock.lock();
+        try {
+            for (int attempt = 0; attempt <= maxRetries; attempt++) {
+                long start = System.nanoTime();
+                try {
+                    consultationMessagesService.saveMessages(messages);
+                    flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    flushedCounter.increment(batch.size());
+                    markPersisted(batch);
+                    batch.forEach(pending -> notifyCallback(pending, true));
+                    return;
+                } catch (Exception e) {
+                    log.warn("批量写入消息失败(第{}次): {}", attempt + 1, e.getMessage());
+                }
+                if (attempt < maxRetries) {
+                    retryCounter.increment();
+                    // 事务已回滚，清掉可能回填的主键后重新插入
+                    messages.forEach(message -> message.setId(null));
+                    sleepQuietly(retryBackoffMs * (attempt + 1));
+                }
+            }
+            droppedCounter.increment(batch.size());
+            log.error("批量写入消息重试{}次后仍失败，丢弃{}条消息", maxRetries, batch.size());
+            markPersisted(batch);
+            batch.forEach(pending -> notifyCallback(pending, false));
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * 消息已写完（或已放弃），减少会话的未写入计数并唤醒等待的线程
+     */
+    private void markPersisted(List<PendingMessage> batch) {
+        for (PendingMessage pending : batch) {
+            unpersisted.computeIfPresent(conversationKey(pending.message().getUserId(), pending.message().getCounselorId()),
+                    (key, count) -> count <= 1 ? null : count - 1);
+        }
+        synchronized (unpersisted) {
+            unpersisted.notifyAll();
+        }
+    }
+
+    private static String conversationKey(Long userId, Long counselorId) {
+        return userId + ":" + counselorId;
+    }
+
+    private void notifyCallback(PendingMessage pending, boolean persisted) {
+        if (pending.callback() == null) {
+            return;
+        }
+        try {
+            pending.callback().onComplete(pending.message(), persisted);
+        } catch (Exception e) {
+            log.error("消息写入回调异常: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 队列中等待写入的消息及其回调
+     */
+    private record PendingMessage(ConsultationMessages message, PersistCallback callback) {
+    }
+
+    private void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
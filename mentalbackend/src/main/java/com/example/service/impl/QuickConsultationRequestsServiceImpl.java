@@ -158,7 +158,6 @@ public class QuickConsultationRequestsServiceImpl extends ServiceImpl<QuickConsu
         message.setSenderType("COUNSELOR"); // 咨询师发送
         message.setMessageType("TEXT"); // 文本消息
         message.setContent(greetingContent.toString());
-        message.setSentTime(LocalDateTime.now());
         message.setReadStatus(false); // 初始状态为未读
         message.setConversationType("PRE_CONSULTATION"); // 预咨询阶段
         
@@ -0,0 +1,256 @@
+package com.example.service.impl;
+
+import com.example.entity.ConsultationMessages;
+import com.example.mapper.ConsultationMessagesMapper;
+import com.example.service.TranscriptExportService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.annotation.Resource;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 对话记录导出服务实现类
+ * 1. 通过MyBatis Cursor逐行读取热表和归档表的消息（MySQL按Integer.MIN_VALUE的fetchSize流式读取）
+ * 2. NDJSON和CSV每读一行写一行；XLSX使用SXSSFWorkbook，只在内存中保留最近的rowAccessWindow行，其余写入压缩的临时文件
+ * 3. 读取在只读事务中完成，导出期间占用一个数据库连接
+ */
+@Service
+public class TranscriptExportServiceImpl implements TranscriptExportService {
+
+    private static final Logger log = LoggerFactory.getLogger(TranscriptExportServiceImpl.class);
+
+    private static final String[] HEADERS = {
+            "消息ID", "发送时间(UTC)", "发送方", "消息类型", "内容", "媒体链接", "时长(秒)", "已读", "用户ID", "咨询师ID", "预约ID", "对话类型"
+    };
+
+    @Resource
+    private ConsultationMessagesMapper consultationMessagesMapper;
+
+    @Resource
+    private ObjectMapper objectMapper;
+
+    @Value("${chat.export.xlsx-row-access-window:100}")
+    private int xlsxRowAccessWindow;
+
+    @Override
+    @Transactional(readOnly = true)
+    public long exportByAppointment(Long appointmentId, Format format, OutputStream out) throws IOException {
+        return export(appointmentId, null, null, format, out);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public long exportByConversation(Long userId, Long counselorId, Format format, OutputStream out) throws IOException {
+        return export(null, userId, counselorId, format, out);
+    }
+
+    private long export(Long appointmentId, Long userId, Long counselorId, Format format, OutputStream out) throws IOException {
+        long start = System.nanoTime();
+        long count = 0;
+        try (TranscriptWriter writer = newWriter(format, out);
+             Cursor<ConsultationMessages> cursor = consultationMessagesMapper.streamTranscript(appointmentId, userId, counselorId)) {
+            for (ConsultationMessages message : cursor) {
+                writer.write(message);
+                count++;
+            }
+            writer.finish();
+        }
+        log.info("导出对话记录: 预约ID={}, 用户ID={}, 咨询师ID={}, 格式={}, 消息数={}, 耗时={}ms",
+                appointmentId, userId, counselorId, format, count, (System.nanoTime() - start) / 1_000_000);
+        return count;
+    }
+
+    private TranscriptWriter newWriter(Format format, OutputStream out) throws IOException {
+        return switch (format) {
+            case NDJSON -> new NdjsonWriter(objectMapper, out);
+            case CSV -> new CsvWriter(out);
+            case XLSX -> new XlsxWriter(out, xlsxRowAccessWindow);
+        };
+    }
+
+    private static Object[] columns(ConsultationMessages message) {
+        return new Object[] {
+                message.getId(), message.getSentTime() != null ? message.getSentTime().toString() : null,
+                message.getSenderType(), message.getMessageType(), message.getContent(), message.getMediaUrl(),
+                message.getDurationSeconds(), message.getReadStatus(), message.getUserId(), message.getCounselorId(),
+                message.getAppointmentId(), message.getConversationType()
+        };
+    }
+
+    /**
+     * 按格式逐条写出消息，finish写出剩余内容，close释放资源但不关闭输出流
+     */
+    private interface TranscriptWriter extends AutoCloseable {
+        void write(ConsultationMessages message) throws IOException;
+
+        void finish() throws IOException;
+
+        @Override
+        void close() throws IOException;
+    }
+
+    /**
+     * 每行一个JSON对象，字段和时间格式与对话记录接口一致
+     */
+    private static final class NdjsonWriter implements TranscriptWriter {
+        private final JsonGenerator generator;
+        private final ObjectWriter objectWriter;
+        private boolean written;
+
+        NdjsonWriter(ObjectMapper objectMapper, OutputStream out) throws IOException {
+            generator = objectMapper.getFactory().createGenerator(out);
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(new SerializedString("\n"));
+            objectWriter = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        }
+
+        @Override
+        public void write(ConsultationMessages message) throws IOException {
+            objectWriter.writeValue(generator, message);
+            written = true;
+        }
+
+        @Override
+        public void finish() throws IOException {
+            if (written) {
+                generator.writeRaw('\n');
+            }
+            generator.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            generator.close();
+        }
+    }
+
+    /**
+     * UTF-8 CSV，带BOM以便Excel正确识别中文；以 = + - @ 开头的单元格加单引号，避免被当作公式执行
+     */
+    private static final class CsvWriter implements TranscriptWriter {
+        private final Writer writer;
+
+        CsvWriter(OutputStream out) throws IOException {
+            writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            writer.write('\uFEFF');
+            writeRow(HEADERS);
+        }
+
+        @Override
+        public void write(ConsultationMessages message) throws IOException {
+            writeRow(columns(message));
+        }
+
+        @Override
+        public void finish() throws IOException {
+            writer.flush();
+        }
+
+        @Override
+        public void close() {
+            // 输出流由调用方关闭
+        }
+
+        private void writeRow(Object[] values) throws IOException {
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                if (values[i] != null) {
+                    writer.write(escape(values[i].toString()));
+                }
+            }
+            writer.write("\r\n");
+        }
+
+        private static String escape(String value) {
+            if (!value.isEmpty() && "=+-@".indexOf(value.charAt(0)) >= 0) {
+                value = "'" + value;
+            }
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+                return value;
+            }
+            return '"' + value.replace("\"", "\"\"") + '"';
+        }
+    }
+
+    /**
+     * 流式XLSX：超过单个工作表的最大行数时新建工作表，单元格文本超过上限时截断
+     */
+    private static final class XlsxWriter implements TranscriptWriter {
+        private static final int MAX_ROWS = SpreadsheetVersion.EXCEL2007.getMaxRows();
+        private static final int MAX_TEXT_LENGTH = SpreadsheetVersion.EXCEL2007.getMaxTextLength();
+
+        private final SXSSFWorkbook workbook;
+        private final OutputStream out;
+        private SXSSFSheet sheet;
+        private int rowIndex;
+
+        XlsxWriter(OutputStream out, int rowAccessWindow) {
+            this.out = out;
+            workbook = new SXSSFWorkbook(rowAccessWindow);
+            workbook.setCompressTempFiles(true);
+            newSheet();
+        }
+
+        @Override
+        public void write(ConsultationMessages message) {
+            if (rowIndex >= MAX_ROWS) {
+                newSheet();
+            }
+            writeRow(columns(message));
+        }
+
+        @Override
+        public void finish() throws IOException {
+            workbook.write(out);
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            workbook.dispose();
+            workbook.close();
+        }
+
+        private void newSheet() {
+            sheet = workbook.createSheet("对话记录" + (workbook.getNumberOfSheets() + 1));
+            rowIndex = 0;
+            writeRow(HEADERS);
+        }
+
+        private void writeRow(Object[] values) {
+            Row row = sheet.createRow(rowIndex++);
+            for (int i = 0; i < values.length; i++) {
+                Object value = values[i];
+                if (value instanceof Number number) {
+                    row.createCell(i).setCellValue(number.doubleValue());
+                } else if (value instanceof Boolean bool) {
+                    row.createCell(i).setCellValue(bool);
+                } else if (value != null) {
+                    String text = value.toString();
+                    row.createCell(i).setCellValue(text.length() > MAX_TEXT_LENGTH ? text.substring(0, MAX_TEXT_LENGTH) : text);
+                }
+            }
+        }
+    }
+}
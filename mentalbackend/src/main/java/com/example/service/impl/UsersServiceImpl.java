@@ -1,15 +1,42 @@
 package com.example.service.impl;
 
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.example.cache.CounselorFilterIndex;
 import com.example.entity.Users;
 import com.example.mapper.UsersMapper;
 import com.example.service.UsersService;
+import jakarta.annotation.Resource;
 import org.springframework.stereotype.Service;
 
+import java.io.Serializable;
+
 /**
  * 用户服务实现类
  */
 @Service
 public class UsersServiceImpl extends ServiceImpl<UsersMapper, Users> implements UsersService {
-    // 可以在这里实现自定义业务方法
-}
\ No newline at end of file
+
+    @Resource
+    private CounselorFilterIndex counselorFilterIndex;
+
+    /**
+     * 性别是咨询师筛选条件，更新用户后刷新对应咨询师的筛选索引（saveOrUpdate 更新已有用户时也经过这里）
+     */
+    @Override
+    public boolean updateById(Users entity) {
+        boolean updated = super.updateById(entity);
+        if (updated) {
+            counselorFilterIndex.reloadUserAfterCommit(entity.getId());
+        }
+        return updated;
+    }
+
+    @Override
+    public boolean removeById(Serializable id) {
+        boolean removed = super.removeById(id);
+        if (removed) {
+            counselorFilterIndex.reloadUserAfterCommit(Long.valueOf(id.toString()));
+        }
+        return removed;
+    }
+}
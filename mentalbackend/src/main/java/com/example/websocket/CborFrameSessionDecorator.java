@@ -0,0 +1,64 @@
+package com.example.websocket;
+
+import com.example.config.CborMessageConverter;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 以二进制WebSocket帧发送CBOR编码的STOMP帧
+ * Spring的STOMP处理器只对 application/octet-stream 使用二进制帧，其余内容都放进文本帧；
+ * CBOR不是合法的UTF-8文本，放在文本帧里会被客户端按UTF-8解码而损坏，因此在这里改为二进制帧，字节内容不变。
+ * SockJS只能传输文本，SockJS会话不协商CBOR，也不经过本装饰器。
+ */
+public class CborFrameSessionDecorator extends WebSocketSessionDecorator {
+
+    private static final byte[] CBOR_CONTENT_TYPE =
+            ("\ncontent-type:" + CborMessageConverter.APPLICATION_CBOR).getBytes(StandardCharsets.UTF_8);
+
+    public CborFrameSessionDecorator(WebSocketSession delegate) {
+        super(delegate);
+    }
+
+    @Override
+    public void sendMessage(WebSocketMessage<?> message) throws IOException {
+        if (message instanceof TextMessage text) {
+            byte[] frame = text.asBytes();
+            if (isCborFrame(frame)) {
+                super.sendMessage(new BinaryMessage(frame));
+                return;
+            }
+        }
+        super.sendMessage(message);
+    }
+
+    /**
+     * 只在帧头部分（第一个空行之前）查找 content-type:application/cbor，不解析消息体
+     */
+    static boolean isCborFrame(byte[] frame) {
+        int headerEnd = frame.length;
+        for (int i = 0; i + 1 < frame.length; i++) {
+            if (frame[i] == '\n' && (frame[i + 1] == '\n' || (frame[i + 1] == '\r' && i + 2 < frame.length && frame[i + 2] == '\n'))) {
+                headerEnd = i;
+                break;
+            }
+        }
+        outer:
+        for (int i = 0; i + CBOR_CONTENT_TYPE.length <= headerEnd; i++) {
+            for (int j = 0; j < CBOR_CONTENT_TYPE.length; j++) {
+                if (frame[i + j] != CBOR_CONTENT_TYPE[j]) {
+                    continue outer;
+                }
+            }
+            int end = i + CBOR_CONTENT_TYPE.length;
+            // 值后面只能是换行或参数（如 ;charset=），避免误判 application/cbor-seq 之类的类型
+            return end == headerEnd || frame[end] == '\n' || frame[end] == '\r' || frame[end] == ';';
+        }
+        return false;
+    }
+}
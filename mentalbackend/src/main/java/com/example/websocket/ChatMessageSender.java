@@ -0,0 +1,33 @@
+package com.example.websocket;
+
+import jakarta.annotation.Resource;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+
+import java.util.Map;
+
+/**
+ * 按目的地订阅者协商的编码推送聊天消息、ACK、已读回执和信号
+ * 订阅者都接受CBOR时带 content-type:application/cbor 发送，否则不带content-type，由默认的JSON转换器编码
+ */
+@Component
+public class ChatMessageSender {
+
+    @Resource
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Resource
+    private ChatWireFormatRegistry chatWireFormatRegistry;
+
+    public void send(String destination, Object payload) {
+        MimeType contentType = chatWireFormatRegistry.resolveContentType(destination);
+        if (contentType == null) {
+            messagingTemplate.convertAndSend(destination, payload);
+        } else {
+            messagingTemplate.convertAndSend(destination, payload,
+                    Map.<String, Object>of(MessageHeaders.CONTENT_TYPE, contentType));
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.websocket;
+
+/**
+ * 聊天信号：输入中、已读、已送达等高频的临时状态，不落库
+ * 客户端发送到 /app/chat.signal，接收者在 /queue/signals/{type}/{id} 收到
+ */
+public class ChatSignal {
+
+    public static final String TYPING = "TYPING";
+    public static final String READ = "READ";
+    public static final String DELIVERED = "DELIVERED";
+
+    // 发送者ID
+    private Long senderId;
+
+    // 发送者类型：USER 或 COUNSELOR
+    private String senderType;
+
+    // 接收者ID
+    private Long receiverId;
+
+    // 信号类型：TYPING, READ, DELIVERED
+    private String type;
+
+    // READ/DELIVERED：已读或已送达到的消息ID
+    private Long messageId;
+
+    // TYPING：true表示正在输入，false表示停止输入
+    private Boolean typing;
+
+    // 服务器发出信号的时间（毫秒时间戳）
+    private long timestamp;
+
+    public ChatSignal() {
+    }
+
+    /**
+     * 合并同一时间窗口内的两个信号：保留较新信号的状态，消息ID取较大值
+     */
+    static ChatSignal merge(ChatSignal earlier, ChatSignal later) {
+        ChatSignal merged = new ChatSignal();
+        merged.senderId = later.senderId;
+        merged.senderType = later.senderType;
+        merged.receiverId = later.receiverId;
+        merged.type = later.type;
+        merged.typing = later.typing;
+        if (earlier.messageId == null) {
+            merged.messageId = later.messageId;
+        } else if (later.messageId == null) {
+            merged.messageId = earlier.messageId;
+        } else {
+            merged.messageId = Math.max(earlier.messageId, later.messageId);
+        }
+        return merged;
+    }
+
+    // Getters and Setters
+    public Long getSenderId() {
+        return senderId;
+    }
+
+    public void setSenderId(Long senderId) {
+        this.senderId = senderId;
+    }
+
+    public String getSenderType() {
+        return senderType;
+    }
+
+    public void setSenderType(String senderType) {
+        this.senderType = senderType;
+    }
+
+    public Long getReceiverId() {
+        return receiverId;
+    }
+
+    public void setReceiverId(Long receiverId) {
+        this.receiverId = receiverId;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public Long getMessageId() {
+        return messageId;
+    }
+
+    public void setMessageId(Long messageId) {
+        this.messageId = messageId;
+    }
+
+    public Boolean getTyping() {
+        return typing;
+    }
+
+    public void setTyping(Boolean typing) {
+        this.typing = typing;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.websocket;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 聊天信号转发
+ * 输入中/已读/已送达信号不经过数据库：
+ * 1. 每个会话（WebSocket连接）按令牌桶限流，超出的信号直接丢弃
+ * 2. 同一发送者发给同一接收者的同类信号在时间窗口内合并，窗口结束时只发送最新的一条
+ * 3. 接收者不在线时不发送
+ */
+@Component
+public class ChatSignalRelay {
+
+    private static final Logger log = LoggerFactory.getLogger(ChatSignalRelay.class);
+
+    private static final Set<String> SIGNAL_TYPES = Set.of(ChatSignal.TYPING, ChatSignal.READ, ChatSignal.DELIVERED);
+
+    @Resource
+    private ChatMessageSender chatMessageSender;
+
+    @Resource
+    private PresenceRegistry presenceRegistry;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Value("${chat.signal.coalesce-window-ms:300}")
+    private long coalesceWindowMs;
+
+    @Value("${chat.signal.rate-per-second:10}")
+    private double ratePerSecond;
+
+    @Value("${chat.signal.burst:20}")
+    private int burst;
+
+    // 等待窗口结束后发送的信号
+    private final Map<SignalKey, ChatSignal> pending = new ConcurrentHashMap<>();
+
+    // WebSocket会话ID -> 令牌桶
+    private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+
+    private ThreadPoolTaskScheduler scheduler;
+
+    private Counter receivedCounter;
+    private Counter sentCounter;
+    private Counter rateLimitedCounter;
+
+    @PostConstruct
+    public void init() {
+        scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(1);
+        scheduler.setThreadNamePrefix("chat-signal-");
+        scheduler.initialize();
+
+        receivedCounter = meterRegistry.counter("chat.signal.received");
+        sentCounter = meterRegistry.counter("chat.signal.sent");
+        rateLimitedCounter = meterRegistry.counter("chat.signal.rate.limited");
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdown();
+    }
+
+    /**
+     * 提交一个信号
+     * @return 信号无效或被限流时返回false
+     */
+    public boolean submit(String sessionId, ChatSignal signal) {
+        if (!isValid(signal)) {
+            return false;
+        }
+        receivedCounter.increment();
+        if (sessionId != null && !buckets.computeIfAbsent(sessionId, id -> new TokenBucket(burst, ratePerSecond)).tryAcquire()) {
+            rateLimitedCounter.increment();
+            return false;
+        }
+        SignalKey key = new SignalKey(signal.getSenderType(), signal.getSenderId(), signal.getReceiverId(), signal.getType());
+        boolean[] first = {false};
+        pending.compute(key, (k, existing) -> {
+            if (existing == null) {
+                first[0] = true;
+                return signal;
+            }
+            return ChatSignal.merge(existing, signal);
+        });
+        if (first[0]) {
+            scheduler.schedule(() -> flush(key), scheduler.getClock().instant().plus(Duration.ofMillis(coalesceWindowMs)));
+        }
+        return true;
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        buckets.remove(event.getSessionId());
+    }
+
+    private void flush(SignalKey key) {
+        ChatSignal signal = pending.remove(key);
+        if (signal == null) {
+            return;
+        }
+        String receiverType = "USER".equals(signal.getSenderType()) ? "COUNSELOR" : "USER";
+        if (!presenceRegistry.isOnline(receiverType, signal.getReceiverId())) {
+            return;
+        }
+        signal.setTimestamp(System.currentTimeMillis());
+        String destination = "/queue/signals/" + receiverType.toLowerCase() + "/" + signal.getReceiverId();
+        try {
+            chatMessageSender.send(destination, signal);
+            sentCounter.increment();
+        } catch (Exception e) {
+            log.warn("发送聊天信号失败: 目的地={}, 原因={}", destination, e.getMessage());
+        }
+    }
+
+    private static boolean isValid(ChatSignal signal) {
+        return signal != null && signal.getSenderId() != null && signal.getReceiverId() != null
+                && ("USER".equals(signal.getSenderType()) || "COUNSELOR".equals(signal.getSenderType()))
+                && SIGNAL_TYPES.contains(signal.getType());
+    }
+
+    private record SignalKey(String senderType, Long senderId, Long receiverId, String type) {
+    }
+
+    /**
+     * 令牌桶：容量为burst，每秒补充ratePerSecond个令牌
+     */
+    private static final class TokenBucket {
+        private final double capacity;
+        private final double refillPerNano;
+        private double tokens;
+        private long lastRefillNanos = System.nanoTime();
+
+        TokenBucket(int capacity, double ratePerSecond) {
+            this.capacity = capacity;
+            this.refillPerNano = ratePerSecond / 1_000_000_000d;
+            this.tokens = capacity;
+        }
+
+        synchronized boolean tryAcquire() {
+            long now = System.nanoTime();
+            tokens = Math.min(capacity, tokens + (now - lastRefillNanos) * refillPerNano);
+            lastRefillNanos = now;
+            if (tokens < 1) {
+                return false;
+            }
+            tokens -= 1;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.websocket;
+
+import com.example.config.CborMessageConverter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+import org.springframework.web.socket.sockjs.transport.SockJsSession;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 聊天消息编码协商
+ * 客户端在SUBSCRIBE帧中携带 accept:application/cbor 表示该订阅可以接收CBOR编码的消息。
+ * 简单代理把同一条消息投递给目的地的所有订阅者，所以只有目的地的全部订阅都接受CBOR时才使用CBOR，否则使用JSON。
+ * 代理转发模式下订阅可能在其他节点上，本节点无法得知其编码偏好，因此始终使用JSON。
+ * 作为WebSocket处理器装饰工厂，为原生WebSocket会话包装 {@link CborFrameSessionDecorator}，CBOR帧以二进制帧发出；
+ * SockJS只能传输文本，SockJS会话的订阅一律按不接受CBOR处理。
+ */
+@Component
+public class ChatWireFormatRegistry implements WebSocketHandlerDecoratorFactory {
+
+    public static final String ACCEPT_HEADER = "accept";
+
+    @Value("${chat.broker.mode:simple}")
+    private String brokerMode;
+
+    // 目的地 -> (会话ID:订阅ID -> 是否接受CBOR)
+    private final Map<String, Map<String, Boolean>> destinations = new ConcurrentHashMap<>();
+
+    // 会话ID -> (订阅ID -> 目的地)，用于取消订阅和断开连接时清理
+    private final Map<String, Map<String, String>> sessions = new ConcurrentHashMap<>();
+
+    // SockJS会话ID
+    private final Set<String> sockJsSessions = ConcurrentHashMap.newKeySet();
+
+    @Override
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                if (WebSocketSessionDecorator.unwrap(session) instanceof SockJsSession) {
+                    sockJsSessions.add(session.getId());
+                    super.afterConnectionEstablished(session);
+                } else {
+                    super.afterConnectionEstablished(new CborFrameSessionDecorator(session));
+                }
+            }
+
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                try {
+                    super.afterConnectionClosed(session, closeStatus);
+                } finally {
+                    sockJsSessions.remove(session.getId());
+                }
+            }
+        };
+    }
+
+    /**
+     * 返回向该目的地发送聊天消息时应使用的content-type，null表示使用默认的JSON
+     */
+    public MimeType resolveContentType(String destination) {
+        if ("relay".equalsIgnoreCase(brokerMode)) {
+            return null;
+        }
+        Map<String, Boolean> subscribers = destinations.get(destination);
+        if (subscribers == null || subscribers.isEmpty()) {
+            return null;
+        }
+        for (Boolean acceptsCbor : subscribers.values()) {
+            if (!acceptsCbor) {
+                return null;
+            }
+        }
+        return CborMessageConverter.APPLICATION_CBOR;
+    }
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        String destination = accessor.getDestination();
+        if (destination == null || accessor.getSessionId() == null || accessor.getSubscriptionId() == null) {
+            return;
+        }
+        String accept = accessor.getFirstNativeHeader(ACCEPT_HEADER);
+        boolean acceptsCbor = accept != null && accept.contains(CborMessageConverter.APPLICATION_CBOR.toString())
+                && !sockJsSessions.contains(accessor.getSessionId());
+        String subscriptionKey = subscriptionKey(accessor.getSessionId(), accessor.getSubscriptionId());
+        destinations.compute(destination, (key, subscribers) -> {
+            Map<String, Boolean> result = subscribers != null ? subscribers : new ConcurrentHashMap<>();
+            result.put(subscriptionKey, acceptsCbor);
+            return result;
+        });
+        sessions.computeIfAbsent(accessor.getSessionId(), key -> new ConcurrentHashMap<>())
+                .put(accessor.getSubscriptionId(), destination);
+    }
+
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        Map<String, String> subscriptions = sessions.get(accessor.getSessionId());
+        if (subscriptions == null || accessor.getSubscriptionId() == null) {
+            return;
+        }
+        String destination = subscriptions.remove(accessor.getSubscriptionId());
+        if (destination != null) {
+            removeSubscription(destination, subscriptionKey(accessor.getSessionId(), accessor.getSubscriptionId()));
+        }
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        Map<String, String> subscriptions = sessions.remove(event.getSessionId());
+        if (subscriptions == null) {
+            return;
+        }
+        for (Map.Entry<String, String> entry : subscriptions.entrySet()) {
+            removeSubscription(entry.getValue(), subscriptionKey(event.getSessionId(), entry.getKey()));
+        }
+    }
+
+    private void removeSubscription(String destination, String subscriptionKey) {
+        destinations.computeIfPresent(destination, (key, subscribers) -> {
+            subscribers.remove(subscriptionKey);
+            return subscribers.isEmpty() ? null : subscribers;
+        });
+    }
+
+    private static String subscriptionKey(String sessionId, String subscriptionId) {
+        return sessionId + ":" + subscriptionId;
+    }
+}
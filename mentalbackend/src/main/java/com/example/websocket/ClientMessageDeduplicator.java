@@ -0,0 +1,97 @@
+package com.example.websocket;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 客户端消息ID去重
+ * 同一发送者在时间窗口内重发相同clientMessageId的消息只处理一次：
+ * 首次到达时登记为处理中，落库成功后记录ACK；重发到达时若已有ACK则直接重发ACK，处理中则忽略。
+ * 落库最终失败时删除登记，允许客户端重试。
+ */
+@Component
+public class ClientMessageDeduplicator {
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Value("${chat.dedup.window-seconds:120}")
+    private long windowSeconds;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private Counter duplicateCounter;
+
+    @PostConstruct
+    public void init() {
+        duplicateCounter = meterRegistry.counter("chat.dedup.duplicates");
+    }
+
+    /**
+     * 登记一条新消息
+     * @return null表示首次到达，应正常处理；否则返回已有登记，调用方按重复消息处理
+     */
+    public Entry register(String senderType, Long senderId, String clientMessageId) {
+        Entry fresh = new Entry(System.nanoTime());
+        Entry existing = entries.putIfAbsent(key(senderType, senderId, clientMessageId), fresh);
+        if (existing != null) {
+            duplicateCounter.increment();
+        }
+        return existing;
+    }
+
+    /**
+     * 消息落库成功，记录ACK供重发时使用
+     */
+    public void complete(String senderType, Long senderId, String clientMessageId, MessageAck ack) {
+        Entry entry = entries.get(key(senderType, senderId, clientMessageId));
+        if (entry != null) {
+            entry.ack = ack;
+        }
+    }
+
+    /**
+     * 消息落库失败，删除登记以允许客户端重试
+     */
+    public void release(String senderType, Long senderId, String clientMessageId) {
+        entries.remove(key(senderType, senderId, clientMessageId));
+    }
+
+    /**
+     * 清理超出去重窗口的登记
+     */
+    @Scheduled(fixedDelayString = "${chat.dedup.prune-interval-ms:30000}")
+    public void pruneExpired() {
+        long expireBefore = System.nanoTime() - TimeUnit.SECONDS.toNanos(windowSeconds);
+        entries.values().removeIf(entry -> entry.createdNanos - expireBefore < 0);
+    }
+
+    private static String key(String senderType, Long senderId, String clientMessageId) {
+        return senderType + ":" + senderId + ":" + clientMessageId;
+    }
+
+    /**
+     * 去重登记，ack为null表示消息仍在处理中
+     */
+    public static class Entry {
+        private final long createdNanos;
+        private volatile MessageAck ack;
+
+        Entry(long createdNanos) {
+            this.createdNanos = createdNanos;
+        }
+
+        public MessageAck getAck() {
+            return ack;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.websocket;
+
+import java.time.Instant;
+
+/**
+ * 会话按范围标记已读并提交后发布的事件，用于向会话对方发送已读回执
+ * @param userId 用户ID
+ * @param counselorId 咨询师ID
+ * @param readerType 标记已读的一方：USER 或 COUNSELOR
+ * @param upToMessageId 已读到的消息ID，按时间标记时为null
+ * @param upToTime 已读到的消息时间
+ * @param count 本次标记为已读的消息数
+ */
+public record ConversationReadEvent(Long userId, Long counselorId, String readerType,
+                                    Long upToMessageId, Instant upToTime, int count) {
+}
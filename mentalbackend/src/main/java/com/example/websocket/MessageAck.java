@@ -0,0 +1,49 @@
+package com.example.websocket;
+
+/**
+ * 消息确认帧，发送到 /queue/acks/{type}/{id}，代替把整条消息回显给发送者
+ */
+public class MessageAck {
+    // 客户端生成的消息ID
+    private String clientMessageId;
+
+    // 数据库中的消息ID
+    private Long messageId;
+
+    // 服务器时间（毫秒时间戳）
+    private long serverTime;
+
+    public MessageAck() {
+    }
+
+    public MessageAck(String clientMessageId, Long messageId, long serverTime) {
+        this.clientMessageId = clientMessageId;
+        this.messageId = messageId;
+        this.serverTime = serverTime;
+    }
+
+    // Getters and Setters
+    public String getClientMessageId() {
+        return clientMessageId;
+    }
+
+    public void setClientMessageId(String clientMessageId) {
+        this.clientMessageId = clientMessageId;
+    }
+
+    public Long getMessageId() {
+        return messageId;
+    }
+
+    public void setMessageId(Long messageId) {
+        this.messageId = messageId;
+    }
+
+    public long getServerTime() {
+        return serverTime;
+    }
+
+    public void setServerTime(long serverTime) {
+        this.serverTime = serverTime;
+    }
+}
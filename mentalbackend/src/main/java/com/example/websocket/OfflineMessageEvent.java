@@ -0,0 +1,12 @@
+package com.example.websocket;
+
+import com.example.entity.ConsultationMessages;
+
+/**
+ * 接收者不在线时消息落库后发布的事件，供推送通知、未读数等功能监听
+ * @param receiverType 接收者类型：USER 或 COUNSELOR
+ * @param receiverId 接收者ID
+ * @param message 已落库的消息（ID已回填）
+ */
+public record OfflineMessageEvent(String receiverType, Long receiverId, ConsultationMessages message) {
+}
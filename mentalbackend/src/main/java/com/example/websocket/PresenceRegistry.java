@@ -0,0 +1,194 @@
+package com.example.websocket;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionConnectEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 聊天参与者在线状态
+ * 会话订阅 /queue/messages/{type}/{id}，或在CONNECT帧中携带 participant-type、participant-id 头时登记为在线，
+ * 取消订阅或断开连接时移除。同一参与者可以有多个会话，按引用计数判断是否在线。
+ * 入站通道多线程处理时，同一会话的SUBSCRIBE可能晚于DISCONNECT事件到达，已断开的会话ID保留一段时间，期间到达的登记直接忽略。
+ * 所有状态保存在ConcurrentHashMap中，只锁单个哈希桶，大量并发连接和断开事件之间不会互相阻塞。
+ * 代理转发模式下接收者可能连接在其他节点，本节点无法判断，因此始终视为在线。
+ */
+@Component
+public class PresenceRegistry {
+
+    public static final String PARTICIPANT_TYPE_HEADER = "participant-type";
+    public static final String PARTICIPANT_ID_HEADER = "participant-id";
+
+    private static final String MESSAGES_PREFIX = "/queue/messages/";
+    private static final String CONNECT_KEY = "";
+
+    // 已断开会话ID的保留时间，远大于同一会话入站消息之间可能的乱序间隔
+    private static final long CLOSED_SESSION_RETENTION_SECONDS = 60;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Value("${chat.broker.mode:simple}")
+    private String brokerMode;
+
+    // 参与者 -> 登记次数（订阅数 + CONNECT登记数）
+    private final Map<Participant, Integer> online = new ConcurrentHashMap<>();
+
+    // 会话ID -> (订阅ID，CONNECT登记使用空字符串 -> 参与者)，用于取消订阅和断开连接时清理
+    private final Map<String, Map<String, Participant>> sessions = new ConcurrentHashMap<>();
+
+    // 已断开的会话ID -> 断开时间（System.nanoTime）
+    private final Map<String, Long> closedSessions = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        Gauge.builder("chat.presence.online", online, Map::size)
+                .description("当前在线的参与者数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 参与者是否在线，type为USER或COUNSELOR（不区分大小写）
+     */
+    public boolean isOnline(String type, Long id) {
+        if (isRelayMode()) {
+            return true;
+        }
+        return type != null && id != null && online.containsKey(new Participant(normalize(type), id));
+    }
+
+    /**
+     * 批量查询在线状态，返回的顺序与ids一致
+     */
+    public Map<Long, Boolean> lookup(String type, Collection<Long> ids) {
+        Map<Long, Boolean> result = new LinkedHashMap<>();
+        for (Long id : ids) {
+            result.put(id, isOnline(type, id));
+        }
+        return result;
+    }
+
+    public boolean isRelayMode() {
+        return "relay".equalsIgnoreCase(brokerMode);
+    }
+
+    @EventListener
+    public void onConnect(SessionConnectEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        String type = accessor.getFirstNativeHeader(PARTICIPANT_TYPE_HEADER);
+        String id = accessor.getFirstNativeHeader(PARTICIPANT_ID_HEADER);
+        if (type == null || id == null || accessor.getSessionId() == null) {
+            return;
+        }
+        try {
+            register(accessor.getSessionId(), CONNECT_KEY, new Participant(normalize(type), Long.parseLong(id.trim())));
+        } catch (NumberFormatException ignored) {
+            // 非法的participant-id不登记，仍可通过订阅登记
+        }
+    }
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        Participant participant = parseDestination(accessor.getDestination());
+        if (participant == null || accessor.getSessionId() == null || accessor.getSubscriptionId() == null) {
+            return;
+        }
+        register(accessor.getSessionId(), accessor.getSubscriptionId(), participant);
+    }
+
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        Map<String, Participant> registrations = sessions.get(accessor.getSessionId());
+        if (registrations == null || accessor.getSubscriptionId() == null) {
+            return;
+        }
+        Participant participant = registrations.remove(accessor.getSubscriptionId());
+        if (participant != null) {
+            release(participant);
+        }
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        // 先标记已断开再移除登记：之后到达的登记会被忽略，之前完成的登记会被这里移除
+        closedSessions.put(event.getSessionId(), System.nanoTime());
+        Map<String, Participant> registrations = sessions.remove(event.getSessionId());
+        if (registrations == null) {
+            return;
+        }
+        registrations.values().forEach(this::release);
+    }
+
+    /**
+     * 清理超出保留时间的已断开会话ID
+     */
+    @Scheduled(fixedDelayString = "${chat.presence.prune-interval-ms:30000}")
+    public void pruneClosedSessions() {
+        long expireBefore = System.nanoTime() - TimeUnit.SECONDS.toNanos(CLOSED_SESSION_RETENTION_SECONDS);
+        closedSessions.values().removeIf(closedNanos -> closedNanos - expireBefore < 0);
+    }
+
+    private void register(String sessionId, String key, Participant participant) {
+        // 在会话的哈希桶锁内检查是否已断开，与onDisconnect中的移除互斥
+        sessions.compute(sessionId, (k, registrations) -> {
+            if (closedSessions.containsKey(sessionId)) {
+                return registrations;
+            }
+            Map<String, Participant> result = registrations != null ? registrations : new ConcurrentHashMap<>();
+            Participant previous = result.put(key, participant);
+            online.merge(participant, 1, Integer::sum);
+            if (previous != null) {
+                release(previous);
+            }
+            return result;
+        });
+    }
+
+    private void release(Participant participant) {
+        online.computeIfPresent(participant, (key, count) -> count <= 1 ? null : count - 1);
+    }
+
+    /**
+     * 解析 /queue/messages/{type}/{id}，其他目的地返回null
+     */
+    static Participant parseDestination(String destination) {
+        if (destination == null || !destination.startsWith(MESSAGES_PREFIX)) {
+            return null;
+        }
+        String rest = destination.substring(MESSAGES_PREFIX.length());
+        int slash = rest.indexOf('/');
+        if (slash <= 0 || slash == rest.length() - 1) {
+            return null;
+        }
+        try {
+            return new Participant(normalize(rest.substring(0, slash)), Long.parseLong(rest.substring(slash + 1)));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static String normalize(String type) {
+        return type.trim().toUpperCase(Locale.ROOT);
+    }
+
+    record Participant(String type, long id) {
+    }
+}
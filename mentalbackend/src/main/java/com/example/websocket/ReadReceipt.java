@@ -0,0 +1,85 @@
+package com.example.websocket;
+
+/**
+ * 已读回执，发送到会话对方的 /queue/receipts/{type}/{id}
+ */
+public class ReadReceipt {
+    // 用户ID
+    private Long userId;
+
+    // 咨询师ID
+    private Long counselorId;
+
+    // 标记已读的一方：USER 或 COUNSELOR
+    private String readerType;
+
+    // 已读到的消息ID，按时间标记时为null
+    private Long upToMessageId;
+
+    // 已读到的消息时间（毫秒时间戳）
+    private long upToTime;
+
+    // 本次标记为已读的消息数
+    private int count;
+
+    public ReadReceipt() {
+    }
+
+    public ReadReceipt(Long userId, Long counselorId, String readerType, Long upToMessageId, long upToTime, int count) {
+        this.userId = userId;
+        this.counselorId = counselorId;
+        this.readerType = readerType;
+        this.upToMessageId = upToMessageId;
+        this.upToTime = upToTime;
+        this.count = count;
+    }
+
+    // Getters and Setters
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public Long getCounselorId() {
+        return counselorId;
+    }
+
+    public void setCounselorId(Long counselorId) {
+        this.counselorId = counselorId;
+    }
+
+    public String getReaderType() {
+        return readerType;
+    }
+
+    public void setReaderType(String readerType) {
+        this.readerType = readerType;
+    }
+
+    public Long getUpToMessageId() {
+        return upToMessageId;
+    }
+
+    public void setUpToMessageId(Long upToMessageId) {
+        this.upToMessageId = upToMessageId;
+    }
+
+    public long getUpToTime() {
+        return upToTime;
+    }
+
+    public void setUpToTime(long upToTime) {
+        this.upToTime = upToTime;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public void setCount(int count) {
+        this.count = count;
+    }
+}
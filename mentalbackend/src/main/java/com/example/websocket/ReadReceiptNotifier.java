@@ -0,0 +1,43 @@
+package com.example.websocket;
+
+import jakarta.annotation.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * 已读回执推送
+ * 会话按范围标记已读后，把回执发送给会话对方的 /queue/receipts/{type}/{id}；对方不在线时不发送，
+ * 上线后可通过对话记录接口中的readStatus获取已读状态。
+ */
+@Component
+public class ReadReceiptNotifier {
+
+    private static final Logger log = LoggerFactory.getLogger(ReadReceiptNotifier.class);
+
+    @Resource
+    private ChatMessageSender chatMessageSender;
+
+    @Resource
+    private PresenceRegistry presenceRegistry;
+
+    @EventListener
+    public void onConversationRead(ConversationReadEvent event) {
+        boolean readerIsUser = "USER".equals(event.readerType());
+        String peerType = readerIsUser ? "COUNSELOR" : "USER";
+        Long peerId = readerIsUser ? event.counselorId() : event.userId();
+        if (!presenceRegistry.isOnline(peerType, peerId)) {
+            return;
+        }
+        ReadReceipt receipt = new ReadReceipt(event.userId(), event.counselorId(), event.readerType(),
+                event.upToMessageId(), event.upToTime().toEpochMilli(),
+                event.count());
+        String destination = "/queue/receipts/" + peerType.toLowerCase() + "/" + peerId;
+        try {
+            chatMessageSender.send(destination, receipt);
+        } catch (Exception e) {
+            log.warn("发送已读回执失败: 目的地={}, 原因={}", destination, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.example.websocket;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 慢消费者保护
+ * 作为WebSocket处理器装饰工厂注册到传输配置中，为每个连接包装 {@link SlowConsumerSessionDecorator}，
+ * 并统计慢会话数量、各会话缓冲字节数、丢弃和断开次数。
+ */
+@Component
+public class SlowConsumerMonitor implements WebSocketHandlerDecoratorFactory {
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 缓冲超限时的处理策略：disconnect（默认）、drop、coalesce
+     * coalesce会把多个STOMP帧合并进一条WebSocket消息，只有能按帧结束符拆分的客户端才能使用
+     */
+    @Value("${chat.websocket.slow-consumer.policy:disconnect}")
+    private String policyName;
+
+    @Value("${chat.websocket.slow-consumer.send-time-limit-ms:10000}")
+    private long sendTimeLimitMs;
+
+    @Value("${chat.websocket.slow-consumer.send-buffer-size-limit-bytes:524288}")
+    private int sendBufferSizeLimit;
+
+    @Value("${chat.websocket.slow-consumer.coalesce-limit-bytes:65536}")
+    private int coalesceLimit;
+
+    @Value("${chat.websocket.slow-consumer.flush-pool-size:16}")
+    private int flushPoolSize;
+
+    /**
+     * 已超限的慢会话最多同时占用的写出线程数，其余线程留给正常会话
+     */
+    @Value("${chat.websocket.slow-consumer.slow-flush-threads:4}")
+    private int slowFlushThreads;
+
+    private final Map<String, SlowConsumerSessionDecorator> sessions = new ConcurrentHashMap<>();
+
+    private final AtomicInteger slowSessions = new AtomicInteger();
+
+    private Semaphore slowFlushPermits;
+
+    private SlowConsumerSessionDecorator.Policy policy;
+
+    private ThreadPoolTaskExecutor flushExecutor;
+
+    private Counter droppedCounter;
+
+    private Counter disconnectedCounter;
+
+    @PostConstruct
+    public void init() {
+        policy = SlowConsumerSessionDecorator.Policy.valueOf(policyName.trim().toUpperCase(Locale.ROOT));
+        slowFlushPermits = new Semaphore(Math.max(1, Math.min(slowFlushThreads, flushPoolSize - 1)));
+
+        flushExecutor = new ThreadPoolTaskExecutor();
+        flushExecutor.setThreadNamePrefix("ws-flush-");
+        flushExecutor.setCorePoolSize(flushPoolSize);
+        flushExecutor.setMaxPoolSize(flushPoolSize);
+        // 每个会话同一时刻最多一个写出任务，排队任务数不超过会话数
+        flushExecutor.setAllowCoreThreadTimeOut(true);
+        flushExecutor.initialize();
+
+        Gauge.builder("chat.websocket.sessions.slow", slowSessions, AtomicInteger::get)
+                .description("发送缓冲或写出时间超过限制的会话数")
+                .register(meterRegistry);
+        Gauge.builder("chat.websocket.session.buffer.bytes", this, SlowConsumerMonitor::totalBufferedBytes)
+                .tag("stat", "total")
+                .description("所有会话待写出的字节数")
+                .register(meterRegistry);
+        Gauge.builder("chat.websocket.session.buffer.bytes", this, SlowConsumerMonitor::maxBufferedBytes)
+                .tag("stat", "max")
+                .description("单个会话待写出的最大字节数")
+                .register(meterRegistry);
+        droppedCounter = meterRegistry.counter("chat.websocket.slow.dropped");
+        disconnectedCounter = meterRegistry.counter("chat.websocket.slow.disconnected");
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flushExecutor.shutdown();
+    }
+
+    public SlowConsumerSessionDecorator.Policy getPolicy() {
+        return policy;
+    }
+
+    public long getSendTimeLimitMs() {
+        return sendTimeLimitMs;
+    }
+
+    public int getSendBufferSizeLimit() {
+        return sendBufferSizeLimit;
+    }
+
+    @Override
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                SlowConsumerSessionDecorator decorated = new SlowConsumerSessionDecorator(session, policy,
+                        sendTimeLimitMs, sendBufferSizeLimit, coalesceLimit, flushExecutor, SlowConsumerMonitor.this);
+                sessions.put(session.getId(), decorated);
+                super.afterConnectionEstablished(decorated);
+            }
+
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                SlowConsumerSessionDecorator removed = sessions.remove(session.getId());
+                if (removed != null && removed.isSlow()) {
+                    slowSessions.decrementAndGet();
+                }
+                super.afterConnectionClosed(session, closeStatus);
+            }
+        };
+    }
+
+    /**
+     * 定时检查写出卡住的会话，没有新消息到达时也能及时断开；暂停写出的慢会话重新排队
+     */
+    @Scheduled(fixedDelayString = "${chat.websocket.slow-consumer.check-interval-ms:1000}")
+    public void checkSendTimeLimits() {
+        for (SlowConsumerSessionDecorator session : sessions.values()) {
+            if (!session.checkSendTimeLimit()) {
+                session.resumeFlush();
+            }
+        }
+    }
+
+    boolean tryAcquireSlowFlush() {
+        return slowFlushPermits.tryAcquire();
+    }
+
+    void releaseSlowFlush() {
+        slowFlushPermits.release();
+    }
+
+    void onSlow(SlowConsumerSessionDecorator session) {
+        slowSessions.incrementAndGet();
+    }
+
+    void onRecovered(SlowConsumerSessionDecorator session) {
+        slowSessions.decrementAndGet();
+    }
+
+    void onDropped(SlowConsumerSessionDecorator session, int count) {
+        droppedCounter.increment(count);
+    }
+
+    void onDisconnected(SlowConsumerSessionDecorator session) {
+        disconnectedCounter.increment();
+    }
+
+    private double totalBufferedBytes() {
+        long total = 0;
+        for (SlowConsumerSessionDecorator session : sessions.values()) {
+            total += session.getBufferedBytes();
+        }
+        return total;
+    }
+
+    private double maxBufferedBytes() {
+        int max = 0;
+        for (SlowConsumerSessionDecorator session : sessions.values()) {
+            max = Math.max(max, session.getBufferedBytes());
+        }
+        return max;
+    }
+}
@@ -0,0 +1,323 @@
+package com.example.websocket;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.NativeWebSocketSession;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 带发送缓冲和慢消费者策略的WebSocket会话
+ * 出站消息先进入本会话的缓冲区，由写出线程池异步写到底层连接，出站通道线程不会被慢连接阻塞；
+ * 单次写出超过时间限制时断开连接，缓冲超过字节上限时按策略处理：
+ * DISCONNECT 断开连接；DROP 丢弃最早的消息；COALESCE 丢弃最早的消息，并把缓冲中连续的文本帧合并为一次写出。
+ * 写出线程池由所有会话共用，为避免少数卡住的连接占满线程：
+ * 1. 同一会话同一时刻最多占用一个写出线程，每次最多写出 {@link #FLUSH_QUOTA} 条后重新排队，让其他会话先写
+ * 2. 底层连接的阻塞写设置了超时（Tomcat BLOCKING_SEND_TIMEOUT），卡住的写出最多占用线程 send-time-limit-ms
+ * 3. 已超限的慢会话同时占用的写出线程数有上限，拿不到名额时暂不写出，由定时检查稍后重试
+ * 正常关闭会话时先在写出时间限制内写完缓冲区（包括STOMP的ERROR/RECEIPT帧）再关闭；慢消费者策略断开时直接丢弃缓冲
+ */
+public class SlowConsumerSessionDecorator extends WebSocketSessionDecorator {
+
+    private static final Logger log = LoggerFactory.getLogger(SlowConsumerSessionDecorator.class);
+
+    public enum Policy {
+        DISCONNECT, DROP, COALESCE
+    }
+
+    // 单个写出任务最多写出的消息数，写完后重新排队
+    static final int FLUSH_QUOTA = 32;
+
+    // Tomcat阻塞写超时的会话属性（毫秒）
+    private static final String BLOCKING_SEND_TIMEOUT = "org.apache.tomcat.websocket.BLOCKING_SEND_TIMEOUT";
+
+    private final Policy policy;
+    private final long sendTimeLimitNanos;
+    private final int bufferSizeLimit;
+    private final int coalesceLimit;
+    private final Executor flushExecutor;
+    private final SlowConsumerMonitor monitor;
+
+    private final Deque<WebSocketMessage<?>> buffer = new ArrayDeque<>();
+    private int bufferedBytes;
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+    private volatile long sendStartNanos;
+    private final AtomicBoolean limitExceeded = new AtomicBoolean();
+    private volatile boolean closing;
+
+    public SlowConsumerSessionDecorator(WebSocketSession delegate, Policy policy, long sendTimeLimitMs, int bufferSizeLimit,
+                                        int coalesceLimit, Executor flushExecutor, SlowConsumerMonitor monitor) {
+        super(delegate);
+        this.policy = policy;
+        this.sendTimeLimitNanos = TimeUnit.MILLISECONDS.toNanos(sendTimeLimitMs);
+        this.bufferSizeLimit = bufferSizeLimit;
+        this.coalesceLimit = coalesceLimit;
+        this.flushExecutor = flushExecutor;
+        this.monitor = monitor;
+        applyBlockingSendTimeout(delegate, sendTimeLimitMs);
+    }
+
+    /**
+     * 为原生WebSocket连接设置阻塞写超时，写不出去时在时间限制内抛出异常而不是一直占用写出线程
+     */
+    private static void applyBlockingSendTimeout(WebSocketSession delegate, long sendTimeLimitMs) {
+        if (WebSocketSessionDecorator.unwrap(delegate) instanceof NativeWebSocketSession nativeSession) {
+            jakarta.websocket.Session session = nativeSession.getNativeSession(jakarta.websocket.Session.class);
+            if (session != null) {
+                session.getUserProperties().put(BLOCKING_SEND_TIMEOUT, sendTimeLimitMs);
+            }
+        }
+    }
+
+    public synchronized int getBufferedBytes() {
+        return bufferedBytes;
+    }
+
+    public boolean isSlow() {
+        return limitExceeded.get();
+    }
+
+    @Override
+    public void sendMessage(WebSocketMessage<?> message) throws IOException {
+        if (closing) {
+            return;
+        }
+        synchronized (this) {
+            buffer.addLast(message);
+            bufferedBytes += message.getPayloadLength();
+        }
+        if (checkSendTimeLimit()) {
+            return;
+        }
+        checkBufferLimit();
+        scheduleFlush();
+    }
+
+    private void scheduleFlush() {
+        if (closing || !flushScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        // 慢会话需要先拿到慢会话写出名额，拿不到时留在缓冲区，由定时检查调用resumeFlush重试
+        boolean slowPermit = isSlow();
+        if (slowPermit && !monitor.tryAcquireSlowFlush()) {
+            flushScheduled.set(false);
+            return;
+        }
+        try {
+            flushExecutor.execute(() -> flush(slowPermit));
+        } catch (TaskRejectedException e) {
+            // 写出线程池已关闭
+            flushScheduled.set(false);
+            if (slowPermit) {
+                monitor.releaseSlowFlush();
+            }
+        }
+    }
+
+    /**
+     * 定时检查时调用：之前因没有慢会话写出名额而暂停的会话重新排队写出
+     */
+    void resumeFlush() {
+        if (hasBufferedMessages()) {
+            scheduleFlush();
+        }
+    }
+
+    /**
+     * 在写出线程中把缓冲区写到底层连接，同一会话同一时刻只有一个写出任务，每次最多写出FLUSH_QUOTA条
+     */
+    private void flush(boolean slowPermit) {
+        try {
+            WebSocketMessage<?> next;
+            int sent = 0;
+            while (!closing && sent < FLUSH_QUOTA && (next = nextToSend()) != null) {
+                sendStartNanos = System.nanoTime();
+                try {
+                    getDelegate().sendMessage(next);
+                } finally {
+                    sendStartNanos = 0;
+                }
+                sent++;
+            }
+            if (getBufferedBytes() <= bufferSizeLimit / 2 && limitExceeded.compareAndSet(true, false)) {
+                monitor.onRecovered(this);
+            }
+        } catch (Exception e) {
+            log.warn("WebSocket消息写出失败，关闭会话: 会话={}, 原因={}", getId(), e.getMessage());
+            disconnect(CloseStatus.SESSION_NOT_RELIABLE);
+            return;
+        } finally {
+            if (slowPermit) {
+                monitor.releaseSlowFlush();
+            }
+            flushScheduled.set(false);
+            synchronized (this) {
+                // 唤醒等待写出结束的close
+                notifyAll();
+            }
+        }
+        // 写满配额后剩余的消息，以及写出任务结束前进入缓冲区的新消息，重新排到线程池队尾
+        if (hasBufferedMessages()) {
+            scheduleFlush();
+        }
+    }
+
+    /**
+     * 取出下一次要写出的消息；COALESCE策略下把连续的文本帧合并为一条，减少慢连接上的写次数
+     */
+    private synchronized WebSocketMessage<?> nextToSend() {
+        WebSocketMessage<?> first = buffer.pollFirst();
+        if (first == null) {
+            return null;
+        }
+        bufferedBytes -= first.getPayloadLength();
+        if (policy != Policy.COALESCE || !(first instanceof TextMessage) || !(buffer.peekFirst() instanceof TextMessage)) {
+            return first;
+        }
+        StringBuilder merged = new StringBuilder(((TextMessage) first).getPayload());
+        while (buffer.peekFirst() instanceof TextMessage text && merged.length() + text.getPayloadLength() <= coalesceLimit) {
+            buffer.pollFirst();
+            bufferedBytes -= text.getPayloadLength();
+            merged.append(text.getPayload());
+        }
+        return new TextMessage(merged.toString());
+    }
+
+    private synchronized boolean hasBufferedMessages() {
+        return !buffer.isEmpty();
+    }
+
+    /**
+     * 检查当前写出是否超时，超时说明底层连接已不可用，无论何种策略都断开
+     * @return true表示会话已断开
+     */
+    public boolean checkSendTimeLimit() {
+        long start = sendStartNanos;
+        if (closing || start == 0 || System.nanoTime() - start <= sendTimeLimitNanos) {
+            return closing;
+        }
+        markSlow();
+        log.warn("慢消费者写出超时，断开连接: 会话={}, 缓冲={}字节", getId(), getBufferedBytes());
+        monitor.onDisconnected(this);
+        disconnect(CloseStatus.SESSION_NOT_RELIABLE);
+        return true;
+    }
+
+    private void checkBufferLimit() {
+        if (getBufferedBytes() <= bufferSizeLimit) {
+            return;
+        }
+        markSlow();
+        if (policy == Policy.DISCONNECT) {
+            log.warn("慢消费者发送缓冲超过{}字节，断开连接: 会话={}", bufferSizeLimit, getId());
+            monitor.onDisconnected(this);
+            disconnect(CloseStatus.SESSION_NOT_RELIABLE);
+            return;
+        }
+        // DROP/COALESCE：丢弃最早的消息直到回到上限以内，至少保留最新的一条
+        int dropped = 0;
+        synchronized (this) {
+            while (bufferedBytes > bufferSizeLimit && buffer.size() > 1) {
+                bufferedBytes -= buffer.pollFirst().getPayloadLength();
+                dropped++;
+            }
+        }
+        if (dropped > 0) {
+            monitor.onDropped(this, dropped);
+        }
+    }
+
+    private void markSlow() {
+        if (limitExceeded.compareAndSet(false, true)) {
+            monitor.onSlow(this);
+        }
+    }
+
+    private void disconnect(CloseStatus status) {
+        if (closing) {
+            return;
+        }
+        closing = true;
+        synchronized (this) {
+            buffer.clear();
+            bufferedBytes = 0;
+        }
+        try {
+            getDelegate().close(status);
+        } catch (Exception e) {
+            log.debug("关闭WebSocket会话失败: 会话={}, 原因={}", getId(), e.getMessage());
+        }
+    }
+
+    @Override
+    public void close(CloseStatus status) throws IOException {
+        if (!closing) {
+            flushBeforeClose();
+        }
+        closing = true;
+        super.close(status);
+    }
+
+    /**
+     * 关闭前在调用线程上写完缓冲区，最多等待send-time-limit-ms；写出线程正在写时等它结束后接着写
+     */
+    private void flushBeforeClose() {
+        long deadline = System.nanoTime() + sendTimeLimitNanos;
+        while (!closing && hasBufferedMessages() && deadline - System.nanoTime() > 0) {
+            if (!flushScheduled.compareAndSet(false, true)) {
+                if (!awaitFlushIdle(deadline)) {
+                    break;
+                }
+                continue;
+            }
+            try {
+                WebSocketMessage<?> next;
+                while (!closing && deadline - System.nanoTime() > 0 && (next = nextToSend()) != null) {
+                    sendStartNanos = System.nanoTime();
+                    try {
+                        getDelegate().sendMessage(next);
+                    } finally {
+                        sendStartNanos = 0;
+                    }
+                }
+            } catch (Exception e) {
+                log.debug("关闭前写出缓冲失败: 会话={}, 原因={}", getId(), e.getMessage());
+                return;
+            } finally {
+                flushScheduled.set(false);
+            }
+        }
+        if (hasBufferedMessages()) {
+            log.warn("关闭前未能在{}ms内写完缓冲，丢弃剩余消息: 会话={}, 缓冲={}字节",
+                    TimeUnit.NANOSECONDS.toMillis(sendTimeLimitNanos), getId(), getBufferedBytes());
+        }
+    }
+
+    /**
+     * @return 被中断时返回false
+     */
+    private synchronized boolean awaitFlushIdle(long deadline) {
+        long remaining;
+        while (flushScheduled.get() && (remaining = deadline - System.nanoTime()) > 0) {
+            try {
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+}
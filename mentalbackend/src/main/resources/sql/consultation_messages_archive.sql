@@ -0,0 +1,18 @@
+-- 消息归档表：定时任务把超过保留天数的已读消息从 consultation_messages 移到这里，保留原消息ID
+-- 热表只保留近期消息和未读消息，索引大小和查询耗时不再随历史消息无限增长；归档表按压缩行格式存储
+CREATE TABLE IF NOT EXISTS consultation_messages_archive (
+    id                BIGINT       NOT NULL PRIMARY KEY,
+    appointment_id    BIGINT,
+    sender_type       VARCHAR(20)  NOT NULL,
+    message_type      VARCHAR(20)  NOT NULL,
+    content           TEXT,
+    media_url         VARCHAR(500),
+    duration_seconds  INT,
+    sent_time         DATETIME     NOT NULL,
+    read_status       BOOLEAN      DEFAULT FALSE,
+    user_id           BIGINT,
+    counselor_id      BIGINT,
+    conversation_type VARCHAR(30),
+    INDEX idx_archive_conversation (user_id, counselor_id, sent_time, id),
+    INDEX idx_archive_appointment (appointment_id)
+) ROW_FORMAT=COMPRESSED;
@@ -0,0 +1,11 @@
+-- consultation_messages 表索引
+-- 对话记录游标分页：WHERE user_id = ? AND counselor_id = ? AND (sent_time, id) < (?, ?) ORDER BY sent_time DESC, id DESC
+CREATE INDEX idx_conversation_cursor ON consultation_messages (user_id, counselor_id, sent_time, id);
+
+-- 未读数统计：WHERE user_id = ? AND read_status = FALSE GROUP BY counselor_id（接收者为咨询师时相反）
+CREATE INDEX idx_user_unread ON consultation_messages (user_id, read_status, counselor_id);
+CREATE INDEX idx_counselor_unread ON consultation_messages (counselor_id, read_status, user_id);
+
+-- 断线重连补发：WHERE user_id = ? AND id > ? ORDER BY id LIMIT ?（接收者为咨询师时按 counselor_id）
+CREATE INDEX idx_user_sync ON consultation_messages (user_id, id);
+CREATE INDEX idx_counselor_sync ON consultation_messages (counselor_id, id);
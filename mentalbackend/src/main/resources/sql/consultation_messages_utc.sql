@@ -0,0 +1,5 @@
+-- 消息时间改为按UTC保存：把升级前按服务器本地时间（北京时间，UTC+8）写入的时间减8小时
+-- 只能执行一次，需在停止写入消息后、部署新版本之前执行
+UPDATE consultation_messages SET sent_time = DATE_SUB(sent_time, INTERVAL 8 HOUR);
+
+UPDATE conversation_summary SET last_sent_time = DATE_SUB(last_sent_time, INTERVAL 8 HOUR);
@@ -0,0 +1,31 @@
+-- 会话摘要表：每个 (用户, 咨询师) 会话一行，记录最新一条消息，保存消息时同步更新
+-- 消息列表页按 user_id 或 counselor_id 分页读取，不再扫描全部消息
+CREATE TABLE IF NOT EXISTS conversation_summary (
+    user_id           BIGINT       NOT NULL,
+    counselor_id      BIGINT       NOT NULL,
+    last_message_id   BIGINT       NOT NULL,
+    last_sender_type  VARCHAR(20)  NOT NULL,
+    last_message_type VARCHAR(20)  NOT NULL,
+    last_content      VARCHAR(255),
+    last_sent_time    DATETIME     NOT NULL,
+    PRIMARY KEY (user_id, counselor_id),
+    INDEX idx_summary_user (user_id, last_sent_time),
+    INDEX idx_summary_counselor (counselor_id, last_sent_time)
+);
+
+-- 从已有消息回填（MySQL 8），可重复执行
+INSERT INTO conversation_summary
+    (user_id, counselor_id, last_message_id, last_sender_type, last_message_type, last_content, last_sent_time)
+SELECT user_id, counselor_id, id, sender_type, message_type, LEFT(content, 200), sent_time
+FROM (
+    SELECT m.*, ROW_NUMBER() OVER (PARTITION BY user_id, counselor_id ORDER BY sent_time DESC, id DESC) AS rn
+    FROM consultation_messages m
+    WHERE user_id IS NOT NULL AND counselor_id IS NOT NULL
+) latest
+WHERE rn = 1
+ON DUPLICATE KEY UPDATE
+    last_message_id = VALUES(last_message_id),
+    last_sender_type = VALUES(last_sender_type),
+    last_message_type = VALUES(last_message_type),
+    last_content = VALUES(last_content),
+    last_sent_time = VALUES(last_sent_time);
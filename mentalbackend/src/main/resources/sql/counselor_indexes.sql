@@ -0,0 +1,8 @@
+-- 咨询师列表：counselors 按 status 筛选后与 users、counselor_service_settings 关联
+CREATE INDEX idx_counselors_status ON counselors (status);
+
+-- LEFT JOIN counselor_service_settings css ON c.id = css.counselor_id
+CREATE INDEX idx_service_settings_counselor ON counselor_service_settings (counselor_id);
+
+-- 修改用户信息（性别）后按 user_id 查找对应的咨询师，刷新筛选索引
+CREATE INDEX idx_counselors_user ON counselors (user_id);
@@ -0,0 +1,59 @@
+-- 咨询师标签规范化：标签字典 tag 和关联表 counselor_tag（MySQL 8.0及以上，迁移使用 JSON_TABLE）
+-- counselors.specialization、counselors.therapeutic_approach、counselor_service_settings.service_types 仍保存JSON数组，
+-- 新增和修改咨询师时由 CounselorTagService 同步到关联表；筛选按关联表和内存中的倒排索引完成
+-- 之前的 counselor_filter_indexes.sql（标签列改为JSON类型并建立 JSON_OVERLAPS 多值索引）已废弃并删除，筛选不再使用这些索引。
+-- 已执行过该脚本的库可删除多值索引以减少写入开销，JSON列类型保持不变即可：
+--   DROP INDEX idx_counselors_specialization ON counselors;
+--   DROP INDEX idx_counselors_approach ON counselors;
+--   DROP INDEX idx_service_settings_types ON counselor_service_settings;
+CREATE TABLE tag (
+    id       BIGINT      NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    tag_type VARCHAR(20) NOT NULL,
+    name     VARCHAR(64) NOT NULL,
+    UNIQUE KEY uk_tag_type_name (tag_type, name)
+);
+
+CREATE TABLE counselor_tag (
+    counselor_id BIGINT      NOT NULL,
+    tag_type     VARCHAR(20) NOT NULL,
+    tag_id       BIGINT      NOT NULL,
+    PRIMARY KEY (counselor_id, tag_type, tag_id),
+    INDEX idx_counselor_tag_tag (tag_id, counselor_id)
+);
+
+-- 迁移已有数据：解析JSON数组，非法的JSON按空数组处理
+INSERT IGNORE INTO tag (tag_type, name)
+SELECT 'SPECIALIZATION', jt.name
+FROM counselors c,
+     JSON_TABLE(IF(JSON_VALID(c.specialization), c.specialization, '[]'), '$[*]' COLUMNS (name VARCHAR(64) PATH '$')) jt
+WHERE jt.name IS NOT NULL AND jt.name <> '';
+
+INSERT IGNORE INTO tag (tag_type, name)
+SELECT 'APPROACH', jt.name
+FROM counselors c,
+     JSON_TABLE(IF(JSON_VALID(c.therapeutic_approach), c.therapeutic_approach, '[]'), '$[*]' COLUMNS (name VARCHAR(64) PATH '$')) jt
+WHERE jt.name IS NOT NULL AND jt.name <> '';
+
+INSERT IGNORE INTO tag (tag_type, name)
+SELECT 'SERVICE_TYPE', jt.name
+FROM counselor_service_settings css,
+     JSON_TABLE(IF(JSON_VALID(css.service_types), css.service_types, '[]'), '$[*]' COLUMNS (name VARCHAR(64) PATH '$')) jt
+WHERE jt.name IS NOT NULL AND jt.name <> '';
+
+INSERT IGNORE INTO counselor_tag (counselor_id, tag_type, tag_id)
+SELECT c.id, 'SPECIALIZATION', t.id
+FROM counselors c,
+     JSON_TABLE(IF(JSON_VALID(c.specialization), c.specialization, '[]'), '$[*]' COLUMNS (name VARCHAR(64) PATH '$')) jt
+JOIN tag t ON t.tag_type = 'SPECIALIZATION' AND t.name = jt.name;
+
+INSERT IGNORE INTO counselor_tag (counselor_id, tag_type, tag_id)
+SELECT c.id, 'APPROACH', t.id
+FROM counselors c,
+     JSON_TABLE(IF(JSON_VALID(c.therapeutic_approach), c.therapeutic_approach, '[]'), '$[*]' COLUMNS (name VARCHAR(64) PATH '$')) jt
+JOIN tag t ON t.tag_type = 'APPROACH' AND t.name = jt.name;
+
+INSERT IGNORE INTO counselor_tag (counselor_id, tag_type, tag_id)
+SELECT css.counselor_id, 'SERVICE_TYPE', t.id
+FROM counselor_service_settings css,
+     JSON_TABLE(IF(JSON_VALID(css.service_types), css.service_types, '[]'), '$[*]' COLUMNS (name VARCHAR(64) PATH '$')) jt
+JOIN tag t ON t.tag_type = 'SERVICE_TYPE' AND t.name = jt.name;
@@ -0,0 +1,116 @@
+package com.example.cache;
+
+import com.example.entity.ConsultationMessages;
+import com.example.mapper.ConsultationMessagesMapper;
+import com.example.service.ConsultationMessagesService;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.Resource;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 会话消息缓存：命中缓存返回的第一页与直接查询数据库的结果一致，包括同一秒内发送的消息顺序，
+ * 以及新消息、单条已读、范围已读和删除之后的阅读状态（内嵌H2数据库）
+ */
+@SpringBootTest
+@ActiveProfiles("h2")
+public class ConversationMessageCacheTest {
+
+    private static final long USER_ID = 1002L;
+    private static final long COUNSELOR_ID = 4002L;
+    private static final int PAGE_SIZE = 20;
+
+    @Resource
+    private ConsultationMessagesService consultationMessagesService;
+
+    @Resource
+    private ConsultationMessagesMapper consultationMessagesMapper;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Test
+    public void cachedFirstPageMatchesDatabase() {
+        Instant base = Instant.now().minusSeconds(600).truncatedTo(ChronoUnit.SECONDS);
+        List<ConsultationMessages> messages = new ArrayList<>();
+        // 每秒3条，双方交替发送，排序需要按id区分同一秒内的消息
+        for (int i = 0; i < 30; i++) {
+            messages.add(buildMessage(i % 2 == 0 ? "USER" : "COUNSELOR", base.plusSeconds(i / 3)));
+        }
+        List<Long> ids = consultationMessagesService.saveMessages(messages);
+
+        // 第一次读取加载缓存，第二次命中缓存
+        assertPageMatchesDatabase();
+        double hits = hitCount();
+        assertPageMatchesDatabase();
+        assertTrue(hitCount() > hits, "第一页应命中缓存");
+
+        // 新消息追加到缓存项，与已有消息同一秒
+        consultationMessagesService.saveMessages(List.of(
+                buildMessage("USER", base.plusSeconds(9)), buildMessage("COUNSELOR", base.plusSeconds(9))));
+        assertPageMatchesDatabase();
+
+        // 单条更新阅读状态
+        consultationMessagesService.updateReadStatus(ids.get(29), true);
+        consultationMessagesService.updateReadStatus(ids.get(28), true);
+        consultationMessagesService.updateReadStatus(ids.get(28), false);
+        assertPageMatchesDatabase();
+
+        // 咨询师把用户发送的消息按范围标记为已读，上界与其他消息在同一秒
+        consultationMessagesService.markConversationRead(USER_ID, COUNSELOR_ID, "COUNSELOR", ids.get(25), null);
+        assertPageMatchesDatabase();
+
+        // 删除后缓存项重新加载
+        consultationMessagesService.removeByIds(List.of(ids.get(27), ids.get(20)));
+        assertPageMatchesDatabase();
+        hits = hitCount();
+        assertPageMatchesDatabase();
+        assertTrue(hitCount() > hits, "重新加载后应再次命中缓存");
+    }
+
+    private void assertPageMatchesDatabase() {
+        List<ConsultationMessages> cached = consultationMessagesService
+                .getConversationByCursor(USER_ID, COUNSELOR_ID, null, null, PAGE_SIZE).getMessages();
+        List<ConsultationMessages> cursorPage = consultationMessagesMapper
+                .getConversationBeforeCursor(USER_ID, COUNSELOR_ID, null, null, PAGE_SIZE);
+        List<ConsultationMessages> offsetPage = consultationMessagesService
+                .getConversationByUserAndCounselor(USER_ID, COUNSELOR_ID, PAGE_SIZE, 0);
+        List<ConsultationMessages> offsetFromDatabase = consultationMessagesMapper
+                .getConversationByUserAndCounselor(USER_ID, COUNSELOR_ID, PAGE_SIZE, 0);
+        assertEquals(describe(cursorPage), describe(cached));
+        assertEquals(describe(offsetFromDatabase), describe(offsetPage));
+        assertEquals(describe(cursorPage), describe(offsetFromDatabase));
+    }
+
+    private double hitCount() {
+        return meterRegistry.counter("chat.message.cache.hits").count();
+    }
+
+    private static List<String> describe(List<ConsultationMessages> messages) {
+        List<String> result = new ArrayList<>(messages.size());
+        for (ConsultationMessages message : messages) {
+            result.add(message.getId() + "@" + message.getSentTime() + ":" + message.getReadStatus());
+        }
+        return result;
+    }
+
+    private static ConsultationMessages buildMessage(String senderType, Instant sentTime) {
+        ConsultationMessages message = new ConsultationMessages();
+        message.setUserId(USER_ID);
+        message.setCounselorId(COUNSELOR_ID);
+        message.setSenderType(senderType);
+        message.setContent("缓存一致性测试");
+        message.setSentTime(sentTime);
+        message.setReadStatus(false);
+        return message;
+    }
+}
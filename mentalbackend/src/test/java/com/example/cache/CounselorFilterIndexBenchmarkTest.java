@@ -0,0 +1,189 @@
+package com.example.cache;
+
+import com.example.dto.CounselorDTO;
+import com.example.entity.Counselors;
+import com.example.entity.Users;
+import com.example.mapper.CounselorsMapper;
+import com.example.service.CounselorTagService;
+import com.example.service.CounselorsService;
+import com.example.service.UsersService;
+import jakarta.annotation.Resource;
+import org.junit.jupiter.api.Test;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 咨询师筛选：数据库筛选（counselor_tag 关联子查询） 与 内存位图索引 的耗时对比（内嵌H2数据库）
+ */
+@SpringBootTest
+@ActiveProfiles("h2")
+public class CounselorFilterIndexBenchmarkTest {
+
+    private static final int COUNSELOR_COUNT = 2000;
+    private static final int QUERY_COUNT = 200;
+    private static final String[] GENDERS = {"MALE", "FEMALE"};
+
+    // 标签带前缀，避免与其他测试写入的咨询师混在一起
+    private static final List<String> SPECIALIZATIONS = tags("基准领域", 12);
+    private static final List<String> APPROACHES = tags("基准流派", 6);
+    private static final List<String> SERVICE_TYPES = tags("基准服务", 3);
+
+    @Resource
+    private CounselorsService counselorsService;
+
+    @Resource
+    private UsersService usersService;
+
+    @Resource
+    private CounselorTagService counselorTagService;
+
+    @Resource
+    private CounselorFilterIndex counselorFilterIndex;
+
+    @Resource
+    private CounselorsMapper counselorsMapper;
+
+    @Test
+    public void compareDatabaseFilterWithBitmapIndex() {
+        Random random = new Random(42);
+        createCounselors(random);
+        counselorFilterIndex.reloadAll();
+        assertTrue(counselorFilterIndex.isReady());
+
+        List<CounselorDTO> filters = new ArrayList<>(QUERY_COUNT);
+        for (int i = 0; i < QUERY_COUNT; i++) {
+            filters.add(randomFilter(random));
+        }
+
+        // 预热，同时校验两种方式结果一致
+        long matchedTotal = 0;
+        for (CounselorDTO filter : filters) {
+            Set<Long> expected = databaseFilter(filter);
+            Set<Long> actual = new HashSet<>();
+            indexFilter(filter).forEach((int id) -> actual.add((long) id));
+            assertEquals(expected, actual);
+            matchedTotal += expected.size();
+        }
+
+        long start = System.nanoTime();
+        for (CounselorDTO filter : filters) {
+            databaseFilter(filter);
+        }
+        long databaseNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (CounselorDTO filter : filters) {
+            indexFilter(filter);
+        }
+        long indexNanos = System.nanoTime() - start;
+
+        System.out.printf("咨询师%d人，%d个筛选组合平均命中%d人: 数据库筛选=%dμs/次, 位图索引=%dμs/次%n",
+                COUNSELOR_COUNT, QUERY_COUNT, matchedTotal / QUERY_COUNT,
+                databaseNanos / QUERY_COUNT / 1000, indexNanos / QUERY_COUNT / 1000);
+
+        // 通过服务查询与数据库筛选结果一致
+        for (CounselorDTO filter : filters.subList(0, 20)) {
+            Set<Long> ids = counselorsService.searchAndFilterCounselors(filter).stream()
+                    .map(CounselorDTO::getCounselorId).collect(Collectors.toSet());
+            assertEquals(databaseFilter(filter), ids);
+        }
+    }
+
+    private Set<Long> databaseFilter(CounselorDTO filter) {
+        return counselorsMapper.selectCounselorDTOs(null, null, null, filter.getSpecializationTags(),
+                        filter.getTherapeuticApproachTags(), filter.getServiceTypeTags(), filter.getGenderFilter(), null, null)
+                .stream().map(CounselorDTO::getCounselorId).collect(Collectors.toSet());
+    }
+
+    private RoaringBitmap indexFilter(CounselorDTO filter) {
+        Map<String, List<String>> filters = new LinkedHashMap<>();
+        filters.put(CounselorFilterIndex.STATUS, List.of("APPROVED"));
+        filters.put(CounselorTagService.SPECIALIZATION, filter.getSpecializationTags());
+        filters.put(CounselorTagService.APPROACH, filter.getTherapeuticApproachTags());
+        filters.put(CounselorTagService.SERVICE_TYPE, filter.getServiceTypeTags());
+        filters.put(CounselorFilterIndex.GENDER, filter.getGenderFilter() != null ? List.of(filter.getGenderFilter()) : null);
+        return counselorFilterIndex.match(filters);
+    }
+
+    /**
+     * 随机筛选组合，至少包含一个擅长领域，其他条件随机出现
+     */
+    private static CounselorDTO randomFilter(Random random) {
+        CounselorDTO filter = new CounselorDTO();
+        filter.setSpecializationTags(pick(random, SPECIALIZATIONS, 1 + random.nextInt(3)));
+        if (random.nextBoolean()) {
+            filter.setTherapeuticApproachTags(pick(random, APPROACHES, 1 + random.nextInt(2)));
+        }
+        if (random.nextBoolean()) {
+            filter.setServiceTypeTags(pick(random, SERVICE_TYPES, 1));
+        }
+        if (random.nextBoolean()) {
+            filter.setGenderFilter(GENDERS[random.nextInt(GENDERS.length)]);
+        }
+        return filter;
+    }
+
+    private void createCounselors(Random random) {
+        List<Users> users = new ArrayList<>(COUNSELOR_COUNT);
+        for (int i = 0; i < COUNSELOR_COUNT; i++) {
+            Users user = new Users();
+            user.setUsername("bitmap_benchmark_" + i);
+            user.setGender(GENDERS[random.nextInt(GENDERS.length)]);
+            user.setStatus("ACTIVE");
+            users.add(user);
+        }
+        usersService.saveBatch(users);
+
+        List<Counselors> counselors = new ArrayList<>(COUNSELOR_COUNT);
+        for (Users user : users) {
+            Counselors counselor = new Counselors();
+            counselor.setUserId(user.getId());
+            counselor.setRealName("基准咨询师");
+            counselor.setSpecialization(toJson(pick(random, SPECIALIZATIONS, 1 + random.nextInt(3))));
+            counselor.setTherapeuticApproach(toJson(pick(random, APPROACHES, 1 + random.nextInt(2))));
+            counselor.setConsultationFee(BigDecimal.valueOf(50 + random.nextInt(950)));
+            // 一成咨询师未通过审核
+            counselor.setStatus(random.nextInt(10) == 0 ? "PENDING" : "APPROVED");
+            counselors.add(counselor);
+        }
+        counselorsService.saveBatch(counselors);
+
+        for (Counselors counselor : counselors) {
+            counselorTagService.syncTags(counselor.getId(), counselor.getSpecialization(), counselor.getTherapeuticApproach(),
+                    toJson(pick(random, SERVICE_TYPES, 1 + random.nextInt(2))));
+        }
+    }
+
+    private static List<String> pick(Random random, List<String> tags, int count) {
+        List<String> picked = new ArrayList<>(tags);
+        Collections.shuffle(picked, random);
+        return picked.subList(0, count);
+    }
+
+    private static List<String> tags(String prefix, int count) {
+        List<String> tags = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            tags.add(prefix + i);
+        }
+        return tags;
+    }
+
+    private static String toJson(List<String> tags) {
+        return tags.stream().map(tag -> "\"" + tag + "\"").collect(Collectors.joining(",", "[", "]"));
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.cache;
+
+import com.example.dto.PeerUnreadCount;
+import com.example.entity.ConsultationMessages;
+import com.example.mapper.ConsultationMessagesMapper;
+import com.example.service.ConsultationMessagesService;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.Resource;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 未读计数：保存、单条已读/未读、范围已读和删除之后，增量维护的计数与数据库重新统计的结果一致；
+ * 加载期间提交的增减会重放到加载结果上，加载结果照常放入缓存（内嵌H2数据库）
+ */
+@SpringBootTest
+@ActiveProfiles("h2")
+public class UnreadCounterStoreTest {
+
+    private static final long USER_ID = 1005L;
+    private static final long RACE_USER_ID = 1006L;
+    private static final long COUNSELOR_ID = 4005L;
+    private static final long OTHER_COUNSELOR_ID = 4006L;
+
+    @Resource
+    private ConsultationMessagesService consultationMessagesService;
+
+    @Resource
+    private ConsultationMessagesMapper consultationMessagesMapper;
+
+    @Resource
+    private UnreadCounterStore unreadCounterStore;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Test
+    public void countersMatchDatabaseAfterReadsAndDeletes() {
+        Instant base = Instant.now().minusSeconds(300).truncatedTo(ChronoUnit.SECONDS);
+        List<ConsultationMessages> messages = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            // 0-5：咨询师4005发给用户；6-8：咨询师4006发给用户；9-11：用户发给咨询师4005
+            long counselorId = i < 6 || i >= 9 ? COUNSELOR_ID : OTHER_COUNSELOR_ID;
+            messages.add(buildMessage(USER_ID, counselorId, i < 9 ? "COUNSELOR" : "USER", base.plusSeconds(i)));
+        }
+        List<Long> ids = consultationMessagesService.saveMessages(messages);
+        assertMatchesDatabase();
+        assertEquals(9, unreadCounterStore.getTotal("USER", USER_ID));
+
+        consultationMessagesService.updateReadStatus(ids.get(0), true);
+        consultationMessagesService.batchUpdateReadStatus(List.of(ids.get(1), ids.get(6), ids.get(9)), true);
+        // 重复标记已读不会重复扣减
+        consultationMessagesService.updateReadStatus(ids.get(0), true);
+        assertMatchesDatabase();
+
+        consultationMessagesService.updateReadStatus(ids.get(0), false);
+        assertMatchesDatabase();
+
+        consultationMessagesService.markConversationRead(USER_ID, COUNSELOR_ID, "USER", ids.get(3), null);
+        assertMatchesDatabase();
+        assertEquals(2, unreadCounterStore.getConversation("USER", USER_ID, COUNSELOR_ID));
+
+        // 删除一条未读、一条已读和一条发给咨询师的未读消息
+        consultationMessagesService.removeByIds(List.of(ids.get(4), ids.get(2), ids.get(10)));
+        assertMatchesDatabase();
+
+        consultationMessagesService.saveMessages(List.of(buildMessage(USER_ID, OTHER_COUNSELOR_ID, "COUNSELOR", base.plusSeconds(20))));
+        assertMatchesDatabase();
+    }
+
+    @Test
+    public void writeCommittedDuringLoadIsReplayed() {
+        Instant base = Instant.now().minusSeconds(300).truncatedTo(ChronoUnit.SECONDS);
+        consultationMessagesService.saveMessages(List.of(
+                buildMessage(RACE_USER_ID, COUNSELOR_ID, "COUNSELOR", base),
+                buildMessage(RACE_USER_ID, COUNSELOR_ID, "COUNSELOR", base.plusSeconds(1))));
+
+        // 统计查询返回之后、加载结束之前提交一条新消息：统计结果里没有它，只能靠重放计入
+        ConsultationMessagesMapper original = consultationMessagesMapper;
+        boolean[] injected = {false};
+        ConsultationMessagesMapper racing = (ConsultationMessagesMapper) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{ConsultationMessagesMapper.class}, (proxy, method, args) -> {
+                    Object result;
+                    try {
+                        result = method.invoke(original, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                    if ("countUnreadByPeer".equals(method.getName()) && !injected[0]) {
+                        injected[0] = true;
+                        consultationMessagesService.saveMessages(List.of(
+                                buildMessage(RACE_USER_ID, OTHER_COUNSELOR_ID, "COUNSELOR", base.plusSeconds(2))));
+                    }
+                    return result;
+                });
+        ReflectionTestUtils.setField(unreadCounterStore, "consultationMessagesMapper", racing);
+        try {
+            assertEquals(3, unreadCounterStore.getTotal("USER", RACE_USER_ID));
+        } finally {
+            ReflectionTestUtils.setField(unreadCounterStore, "consultationMessagesMapper", original);
+        }
+        assertTrue(injected[0]);
+
+        // 加载结果已放入缓存，再次读取命中
+        double hits = meterRegistry.counter("chat.unread.hits").count();
+        assertEquals(3, unreadCounterStore.getTotal("USER", RACE_USER_ID));
+        assertEquals(1, unreadCounterStore.getConversation("USER", RACE_USER_ID, OTHER_COUNSELOR_ID));
+        assertEquals(hits + 2, meterRegistry.counter("chat.unread.hits").count());
+    }
+
+    private void assertMatchesDatabase() {
+        assertEquals(recount("USER", USER_ID), unreadCounterStore.getByPeer("USER", USER_ID));
+        assertEquals(recount("COUNSELOR", COUNSELOR_ID).get(USER_ID),
+                unreadCounterStore.getByPeer("COUNSELOR", COUNSELOR_ID).get(USER_ID));
+    }
+
+    private Map<Long, Long> recount(String receiverType, Long receiverId) {
+        Map<Long, Long> result = new HashMap<>();
+        for (PeerUnreadCount row : consultationMessagesMapper.countUnreadByPeer(receiverType, receiverId)) {
+            if (row.getUnreadCount() > 0) {
+                result.put(row.getPeerId(), row.getUnreadCount());
+            }
+        }
+        return result;
+    }
+
+    private static ConsultationMessages buildMessage(Long userId, Long counselorId, String senderType, Instant sentTime) {
+        ConsultationMessages message = new ConsultationMessages();
+        message.setUserId(userId);
+        message.setCounselorId(counselorId);
+        message.setSenderType(senderType);
+        message.setContent("未读计数测试");
+        message.setSentTime(sentTime);
+        message.setReadStatus(false);
+        return message;
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.config;
+
+import com.example.controller.WebSocketController;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 聊天消息JSON与CBOR编码对比：每条消息的字节数和序列化/反序列化CPU耗时
+ */
+public class ChatMessageWireFormatBenchmarkTest {
+
+    private static final int ITERATIONS = 200_000;
+
+    @Test
+    public void compareJsonWithCbor() {
+        // 与Spring STOMP默认配置一致的JSON转换器
+        MappingJackson2MessageConverter json = new MappingJackson2MessageConverter();
+        json.setObjectMapper(Jackson2ObjectMapperBuilder.json().build());
+        CborMessageConverter cbor = new CborMessageConverter();
+
+        WebSocketController.ChatMessage chatMessage = new WebSocketController.ChatMessage();
+        chatMessage.setSenderId(26L);
+        chatMessage.setReceiverId(11L);
+        chatMessage.setSenderType("USER");
+        chatMessage.setContent("老师您好，最近晚上总是睡不着，想预约一次咨询");
+        chatMessage.setTimestamp(Instant.parse("2025-10-19T01:57:56Z"));
+
+        Result jsonResult = measure("JSON", json, chatMessage);
+        Result cborResult = measure("CBOR", cbor, chatMessage);
+
+        assertTrue(cborResult.bytes < jsonResult.bytes, "CBOR编码应比JSON更小");
+    }
+
+    private Result measure(String name, MappingJackson2MessageConverter converter, WebSocketController.ChatMessage chatMessage) {
+        Message<?> encoded = converter.toMessage(chatMessage, null);
+        int bytes = ((byte[]) encoded.getPayload()).length;
+        WebSocketController.ChatMessage decoded =
+                (WebSocketController.ChatMessage) converter.fromMessage(encoded, WebSocketController.ChatMessage.class);
+        assertEquals(chatMessage.getContent(), decoded.getContent());
+        assertEquals(chatMessage.getTimestamp(), decoded.getTimestamp());
+
+        // 预热
+        for (int i = 0; i < ITERATIONS / 10; i++) {
+            converter.fromMessage(converter.toMessage(chatMessage, null), WebSocketController.ChatMessage.class);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            converter.toMessage(chatMessage, null);
+        }
+        long serializeNanos = (System.nanoTime() - start) / ITERATIONS;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            converter.fromMessage(encoded, WebSocketController.ChatMessage.class);
+        }
+        long deserializeNanos = (System.nanoTime() - start) / ITERATIONS;
+
+        System.out.printf("%s: %d字节/条, 序列化%dns/条, 反序列化%dns/条%n", name, bytes, serializeNanos, deserializeNanos);
+        return new Result(bytes, serializeNanos, deserializeNanos);
+    }
+
+    private record Result(int bytes, long serializeNanos, long deserializeNanos) {
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.config;
+
+import jakarta.annotation.Resource;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.handler.AbstractWebSocketHandler;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 推送帧的编码：未指定content-type的消息以JSON文本帧送达，协商了CBOR的订阅以二进制帧送达（内嵌H2数据库）
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("h2")
+public class ChatWireFormatFrameTest {
+
+    @LocalServerPort
+    private int port;
+
+    @Resource
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Test
+    public void messageWithoutContentTypeArrivesAsJsonText() throws Exception {
+        // 订阅声明接受CBOR，但发送时未指定content-type，仍应按JSON编码
+        String destination = "/topic/wire-format-test/json";
+        RawStompClient client = connect(destination, "application/cbor");
+        try {
+            messagingTemplate.convertAndSend(destination, Map.of("content", "你好"));
+
+            WebSocketMessage<?> frame = client.nextMessageFrame();
+            TextMessage text = assertInstanceOf(TextMessage.class, frame);
+            assertTrue(text.getPayload().contains("content-type:application/json"), text.getPayload());
+            assertTrue(text.getPayload().contains("{\"content\":\"你好\"}"), text.getPayload());
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test
+    public void cborMessageArrivesAsBinaryFrame() throws Exception {
+        String destination = "/topic/wire-format-test/cbor";
+        RawStompClient client = connect(destination, "application/cbor");
+        try {
+            SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create();
+            accessor.setContentType(CborMessageConverter.APPLICATION_CBOR);
+            accessor.setLeaveMutable(true);
+            messagingTemplate.convertAndSend(destination, Map.of("content", "你好"), accessor.getMessageHeaders());
+
+            WebSocketMessage<?> frame = client.nextMessageFrame();
+            BinaryMessage binary = assertInstanceOf(BinaryMessage.class, frame);
+            byte[] bytes = new byte[binary.getPayloadLength()];
+            binary.getPayload().get(bytes);
+            assertTrue(new String(bytes, StandardCharsets.ISO_8859_1).contains("content-type:application/cbor"));
+        } finally {
+            client.close();
+        }
+    }
+
+    private RawStompClient connect(String destination, String accept) throws Exception {
+        RawStompClient client = new RawStompClient();
+        WebSocketSession session = new StandardWebSocketClient()
+                .execute(client, "ws://127.0.0.1:" + port + "/ws-native")
+                .get(10, TimeUnit.SECONDS);
+        client.session = session;
+        session.sendMessage(new TextMessage("CONNECT\naccept-version:1.2\nhost:localhost\n\n\0"));
+        client.awaitFrame("CONNECTED");
+        session.sendMessage(new TextMessage("SUBSCRIBE\nid:sub-0\ndestination:" + destination
+                + "\naccept:" + accept + "\nreceipt:r-0\n\n\0"));
+        client.awaitFrame("RECEIPT");
+        return client;
+    }
+
+    /**
+     * 直接收发原始WebSocket帧，以便区分文本帧和二进制帧
+     */
+    private static class RawStompClient extends AbstractWebSocketHandler {
+
+        private final BlockingQueue<WebSocketMessage<?>> frames = new LinkedBlockingQueue<>();
+        private WebSocketSession session;
+
+        @Override
+        protected void handleTextMessage(WebSocketSession session, TextMessage message) {
+            frames.add(message);
+        }
+
+        @Override
+        protected void handleBinaryMessage(WebSocketSession session, BinaryMessage message) {
+            frames.add(message);
+        }
+
+        void awaitFrame(String command) throws InterruptedException {
+            WebSocketMessage<?> frame = frames.poll(10, TimeUnit.SECONDS);
+            assertNotNull(frame, "未收到" + command + "帧");
+            TextMessage text = assertInstanceOf(TextMessage.class, frame);
+            assertTrue(text.getPayload().startsWith(command), text.getPayload());
+        }
+
+        WebSocketMessage<?> nextMessageFrame() throws InterruptedException {
+            WebSocketMessage<?> frame = frames.poll(10, TimeUnit.SECONDS);
+            assertNotNull(frame, "未收到MESSAGE帧");
+            return frame;
+        }
+
+        void close() throws Exception {
+            if (session != null) {
+                session.close();
+            }
+        }
+    }
+}
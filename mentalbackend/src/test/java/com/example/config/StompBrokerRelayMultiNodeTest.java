@@ -0,0 +1,149 @@
+package com.example.config;
+
+import com.example.MentalApplication;
+import com.example.support.EmbeddedStompBroker;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.stomp.StompBrokerRelayMessageHandler;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 多节点STOMP代理转发测试
+ * 启动两个应用节点，都转发到同一个内嵌STOMP代理；咨询师连接节点A，用户连接节点B发送私聊消息，
+ * 验证消息能跨节点送达并统计跨节点投递延迟
+ */
+public class StompBrokerRelayMultiNodeTest {
+
+    private static final int MESSAGE_COUNT = 100;
+
+    private EmbeddedStompBroker broker;
+    private ConfigurableApplicationContext nodeA;
+    private ConfigurableApplicationContext nodeB;
+
+    @BeforeEach
+    public void startNodes() throws Exception {
+        broker = new EmbeddedStompBroker();
+        nodeA = startNode(broker.getPort());
+        nodeB = startNode(broker.getPort());
+        awaitBrokerAvailable(nodeA);
+        awaitBrokerAvailable(nodeB);
+    }
+
+    @AfterEach
+    public void stopNodes() throws Exception {
+        if (nodeA != null) {
+            nodeA.close();
+        }
+        if (nodeB != null) {
+            nodeB.close();
+        }
+        broker.close();
+    }
+
+    @Test
+    public void deliversPrivateMessagesAcrossNodes() throws Exception {
+        WebSocketStompClient client = new WebSocketStompClient(new StandardWebSocketClient());
+        MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter();
+        converter.setObjectMapper(new ObjectMapper().findAndRegisterModules());
+        client.setMessageConverter(converter);
+
+        // 咨询师连接节点A并订阅自己的消息队列
+        StompSession counselor = client.connectAsync(wsUrl(nodeA), new StompSessionHandlerAdapter() {
+        }).get(10, TimeUnit.SECONDS);
+        counselor.setAutoReceipt(true);
+        BlockingQueue<Long> arrivals = new LinkedBlockingQueue<>();
+        CountDownLatch subscribed = new CountDownLatch(1);
+        counselor.subscribe("/queue/messages/counselor/11", new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return Map.class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                arrivals.add(System.nanoTime());
+            }
+        }).addReceiptTask(subscribed::countDown);
+        assertTrue(subscribed.await(10, TimeUnit.SECONDS), "订阅未被代理确认");
+
+        // 用户连接节点B发送消息
+        StompSession user = client.connectAsync(wsUrl(nodeB), new StompSessionHandlerAdapter() {
+        }).get(10, TimeUnit.SECONDS);
+
+        List<Long> latenciesMicros = new ArrayList<>(MESSAGE_COUNT);
+        for (int i = 0; i < MESSAGE_COUNT; i++) {
+            long sentAt = System.nanoTime();
+            user.send("/app/chat.private", Map.of(
+                    "senderId", 26,
+                    "receiverId", 11,
+                    "senderType", "USER",
+                    "content", "跨节点消息" + i));
+            Long arrivedAt = arrivals.poll(10, TimeUnit.SECONDS);
+            assertNotNull(arrivedAt, "第" + i + "条消息未跨节点送达");
+            latenciesMicros.add((arrivedAt - sentAt) / 1_000);
+        }
+
+        Collections.sort(latenciesMicros);
+        System.out.printf("跨节点投递%d条消息: p50=%dus, p99=%dus, max=%dus%n", MESSAGE_COUNT,
+                percentile(latenciesMicros, 0.50), percentile(latenciesMicros, 0.99),
+                latenciesMicros.get(latenciesMicros.size() - 1));
+
+        user.disconnect();
+        counselor.disconnect();
+    }
+
+    private ConfigurableApplicationContext startNode(int brokerPort) {
+        return new SpringApplicationBuilder(MentalApplication.class)
+                .profiles("h2")
+                .properties(
+                        "server.port=0",
+                        "spring.jmx.enabled=false",
+                        "chat.broker.mode=relay",
+                        "chat.broker.relay.host=127.0.0.1",
+                        "chat.broker.relay.port=" + brokerPort)
+                .run();
+    }
+
+    private void awaitBrokerAvailable(ConfigurableApplicationContext node) throws InterruptedException {
+        StompBrokerRelayMessageHandler relay = node.getBean(StompBrokerRelayMessageHandler.class);
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!relay.isBrokerAvailable() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertTrue(relay.isBrokerAvailable(), "节点未连接到STOMP代理");
+    }
+
+    private String wsUrl(ConfigurableApplicationContext node) {
+        int port = ((ServletWebServerApplicationContext) node).getWebServer().getPort();
+        return "ws://127.0.0.1:" + port + "/ws-native";
+    }
+
+    private long percentile(List<Long> sorted, double p) {
+        int index = (int) Math.ceil(p * sorted.size()) - 1;
+        return sorted.get(Math.max(0, index));
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.controller;
+
+import com.example.entity.ConsultationMessages;
+import com.example.service.ConsultationMessagesService;
+import com.example.support.StompTestClient;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.Resource;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * 客户端消息去重：相同clientMessageId的重发只保存一次，落库后重发收到的是原消息的ACK（内嵌H2数据库）
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("h2")
+public class ClientMessageDedupTest {
+
+    private static final long USER_ID = 1003L;
+    private static final long COUNSELOR_ID = 4003L;
+    private static final String ACKS = "/queue/acks/user/" + USER_ID;
+
+    @LocalServerPort
+    private int port;
+
+    @Resource
+    private ConsultationMessagesService consultationMessagesService;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void retransmitIsSavedOnceAndAckIsReplayed() throws Exception {
+        try (StompTestClient sender = StompTestClient.connect(port, Map.of())) {
+            sender.subscribe(ACKS);
+
+            sender.send("/app/chat.private", message("dedup-1", "去重测试"));
+            JsonNode ack = ack(sender);
+            assertEquals("dedup-1", ack.get("clientMessageId").asText());
+            long messageId = ack.get("messageId").asLong();
+
+            // 客户端没收到ACK时按原clientMessageId重发，服务器不再保存，直接补发原ACK
+            sender.send("/app/chat.private", message("dedup-1", "去重测试"));
+            JsonNode replayed = ack(sender);
+            assertEquals("dedup-1", replayed.get("clientMessageId").asText());
+            assertEquals(messageId, replayed.get("messageId").asLong());
+            assertEquals(ack.get("serverTime").asLong(), replayed.get("serverTime").asLong());
+
+            // 新的clientMessageId是另一条消息
+            sender.send("/app/chat.private", message("dedup-2", "去重测试"));
+            long secondId = ack(sender).get("messageId").asLong();
+
+            List<ConsultationMessages> saved = consultationMessagesService
+                    .getConversationByUserAndCounselor(USER_ID, COUNSELOR_ID, 10, 0);
+            assertEquals(List.of(secondId, messageId), saved.stream().map(ConsultationMessages::getId).toList());
+            assertNull(sender.nextMessage(ACKS, 500), "每次发送只应收到一个ACK");
+        }
+    }
+
+    private JsonNode ack(StompTestClient client) throws Exception {
+        StompTestClient.Frame frame = client.nextMessage(ACKS, 10000);
+        assertNotNull(frame, "未收到ACK");
+        return objectMapper.readTree(frame.body());
+    }
+
+    private String message(String clientMessageId, String content) throws Exception {
+        return objectMapper.writeValueAsString(Map.of(
+                "senderId", USER_ID,
+                "receiverId", COUNSELOR_ID,
+                "senderType", "USER",
+                "content", content,
+                "clientMessageId", clientMessageId));
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.controller;
+
+import jakarta.annotation.Resource;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * 对话记录游标分页：游标参数校验（内嵌H2数据库）
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("h2")
+public class ConsultationMessageControllerTest {
+
+    @Resource
+    private MockMvc mockMvc;
+
+    /**
+     * 只传一半游标时返回400，而不是退回最新一页
+     */
+    @Test
+    public void cursorRequiresBothParameters() throws Exception {
+        mockMvc.perform(get("/api/consultation/messages/conversation/cursor")
+                        .param("userId", "960").param("counselorId", "2100").param("beforeId", "10"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/consultation/messages/conversation/cursor")
+                        .param("userId", "960").param("counselorId", "2100").param("beforeTime", "2025-10-19T01:57:56Z"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/consultation/messages/conversation/cursor")
+                        .param("userId", "960").param("counselorId", "2100")
+                        .param("beforeId", "10").param("beforeTime", "2025-10-19T01:57:56Z"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/consultation/messages/conversation/cursor")
+                        .param("userId", "960").param("counselorId", "2100"))
+                .andExpect(status().isOk());
+    }
+}
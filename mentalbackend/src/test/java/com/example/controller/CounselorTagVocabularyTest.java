@@ -0,0 +1,100 @@
+package com.example.controller;
+
+import com.example.cache.CounselorFilterIndex;
+import com.example.entity.Counselors;
+import com.example.service.CounselorTagService;
+import com.example.service.CounselorsService;
+import jakarta.annotation.Resource;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * 标签词表：人数统计、ETag条件请求，以及保存咨询师后的更新（内嵌H2数据库）
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("h2")
+public class CounselorTagVocabularyTest {
+
+    // 标签带前缀，避免与其他测试写入的咨询师混在一起
+    private static final String DEPRESSION = "词表测试抑郁";
+    private static final String FAMILY = "词表测试家庭";
+
+    @Resource
+    private MockMvc mockMvc;
+
+    @Resource
+    private CounselorsService counselorsService;
+
+    @Resource
+    private CounselorTagService counselorTagService;
+
+    @Resource
+    private CounselorFilterIndex counselorFilterIndex;
+
+    @Test
+    public void vocabularyIsCachedAndRevalidated() throws Exception {
+        createCounselor("APPROVED", "[\"" + DEPRESSION + "\",\"" + FAMILY + "\"]");
+        long second = createCounselor("APPROVED", "[\"" + DEPRESSION + "\"]");
+        // 未通过审核的咨询师不计入人数
+        createCounselor("PENDING", "[\"" + FAMILY + "\"]");
+
+        String etag = mockMvc.perform(get("/api/counselors/specializations/counts"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[?(@.name == '" + DEPRESSION + "')].counselorCount").value(2))
+                .andExpect(jsonPath("$[?(@.name == '" + FAMILY + "')].counselorCount").value(1))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotNull(etag);
+
+        // 只返回标签名的接口使用同一份词表
+        mockMvc.perform(get("/api/counselors/specializations"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[?(@ == '" + DEPRESSION + "')]").exists());
+        mockMvc.perform(get("/api/counselors/specializations").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        // 重建索引后内容不变，ETag不变
+        counselorFilterIndex.reloadAll();
+        mockMvc.perform(get("/api/counselors/specializations/counts").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+
+        // 修改标签后立即返回新词表
+        counselorTagService.syncTags(second, "[\"" + FAMILY + "\"]", null, null);
+        String changed = mockMvc.perform(get("/api/counselors/specializations/counts").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[?(@.name == '" + DEPRESSION + "')].counselorCount").value(1))
+                .andExpect(jsonPath("$[?(@.name == '" + FAMILY + "')].counselorCount").value(2))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotEquals(etag, changed);
+
+        // 取消审核后人数立即减少，不需要等待定时重建
+        Counselors counselor = counselorsService.getById(second);
+        counselor.setStatus("PENDING");
+        counselorsService.updateById(counselor);
+        mockMvc.perform(get("/api/counselors/specializations/counts").header(HttpHeaders.IF_NONE_MATCH, changed))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[?(@.name == '" + FAMILY + "')].counselorCount").value(1));
+    }
+
+    private long createCounselor(String status, String specialization) {
+        Counselors counselor = new Counselors();
+        counselor.setRealName("词表测试咨询师");
+        counselor.setSpecialization(specialization);
+        counselor.setStatus(status);
+        counselorsService.save(counselor);
+        counselorTagService.syncTags(counselor.getId(), specialization, null, null);
+        return counselor.getId();
+    }
+}
@@ -0,0 +1,236 @@
+package com.example.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 聊天压测负载生成器
+ * 为每一对用户/咨询师各建立一个STOMP会话并订阅 /queue/messages/{type}/{id}，
+ * 按固定速率向 /app/chat.private 发送消息，统计端到端延迟（p50/p99/p999）和吞吐量。
+ * 发送时间戳写在消息内容中，因此发送端和接收端必须在同一个JVM内（System.nanoTime可比较）。
+ */
+public class ChatLoadGenerator {
+
+    private static final String CONTENT_PREFIX = "lt:";
+
+    private final String url;
+    private final int pairs;
+    private final int messagesPerSecond;
+    private final int durationSeconds;
+    private final int senderThreads;
+    private final long baseUserId;
+    private final long baseCounselorId;
+
+    private final ConcurrentLinkedQueue<Long> latenciesNanos = new ConcurrentLinkedQueue<>();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong sendErrors = new AtomicLong();
+
+    public ChatLoadGenerator(String url, int pairs, int messagesPerSecond, int durationSeconds, int senderThreads) {
+        this.url = url;
+        this.pairs = pairs;
+        this.messagesPerSecond = messagesPerSecond;
+        this.durationSeconds = durationSeconds;
+        this.senderThreads = senderThreads;
+        this.baseUserId = 1_000_000L;
+        this.baseCounselorId = 2_000_000L;
+    }
+
+    /**
+     * 建立会话、按速率发送、等待在途消息送达后返回统计结果
+     */
+    public Report run() throws Exception {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(Math.max(2, Runtime.getRuntime().availableProcessors()));
+        scheduler.setThreadNamePrefix("loadtest-stomp-");
+        scheduler.initialize();
+
+        WebSocketStompClient client = new WebSocketStompClient(new StandardWebSocketClient());
+        MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter();
+        converter.setObjectMapper(new ObjectMapper().findAndRegisterModules());
+        client.setMessageConverter(converter);
+        client.setTaskScheduler(scheduler);
+
+        StompSession[] users = new StompSession[pairs];
+        StompSession[] counselors = new StompSession[pairs];
+        try {
+            connectAll(client, users, counselors);
+            drive(users, counselors);
+            // 等待在途消息送达
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (received.get() < sent.get() && System.nanoTime() < deadline) {
+                Thread.sleep(50);
+            }
+            return buildReport();
+        } finally {
+            for (StompSession session : users) {
+                disconnectQuietly(session);
+            }
+            for (StompSession session : counselors) {
+                disconnectQuietly(session);
+            }
+            client.stop();
+            scheduler.shutdown();
+        }
+    }
+
+    private void connectAll(WebSocketStompClient client, StompSession[] users, StompSession[] counselors) throws Exception {
+        List<CompletableFuture<StompSession>> userFutures = new ArrayList<>(pairs);
+        List<CompletableFuture<StompSession>> counselorFutures = new ArrayList<>(pairs);
+        for (int i = 0; i < pairs; i++) {
+            userFutures.add(client.connectAsync(url, new StompSessionHandlerAdapter() {
+            }));
+            counselorFutures.add(client.connectAsync(url, new StompSessionHandlerAdapter() {
+            }));
+        }
+
+        CountDownLatch subscribed = new CountDownLatch(pairs * 2);
+        for (int i = 0; i < pairs; i++) {
+            users[i] = userFutures.get(i).get(60, TimeUnit.SECONDS);
+            counselors[i] = counselorFutures.get(i).get(60, TimeUnit.SECONDS);
+            subscribe(users[i], "/queue/messages/user/" + (baseUserId + i), "COUNSELOR", subscribed);
+            subscribe(counselors[i], "/queue/messages/counselor/" + (baseCounselorId + i), "USER", subscribed);
+        }
+        if (!subscribed.await(60, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("订阅未全部确认，剩余" + subscribed.getCount());
+        }
+    }
+
+    /**
+     * 订阅会话自己的消息队列；发送者回显（senderType与本端相同）不计入统计
+     */
+    private void subscribe(StompSession session, String destination, String expectedSenderType, CountDownLatch subscribed) {
+        session.setAutoReceipt(true);
+        session.subscribe(destination, new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return Map.class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                long now = System.nanoTime();
+                Map<?, ?> message = (Map<?, ?>) payload;
+                Object content = message.get("content");
+                if (!expectedSenderType.equals(message.get("senderType"))
+                        || !(content instanceof String text) || !text.startsWith(CONTENT_PREFIX)) {
+                    return;
+                }
+                long sentAt = Long.parseLong(text.substring(CONTENT_PREFIX.length()));
+                latenciesNanos.add(now - sentAt);
+                received.incrementAndGet();
+            }
+        }).addReceiptTask(subscribed::countDown);
+    }
+
+    /**
+     * 多个发送线程分摊总速率，按计划时间点发送；落后于计划时立即发送，不再等待
+     */
+    private void drive(StompSession[] users, StompSession[] counselors) throws InterruptedException {
+        long periodNanos = TimeUnit.SECONDS.toNanos(1) * senderThreads / messagesPerSecond;
+        long totalPerThread = (long) messagesPerSecond * durationSeconds / senderThreads;
+        long start = System.nanoTime();
+        List<Thread> threads = new ArrayList<>(senderThreads);
+        for (int t = 0; t < senderThreads; t++) {
+            int threadIndex = t;
+            Thread thread = new Thread(() -> {
+                for (long n = 0; n < totalPerThread; n++) {
+                    long due = start + n * periodNanos + threadIndex * (periodNanos / senderThreads);
+                    long wait = due - System.nanoTime();
+                    if (wait > 0) {
+                        LockSupport.parkNanos(wait);
+                    }
+                    int pair = (int) ((n * senderThreads + threadIndex) % pairs);
+                    boolean fromUser = (n & 1) == 0;
+                    sendOne(fromUser ? users[pair] : counselors[pair], pair, fromUser);
+                }
+            }, "loadtest-sender-" + t);
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    private void sendOne(StompSession session, int pair, boolean fromUser) {
+        long userId = baseUserId + pair;
+        long counselorId = baseCounselorId + pair;
+        try {
+            // 同一个WebSocket会话不支持并发写，多个发送线程可能选中同一会话
+            synchronized (session) {
+                session.send("/app/chat.private", Map.of(
+                        "senderId", fromUser ? userId : counselorId,
+                        "receiverId", fromUser ? counselorId : userId,
+                        "senderType", fromUser ? "USER" : "COUNSELOR",
+                        "content", CONTENT_PREFIX + System.nanoTime()));
+            }
+            sent.incrementAndGet();
+        } catch (Exception e) {
+            sendErrors.incrementAndGet();
+        }
+    }
+
+    private Report buildReport() {
+        long[] sorted = latenciesNanos.stream().mapToLong(Long::longValue).toArray();
+        Arrays.sort(sorted);
+        return new Report(pairs * 2, sent.get(), received.get(), sendErrors.get(), durationSeconds,
+                percentileMillis(sorted, 0.50), percentileMillis(sorted, 0.99),
+                percentileMillis(sorted, 0.999), sorted.length == 0 ? 0 : sorted[sorted.length - 1] / 1e6);
+    }
+
+    private static double percentileMillis(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+
+    private static void disconnectQuietly(StompSession session) {
+        try {
+            if (session != null && session.isConnected()) {
+                session.disconnect();
+            }
+        } catch (Exception ignored) {
+        }
+    }
+
+    /**
+     * 压测结果
+     */
+    public record Report(int sessions, long sent, long received, long sendErrors, int durationSeconds,
+                         double p50Millis, double p99Millis, double p999Millis, double maxMillis) {
+
+        public double messagesPerSecond() {
+            return (double) received / durationSeconds;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("会话数=%d, 发送=%d, 送达=%d, 发送失败=%d, 吞吐=%.1f条/秒, "
+                            + "延迟 p50=%.2fms p99=%.2fms p999=%.2fms max=%.2fms",
+                    sessions, sent, received, sendErrors, messagesPerSecond(),
+                    p50Millis, p99Millis, p999Millis, maxMillis);
+        }
+    }
+}
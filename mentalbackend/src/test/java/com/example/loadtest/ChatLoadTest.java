@@ -0,0 +1,38 @@
+package com.example.loadtest;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * /ws-native 聊天压测，在进程内启动应用并使用内嵌H2数据库，无需外部MySQL和网络
+ * 默认跳过，运行方式：
+ * mvn test -Dtest=ChatLoadTest -Dloadtest=true -Dloadtest.pairs=2000 -Dloadtest.rate=5000 -Dloadtest.duration=60
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("h2")
+@EnabledIfSystemProperty(named = "loadtest", matches = "true")
+public class ChatLoadTest {
+
+    @LocalServerPort
+    private int port;
+
+    @Test
+    public void runChatLoad() throws Exception {
+        int pairs = Integer.getInteger("loadtest.pairs", 500);
+        int rate = Integer.getInteger("loadtest.rate", 2000);
+        int duration = Integer.getInteger("loadtest.duration", 30);
+        int senderThreads = Integer.getInteger("loadtest.senderThreads", 4);
+
+        ChatLoadGenerator generator = new ChatLoadGenerator(
+                "ws://127.0.0.1:" + port + "/ws-native", pairs, rate, duration, senderThreads);
+        ChatLoadGenerator.Report report = generator.run();
+        System.out.println("聊天压测结果: " + report);
+
+        assertTrue(report.received() > 0, "没有消息送达");
+    }
+}
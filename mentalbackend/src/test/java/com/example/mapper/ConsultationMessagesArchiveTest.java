@@ -0,0 +1,104 @@
+package com.example.mapper;
+
+import com.example.dto.MessageCursorPage;
+import com.example.entity.ConsultationMessages;
+import com.example.service.ConsultationMessagesService;
+import com.example.service.MessageArchiveService;
+import jakarta.annotation.Resource;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 消息归档：归档后按游标或偏移量翻页仍能按 (sentTime, id) 倒序取到完整的对话记录（内嵌H2数据库）
+ */
+@SpringBootTest
+@ActiveProfiles("h2")
+public class ConsultationMessagesArchiveTest {
+
+    private static final long USER_ID = 950L;
+    private static final long COUNSELOR_ID = 2000L;
+    private static final int OLD_COUNT = 200;
+    private static final int RECENT_COUNT = 100;
+
+    @Resource
+    private ConsultationMessagesService consultationMessagesService;
+
+    @Resource
+    private MessageArchiveService messageArchiveService;
+
+    @Resource
+    private ConsultationMessagesArchiveMapper consultationMessagesArchiveMapper;
+
+    @Test
+    public void cursorPagingSpansHotAndArchive() {
+        Instant horizon = messageArchiveService.getArchiveHorizon();
+        List<ConsultationMessages> messages = new ArrayList<>();
+        // 早于归档边界的消息每4条有1条未读，未读消息留在热表，与归档消息在时间上交错
+        Instant oldBase = horizon.minus(Duration.ofDays(30)).truncatedTo(ChronoUnit.SECONDS);
+        for (int i = 0; i < OLD_COUNT; i++) {
+            messages.add(buildMessage(oldBase.plusSeconds(i), i % 4 != 0));
+        }
+        Instant recentBase = Instant.now().minus(Duration.ofHours(1)).truncatedTo(ChronoUnit.SECONDS);
+        for (int i = 0; i < RECENT_COUNT; i++) {
+            messages.add(buildMessage(recentBase.plusSeconds(i), true));
+        }
+        consultationMessagesService.saveMessages(messages);
+
+        messageArchiveService.archiveBefore(horizon);
+        List<Long> expectedIds = new ArrayList<>();
+        messages.stream()
+                .sorted(Comparator.comparing(ConsultationMessages::getSentTime).thenComparing(ConsultationMessages::getId).reversed())
+                .forEach(message -> expectedIds.add(message.getId()));
+        assertEquals(OLD_COUNT * 3 / 4, consultationMessagesArchiveMapper
+                .getConversationBeforeCursor(USER_ID, COUNSELOR_ID, null, null, OLD_COUNT).size());
+
+        List<Long> pagedIds = new ArrayList<>();
+        MessageCursorPage.Cursor cursor = null;
+        do {
+            MessageCursorPage page = consultationMessagesService.getConversationByCursor(USER_ID, COUNSELOR_ID,
+                    cursor != null ? cursor.getBeforeTime() : null, cursor != null ? cursor.getBeforeId() : null, 40);
+            page.getMessages().forEach(message -> pagedIds.add(message.getId()));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        assertEquals(expectedIds, pagedIds);
+
+        // 偏移量分页同样按 (sentTime, id) 倒序合并热表和归档表
+        List<Long> offsetIds = new ArrayList<>();
+        for (int offset = 0; ; offset += 40) {
+            List<ConsultationMessages> page = consultationMessagesService.getConversationByUserAndCounselor(
+                    USER_ID, COUNSELOR_ID, 40, offset);
+            if (page.isEmpty()) {
+                break;
+            }
+            page.forEach(message -> offsetIds.add(message.getId()));
+        }
+        assertEquals(expectedIds, offsetIds);
+        assertTrue(consultationMessagesService.getUserConversations(USER_ID).stream()
+                .anyMatch(message -> message.getCounselorId() == COUNSELOR_ID));
+    }
+
+    private ConsultationMessages buildMessage(Instant sentTime, boolean read) {
+        ConsultationMessages message = new ConsultationMessages();
+        message.setUserId(USER_ID);
+        message.setCounselorId(COUNSELOR_ID);
+        message.setSenderType("COUNSELOR");
+        message.setMessageType("TEXT");
+        message.setContent("归档测试消息");
+        message.setSentTime(sentTime);
+        message.setReadStatus(read);
+        message.setConversationType("PRE_CONSULTATION");
+        return message;
+    }
+}
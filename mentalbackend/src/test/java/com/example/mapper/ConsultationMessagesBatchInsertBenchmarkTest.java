@@ -0,0 +1,75 @@
+package com.example.mapper;
+
+import com.example.entity.ConsultationMessages;
+import com.example.service.ConsultationMessagesService;
+import jakarta.annotation.Resource;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * 逐行插入与多行批量插入的性能对比（内嵌H2数据库）
+ */
+@SpringBootTest
+@ActiveProfiles("h2")
+public class ConsultationMessagesBatchInsertBenchmarkTest {
+
+    private static final int MESSAGE_COUNT = 5000;
+
+    @Resource
+    private ConsultationMessagesMapper consultationMessagesMapper;
+
+    @Resource
+    private ConsultationMessagesService consultationMessagesService;
+
+    @Test
+    public void compareRowAtATimeWithBatchInsert() {
+        // 预热，避免首次执行的类加载和SQL解析影响结果
+        insertRowAtATime(buildMessages(200, 1L));
+        consultationMessagesService.saveMessages(buildMessages(200, 2L));
+
+        long start = System.nanoTime();
+        insertRowAtATime(buildMessages(MESSAGE_COUNT, 3L));
+        long rowAtATimeMs = (System.nanoTime() - start) / 1_000_000;
+
+        List<ConsultationMessages> batch = buildMessages(MESSAGE_COUNT, 4L);
+        start = System.nanoTime();
+        List<Long> ids = consultationMessagesService.saveMessages(batch);
+        long batchMs = (System.nanoTime() - start) / 1_000_000;
+
+        System.out.printf("插入%d条消息: 逐行插入=%dms, 批量插入=%dms%n", MESSAGE_COUNT, rowAtATimeMs, batchMs);
+
+        assertEquals(MESSAGE_COUNT, ids.size());
+        ids.forEach(id -> assertNotNull(id, "批量插入后应回填自增ID"));
+    }
+
+    private void insertRowAtATime(List<ConsultationMessages> messages) {
+        for (ConsultationMessages message : messages) {
+            consultationMessagesMapper.insert(message);
+        }
+    }
+
+    private List<ConsultationMessages> buildMessages(int count, Long userId) {
+        List<ConsultationMessages> messages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ConsultationMessages message = new ConsultationMessages();
+            message.setUserId(userId);
+            message.setCounselorId(11L);
+            message.setSenderType(i % 2 == 0 ? "USER" : "COUNSELOR");
+            message.setMessageType("TEXT");
+            message.setContent("基准测试消息" + i);
+            message.setSentTime(Instant.now());
+            message.setReadStatus(false);
+            message.setConversationType("PRE_CONSULTATION");
+            messages.add(message);
+        }
+        return messages;
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.mapper;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.example.dto.ConversationSummaryDTO;
+import com.example.entity.ConsultationMessages;
+import com.example.service.ConsultationMessagesService;
+import jakarta.annotation.Resource;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 消息列表页：加载全部消息后分组 与 会话摘要表分页查询 的性能对比（内嵌H2数据库）
+ */
+@SpringBootTest
+@ActiveProfiles("h2")
+public class ConversationSummaryBenchmarkTest {
+
+    private static final long USER_ID = 900L;
+    private static final long BASE_COUNSELOR_ID = 1000L;
+    private static final int COUNSELOR_COUNT = 40;
+    private static final int MESSAGE_COUNT = 100_000;
+    private static final int PAGE_SIZE = 20;
+
+    @Resource
+    private ConsultationMessagesService consultationMessagesService;
+
+    @Test
+    public void compareFullScanWithSummaryTable() {
+        Instant base = Instant.parse("2025-01-01T00:00:00Z");
+        for (int from = 0; from < MESSAGE_COUNT; from += 5000) {
+            consultationMessagesService.saveMessages(buildMessages(from, 5000, base));
+        }
+
+        // 预热
+        loadAllAndGroup();
+        consultationMessagesService.getConversationSummaries("USER", USER_ID, PAGE_SIZE, 0);
+
+        long start = System.nanoTime();
+        Map<Long, ConsultationMessages> grouped = loadAllAndGroup();
+        long fullScanMs = (System.nanoTime() - start) / 1_000_000;
+
+        start = System.nanoTime();
+        List<ConversationSummaryDTO> page = consultationMessagesService.getConversationSummaries("USER", USER_ID, PAGE_SIZE, 0);
+        long summaryMs = (System.nanoTime() - start) / 1_000_000;
+
+        System.out.printf("用户共%d条消息、%d个会话: 加载全部消息后分组=%dms, 会话摘要分页=%dms%n",
+                MESSAGE_COUNT, COUNSELOR_COUNT, fullScanMs, summaryMs);
+
+        assertEquals(COUNSELOR_COUNT, grouped.size());
+        assertEquals(PAGE_SIZE, page.size());
+        for (ConversationSummaryDTO summary : page) {
+            // 摘要中的最新消息与全量分组的结果一致
+            assertEquals(grouped.get(summary.getPeerId()).getId(), summary.getLastMessageId());
+            // 每个咨询师发给用户的消息都未读
+            assertEquals(MESSAGE_COUNT / COUNSELOR_COUNT / 2, summary.getUnreadCount());
+        }
+        assertEquals(COUNSELOR_COUNT, consultationMessagesService.getUserConversations(USER_ID).size());
+    }
+
+    /**
+     * 旧实现：按时间倒序加载用户的全部消息，再按咨询师取第一条
+     */
+    private Map<Long, ConsultationMessages> loadAllAndGroup() {
+        QueryWrapper<ConsultationMessages> queryWrapper = new QueryWrapper<>();
+        queryWrapper.eq("user_id", USER_ID);
+        queryWrapper.orderByDesc("sent_time");
+        Map<Long, ConsultationMessages> latest = new LinkedHashMap<>();
+        for (ConsultationMessages message : consultationMessagesService.list(queryWrapper)) {
+            latest.putIfAbsent(message.getCounselorId(), message);
+        }
+        return latest;
+    }
+
+    private List<ConsultationMessages> buildMessages(int from, int count, Instant base) {
+        List<ConsultationMessages> messages = new ArrayList<>(count);
+        for (int i = from; i < from + count; i++) {
+            ConsultationMessages message = new ConsultationMessages();
+            message.setUserId(USER_ID);
+            message.setCounselorId(BASE_COUNSELOR_ID + i % COUNSELOR_COUNT);
+            // 每个会话中用户和咨询师轮流发送
+            message.setSenderType((i / COUNSELOR_COUNT) % 2 == 0 ? "USER" : "COUNSELOR");
+            message.setMessageType("TEXT");
+            message.setContent("基准测试消息" + i);
+            message.setSentTime(base.plusSeconds(i));
+            message.setReadStatus(false);
+            message.setConversationType("PRE_CONSULTATION");
+            messages.add(message);
+        }
+        return messages;
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.mapper;
+
+import com.example.cache.CounselorFilterIndex;
+import com.example.dto.CounselorDTO;
+import com.example.entity.CounselorServiceSettings;
+import com.example.entity.Counselors;
+import com.example.entity.Users;
+import com.example.service.CounselorServiceSettingsService;
+import com.example.service.CounselorTagService;
+import com.example.service.CounselorsService;
+import com.example.service.UsersService;
+import jakarta.annotation.Resource;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 咨询师筛选：筛选索引的位图运算与数据库筛选（counselor_tag 关联表）结果一致（内嵌H2数据库）
+ */
+@SpringBootTest
+@ActiveProfiles("h2")
+public class CounselorFilterTest {
+
+    // 标签带前缀，避免与其他测试写入的咨询师混在一起
+    private static final String ANXIETY = "筛选测试焦虑";
+    private static final String SLEEP = "筛选测试失眠";
+    private static final String CBT = "筛选测试认知行为";
+    private static final String HUMANISTIC = "筛选测试人本主义";
+    private static final String VIDEO = "筛选测试视频";
+    private static final String TEXT = "筛选测试文字";
+
+    @Resource
+    private CounselorsService counselorsService;
+
+    @Resource
+    private UsersService usersService;
+
+    @Resource
+    private CounselorServiceSettingsService counselorServiceSettingsService;
+
+    @Resource
+    private CounselorTagService counselorTagService;
+
+    @Resource
+    private CounselorFilterIndex counselorFilterIndex;
+
+    @Resource
+    private CounselorsMapper counselorsMapper;
+
+    @Test
+    public void filtersAreAppliedInTheDatabase() {
+        long a = createCounselor("FEMALE", "150", List.of(ANXIETY, SLEEP), List.of(CBT), List.of(VIDEO));
+        long b = createCounselor("MALE", "300", List.of(SLEEP), List.of(HUMANISTIC), List.of(TEXT));
+        // 标签只是前缀相同，不算命中
+        long c = createCounselor("FEMALE", "600", List.of(ANXIETY + "症"), List.of(CBT), List.of(VIDEO));
+        // 没有服务设置和咨询费
+        long d = createCounselor("FEMALE", null, List.of(ANXIETY), List.of(CBT), null);
+        counselorFilterIndex.reloadAll();
+        assertTrue(counselorFilterIndex.isReady());
+
+        assertEquals(Set.of(a, d), search(List.of(ANXIETY), null, null, null));
+        assertEquals(Set.of(a, b, d), search(List.of(ANXIETY, SLEEP), null, null, null));
+        assertEquals(Set.of(b), search(List.of(ANXIETY, SLEEP), null, null, "MALE"));
+        assertEquals(Set.of(a, c), search(null, List.of(CBT), List.of(VIDEO), null));
+        assertEquals(Set.of(b), search(null, List.of(HUMANISTIC), List.of(TEXT), null));
+        assertEquals(Set.of(), search(List.of(SLEEP), List.of(HUMANISTIC), List.of(VIDEO), null));
+        
+        // 咨询费区间包含两端，档位内不在区间的咨询师由数据库排除
+        assertEquals(Set.of(a), search(List.of(ANXIETY, SLEEP), null, null, null, null, "150"));
+        assertEquals(Set.of(b, c), search(List.of(ANXIETY + "症", SLEEP), null, null, null, "160", null));
+        assertEquals(Set.of(b), search(List.of(ANXIETY + "症", SLEEP), null, null, null, "300", "599"));
+
+        // 索引未就绪时数据库按 counselor_tag 筛选，结果一致
+        assertEquals(Set.of(a, c), ids(counselorsMapper.selectCounselorDTOs(null, null, null, null, List.of(CBT), List.of(VIDEO), null, null, null)));
+        assertEquals(Set.of(b), ids(counselorsMapper.selectCounselorDTOs(null, null, null, List.of(ANXIETY, SLEEP), null, null, "MALE", null, null)));
+        assertEquals(Set.of(b), ids(counselorsMapper.selectCounselorDTOs(null, null, null, List.of(ANXIETY + "症", SLEEP), null, null, null,
+                new BigDecimal("300"), new BigDecimal("599"))));
+
+        // 命中大多数已审核咨询师的条件改为排除未命中的咨询师，结果与数据库筛选一致
+        assertEquals(ids(counselorsMapper.selectCounselorDTOs(null, null, null, null, null, null, null, BigDecimal.ZERO, null)),
+                search(null, null, null, null, "0", null));
+
+        // 修改标签后索引立即更新，未传的类型保持不变
+        counselorTagService.syncTags(b, null, null, toJson(List.of(VIDEO)));
+        assertEquals(Set.of(a, b, c), search(null, null, List.of(VIDEO), null));
+        assertEquals(Set.of(b), search(null, List.of(HUMANISTIC), null, null));
+        counselorTagService.removeTags(d);
+        assertEquals(Set.of(a), search(List.of(ANXIETY), null, null, null));
+        
+        // 修改用户性别后索引随之更新
+        Users user = usersService.getById(counselorsService.getById(b).getUserId());
+        user.setGender("FEMALE");
+        usersService.updateById(user);
+        assertEquals(Set.of(), search(List.of(ANXIETY, SLEEP), null, null, "MALE"));
+        assertEquals(Set.of(a, b), search(List.of(ANXIETY, SLEEP), null, null, "FEMALE"));
+
+        // 取消审核后从结果中移除
+        Counselors counselor = counselorsService.getById(a);
+        counselor.setStatus("PENDING");
+        counselorsService.updateById(counselor);
+        assertEquals(Set.of(b), search(List.of(ANXIETY, SLEEP), null, null, null));
+    }
+
+    private Set<Long> search(List<String> specializations, List<String> approaches, List<String> serviceTypes, String gender) {
+        return search(specializations, approaches, serviceTypes, gender, null, null);
+    }
+
+    private Set<Long> search(List<String> specializations, List<String> approaches, List<String> serviceTypes, String gender,
+                             String minFee, String maxFee) {
+        CounselorDTO filter = new CounselorDTO();
+        filter.setSpecializationTags(specializations);
+        filter.setTherapeuticApproachTags(approaches);
+        filter.setServiceTypeTags(serviceTypes);
+        filter.setGenderFilter(gender);
+        filter.setMinFeeFilter(minFee != null ? new BigDecimal(minFee) : null);
+        filter.setMaxFeeFilter(maxFee != null ? new BigDecimal(maxFee) : null);
+        return ids(counselorsService.searchAndFilterCounselors(filter));
+    }
+
+    private static Set<Long> ids(List<CounselorDTO> counselors) {
+        return counselors.stream().map(CounselorDTO::getCounselorId).collect(Collectors.toSet());
+    }
+
+    private long createCounselor(String gender, String fee, List<String> specializations, List<String> approaches,
+                                 List<String> serviceTypes) {
+        Users user = new Users();
+        user.setUsername("filter_test_" + System.nanoTime());
+        user.setGender(gender);
+        user.setStatus("ACTIVE");
+        usersService.save(user);
+
+        Counselors counselor = new Counselors();
+        counselor.setUserId(user.getId());
+        counselor.setRealName("筛选测试咨询师");
+        counselor.setSpecialization(toJson(specializations));
+        counselor.setTherapeuticApproach(toJson(approaches));
+        counselor.setConsultationFee(fee != null ? new BigDecimal(fee) : null);
+        counselor.setStatus("APPROVED");
+        counselorsService.save(counselor);
+
+        if (serviceTypes != null) {
+            CounselorServiceSettings settings = new CounselorServiceSettings();
+            settings.setCounselorId(counselor.getId());
+            settings.setServiceTypes(toJson(serviceTypes));
+            counselorServiceSettingsService.save(settings);
+        }
+        // 与 saveOrUpdateCounselor 相同，保存后同步标签关联表
+        counselorTagService.syncTags(counselor.getId(), counselor.getSpecialization(), counselor.getTherapeuticApproach(),
+                serviceTypes != null ? toJson(serviceTypes) : null);
+        return counselor.getId();
+    }
+
+    private static String toJson(List<String> tags) {
+        return tags.stream().map(tag -> "\"" + tag + "\"").collect(Collectors.joining(",", "[", "]"));
+    }
+}
@@ -0,0 +1,180 @@
+package com.example.mapper;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.example.dto.CounselorDTO;
+import com.example.entity.CounselorServiceSettings;
+import com.example.entity.Counselors;
+import com.example.entity.Users;
+import com.example.service.CounselorServiceSettingsService;
+import com.example.service.CounselorsService;
+import com.example.service.UsersService;
+import jakarta.annotation.Resource;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.BeanUtils;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 咨询师列表：逐个查询用户和服务设置（N+1） 与 一条关联查询 的查询次数和耗时对比（内嵌H2数据库）
+ */
+@SpringBootTest
+@ActiveProfiles("h2")
+public class CounselorQueryCountBenchmarkTest {
+
+    private static final int[] COUNSELOR_COUNTS = {50, 200, 500};
+
+    @Resource
+    private CounselorsService counselorsService;
+
+    @Resource
+    private UsersService usersService;
+
+    @Resource
+    private CounselorServiceSettingsService counselorServiceSettingsService;
+
+    @Resource
+    private SqlSessionFactory sqlSessionFactory;
+
+    @Test
+    public void compareNPlusOneWithJoinedQuery() {
+        QueryCounter counter = new QueryCounter();
+        sqlSessionFactory.getConfiguration().addInterceptor(counter);
+
+        int created = 0;
+        for (int target : COUNSELOR_COUNTS) {
+            createCounselors(created, target - created);
+            created = target;
+
+            // 预热
+            loadOneByOne();
+            counselorsService.searchAndFilterCounselors(new CounselorDTO());
+
+            counter.reset();
+            long start = System.nanoTime();
+            List<CounselorDTO> oneByOne = loadOneByOne();
+            long oneByOneMs = (System.nanoTime() - start) / 1_000_000;
+            int oneByOneQueries = counter.get();
+
+            counter.reset();
+            start = System.nanoTime();
+            List<CounselorDTO> joined = counselorsService.searchAndFilterCounselors(new CounselorDTO());
+            long joinedMs = (System.nanoTime() - start) / 1_000_000;
+            int joinedQueries = counter.get();
+
+            System.out.printf("%d位咨询师: 逐个关联=%d次查询/%dms, 关联查询=%d次查询/%dms%n",
+                    oneByOne.size(), oneByOneQueries, oneByOneMs, joinedQueries, joinedMs);
+
+            assertEquals(oneByOne.size(), joined.size());
+            assertEquals(1 + 2 * oneByOne.size(), oneByOneQueries);
+            assertEquals(1, joinedQueries);
+            for (int i = 0; i < joined.size(); i++) {
+                CounselorDTO expected = oneByOne.get(i);
+                CounselorDTO actual = joined.get(i);
+                assertEquals(expected.getCounselorId(), actual.getCounselorId());
+                assertEquals(expected.getNickname(), actual.getNickname());
+                assertEquals(expected.getUserStatus(), actual.getUserStatus());
+                assertEquals(expected.getServiceSettingsId(), actual.getServiceSettingsId());
+                assertEquals(expected.getServiceTypes(), actual.getServiceTypes());
+            }
+        }
+    }
+
+    /**
+     * 旧实现：查询咨询师后，逐个查询用户信息和服务设置
+     */
+    private List<CounselorDTO> loadOneByOne() {
+        QueryWrapper<Counselors> queryWrapper = new QueryWrapper<>();
+        queryWrapper.eq("status", "APPROVED");
+        queryWrapper.orderByAsc("id");
+        List<CounselorDTO> result = new ArrayList<>();
+        for (Counselors counselor : counselorsService.list(queryWrapper)) {
+            CounselorDTO dto = new CounselorDTO();
+            BeanUtils.copyProperties(counselor, dto);
+            dto.setCounselorId(counselor.getId());
+            Users user = usersService.getById(counselor.getUserId());
+            if (user != null) {
+                BeanUtils.copyProperties(user, dto);
+                dto.setUserId(user.getId());
+                dto.setUserStatus(user.getStatus());
+            }
+            QueryWrapper<CounselorServiceSettings> settingsQuery = new QueryWrapper<>();
+            settingsQuery.eq("counselor_id", counselor.getId());
+            CounselorServiceSettings settings = counselorServiceSettingsService.getOne(settingsQuery);
+            if (settings != null) {
+                BeanUtils.copyProperties(settings, dto);
+                dto.setServiceSettingsId(settings.getId());
+            }
+            result.add(dto);
+        }
+        return result;
+    }
+
+    private void createCounselors(int from, int count) {
+        for (int i = from; i < from + count; i++) {
+            Users user = new Users();
+            user.setUsername("bench_counselor_" + i);
+            user.setNickname("基准咨询师" + i);
+            user.setGender(i % 2 == 0 ? "FEMALE" : "MALE");
+            user.setStatus("ACTIVE");
+            usersService.save(user);
+
+            Counselors counselor = new Counselors();
+            counselor.setUserId(user.getId());
+            counselor.setRealName("基准咨询师" + i);
+            counselor.setSpecialization("[\"焦虑\",\"失眠\"]");
+            counselor.setTherapeuticApproach("[\"认知行为疗法\"]");
+            counselor.setConsultationFee(new BigDecimal("300.00"));
+            counselor.setStatus("APPROVED");
+            counselorsService.save(counselor);
+
+            // 每10位咨询师有1位没有服务设置
+            if (i % 10 != 0) {
+                CounselorServiceSettings settings = new CounselorServiceSettings();
+                settings.setCounselorId(counselor.getId());
+                settings.setServiceTypes("[\"视频咨询\",\"文字咨询\"]");
+                settings.setMaxDailySessions(8);
+                counselorServiceSettingsService.save(settings);
+            }
+        }
+    }
+
+    /**
+     * 统计测试线程执行的SQL语句数，不计定时任务等其他线程的查询
+     */
+    @Intercepts(@Signature(type = StatementHandler.class, method = "prepare", args = {Connection.class, Integer.class}))
+    private static class QueryCounter implements Interceptor {
+        private final AtomicInteger count = new AtomicInteger();
+        private volatile Thread owner;
+
+        @Override
+        public Object intercept(Invocation invocation) throws Throwable {
+            if (Thread.currentThread() == owner) {
+                count.incrementAndGet();
+            }
+            return invocation.proceed();
+        }
+
+        void reset() {
+            owner = Thread.currentThread();
+            count.set(0);
+        }
+
+        int get() {
+            return count.get();
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.mapper;
+
+import com.example.dto.MessageSyncRequest;
+import com.example.entity.ConsultationMessages;
+import com.example.service.ConsultationMessagesService;
+import com.example.service.MessageSyncService;
+import jakarta.annotation.Resource;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 断线重连补发：返回每个会话lastSeen之后的消息，包括落后的会话和断线期间新建的会话；
+ * 每个起点向前重叠扫描，补上ID较小但提交较晚的消息（内嵌H2数据库）
+ */
+@SpringBootTest
+@ActiveProfiles("h2")
+public class MessageSyncTest {
+
+    private static final long USER_ID = 980L;
+    private static final long BASE_COUNSELOR_ID = 3000L;
+
+    @Resource
+    private ConsultationMessagesService consultationMessagesService;
+
+    @Resource
+    private MessageSyncService messageSyncService;
+
+    @Value("${chat.sync.overlap-ids:500}")
+    private long overlapIds;
+
+    @Test
+    public void syncReturnsOnlyTheDelta() {
+        Instant base = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+        List<ConsultationMessages> saved = new ArrayList<>();
+        // 断线前：4个会话各5条消息，交错保存
+        List<ConsultationMessages> before = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            before.add(buildMessage(BASE_COUNSELOR_ID + i % 4, base.plusSeconds(i)));
+        }
+        consultationMessagesService.saveMessages(before);
+        saved.addAll(before);
+
+        // 客户端收到了会话0、2、3的全部消息，会话1只收到前2条
+        Map<Long, Long> lastSeen = new HashMap<>();
+        Map<Long, Integer> seenCount = new HashMap<>();
+        for (ConsultationMessages message : before) {
+            long peerId = message.getCounselorId();
+            int seen = seenCount.merge(peerId, 1, Integer::sum);
+            if (peerId != BASE_COUNSELOR_ID + 1 || seen <= 2) {
+                lastSeen.put(peerId, message.getId());
+            }
+        }
+
+        // 断线期间：已有会话的新消息，以及一个新会话
+        List<ConsultationMessages> during = new ArrayList<>();
+        for (int i = 0; i < 9; i++) {
+            during.add(buildMessage(BASE_COUNSELOR_ID + (i % 3 == 2 ? 4 : i % 3 * 2), base.plusSeconds(100 + i)));
+        }
+        consultationMessagesService.saveMessages(during);
+        saved.addAll(during);
+
+        MessageSyncRequest request = new MessageSyncRequest();
+        request.setOwnerType("USER");
+        request.setOwnerId(USER_ID);
+        request.setLastSeen(lastSeen);
+        List<List<ConsultationMessages>> batches = new ArrayList<>();
+        boolean truncated = messageSyncService.sync(request, batches::add);
+        assertFalse(truncated);
+
+        long since = lastSeen.values().stream().mapToLong(Long::longValue).max().orElse(0L);
+        Set<Long> expected = new TreeSet<>();
+        for (ConsultationMessages message : saved) {
+            if (message.getId() > lastSeen.getOrDefault(message.getCounselorId(), since)) {
+                expected.add(message.getId());
+            }
+        }
+        Set<Long> received = new TreeSet<>();
+        Map<Long, Long> previousInConversation = new HashMap<>();
+        int count = 0;
+        for (List<ConsultationMessages> batch : batches) {
+            for (ConsultationMessages message : batch) {
+                count++;
+                received.add(message.getId());
+                // 同一会话内按消息ID升序
+                Long previous = previousInConversation.put(message.getCounselorId(), message.getId());
+                assertTrue(previous == null || previous < message.getId());
+                // 客户端已有的消息只来自重叠区间
+                long seen = lastSeen.getOrDefault(message.getCounselorId(), since);
+                assertTrue(message.getId() > seen - overlapIds);
+            }
+        }
+        assertTrue(received.containsAll(expected));
+        // 同一次同步内不重复下发
+        assertEquals(received.size(), count);
+        assertEquals(3 + 6 + 3, expected.size());
+
+        // 按收到的消息更新lastSeen后再次同步，只会重复下发客户端已有的消息
+        for (List<ConsultationMessages> batch : batches) {
+            batch.forEach(message -> lastSeen.merge(message.getCounselorId(), message.getId(), Math::max));
+        }
+        List<ConsultationMessages> again = new ArrayList<>();
+        messageSyncService.sync(request, again::addAll);
+        for (ConsultationMessages message : again) {
+            assertTrue(message.getId() <= lastSeen.get(message.getCounselorId()));
+        }
+    }
+
+    @Test
+    public void syncReturnsMessageCommittedAfterHigherId() {
+        long counselorId = BASE_COUNSELOR_ID + 10;
+        Instant base = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+        ConsultationMessages earlier = buildMessage(counselorId, base);
+        ConsultationMessages later = buildMessage(counselorId, base.plusSeconds(1));
+        consultationMessagesService.saveMessages(List.of(earlier, later));
+
+        // 模拟并发提交：客户端先收到了ID较大的消息，ID较小的消息提交较晚、没有实时收到
+        MessageSyncRequest request = new MessageSyncRequest();
+        request.setOwnerType("USER");
+        request.setOwnerId(USER_ID);
+        request.setLastSeen(Map.of(counselorId, later.getId()));
+        request.setSinceMessageId(later.getId());
+        List<ConsultationMessages> received = new ArrayList<>();
+        messageSyncService.sync(request, received::addAll);
+
+        assertTrue(received.stream().anyMatch(message -> message.getId().equals(earlier.getId())));
+    }
+
+    private ConsultationMessages buildMessage(long counselorId, Instant sentTime) {
+        ConsultationMessages message = new ConsultationMessages();
+        message.setUserId(USER_ID);
+        message.setCounselorId(counselorId);
+        message.setSenderType("COUNSELOR");
+        message.setMessageType("TEXT");
+        message.setContent("补发测试消息");
+        message.setSentTime(sentTime);
+        message.setReadStatus(false);
+        message.setConversationType("PRE_CONSULTATION");
+        return message;
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.mapper;
+
+import com.example.entity.ConsultationMessages;
+import com.example.service.ConsultationMessagesService;
+import com.example.service.TranscriptExportService;
+import jakarta.annotation.Resource;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 对话记录流式导出：三种格式的行数和顺序（内嵌H2数据库）
+ */
+@SpringBootTest
+@ActiveProfiles("h2")
+public class TranscriptExportTest {
+
+    private static final long USER_ID = 960L;
+    private static final long COUNSELOR_ID = 2100L;
+    private static final int MESSAGE_COUNT = 1000;
+
+    @Resource
+    private ConsultationMessagesService consultationMessagesService;
+
+    @Resource
+    private TranscriptExportService transcriptExportService;
+
+    @Test
+    public void exportConversationInAllFormats() throws Exception {
+        Instant base = Instant.parse("2026-01-01T00:00:00Z");
+        List<ConsultationMessages> messages = new ArrayList<>(MESSAGE_COUNT);
+        for (int i = 0; i < MESSAGE_COUNT; i++) {
+            ConsultationMessages message = new ConsultationMessages();
+            message.setUserId(USER_ID);
+            message.setCounselorId(COUNSELOR_ID);
+            message.setSenderType(i % 2 == 0 ? "USER" : "COUNSELOR");
+            message.setMessageType("TEXT");
+            // 包含需要转义的逗号、引号和换行
+            message.setContent("第" + i + "条, \"引号\"\n换行");
+            message.setSentTime(base.plusSeconds(i));
+            messages.add(message);
+        }
+        consultationMessagesService.saveMessages(messages);
+
+        ByteArrayOutputStream ndjson = new ByteArrayOutputStream();
+        assertEquals(MESSAGE_COUNT, transcriptExportService.exportByConversation(
+                USER_ID, COUNSELOR_ID, TranscriptExportService.Format.NDJSON, ndjson));
+        String[] lines = ndjson.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(MESSAGE_COUNT, lines.length);
+        assertTrue(lines[0].contains("\"id\":" + messages.get(0).getId()));
+        assertTrue(lines[0].contains("\"sentTime\":\"2026-01-01T00:00:00Z\""));
+
+        ByteArrayOutputStream csv = new ByteArrayOutputStream();
+        transcriptExportService.exportByConversation(USER_ID, COUNSELOR_ID, TranscriptExportService.Format.CSV, csv);
+        // 表头 + 每条消息一行（内容中的换行在引号内）
+        assertEquals(MESSAGE_COUNT + 1, csv.toString(StandardCharsets.UTF_8).split("\r\n").length);
+
+        ByteArrayOutputStream xlsx = new ByteArrayOutputStream();
+        transcriptExportService.exportByConversation(USER_ID, COUNSELOR_ID, TranscriptExportService.Format.XLSX, xlsx);
+        try (XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(xlsx.toByteArray()))) {
+            assertEquals(MESSAGE_COUNT, workbook.getSheetAt(0).getLastRowNum());
+            assertEquals(messages.get(MESSAGE_COUNT - 1).getId().doubleValue(),
+                    workbook.getSheetAt(0).getRow(MESSAGE_COUNT).getCell(0).getNumericCellValue());
+        }
+    }
+}
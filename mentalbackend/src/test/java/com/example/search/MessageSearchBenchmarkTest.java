@@ -0,0 +1,123 @@
+package com.example.search;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.example.dto.MessageSearchPage;
+import com.example.entity.ConsultationMessages;
+import com.example.service.ConsultationMessagesService;
+import jakarta.annotation.Resource;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 聊天记录检索：LIKE '%词%' 全表扫描 与 Lucene全文索引 的性能对比（内嵌H2数据库）
+ */
+@SpringBootTest
+@ActiveProfiles("h2")
+public class MessageSearchBenchmarkTest {
+
+    private static final long USER_ID = 970L;
+    private static final long BASE_COUNSELOR_ID = 1100L;
+    private static final int COUNSELOR_COUNT = 10;
+    private static final int MESSAGE_COUNT = 50_000;
+    private static final int PAGE_SIZE = 20;
+
+    private static final String[] PHRASES = {
+            "最近总是失眠，晚上睡不着",
+            "工作压力很大，经常焦虑",
+            "和家人沟通时容易发脾气",
+            "今天心情好一些了，谢谢老师",
+            "可以试试睡前做呼吸放松练习",
+            "下次咨询想聊聊考试焦虑和失眠",
+            "CBT认知行为疗法的作业完成了"
+    };
+
+    @Resource
+    private ConsultationMessagesService consultationMessagesService;
+
+    @Resource
+    private MessageSearchIndex messageSearchIndex;
+
+    @Test
+    public void compareLikeScanWithIndex() throws Exception {
+        // 等待启动时的全量重建结束，之后保存的消息在事务提交后写入索引
+        while (messageSearchIndex.isRebuilding()) {
+            Thread.sleep(50);
+        }
+        Instant base = Instant.parse("2025-03-01T00:00:00Z");
+        for (int from = 0; from < MESSAGE_COUNT; from += 5000) {
+            consultationMessagesService.saveMessages(buildMessages(from, 5000, base));
+        }
+        messageSearchIndex.refresh();
+
+        // 预热
+        likeSearch("失眠");
+        consultationMessagesService.searchMessages(USER_ID, null, "失眠", PAGE_SIZE, 0);
+
+        long start = System.nanoTime();
+        List<ConsultationMessages> scanned = likeSearch("失眠");
+        long likeMs = (System.nanoTime() - start) / 1_000_000;
+
+        start = System.nanoTime();
+        MessageSearchPage page = consultationMessagesService.searchMessages(USER_ID, null, "失眠", PAGE_SIZE, 0);
+        long indexMs = (System.nanoTime() - start) / 1_000_000;
+
+        System.out.printf("用户共%d条消息，检索\"失眠\"命中%d条: LIKE全表扫描=%dms, 全文索引=%dms%n",
+                MESSAGE_COUNT, page.getTotal(), likeMs, indexMs);
+
+        assertEquals(scanned.size(), page.getTotal());
+        assertEquals(PAGE_SIZE, page.getMessages().size());
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            // 按发送时间倒序，与LIKE查询的前一页一致
+            assertEquals(scanned.get(i).getId(), page.getMessages().get(i).getId());
+        }
+
+        // 多字短语按相邻二元组匹配
+        assertEquals(likeSearch("睡不着").size(),
+                consultationMessagesService.searchMessages(USER_ID, null, "睡不着", PAGE_SIZE, 0).getTotal());
+        // 多个词需全部命中
+        MessageSearchPage both = consultationMessagesService.searchMessages(USER_ID, null, "焦虑 失眠", PAGE_SIZE, 0);
+        assertEquals(likeSearch("考试焦虑和失眠").size(), both.getTotal());
+        // 英文不区分大小写
+        assertEquals(likeSearch("CBT").size(),
+                consultationMessagesService.searchMessages(USER_ID, null, "cbt", PAGE_SIZE, 0).getTotal());
+        // 按会话过滤
+        MessageSearchPage conversation = consultationMessagesService.searchMessages(USER_ID, BASE_COUNSELOR_ID, "失眠", PAGE_SIZE, 0);
+        assertTrue(conversation.getTotal() > 0);
+        for (ConsultationMessages message : conversation.getMessages()) {
+            assertEquals(BASE_COUNSELOR_ID, message.getCounselorId());
+        }
+    }
+
+    private List<ConsultationMessages> likeSearch(String text) {
+        QueryWrapper<ConsultationMessages> queryWrapper = new QueryWrapper<>();
+        queryWrapper.eq("user_id", USER_ID);
+        queryWrapper.like("content", text);
+        queryWrapper.orderByDesc("sent_time", "id");
+        return consultationMessagesService.list(queryWrapper);
+    }
+
+    private List<ConsultationMessages> buildMessages(int from, int count, Instant base) {
+        List<ConsultationMessages> messages = new ArrayList<>(count);
+        for (int i = from; i < from + count; i++) {
+            ConsultationMessages message = new ConsultationMessages();
+            message.setUserId(USER_ID);
+            message.setCounselorId(BASE_COUNSELOR_ID + i % COUNSELOR_COUNT);
+            message.setSenderType(i % 2 == 0 ? "USER" : "COUNSELOR");
+            message.setMessageType("TEXT");
+            message.setContent(PHRASES[i % PHRASES.length]);
+            message.setSentTime(base.plusSeconds(i));
+            message.setReadStatus(true);
+            message.setConversationType("PRE_CONSULTATION");
+            messages.add(message);
+        }
+        return messages;
+    }
+}
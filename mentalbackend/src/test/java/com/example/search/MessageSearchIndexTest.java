@@ -0,0 +1,74 @@
+package com.example.search;
+
+import com.example.dto.MessageSearchPage;
+import com.example.entity.ConsultationMessages;
+import com.example.service.ConsultationMessagesService;
+import jakarta.annotation.Resource;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 全文索引的删除和重建：删除消息后不再命中，重建替换索引后检索结果不变（内嵌H2数据库）
+ */
+@SpringBootTest
+@ActiveProfiles("h2")
+public class MessageSearchIndexTest {
+
+    private static final long USER_ID = 986L;
+    private static final long COUNSELOR_ID = 1200L;
+
+    @Resource
+    private ConsultationMessagesService consultationMessagesService;
+
+    @Resource
+    private MessageSearchIndex messageSearchIndex;
+
+    @Test
+    public void deletedMessageLeavesIndexAndRebuildKeepsResults() throws Exception {
+        awaitRebuild();
+        List<Long> ids = consultationMessagesService.saveMessages(List.of(
+                message("索引删除测试：最近总是做噩梦"),
+                message("索引删除测试：噩梦少了一些")));
+        messageSearchIndex.refresh();
+        assertEquals(2, search("噩梦").getTotal());
+
+        consultationMessagesService.removeById(ids.get(0));
+        messageSearchIndex.refresh();
+        MessageSearchPage afterDelete = search("噩梦");
+        assertEquals(1, afterDelete.getTotal());
+        assertEquals(ids.get(1), afterDelete.getMessages().get(0).getId());
+
+        // 重建期间检索使用原索引，完成后替换为新索引
+        assertTrue(messageSearchIndex.rebuildAsync());
+        assertEquals(1, search("噩梦").getTotal());
+        awaitRebuild();
+        MessageSearchPage afterRebuild = search("噩梦");
+        assertEquals(1, afterRebuild.getTotal());
+        assertEquals(ids.get(1), afterRebuild.getMessages().get(0).getId());
+    }
+
+    private MessageSearchPage search(String query) {
+        return consultationMessagesService.searchMessages(USER_ID, COUNSELOR_ID, query, 20, 0);
+    }
+
+    private void awaitRebuild() throws InterruptedException {
+        while (messageSearchIndex.isRebuilding()) {
+            Thread.sleep(50);
+        }
+    }
+
+    private static ConsultationMessages message(String content) {
+        ConsultationMessages message = new ConsultationMessages();
+        message.setUserId(USER_ID);
+        message.setCounselorId(COUNSELOR_ID);
+        message.setSenderType("USER");
+        message.setContent(content);
+        return message;
+    }
+}
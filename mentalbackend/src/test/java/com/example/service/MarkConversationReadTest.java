@@ -0,0 +1,180 @@
+package com.example.service;
+
+import com.example.entity.ConsultationMessages;
+import com.example.service.impl.MessageWriteBehindServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.annotation.Resource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.time.Instant;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 按范围标记已读与异步写入队列竞争：标记前等待该会话排队中的消息落库，刚发送的消息不会漏标；
+ * 写入卡住时最多等待配置的超时时间（内嵌H2数据库）
+ */
+@SpringBootTest
+@ActiveProfiles("h2")
+public class MarkConversationReadTest {
+
+    private static final long USER_ID = 1007L;
+    private static final long COUNSELOR_ID = 4007L;
+    private static final long SLOW_COUNSELOR_ID = 4008L;
+    private static final long CALLER_RUNS_COUNSELOR_ID = 4009L;
+    private static final long FILLER_COUNSELOR_ID = 4010L;
+
+    @Resource
+    private ConsultationMessagesService consultationMessagesService;
+
+    private final CountDownLatch writeEntered = new CountDownLatch(1);
+    private final CountDownLatch releaseWrite = new CountDownLatch(1);
+
+    private MessageWriteBehindServiceImpl writeBehind;
+
+    @AfterEach
+    public void stopWriter() {
+        releaseWrite.countDown();
+        if (writeBehind != null) {
+            writeBehind.shutdown();
+        }
+    }
+
+    @Test
+    public void readMarkWaitsForQueuedMessage() throws Exception {
+        writeBehind = start(100, 2000);
+        ConsultationMessages message = message(COUNSELOR_ID);
+        writeBehind.enqueue(message);
+        assertTrue(writeEntered.await(10, TimeUnit.SECONDS));
+
+        AtomicInteger marked = new AtomicInteger(-1);
+        Thread reader = markReadInBackground(COUNSELOR_ID, marked);
+        reader.join(200);
+        assertTrue(reader.isAlive(), "消息还在写入，标记已读应等待");
+
+        releaseWrite.countDown();
+        reader.join(TimeUnit.SECONDS.toMillis(10));
+        assertEquals(1, marked.get());
+        assertEquals(Boolean.TRUE, consultationMessagesService.getById(message.getId()).getReadStatus());
+    }
+
+    @Test
+    public void readMarkWaitIsBounded() throws Exception {
+        writeBehind = start(100, 200);
+        ConsultationMessages message = message(SLOW_COUNSELOR_ID);
+        writeBehind.enqueue(message);
+        assertTrue(writeEntered.await(10, TimeUnit.SECONDS));
+
+        long start = System.nanoTime();
+        writeBehind.awaitConversationPersisted(USER_ID, SLOW_COUNSELOR_ID);
+        long waitedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(waitedMs >= 150 && waitedMs < 5000, "等待了" + waitedMs + "ms");
+        // 等待不会在调用线程上写入队列中的消息
+        assertNull(message.getId());
+    }
+
+    @Test
+    public void readMarkWaitsForCallerRunsSave() throws Exception {
+        // 队列容量为1：第一条被写线程取走后卡住，第二条占满队列，第三条由调用线程同步保存
+        writeBehind = start(1, 2000);
+        writeBehind.enqueue(message(FILLER_COUNSELOR_ID));
+        assertTrue(writeEntered.await(10, TimeUnit.SECONDS));
+        writeBehind.enqueue(message(FILLER_COUNSELOR_ID));
+
+        CountDownLatch callerEntered = new CountDownLatch(1);
+        CountDownLatch releaseCaller = new CountDownLatch(1);
+        blockCallerRuns(callerEntered, releaseCaller);
+        ConsultationMessages callerRuns = message(CALLER_RUNS_COUNSELOR_ID);
+        Thread sender = new Thread(() -> writeBehind.enqueue(callerRuns));
+        sender.start();
+        assertTrue(callerEntered.await(10, TimeUnit.SECONDS));
+
+        AtomicInteger marked = new AtomicInteger(-1);
+        Thread reader = markReadInBackground(CALLER_RUNS_COUNSELOR_ID, marked);
+        reader.join(200);
+        assertTrue(reader.isAlive(), "调用线程还在保存，标记已读应等待");
+
+        releaseCaller.countDown();
+        sender.join(TimeUnit.SECONDS.toMillis(10));
+        reader.join(TimeUnit.SECONDS.toMillis(10));
+        assertFalse(reader.isAlive());
+        assertEquals(1, marked.get());
+    }
+
+    /**
+     * 与 /app/chat.read 的处理相同：先等待会话落库，再按时间上界标记已读
+     */
+    private Thread markReadInBackground(long counselorId, AtomicInteger marked) {
+        Instant upTo = Instant.now().plusSeconds(5);
+        Thread reader = new Thread(() -> {
+            writeBehind.awaitConversationPersisted(USER_ID, counselorId);
+            marked.set(consultationMessagesService.markConversationRead(USER_ID, counselorId, "COUNSELOR", null, upTo));
+        });
+        reader.start();
+        return reader;
+    }
+
+    private MessageWriteBehindServiceImpl start(int queueCapacity, long readAwaitTimeoutMs) {
+        MessageWriteBehindServiceImpl service = new MessageWriteBehindServiceImpl();
+        ReflectionTestUtils.setField(service, "consultationMessagesService", delegate(null, null));
+        ReflectionTestUtils.setField(service, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(service, "queueCapacity", queueCapacity);
+        ReflectionTestUtils.setField(service, "offerTimeoutMs", 20L);
+        ReflectionTestUtils.setField(service, "batchSize", 200);
+        ReflectionTestUtils.setField(service, "flushIntervalMs", 20L);
+        ReflectionTestUtils.setField(service, "maxRetries", 0);
+        ReflectionTestUtils.setField(service, "retryBackoffMs", 10L);
+        ReflectionTestUtils.setField(service, "readAwaitTimeoutMs", readAwaitTimeoutMs);
+        service.start();
+        return service;
+    }
+
+    /**
+     * 让同步保存（saveMessage）也先卡住，用于观察调用线程保存期间的等待
+     */
+    private void blockCallerRuns(CountDownLatch callerEntered, CountDownLatch releaseCaller) {
+        ReflectionTestUtils.setField(writeBehind, "consultationMessagesService", delegate(callerEntered, releaseCaller));
+    }
+
+    /**
+     * 底层保存委托给真实的消息服务：批量保存先卡住到releaseWrite，同步保存在给出latch时卡住到releaseCaller
+     */
+    private ConsultationMessagesService delegate(CountDownLatch callerEntered, CountDownLatch releaseCaller) {
+        return (ConsultationMessagesService) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{ConsultationMessagesService.class}, (proxy, method, args) -> {
+                    if ("saveMessages".equals(method.getName())) {
+                        writeEntered.countDown();
+                        releaseWrite.await(10, TimeUnit.SECONDS);
+                    } else if ("saveMessage".equals(method.getName()) && callerEntered != null) {
+                        callerEntered.countDown();
+                        releaseCaller.await(10, TimeUnit.SECONDS);
+                    }
+                    try {
+                        return method.invoke(consultationMessagesService, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+
+    private static ConsultationMessages message(long counselorId) {
+        ConsultationMessages message = new ConsultationMessages();
+        message.setUserId(USER_ID);
+        message.setCounselorId(counselorId);
+        message.setSenderType("USER");
+        message.setContent("范围已读测试");
+        return message;
+    }
+}
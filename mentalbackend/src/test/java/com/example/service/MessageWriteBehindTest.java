@@ -0,0 +1,186 @@
+package com.example.service;
+
+import com.example.entity.ConsultationMessages;
+import com.example.service.impl.MessageWriteBehindServiceImpl;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.annotation.Resource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 消息异步写入：批量写入失败后重试成功、队列满时由调用线程同步保存、关闭时写完队列中剩余的消息（内嵌H2数据库）
+ * 每个测试单独创建写入服务，底层保存委托给真实的消息服务，按需注入失败或阻塞
+ */
+@SpringBootTest
+@ActiveProfiles("h2")
+public class MessageWriteBehindTest {
+
+    private static final long USER_ID = 1001L;
+    private static final long COUNSELOR_ID = 4001L;
+
+    @Resource
+    private ConsultationMessagesService consultationMessagesService;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private MessageWriteBehindServiceImpl writeBehind;
+
+    @AfterEach
+    public void stopWriter() {
+        if (writeBehind != null) {
+            writeBehind.shutdown();
+        }
+    }
+
+    @Test
+    public void failedBatchIsRetriedUntilSaved() throws Exception {
+        AtomicInteger failuresLeft = new AtomicInteger(2);
+        writeBehind = start(10, () -> {
+            if (failuresLeft.getAndDecrement() > 0) {
+                throw new IllegalStateException("模拟数据库写入失败");
+            }
+        });
+
+        Map<String, Boolean> results = new ConcurrentHashMap<>();
+        CountDownLatch done = new CountDownLatch(1);
+        ConsultationMessages message = message("重试测试");
+        assertTrue(writeBehind.enqueue(message, (saved, persisted) -> {
+            results.put(saved.getContent(), persisted);
+            done.countDown();
+        }));
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(Boolean.TRUE, results.get("重试测试"));
+        assertNotNull(consultationMessagesService.getById(message.getId()));
+        assertEquals(2.0, meterRegistry.counter("chat.persistence.retries").count());
+        assertEquals(0.0, meterRegistry.counter("chat.persistence.dropped").count());
+    }
+
+    @Test
+    public void fullQueueFallsBackToCallerThread() throws Exception {
+        CountDownLatch writerEntered = new CountDownLatch(1);
+        CountDownLatch releaseWriter = new CountDownLatch(1);
+        writeBehind = start(1, () -> {
+            writerEntered.countDown();
+            await(releaseWriter);
+        });
+
+        // 第一条被写线程取走后阻塞，第二条占满容量为1的队列，第三条只能由调用线程同步保存
+        ConsultationMessages first = message("背压测试1");
+        ConsultationMessages queued = message("背压测试2");
+        ConsultationMessages callerRuns = message("背压测试3");
+        writeBehind.enqueue(first);
+        assertTrue(writerEntered.await(10, TimeUnit.SECONDS));
+        writeBehind.enqueue(queued);
+        assertEquals(1, writeBehind.getQueueDepth());
+
+        assertTrue(writeBehind.enqueue(callerRuns));
+        assertEquals(1.0, meterRegistry.counter("chat.persistence.caller.runs").count());
+        assertNotNull(callerRuns.getId());
+        assertNotNull(consultationMessagesService.getById(callerRuns.getId()));
+
+        releaseWriter.countDown();
+        writeBehind.shutdown();
+        writeBehind = null;
+        assertNotNull(consultationMessagesService.getById(first.getId()));
+        assertNotNull(consultationMessagesService.getById(queued.getId()));
+    }
+
+    @Test
+    public void shutdownFlushesQueuedMessages() throws Exception {
+        CountDownLatch writerEntered = new CountDownLatch(1);
+        CountDownLatch releaseWriter = new CountDownLatch(1);
+        writeBehind = start(100, () -> {
+            if (writerEntered.getCount() > 0) {
+                writerEntered.countDown();
+                await(releaseWriter);
+            }
+        });
+
+        writeBehind.enqueue(message("关闭测试0"));
+        assertTrue(writerEntered.await(10, TimeUnit.SECONDS));
+        List<ConsultationMessages> pending = List.of(message("关闭测试1"), message("关闭测试2"), message("关闭测试3"));
+        pending.forEach(writeBehind::enqueue);
+        assertEquals(3, writeBehind.getQueueDepth());
+
+        // 关闭时写线程仍卡在第一批，关闭流程等它结束后把队列剩余消息写完
+        Thread stopper = new Thread(writeBehind::shutdown);
+        stopper.start();
+        releaseWriter.countDown();
+        stopper.join(TimeUnit.SECONDS.toMillis(15));
+        assertEquals(0, writeBehind.getQueueDepth());
+        for (ConsultationMessages message : pending) {
+            assertNotNull(message.getId());
+            assertNotNull(consultationMessagesService.getById(message.getId()));
+        }
+
+        // 关闭之后提交的消息不再入队，由调用线程直接保存
+        ConsultationMessages late = message("关闭测试4");
+        assertTrue(writeBehind.enqueue(late));
+        assertNotNull(consultationMessagesService.getById(late.getId()));
+        writeBehind = null;
+    }
+
+    /**
+     * 创建并启动写入服务，每次批量保存前执行beforeBatch
+     */
+    private MessageWriteBehindServiceImpl start(int queueCapacity, Runnable beforeBatch) {
+        ConsultationMessagesService delegate = (ConsultationMessagesService) Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class<?>[]{ConsultationMessagesService.class}, (proxy, method, args) -> {
+                    if ("saveMessages".equals(method.getName())) {
+                        beforeBatch.run();
+                    }
+                    try {
+                        return method.invoke(consultationMessagesService, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+        MessageWriteBehindServiceImpl service = new MessageWriteBehindServiceImpl();
+        ReflectionTestUtils.setField(service, "consultationMessagesService", delegate);
+        ReflectionTestUtils.setField(service, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(service, "queueCapacity", queueCapacity);
+        ReflectionTestUtils.setField(service, "offerTimeoutMs", 20L);
+        ReflectionTestUtils.setField(service, "batchSize", 200);
+        ReflectionTestUtils.setField(service, "flushIntervalMs", 20L);
+        ReflectionTestUtils.setField(service, "maxRetries", 3);
+        ReflectionTestUtils.setField(service, "retryBackoffMs", 10L);
+        ReflectionTestUtils.setField(service, "readAwaitTimeoutMs", 1000L);
+        service.start();
+        return service;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static ConsultationMessages message(String content) {
+        ConsultationMessages message = new ConsultationMessages();
+        message.setUserId(USER_ID);
+        message.setCounselorId(COUNSELOR_ID);
+        message.setSenderType("USER");
+        message.setContent(content);
+        return message;
+    }
+}
@@ -0,0 +1,210 @@
+package com.example.support;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 测试用的最小STOMP代理，替代外部消息代理（如ActiveMQ Artemis）
+ * 只实现Spring STOMP代理转发需要的帧：CONNECT/STOMP、SUBSCRIBE、UNSUBSCRIBE、SEND、DISCONNECT，
+ * 按目的地完全匹配把SEND转发给所有订阅者，不做持久化、不发送心跳
+ */
+public class EmbeddedStompBroker implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(EmbeddedStompBroker.class);
+
+    private final ServerSocket serverSocket;
+
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    private final AtomicLong messageIds = new AtomicLong();
+
+    private volatile boolean running = true;
+
+    public EmbeddedStompBroker() throws IOException {
+        serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(this::acceptLoop, "embedded-stomp-broker");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        serverSocket.close();
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                Connection connection = new Connection(socket);
+                Thread reader = new Thread(connection::readLoop, "embedded-stomp-connection");
+                reader.setDaemon(true);
+                reader.start();
+            } catch (IOException e) {
+                if (running) {
+                    log.warn("测试STOMP代理接受连接失败: {}", e.getMessage(), e);
+                }
+            }
+        }
+    }
+
+    private record Subscription(Connection connection, String id, String destination) {
+    }
+
+    private record Frame(String command, Map<String, String> headers, byte[] body) {
+    }
+
+    private class Connection {
+        private final Socket socket;
+        private final InputStream in;
+        private final OutputStream out;
+
+        Connection(Socket socket) throws IOException {
+            this.socket = socket;
+            this.in = new BufferedInputStream(socket.getInputStream());
+            this.out = socket.getOutputStream();
+        }
+
+        void readLoop() {
+            try {
+                Frame frame;
+                while ((frame = readFrame()) != null) {
+                    handle(frame);
+                }
+            } catch (IOException ignored) {
+                // 连接关闭
+            } finally {
+                subscriptions.removeIf(subscription -> subscription.connection() == this);
+                try {
+                    socket.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+
+        private void handle(Frame frame) throws IOException {
+            Map<String, String> headers = frame.headers();
+            switch (frame.command()) {
+                case "CONNECT", "STOMP" -> {
+                    Map<String, String> connected = new LinkedHashMap<>();
+                    connected.put("version", "1.2");
+                    connected.put("heart-beat", "0,0");
+                    write("CONNECTED", connected, new byte[0]);
+                }
+                case "SUBSCRIBE" -> subscriptions.add(new Subscription(this, headers.get("id"), headers.get("destination")));
+                case "UNSUBSCRIBE" -> subscriptions.removeIf(subscription ->
+                        subscription.connection() == this && subscription.id().equals(headers.get("id")));
+                case "SEND" -> {
+                    for (Subscription subscription : subscriptions) {
+                        if (subscription.destination().equals(headers.get("destination"))) {
+                            Map<String, String> message = new LinkedHashMap<>();
+                            message.put("subscription", subscription.id());
+                            message.put("message-id", String.valueOf(messageIds.incrementAndGet()));
+                            message.put("destination", subscription.destination());
+                            if (headers.containsKey("content-type")) {
+                                message.put("content-type", headers.get("content-type"));
+                            }
+                            message.put("content-length", String.valueOf(frame.body().length));
+                            subscription.connection().write("MESSAGE", message, frame.body());
+                        }
+                    }
+                }
+                case "DISCONNECT" -> {
+                    sendReceiptIfRequested(headers);
+                    socket.close();
+                    return;
+                }
+                default -> {
+                }
+            }
+            sendReceiptIfRequested(headers);
+        }
+
+        private void sendReceiptIfRequested(Map<String, String> headers) throws IOException {
+            if (headers.containsKey("receipt")) {
+                write("RECEIPT", Map.of("receipt-id", headers.get("receipt")), new byte[0]);
+            }
+        }
+
+        private synchronized void write(String command, Map<String, String> headers, byte[] body) throws IOException {
+            StringBuilder head = new StringBuilder(command).append('\n');
+            headers.forEach((name, value) -> head.append(name).append(':').append(value).append('\n'));
+            head.append('\n');
+            out.write(head.toString().getBytes(StandardCharsets.UTF_8));
+            out.write(body);
+            out.write(0);
+            out.flush();
+        }
+
+        private Frame readFrame() throws IOException {
+            String command;
+            // 跳过心跳产生的空行
+            do {
+                command = readLine();
+                if (command == null) {
+                    return null;
+                }
+            } while (command.isEmpty());
+
+            Map<String, String> headers = new LinkedHashMap<>();
+            String line;
+            while ((line = readLine()) != null && !line.isEmpty()) {
+                int colon = line.indexOf(':');
+                if (colon > 0) {
+                    // STOMP 1.2：重复的头以第一个为准
+                    headers.putIfAbsent(line.substring(0, colon), line.substring(colon + 1));
+                }
+            }
+
+            byte[] body;
+            String contentLength = headers.get("content-length");
+            if (contentLength != null) {
+                body = in.readNBytes(Integer.parseInt(contentLength));
+                in.read(); // 结尾的NUL
+            } else {
+                ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                int b;
+                while ((b = in.read()) > 0) {
+                    buffer.write(b);
+                }
+                body = buffer.toByteArray();
+            }
+            return new Frame(command, headers, body);
+        }
+
+        private String readLine() throws IOException {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            int b;
+            while ((b = in.read()) != -1) {
+                if (b == '\n') {
+                    byte[] bytes = buffer.toByteArray();
+                    int length = bytes.length > 0 && bytes[bytes.length - 1] == '\r' ? bytes.length - 1 : bytes.length;
+                    return new String(bytes, 0, length, StandardCharsets.UTF_8);
+                }
+                buffer.write(b);
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.support;
+
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import java.io.Closeable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 测试用的最小STOMP客户端，直接收发文本帧，连接 /ws-native 端点
+ * 一条WebSocket消息中可能包含多个帧（COALESCE策略），按帧结束符拆分后逐个排队
+ */
+public class StompTestClient extends TextWebSocketHandler implements Closeable {
+
+    private final BlockingQueue<Frame> frames = new LinkedBlockingQueue<>();
+
+    private final AtomicInteger ids = new AtomicInteger();
+
+    private WebSocketSession session;
+
+    /**
+     * 连接并完成STOMP握手，connectHeaders附加到CONNECT帧
+     */
+    public static StompTestClient connect(int port, Map<String, String> connectHeaders) throws Exception {
+        StompTestClient client = new StompTestClient();
+        client.session = new StandardWebSocketClient()
+                .execute(client, "ws://127.0.0.1:" + port + "/ws-native")
+                .get(10, TimeUnit.SECONDS);
+        StringBuilder frame = new StringBuilder("CONNECT\naccept-version:1.2\nhost:localhost\n");
+        connectHeaders.forEach((name, value) -> frame.append(name).append(':').append(value).append('\n'));
+        client.session.sendMessage(new TextMessage(frame.append("\n\0")));
+        client.expect("CONNECTED");
+        return client;
+    }
+
+    /**
+     * 订阅并等待RECEIPT，返回订阅ID
+     */
+    public String subscribe(String destination) throws Exception {
+        String id = "sub-" + ids.incrementAndGet();
+        String receipt = "r-" + id;
+        session.sendMessage(new TextMessage("SUBSCRIBE\nid:" + id + "\ndestination:" + destination
+                + "\nreceipt:" + receipt + "\n\n\0"));
+        Frame frame = expect("RECEIPT");
+        if (!receipt.equals(frame.headers().get("receipt-id"))) {
+            throw new AssertionError("收到的RECEIPT不属于本次订阅: " + frame);
+        }
+        return id;
+    }
+
+    public void send(String destination, String json) throws Exception {
+        session.sendMessage(new TextMessage("SEND\ndestination:" + destination
+                + "\ncontent-type:application/json\n\n" + json + "\0"));
+    }
+
+    /**
+     * 等待下一个发往destination的MESSAGE帧，其他目的地的帧丢弃
+     */
+    public Frame nextMessage(String destination, long timeoutMs) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            Frame frame = frames.poll(remaining, TimeUnit.NANOSECONDS);
+            if (frame != null && "MESSAGE".equals(frame.command()) && destination.equals(frame.headers().get("destination"))) {
+                return frame;
+            }
+        }
+        return null;
+    }
+
+    public boolean isOpen() {
+        return session != null && session.isOpen();
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (isOpen()) {
+                session.sendMessage(new TextMessage("DISCONNECT\n\n\0"));
+                session.close();
+            }
+        } catch (Exception ignored) {
+            // 连接可能已被服务器关闭
+        }
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) {
+        for (String raw : message.getPayload().split("\0")) {
+            String text = raw.stripLeading();
+            if (text.isEmpty()) {
+                continue;
+            }
+            int headerEnd = text.indexOf("\n\n");
+            String head = headerEnd >= 0 ? text.substring(0, headerEnd) : text;
+            String[] lines = head.split("\n");
+            Map<String, String> headers = new LinkedHashMap<>();
+            for (int i = 1; i < lines.length; i++) {
+                int colon = lines[i].indexOf(':');
+                if (colon > 0) {
+                    headers.putIfAbsent(lines[i].substring(0, colon), lines[i].substring(colon + 1));
+                }
+            }
+            frames.add(new Frame(lines[0], headers, headerEnd >= 0 ? text.substring(headerEnd + 2) : ""));
+        }
+    }
+
+    private Frame expect(String command) throws InterruptedException {
+        Frame frame = frames.poll(10, TimeUnit.SECONDS);
+        if (frame == null || !command.equals(frame.command())) {
+            throw new AssertionError("期望" + command + "帧，实际收到: " + frame);
+        }
+        return frame;
+    }
+
+    public record Frame(String command, Map<String, String> headers, String body) {
+    }
+}
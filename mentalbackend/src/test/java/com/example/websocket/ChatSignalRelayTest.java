@@ -0,0 +1,192 @@
+package com.example.websocket;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.Resource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 聊天信号：时间窗口内同类信号合并为一条，已读消息ID取最大值；每个连接超出令牌桶容量的信号被丢弃；
+ * 接收者不在线时不发送（内嵌H2数据库）
+ */
+@SpringBootTest
+@ActiveProfiles("h2")
+public class ChatSignalRelayTest {
+
+    private static final long USER_ID = 1008L;
+    private static final long COUNSELOR_ID = 4011L;
+    private static final String SIGNALS = "/queue/signals/counselor/" + COUNSELOR_ID;
+
+    @Resource
+    private ChatSignalRelay chatSignalRelay;
+
+    @Resource
+    private ChatMessageSender chatMessageSender;
+
+    @Resource
+    private ApplicationEventPublisher eventPublisher;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private final BlockingQueue<Sent> sent = new LinkedBlockingQueue<>();
+
+    // 断开过的会话ID不会重新登记在线，每个测试使用新的接收者会话
+    private final String receiverSession = "signal-receiver-" + UUID.randomUUID();
+
+    @BeforeEach
+    public void captureSignals() {
+        ReflectionTestUtils.setField(chatSignalRelay, "chatMessageSender", new ChatMessageSender() {
+            @Override
+            public void send(String destination, Object payload) {
+                sent.add(new Sent(destination, (ChatSignal) payload));
+            }
+        });
+    }
+
+    @AfterEach
+    public void restoreSender() {
+        ReflectionTestUtils.setField(chatSignalRelay, "chatMessageSender", chatMessageSender);
+        disconnect(receiverSession);
+    }
+
+    @Test
+    public void signalsInWindowAreCoalesced() throws Exception {
+        receiverOnline();
+        assertTrue(chatSignalRelay.submit("signal-a", read(11L)));
+        assertTrue(chatSignalRelay.submit("signal-a", read(13L)));
+        // 乱序到达的较小消息ID不会让已读位置倒退
+        assertTrue(chatSignalRelay.submit("signal-a", read(12L)));
+        assertTrue(chatSignalRelay.submit("signal-a", typing(true)));
+        assertTrue(chatSignalRelay.submit("signal-a", typing(false)));
+
+        Sent first = next();
+        Sent second = next();
+        ChatSignal readSignal = ChatSignal.READ.equals(first.signal().getType()) ? first.signal() : second.signal();
+        ChatSignal typingSignal = readSignal == first.signal() ? second.signal() : first.signal();
+        assertEquals(SIGNALS, first.destination());
+        assertEquals(SIGNALS, second.destination());
+        assertEquals(13L, readSignal.getMessageId());
+        assertEquals(ChatSignal.TYPING, typingSignal.getType());
+        assertEquals(Boolean.FALSE, typingSignal.getTyping());
+        assertTrue(readSignal.getTimestamp() > 0);
+        assertNull(sent.poll(500, TimeUnit.MILLISECONDS), "每类信号每个窗口只应发送一条");
+
+        // 窗口结束后的信号开启新窗口
+        assertTrue(chatSignalRelay.submit("signal-a", read(14L)));
+        assertEquals(14L, next().signal().getMessageId());
+    }
+
+    @Test
+    public void excessSignalsAreRateLimited() throws Exception {
+        receiverOnline();
+        double limited = meterRegistry.counter("chat.signal.rate.limited").count();
+        int accepted = 0;
+        for (int i = 0; i < 25; i++) {
+            if (chatSignalRelay.submit("signal-b", typing(i % 2 == 0))) {
+                accepted++;
+            }
+        }
+        // 容量20，每秒补充10个：循环期间最多补充一个令牌
+        assertTrue(accepted >= 20 && accepted <= 21, "接受了" + accepted + "个信号");
+        assertEquals(limited + 25 - accepted, meterRegistry.counter("chat.signal.rate.limited").count());
+
+        // 令牌桶按连接计算，其他连接不受影响
+        assertTrue(chatSignalRelay.submit("signal-c", read(1L)));
+        next();
+        next();
+
+        // 断开后令牌桶被移除，重连的同名会话重新获得满容量
+        disconnect("signal-b");
+        for (int i = 0; i < 20; i++) {
+            assertTrue(chatSignalRelay.submit("signal-b", typing(true)));
+        }
+        next();
+    }
+
+    @Test
+    public void offlineReceiverGetsNothing() throws Exception {
+        double sentSignals = meterRegistry.counter("chat.signal.sent").count();
+        assertTrue(chatSignalRelay.submit("signal-d", typing(true)));
+        assertNull(sent.poll(800, TimeUnit.MILLISECONDS));
+        assertEquals(sentSignals, meterRegistry.counter("chat.signal.sent").count());
+
+        // 无效信号不提交
+        ChatSignal invalid = typing(true);
+        invalid.setType("UNKNOWN");
+        assertFalse(chatSignalRelay.submit("signal-d", invalid));
+    }
+
+    private Sent next() throws InterruptedException {
+        Sent next = sent.poll(10, TimeUnit.SECONDS);
+        assertNotNull(next, "未收到信号");
+        return next;
+    }
+
+    private void receiverOnline() {
+        StompHeaderAccessor accessor = accessor(StompCommand.SUBSCRIBE, receiverSession);
+        accessor.setSubscriptionId("sub-0");
+        accessor.setDestination("/queue/messages/counselor/" + COUNSELOR_ID);
+        eventPublisher.publishEvent(new SessionSubscribeEvent(this,
+                MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders())));
+    }
+
+    private void disconnect(String sessionId) {
+        StompHeaderAccessor accessor = accessor(StompCommand.DISCONNECT, sessionId);
+        eventPublisher.publishEvent(new SessionDisconnectEvent(this,
+                MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders()), sessionId, CloseStatus.NORMAL));
+    }
+
+    private static StompHeaderAccessor accessor(StompCommand command, String sessionId) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(command);
+        accessor.setSessionId(sessionId);
+        accessor.setLeaveMutable(true);
+        return accessor;
+    }
+
+    private static ChatSignal read(Long messageId) {
+        ChatSignal signal = signal(ChatSignal.READ);
+        signal.setMessageId(messageId);
+        return signal;
+    }
+
+    private static ChatSignal typing(boolean typing) {
+        ChatSignal signal = signal(ChatSignal.TYPING);
+        signal.setTyping(typing);
+        return signal;
+    }
+
+    private static ChatSignal signal(String type) {
+        ChatSignal signal = new ChatSignal();
+        signal.setSenderId(USER_ID);
+        signal.setSenderType("USER");
+        signal.setReceiverId(COUNSELOR_ID);
+        signal.setType(type);
+        return signal;
+    }
+
+    private record Sent(String destination, ChatSignal signal) {
+    }
+}
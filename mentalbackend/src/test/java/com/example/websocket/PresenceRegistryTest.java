@@ -0,0 +1,116 @@
+package com.example.websocket;
+
+import jakarta.annotation.Resource;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.messaging.SessionConnectEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 在线状态：多个会话按引用计数，断开后迟到的SUBSCRIBE不会重新登记在线（内嵌H2数据库）
+ */
+@SpringBootTest
+@ActiveProfiles("h2")
+public class PresenceRegistryTest {
+
+    private static final long USER_ID = 1004L;
+    private static final long COUNSELOR_ID = 4004L;
+
+    @Resource
+    private PresenceRegistry presenceRegistry;
+
+    @Resource
+    private ApplicationEventPublisher eventPublisher;
+
+    @Test
+    public void subscribeAfterDisconnectIsIgnored() {
+        String destination = "/queue/messages/user/" + USER_ID;
+        subscribe("presence-a", "sub-0", destination);
+        assertTrue(presenceRegistry.isOnline("USER", USER_ID));
+
+        disconnect("presence-a");
+        assertFalse(presenceRegistry.isOnline("user", USER_ID));
+
+        // 入站通道多线程处理时，同一会话的SUBSCRIBE可能晚于DISCONNECT到达
+        subscribe("presence-a", "sub-1", destination);
+        assertFalse(presenceRegistry.isOnline("USER", USER_ID));
+
+        // 新会话照常登记
+        subscribe("presence-b", "sub-0", destination);
+        assertTrue(presenceRegistry.isOnline("USER", USER_ID));
+        disconnect("presence-b");
+        assertFalse(presenceRegistry.isOnline("USER", USER_ID));
+    }
+
+    @Test
+    public void participantStaysOnlineUntilLastRegistrationIsGone() {
+        String destination = "/queue/messages/counselor/" + COUNSELOR_ID;
+        connect("presence-c", "COUNSELOR", COUNSELOR_ID);
+        subscribe("presence-c", "sub-0", destination);
+        subscribe("presence-d", "sub-0", destination);
+        assertTrue(presenceRegistry.isOnline("COUNSELOR", COUNSELOR_ID));
+
+        // 取消订阅后CONNECT登记仍在
+        unsubscribe("presence-c", "sub-0");
+        assertTrue(presenceRegistry.isOnline("COUNSELOR", COUNSELOR_ID));
+        disconnect("presence-c");
+        assertTrue(presenceRegistry.isOnline("COUNSELOR", COUNSELOR_ID));
+
+        disconnect("presence-d");
+        assertFalse(presenceRegistry.isOnline("COUNSELOR", COUNSELOR_ID));
+        // 重复的DISCONNECT事件不会让计数变成负数
+        disconnect("presence-d");
+        subscribe("presence-e", "sub-0", destination);
+        assertTrue(presenceRegistry.isOnline("COUNSELOR", COUNSELOR_ID));
+        disconnect("presence-e");
+        assertFalse(presenceRegistry.isOnline("COUNSELOR", COUNSELOR_ID));
+    }
+
+    private void connect(String sessionId, String type, long id) {
+        StompHeaderAccessor accessor = accessor(StompCommand.CONNECT, sessionId);
+        accessor.addNativeHeader(PresenceRegistry.PARTICIPANT_TYPE_HEADER, type);
+        accessor.addNativeHeader(PresenceRegistry.PARTICIPANT_ID_HEADER, String.valueOf(id));
+        eventPublisher.publishEvent(new SessionConnectEvent(this, message(accessor)));
+    }
+
+    private void subscribe(String sessionId, String subscriptionId, String destination) {
+        StompHeaderAccessor accessor = accessor(StompCommand.SUBSCRIBE, sessionId);
+        accessor.setSubscriptionId(subscriptionId);
+        accessor.setDestination(destination);
+        eventPublisher.publishEvent(new SessionSubscribeEvent(this, message(accessor)));
+    }
+
+    private void unsubscribe(String sessionId, String subscriptionId) {
+        StompHeaderAccessor accessor = accessor(StompCommand.UNSUBSCRIBE, sessionId);
+        accessor.setSubscriptionId(subscriptionId);
+        eventPublisher.publishEvent(new SessionUnsubscribeEvent(this, message(accessor)));
+    }
+
+    private void disconnect(String sessionId) {
+        StompHeaderAccessor accessor = accessor(StompCommand.DISCONNECT, sessionId);
+        eventPublisher.publishEvent(new SessionDisconnectEvent(this, message(accessor), sessionId, CloseStatus.NORMAL));
+    }
+
+    private static StompHeaderAccessor accessor(StompCommand command, String sessionId) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(command);
+        accessor.setSessionId(sessionId);
+        accessor.setLeaveMutable(true);
+        return accessor;
+    }
+
+    private static Message<byte[]> message(StompHeaderAccessor accessor) {
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+}
@@ -0,0 +1,203 @@
+package com.example.websocket;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.Resource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 慢消费者策略：底层连接写出卡住时，缓冲超限后按DISCONNECT断开、按DROP丢弃最早的消息、按COALESCE丢弃并合并写出；
+ * 正常关闭时先写完缓冲再关闭（内嵌H2数据库）
+ */
+@SpringBootTest
+@ActiveProfiles("h2")
+public class SlowConsumerSessionDecoratorTest {
+
+    private static final int BUFFER_LIMIT = 100;
+
+    @Resource
+    private SlowConsumerMonitor slowConsumerMonitor;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private final ExecutorService flushExecutor = Executors.newFixedThreadPool(2);
+
+    @AfterEach
+    public void stopExecutor() {
+        flushExecutor.shutdownNow();
+    }
+
+    @Test
+    public void disconnectPolicyClosesSessionOverBufferLimit() throws Exception {
+        StalledSession stalled = new StalledSession();
+        SlowConsumerSessionDecorator session = decorate(stalled, SlowConsumerSessionDecorator.Policy.DISCONNECT);
+        double disconnected = meterRegistry.counter("chat.websocket.slow.disconnected").count();
+
+        session.sendMessage(text('a', 40));
+        stalled.awaitStalled();
+        session.sendMessage(text('b', 60));
+        assertNull(stalled.closeStatus.get());
+        session.sendMessage(text('c', 60));
+
+        assertEquals(CloseStatus.SESSION_NOT_RELIABLE, stalled.closeStatus.get());
+        assertEquals(0, session.getBufferedBytes());
+        assertEquals(disconnected + 1, meterRegistry.counter("chat.websocket.slow.disconnected").count());
+        stalled.release();
+        assertEquals(List.of(repeat('a', 40)), stalled.drain(1));
+    }
+
+    @Test
+    public void dropPolicyDiscardsOldestMessages() throws Exception {
+        StalledSession stalled = new StalledSession();
+        SlowConsumerSessionDecorator session = decorate(stalled, SlowConsumerSessionDecorator.Policy.DROP);
+        double dropped = meterRegistry.counter("chat.websocket.slow.dropped").count();
+
+        session.sendMessage(text('a', 40));
+        stalled.awaitStalled();
+        // 缓冲160字节超过100字节上限，丢弃最早的b、c
+        for (char c = 'b'; c <= 'e'; c++) {
+            session.sendMessage(text(c, 40));
+        }
+        assertEquals(80, session.getBufferedBytes());
+        assertTrue(session.isSlow());
+        assertEquals(dropped + 2, meterRegistry.counter("chat.websocket.slow.dropped").count());
+
+        stalled.release();
+        assertEquals(List.of(repeat('a', 40), repeat('d', 40), repeat('e', 40)), stalled.drain(3));
+        assertNull(stalled.closeStatus.get());
+    }
+
+    @Test
+    public void coalescePolicyMergesBufferedFrames() throws Exception {
+        StalledSession stalled = new StalledSession();
+        SlowConsumerSessionDecorator session = decorate(stalled, SlowConsumerSessionDecorator.Policy.COALESCE);
+
+        session.sendMessage(text('a', 40));
+        stalled.awaitStalled();
+        for (char c = 'b'; c <= 'e'; c++) {
+            session.sendMessage(text(c, 40));
+        }
+
+        // 保留的d、e合并为一次写出
+        stalled.release();
+        assertEquals(List.of(repeat('a', 40), repeat('d', 40) + repeat('e', 40)), stalled.drain(2));
+        assertNull(stalled.poll());
+        assertNull(stalled.closeStatus.get());
+    }
+
+    @Test
+    public void closeFlushesBufferedFramesFirst() throws Exception {
+        StalledSession stalled = new StalledSession();
+        SlowConsumerSessionDecorator session = decorate(stalled, SlowConsumerSessionDecorator.Policy.DISCONNECT);
+
+        session.sendMessage(text('a', 10));
+        stalled.awaitStalled();
+        session.sendMessage(text('b', 10));
+        session.sendMessage(text('c', 10));
+
+        // 关闭时写出线程仍卡在a，close等它写完后在调用线程上写出b、c（例如STOMP的ERROR帧）再关闭
+        Thread closer = new Thread(() -> {
+            try {
+                session.close(CloseStatus.NORMAL);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        closer.start();
+        closer.join(200);
+        assertTrue(closer.isAlive(), "写出线程卡住时close应等待");
+        stalled.release();
+        closer.join(TimeUnit.SECONDS.toMillis(10));
+        assertFalse(closer.isAlive());
+
+        assertEquals(List.of(repeat('a', 10), repeat('b', 10), repeat('c', 10)), stalled.drain(3));
+        assertEquals(CloseStatus.NORMAL, stalled.closeStatus.get());
+    }
+
+    private SlowConsumerSessionDecorator decorate(StalledSession stalled, SlowConsumerSessionDecorator.Policy policy) {
+        return new SlowConsumerSessionDecorator(stalled.proxy, policy, 10000, BUFFER_LIMIT, 1000,
+                flushExecutor, slowConsumerMonitor);
+    }
+
+    private static TextMessage text(char c, int length) {
+        return new TextMessage(repeat(c, length));
+    }
+
+    private static String repeat(char c, int length) {
+        return String.valueOf(c).repeat(length);
+    }
+
+    /**
+     * 底层连接：第一次写出阻塞到release，记录写出的消息和关闭状态
+     */
+    private static class StalledSession {
+        private final CountDownLatch stalled = new CountDownLatch(1);
+        private final CountDownLatch released = new CountDownLatch(1);
+        private final BlockingQueue<String> sent = new LinkedBlockingQueue<>();
+        private final AtomicReference<CloseStatus> closeStatus = new AtomicReference<>();
+        private final WebSocketSession proxy = (WebSocketSession) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{WebSocketSession.class}, (p, method, args) -> switch (method.getName()) {
+                    case "sendMessage" -> {
+                        stalled.countDown();
+                        released.await(10, TimeUnit.SECONDS);
+                        sent.add(((TextMessage) args[0]).getPayload());
+                        yield null;
+                    }
+                    case "close" -> {
+                        closeStatus.compareAndSet(null, args != null && args.length > 0 ? (CloseStatus) args[0] : CloseStatus.NORMAL);
+                        yield null;
+                    }
+                    case "getId" -> "stalled-session";
+                    case "isOpen" -> closeStatus.get() == null;
+                    case "toString" -> "StalledSession";
+                    case "hashCode" -> System.identityHashCode(p);
+                    case "equals" -> p == args[0];
+                    default -> null;
+                });
+
+        void awaitStalled() throws InterruptedException {
+            assertTrue(stalled.await(10, TimeUnit.SECONDS), "写出线程未开始写出");
+        }
+
+        void release() {
+            released.countDown();
+        }
+
+        String poll() throws InterruptedException {
+            return sent.poll(300, TimeUnit.MILLISECONDS);
+        }
+
+        List<String> drain(int count) throws InterruptedException {
+            List<String> result = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                String message = sent.poll(10, TimeUnit.SECONDS);
+                assertNotNull(message, "只收到" + result);
+                result.add(message);
+            }
+            return result;
+        }
+    }
+}
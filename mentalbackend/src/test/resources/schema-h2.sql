@@ -0,0 +1,118 @@
+CREATE TABLE IF NOT EXISTS consultation_messages (
+    id                BIGINT AUTO_INCREMENT PRIMARY KEY,
+    appointment_id    BIGINT,
+    sender_type       VARCHAR(20)  NOT NULL,
+    message_type      VARCHAR(20)  NOT NULL,
+    content           TEXT,
+    media_url         VARCHAR(500),
+    duration_seconds  INT,
+    sent_time         DATETIME     NOT NULL,
+    read_status       BOOLEAN      DEFAULT FALSE,
+    user_id           BIGINT,
+    counselor_id      BIGINT,
+    conversation_type VARCHAR(30)
+);
+
+CREATE INDEX IF NOT EXISTS idx_conversation_cursor ON consultation_messages (user_id, counselor_id, sent_time, id);
+CREATE INDEX IF NOT EXISTS idx_user_unread ON consultation_messages (user_id, read_status, counselor_id);
+CREATE INDEX IF NOT EXISTS idx_counselor_unread ON consultation_messages (counselor_id, read_status, user_id);
+CREATE INDEX IF NOT EXISTS idx_user_sync ON consultation_messages (user_id, id);
+CREATE INDEX IF NOT EXISTS idx_counselor_sync ON consultation_messages (counselor_id, id);
+
+CREATE TABLE IF NOT EXISTS conversation_summary (
+    user_id           BIGINT       NOT NULL,
+    counselor_id      BIGINT       NOT NULL,
+    last_message_id   BIGINT       NOT NULL,
+    last_sender_type  VARCHAR(20)  NOT NULL,
+    last_message_type VARCHAR(20)  NOT NULL,
+    last_content      VARCHAR(255),
+    last_sent_time    DATETIME     NOT NULL,
+    PRIMARY KEY (user_id, counselor_id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_summary_user ON conversation_summary (user_id, last_sent_time);
+CREATE INDEX IF NOT EXISTS idx_summary_counselor ON conversation_summary (counselor_id, last_sent_time);
+
+CREATE TABLE IF NOT EXISTS consultation_messages_archive (
+    id                BIGINT       NOT NULL PRIMARY KEY,
+    appointment_id    BIGINT,
+    sender_type       VARCHAR(20)  NOT NULL,
+    message_type      VARCHAR(20)  NOT NULL,
+    content           TEXT,
+    media_url         VARCHAR(500),
+    duration_seconds  INT,
+    sent_time         DATETIME     NOT NULL,
+    read_status       BOOLEAN      DEFAULT FALSE,
+    user_id           BIGINT,
+    counselor_id      BIGINT,
+    conversation_type VARCHAR(30)
+);
+
+CREATE INDEX IF NOT EXISTS idx_archive_conversation ON consultation_messages_archive (user_id, counselor_id, sent_time, id);
+CREATE INDEX IF NOT EXISTS idx_archive_appointment ON consultation_messages_archive (appointment_id);
+
+CREATE TABLE IF NOT EXISTS users (
+    id            BIGINT AUTO_INCREMENT PRIMARY KEY,
+    username      VARCHAR(50),
+    password      VARCHAR(255),
+    phone         VARCHAR(20),
+    email         VARCHAR(100),
+    nickname      VARCHAR(50),
+    avatar_url    VARCHAR(500),
+    gender        VARCHAR(10),
+    age           INT,
+    status        VARCHAR(20),
+    created_time  DATETIME,
+    updated_time  DATETIME
+);
+
+CREATE TABLE IF NOT EXISTS counselors (
+    id                            BIGINT AUTO_INCREMENT PRIMARY KEY,
+    user_id                       BIGINT,
+    real_name                     VARCHAR(50),
+    id_number                     VARCHAR(30),
+    qualification_certificate_url VARCHAR(500),
+    practice_certificate_url      VARCHAR(500),
+    photo_url                     VARCHAR(500),
+    years_of_experience           INT,
+    specialization                TEXT,
+    therapeutic_approach          TEXT,
+    introduction                  TEXT,
+    consultation_fee              DECIMAL(10, 2),
+    rating                        DECIMAL(3, 2),
+    total_sessions                INT,
+    status                        VARCHAR(20),
+    approved_time                 DATETIME,
+    created_time                  DATETIME,
+    updated_time                  DATETIME
+);
+
+CREATE TABLE IF NOT EXISTS counselor_service_settings (
+    id                 BIGINT AUTO_INCREMENT PRIMARY KEY,
+    counselor_id       BIGINT,
+    service_types      TEXT,
+    available_days     TEXT,
+    working_hours      TEXT,
+    session_durations  TEXT,
+    max_daily_sessions INT,
+    created_time       DATETIME,
+    updated_time       DATETIME
+);
+
+CREATE INDEX IF NOT EXISTS idx_service_settings_counselor ON counselor_service_settings (counselor_id);
+
+CREATE TABLE IF NOT EXISTS tag (
+    id       BIGINT AUTO_INCREMENT PRIMARY KEY,
+    tag_type VARCHAR(20) NOT NULL,
+    name     VARCHAR(64) NOT NULL,
+    UNIQUE (tag_type, name)
+);
+
+CREATE TABLE IF NOT EXISTS counselor_tag (
+    counselor_id BIGINT      NOT NULL,
+    tag_type     VARCHAR(20) NOT NULL,
+    tag_id       BIGINT      NOT NULL,
+    PRIMARY KEY (counselor_id, tag_type, tag_id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_counselor_tag_tag ON counselor_tag (tag_id, counselor_id);